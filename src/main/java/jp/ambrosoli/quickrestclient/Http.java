@@ -15,6 +15,8 @@
  */
 package jp.ambrosoli.quickrestclient;
 
+import jp.ambrosoli.quickrestclient.client.ClientConfig;
+import jp.ambrosoli.quickrestclient.client.RestClient;
 import jp.ambrosoli.quickrestclient.request.HttpRequestBuilder;
 
 /**
@@ -36,4 +38,26 @@ public final class Http implements HttpConstants {
     public static HttpRequestBuilder url(final String url) {
         return new HttpRequestBuilder(url);
     }
+
+    /**
+     * 設定とコネクションプールを保持する{@link RestClient}を生成します。<br />
+     * 生成した{@link RestClient}は複数のスレッドで共有できます。使い終わったら{@link RestClient#close()}
+     * を呼び出してください。
+     * 
+     * @param config
+     *            クライアントの設定
+     * @return RestClientオブジェクト
+     */
+    public static RestClient client(final ClientConfig config) {
+        return new RestClient(config);
+    }
+
+    /**
+     * デフォルトの設定で{@link RestClient}を生成します。
+     * 
+     * @return RestClientオブジェクト
+     */
+    public static RestClient client() {
+        return new RestClient(new ClientConfig());
+    }
 }
@@ -70,6 +70,20 @@ public final class Operations implements HttpConstants {
         return new AuthInfo(AuthType.BASIC, username, password);
     }
 
+    /**
+     * 最初のリクエストから認証ヘッダーを送信するBasic認証のユーザ/パスワードを設定します。
+     * 
+     * @param username
+     *            ユーザ名
+     * @param password
+     *            パスワード
+     * @return 認証情報
+     * @since 0.3.0
+     */
+    public static AuthInfo preemptiveBasic(final String username, final String password) {
+        return new AuthInfo(AuthType.BASIC, username, password, true);
+    }
+
     /**
      * Basic認証のユーザ/パスワードを設定します。
      * 
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * プールから取得したまま返却されないコネクションを検出するクラスです。
+ * <p>
+ * 取得したコネクションを{@code sampleInterval}回に1回の割合で追跡し、取得したスレッドとスタックトレースを記録します。
+ * 追跡中のコネクションが返却されずにガベージコレクションされた場合、または{@code threshold}を超えて保持されている場合に、
+ * 記録したスタックトレースとともに警告をログに出力します。
+ * 追跡しないコネクションの取得・返却では、カウンターの更新と空のマップの確認のみを行います。
+ * </p>
+ * <p>
+ * 検出処理は、追跡対象のコネクションの取得時と{@link #check()}の呼び出し時に行います。
+ * コネクションマネージャは{@link org.apache.http.conn.ClientConnectionManager#closeExpiredConnections()}
+ * の度に{@link #check()}を呼び出すため、{@link IdleConnectionEvictor}の実行間隔で定期的に検出されます。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class ConnectionLeakDetector {
+
+    /** ロガー */
+    private static final Logger LOGGER = Logger.getLogger(ConnectionLeakDetector.class.getName());
+
+    /** 追跡する間隔（取得回数） */
+    private final int sampleInterval;
+
+    /** 保持期間の上限（ミリ秒） */
+    private final long threshold;
+
+    /** 取得回数 */
+    private final AtomicLong leaseCount = new AtomicLong();
+
+    /** 追跡中のコネクション */
+    private final ConcurrentMap<LeakRecord, LeakRecord> records = new ConcurrentHashMap<LeakRecord, LeakRecord>();
+
+    /** ガベージコレクションされたコネクションの通知を受けるキュー */
+    private final ReferenceQueue<ManagedClientConnection> queue = new ReferenceQueue<ManagedClientConnection>();
+
+    /** 検出したリーク数 */
+    private final AtomicLong leakCount = new AtomicLong();
+
+    /**
+     * ConnectionLeakDetectorを生成します。
+     *
+     * @param sampleInterval
+     *            追跡する間隔。1を指定するとすべてのコネクションを追跡します
+     * @param threshold
+     *            保持期間の上限（ミリ秒）。0以下の場合はガベージコレクションされたコネクションのみを検出します
+     */
+    public ConnectionLeakDetector(final int sampleInterval, final long threshold) {
+        if (sampleInterval <= 0) {
+            throw new IllegalArgumentException(Messages.getString("message.sample.interval.illegal")); //$NON-NLS-1$
+        }
+        this.sampleInterval = sampleInterval;
+        this.threshold = threshold;
+    }
+
+    /**
+     * コネクションの取得要求をラップし、取得したコネクションを追跡対象にします。
+     *
+     * @param request
+     *            取得要求
+     * @param route
+     *            ルート
+     * @return 追跡を行う取得要求
+     */
+    public ClientConnectionRequest track(final ClientConnectionRequest request, final HttpRoute route) {
+        return new ClientConnectionRequest() {
+
+            public ManagedClientConnection getConnection(final long timeout, final TimeUnit unit)
+                    throws InterruptedException, ConnectionPoolTimeoutException {
+                ManagedClientConnection conn = request.getConnection(timeout, unit);
+                ConnectionLeakDetector.this.leased(conn, route);
+                return conn;
+            }
+
+            public void abortRequest() {
+                request.abortRequest();
+            }
+        };
+    }
+
+    /**
+     * コネクションの取得を記録します。
+     *
+     * @param conn
+     *            取得したコネクション
+     * @param route
+     *            ルート
+     */
+    public void leased(final ManagedClientConnection conn, final HttpRoute route) {
+        if (this.leaseCount.incrementAndGet() % this.sampleInterval != 0) {
+            return;
+        }
+        LeakRecord record = new LeakRecord(conn, route, this.queue);
+        this.records.put(record, record);
+        this.check();
+    }
+
+    /**
+     * コネクションの返却を記録します。
+     *
+     * @param conn
+     *            返却したコネクション
+     */
+    public void released(final ManagedClientConnection conn) {
+        if (this.records.isEmpty()) {
+            return;
+        }
+        LeakRecord record = this.records.remove(new LeakRecord(conn, null, null));
+        if (record != null) {
+            record.clear();
+        }
+    }
+
+    /**
+     * 返却されずにガベージコレクションされたコネクションと、保持期間の上限を超えたコネクションを検出してログに出力します。
+     *
+     * @return 今回検出したリーク数
+     */
+    public int check() {
+        int detected = 0;
+        LeakRecord collected;
+        while ((collected = (LeakRecord) this.queue.poll()) != null) {
+            if (this.records.remove(collected) != null) {
+                this.report(collected, "message.leak.collected"); //$NON-NLS-1$
+                detected++;
+            }
+        }
+        if (this.threshold > 0 && !this.records.isEmpty()) {
+            long now = System.currentTimeMillis();
+            for (LeakRecord record : this.records.keySet()) {
+                if (!record.reported && now - record.leasedAt > this.threshold) {
+                    record.reported = true;
+                    this.report(record, "message.leak.threshold"); //$NON-NLS-1$
+                    detected++;
+                }
+            }
+        }
+        return detected;
+    }
+
+    /**
+     * 追跡する間隔を返します。
+     *
+     * @return 追跡する間隔（取得回数）
+     */
+    public int getSampleInterval() {
+        return this.sampleInterval;
+    }
+
+    /**
+     * 保持期間の上限を返します。
+     *
+     * @return 保持期間の上限（ミリ秒）
+     */
+    public long getThreshold() {
+        return this.threshold;
+    }
+
+    /**
+     * 追跡中のコネクション数を返します。
+     *
+     * @return 追跡中のコネクション数
+     */
+    public int getTrackedCount() {
+        return this.records.size();
+    }
+
+    /**
+     * 検出したリークの累計数を返します。
+     *
+     * @return リーク数
+     */
+    public long getLeakCount() {
+        return this.leakCount.get();
+    }
+
+    /**
+     * リークをログに出力します。
+     *
+     * @param record
+     *            追跡の記録
+     * @param key
+     *            メッセージのキー
+     */
+    private void report(final LeakRecord record, final String key) {
+        this.leakCount.incrementAndGet();
+        if (LOGGER.isLoggable(Level.WARNING)) {
+            LOGGER.log(Level.WARNING, Messages.getString(key, record.route, record.threadName,
+                    String.valueOf(System.currentTimeMillis() - record.leasedAt)), record.allocation);
+        }
+    }
+
+    /**
+     * 追跡中のコネクションへの弱参照と、取得時の情報を保持するクラスです。
+     * <p>
+     * 同じコネクションを参照する記録は等しいものとして扱い、返却時の検索に使用します。
+     * </p>
+     */
+    private static class LeakRecord extends WeakReference<ManagedClientConnection> {
+
+        /** コネクションの識別ハッシュコード */
+        private final int hash;
+
+        /** ルート */
+        final String route;
+
+        /** 取得したスレッドの名前 */
+        final String threadName;
+
+        /** 取得時のスタックトレース */
+        final Throwable allocation;
+
+        /** 取得時刻 */
+        final long leasedAt;
+
+        /** 保持期間の上限を超えたことを出力済みの場合true */
+        volatile boolean reported;
+
+        LeakRecord(final ManagedClientConnection conn, final HttpRoute route,
+                final ReferenceQueue<ManagedClientConnection> queue) {
+            super(conn, queue);
+            this.hash = System.identityHashCode(conn);
+            if (queue == null) {
+                // 返却時の検索用
+                this.route = null;
+                this.threadName = null;
+                this.allocation = null;
+                this.leasedAt = 0L;
+            } else {
+                this.route = String.valueOf(route);
+                this.threadName = Thread.currentThread().getName();
+                this.allocation = new Throwable(Messages.getString("message.leak.allocation")); //$NON-NLS-1$
+                this.leasedAt = System.currentTimeMillis();
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LeakRecord)) {
+                return false;
+            }
+            ManagedClientConnection conn = this.get();
+            return conn != null && conn == ((LeakRecord) obj).get();
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.apache.http.conn.scheme.HostNameResolver;
+
+import jp.ambrosoli.quickrestclient.net.DnsResolver;
+
+/**
+ * {@link DnsResolver}を使用してホスト名を解決する{@link HostNameResolver}の実装クラスです。
+ * <p>
+ * 解決したアドレスの先頭を返します。{@link jp.ambrosoli.quickrestclient.net.CachingDnsResolver}
+ * を使用すると、先頭のアドレスが呼び出す度に入れ替わるため、コネクションは各アドレスに分散されます。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class DnsHostNameResolver implements HostNameResolver {
+
+    /** リゾルバ */
+    private final DnsResolver dnsResolver;
+
+    /**
+     * DnsHostNameResolverを生成します。
+     *
+     * @param dnsResolver
+     *            リゾルバ
+     */
+    public DnsHostNameResolver(final DnsResolver dnsResolver) {
+        if (dnsResolver == null) {
+            throw new IllegalArgumentException(Messages.getString("message.resolver.null")); //$NON-NLS-1$
+        }
+        this.dnsResolver = dnsResolver;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.conn.scheme.HostNameResolver#resolve(java.lang.String)
+     */
+    public InetAddress resolve(final String hostname) throws IOException {
+        InetAddress[] addresses = this.dnsResolver.resolve(hostname);
+        if (addresses == null || addresses.length == 0) {
+            throw new UnknownHostException(hostname);
+        }
+        return addresses[0];
+    }
+
+    /**
+     * リゾルバを返します。
+     *
+     * @return リゾルバ
+     */
+    public DnsResolver getDnsResolver() {
+        return this.dnsResolver;
+    }
+
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.conn.ConnectTimeoutException;
+
+/**
+ * 複数のアドレスに時間差で並行して接続を試み、最初に接続できたソケットを返すクラスです（Happy Eyeballs）。
+ * <p>
+ * 最初のアドレスへの接続を開始し、試行間隔が経過しても接続できない場合は次のアドレスへの接続を並行して開始します。
+ * 接続に失敗した場合は待たずに次のアドレスへの接続を開始します。最初に接続できたソケット以外はすべて閉じます。
+ * アドレスはIPv6とIPv4が交互になるように並べ替えます。<br />
+ * 応答しないアドレスがあっても、接続タイムアウトではなく試行間隔の経過後に他のアドレスに接続できます。
+ * 接続タイムアウトはアドレス毎ではなく、すべての試行を合わせた全体の制限時間として扱います。
+ * </p>
+ * <p>
+ * {@link #abort()}を呼び出すと、接続中のソケットをすべて閉じて接続を中断します。
+ * インスタンスは中断の状態を保持するため、接続毎に生成してください。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class HappyEyeballsConnector {
+
+    /** 接続を行うスレッドの番号 */
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    /** 接続を行うスレッドプール */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, "QuickRestClient-Connector-" + THREAD_NUMBER.incrementAndGet()); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** 試行間隔（ミリ秒） */
+    private final long attemptDelay;
+
+    /** 接続を開始したソケット */
+    private final List<Socket> sockets = new ArrayList<Socket>();
+
+    /** 中断された場合true */
+    private boolean aborted;
+
+    /** 接続前のソケットに設定する送信バッファサイズ（バイト）。0以下の場合は設定しない */
+    private int sendBufferSize;
+
+    /** 接続前のソケットに設定する受信バッファサイズ（バイト）。0以下の場合は設定しない */
+    private int receiveBufferSize;
+
+    /**
+     * HappyEyeballsConnectorを生成します。
+     *
+     * @param attemptDelay
+     *            次のアドレスへの接続を開始するまでの試行間隔（ミリ秒）
+     */
+    public HappyEyeballsConnector(final long attemptDelay) {
+        if (attemptDelay <= 0) {
+            throw new IllegalArgumentException(Messages.getString("message.attempt.delay.illegal")); //$NON-NLS-1$
+        }
+        this.attemptDelay = attemptDelay;
+    }
+
+    /**
+     * アドレスに接続し、最初に接続できたソケットを返します。
+     *
+     * @param addresses
+     *            接続先のアドレス
+     * @param port
+     *            ポート番号
+     * @param localAddress
+     *            ローカルアドレス（nullの場合は指定しない）。接続先と異なるアドレスファミリーの場合はバインドしません
+     * @param connectTimeout
+     *            すべての試行を合わせた接続タイムアウト（ミリ秒）。0の場合は無制限
+     * @return 接続したソケット
+     * @throws IOException
+     *             すべてのアドレスに接続できなかった場合、または接続が中断された場合
+     */
+    public Socket connect(final InetAddress[] addresses, final int port, final InetAddress localAddress,
+            final int connectTimeout) throws IOException {
+        if (addresses == null || addresses.length == 0) {
+            throw new IllegalArgumentException(Messages.getString("message.addresses.empty")); //$NON-NLS-1$
+        }
+        if (addresses.length == 1) {
+            return this.connect(addresses[0], port, localAddress, connectTimeout);
+        }
+        List<InetAddress> ordered = interleave(addresses);
+        BlockingQueue<Attempt> results = new LinkedBlockingQueue<Attempt>();
+        List<Attempt> attempts = new ArrayList<Attempt>();
+        long deadline = connectTimeout > 0 ? System.currentTimeMillis() + connectTimeout : 0L;
+        Attempt winner = null;
+        IOException lastFailure = null;
+        int finished = 0;
+        try {
+            attempts.add(this.start(ordered.get(0), port, localAddress, remaining(deadline), results));
+            while (finished < attempts.size()) {
+                long wait = attempts.size() < ordered.size() ? this.attemptDelay : 0L;
+                if (deadline > 0) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new ConnectTimeoutException("Connect to " + ordered + " timed out"); //$NON-NLS-1$ //$NON-NLS-2$
+                    }
+                    wait = wait > 0 ? Math.min(wait, remaining) : remaining;
+                }
+                Attempt result = wait > 0 ? results.poll(wait, TimeUnit.MILLISECONDS) : results.take();
+                if (result != null) {
+                    finished++;
+                    if (result.failure == null) {
+                        winner = result;
+                        return result.socket;
+                    }
+                    lastFailure = result.failure;
+                }
+                int timeout = remaining(deadline);
+                if (attempts.size() < ordered.size() && timeout >= 0) {
+                    attempts.add(this.start(ordered.get(attempts.size()), port, localAddress, timeout, results));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } finally {
+            for (Attempt attempt : attempts) {
+                if (attempt != winner) {
+                    attempt.close();
+                }
+            }
+        }
+        if (this.isAborted()) {
+            throw new InterruptedIOException(Messages.getString("message.connect.aborted")); //$NON-NLS-1$
+        }
+        throw lastFailure;
+    }
+
+    /**
+     * 呼び出し元のスレッドでアドレスに接続します。
+     *
+     * @param address
+     *            接続先のアドレス
+     * @param port
+     *            ポート番号
+     * @param localAddress
+     *            ローカルアドレス
+     * @param connectTimeout
+     *            接続タイムアウト（ミリ秒）
+     * @return 接続したソケット
+     * @throws IOException
+     *             接続できなかった場合
+     */
+    protected Socket connect(final InetAddress address, final int port, final InetAddress localAddress,
+            final int connectTimeout) throws IOException {
+        Socket socket = new Socket();
+        this.register(socket);
+        InetSocketAddress remoteAddress = new InetSocketAddress(address, port);
+        try {
+            this.prepare(socket);
+            if (isSameFamily(localAddress, address)) {
+                socket.bind(new InetSocketAddress(localAddress, 0));
+            }
+            socket.connect(remoteAddress, connectTimeout);
+            return socket;
+        } catch (SocketTimeoutException e) {
+            socket.close();
+            throw new ConnectTimeoutException("Connect to " + remoteAddress + " timed out"); //$NON-NLS-1$ //$NON-NLS-2$
+        } catch (IOException e) {
+            socket.close();
+            if (this.isAborted()) {
+                throw new InterruptedIOException(Messages.getString("message.connect.aborted")); //$NON-NLS-1$
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * アドレスへの接続を開始します。
+     *
+     * @param address
+     *            接続先のアドレス
+     * @param port
+     *            ポート番号
+     * @param localAddress
+     *            ローカルアドレス
+     * @param connectTimeout
+     *            接続タイムアウト（ミリ秒）
+     * @param results
+     *            接続結果を格納するキュー
+     * @return 接続の試行
+     * @throws IOException
+     *             ソケットの生成に失敗した場合
+     */
+    protected Attempt start(final InetAddress address, final int port, final InetAddress localAddress,
+            final int connectTimeout, final BlockingQueue<Attempt> results) throws IOException {
+        final Socket socket = new Socket();
+        this.register(socket);
+        try {
+            this.prepare(socket);
+            if (isSameFamily(localAddress, address)) {
+                socket.bind(new InetSocketAddress(localAddress, 0));
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        final InetSocketAddress remoteAddress = new InetSocketAddress(address, port);
+        final Attempt attempt = new Attempt(socket);
+        EXECUTOR.execute(new Runnable() {
+            public void run() {
+                try {
+                    socket.connect(remoteAddress, connectTimeout);
+                } catch (SocketTimeoutException e) {
+                    attempt.failure = new ConnectTimeoutException("Connect to " + remoteAddress + " timed out"); //$NON-NLS-1$ //$NON-NLS-2$
+                } catch (IOException e) {
+                    attempt.failure = e;
+                }
+                results.add(attempt);
+            }
+        });
+        return attempt;
+    }
+
+    /**
+     * 接続前のソケットに設定するバッファサイズを設定します。
+     *
+     * @param sendBufferSize
+     *            送信バッファサイズ（バイト）。0以下の場合は設定しない
+     * @param receiveBufferSize
+     *            受信バッファサイズ（バイト）。0以下の場合は設定しない
+     */
+    public void setBufferSizes(final int sendBufferSize, final int receiveBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    /**
+     * 接続前のソケットにバッファサイズを設定します。
+     *
+     * @param socket
+     *            接続前のソケット
+     * @throws IOException
+     *             ソケットオプションを設定できなかった場合
+     */
+    protected void prepare(final Socket socket) throws IOException {
+        if (this.sendBufferSize > 0) {
+            socket.setSendBufferSize(this.sendBufferSize);
+        }
+        if (this.receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(this.receiveBufferSize);
+        }
+    }
+
+    /**
+     * 接続を中断します。接続中のソケットをすべて閉じ、以降の接続の開始は{@link InterruptedIOException}で失敗します。
+     */
+    public void abort() {
+        List<Socket> targets;
+        synchronized (this.sockets) {
+            this.aborted = true;
+            targets = new ArrayList<Socket>(this.sockets);
+        }
+        for (Socket socket : targets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Do nothing.
+            }
+        }
+    }
+
+    /**
+     * 接続が中断されたかどうかを返します。
+     *
+     * @return 中断された場合true
+     */
+    public boolean isAborted() {
+        synchronized (this.sockets) {
+            return this.aborted;
+        }
+    }
+
+    /**
+     * 接続を開始するソケットを登録します。既に中断されている場合はソケットを閉じて例外をスローします。
+     *
+     * @param socket
+     *            ソケット
+     * @throws IOException
+     *             接続が中断されている場合
+     */
+    protected void register(final Socket socket) throws IOException {
+        synchronized (this.sockets) {
+            if (!this.aborted) {
+                this.sockets.add(socket);
+                return;
+            }
+        }
+        socket.close();
+        throw new InterruptedIOException(Messages.getString("message.connect.aborted")); //$NON-NLS-1$
+    }
+
+    /**
+     * 全体の制限時間までの残り時間を返します。
+     *
+     * @param deadline
+     *            制限時刻（ミリ秒）。0の場合は無制限
+     * @return 残り時間（ミリ秒）。無制限の場合は0、制限時刻を過ぎた場合は負の値
+     */
+    protected static int remaining(final long deadline) {
+        if (deadline <= 0) {
+            return 0;
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            return -1;
+        }
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 最初のアドレスと同じアドレスファミリーから始めて、IPv6とIPv4が交互になるようにアドレスを並べ替えます。
+     *
+     * @param addresses
+     *            アドレス
+     * @return 並べ替えたアドレス
+     */
+    protected static List<InetAddress> interleave(final InetAddress[] addresses) {
+        LinkedList<InetAddress> first = new LinkedList<InetAddress>();
+        LinkedList<InetAddress> second = new LinkedList<InetAddress>();
+        boolean firstIsV6 = addresses[0] instanceof Inet6Address;
+        for (InetAddress address : addresses) {
+            if (address instanceof Inet6Address == firstIsV6) {
+                first.add(address);
+            } else {
+                second.add(address);
+            }
+        }
+        List<InetAddress> ordered = new ArrayList<InetAddress>(addresses.length);
+        while (!first.isEmpty() || !second.isEmpty()) {
+            if (!first.isEmpty()) {
+                ordered.add(first.removeFirst());
+            }
+            if (!second.isEmpty()) {
+                ordered.add(second.removeFirst());
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * ローカルアドレスが接続先のアドレスと同じアドレスファミリーかどうかを返します。
+     *
+     * @param localAddress
+     *            ローカルアドレス
+     * @param address
+     *            接続先のアドレス
+     * @return 同じアドレスファミリーの場合はtrue。ローカルアドレスがnullの場合はfalse
+     */
+    protected static boolean isSameFamily(final InetAddress localAddress, final InetAddress address) {
+        if (localAddress == null) {
+            return false;
+        }
+        return localAddress instanceof Inet6Address == address instanceof Inet6Address;
+    }
+
+    /**
+     * 試行間隔を返します。
+     *
+     * @return 試行間隔（ミリ秒）
+     */
+    public long getAttemptDelay() {
+        return this.attemptDelay;
+    }
+
+    /**
+     * アドレスへの接続の試行です。
+     */
+    protected static class Attempt {
+
+        /** ソケット */
+        final Socket socket;
+
+        /** 接続に失敗した場合の例外 */
+        volatile IOException failure;
+
+        /**
+         * Attemptを生成します。
+         *
+         * @param socket
+         *            ソケット
+         */
+        Attempt(final Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * ソケットを閉じます。
+         */
+        void close() {
+            try {
+                this.socket.close();
+            } catch (IOException e) {
+                // Do nothing.
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.http.conn.params.ConnPerRoute;
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * 接続先ホスト毎にコネクション数の上限を決定する{@link ConnPerRoute}の実装クラスです。
+ * <p>
+ * ルートの接続先ホスト名（大文字小文字を区別しません）に個別の上限が設定されていればその値を、
+ * 設定されていなければデフォルトの上限を返します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class HostConnPerRoute implements ConnPerRoute {
+
+    /** デフォルトの上限 */
+    private final int defaultMax;
+
+    /** ホスト名毎の上限 */
+    private final Map<String, Integer> maxPerHost;
+
+    /**
+     * HostConnPerRouteを生成します。
+     *
+     * @param defaultMax
+     *            デフォルトの上限
+     * @param maxPerHost
+     *            ホスト名毎の上限。nullの場合はすべてのルートでデフォルトの上限を使用します
+     */
+    public HostConnPerRoute(final int defaultMax, final Map<String, Integer> maxPerHost) {
+        if (defaultMax <= 0) {
+            throw new IllegalArgumentException(Messages.getString("message.max.connections.illegal")); //$NON-NLS-1$
+        }
+        this.defaultMax = defaultMax;
+        this.maxPerHost = new HashMap<String, Integer>();
+        if (maxPerHost != null) {
+            for (Map.Entry<String, Integer> entry : maxPerHost.entrySet()) {
+                this.maxPerHost.put(entry.getKey().toLowerCase(Locale.ENGLISH), entry.getValue());
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.conn.params.ConnPerRoute#getMaxForRoute(org.apache.http
+     * .conn.routing.HttpRoute)
+     */
+    public int getMaxForRoute(final HttpRoute route) {
+        if (this.maxPerHost.isEmpty()) {
+            return this.defaultMax;
+        }
+        String hostName = route.getTargetHost().getHostName().toLowerCase(Locale.ENGLISH);
+        Integer max = this.maxPerHost.get(hostName);
+        if (max == null) {
+            return this.defaultMax;
+        }
+        return max.intValue();
+    }
+
+}
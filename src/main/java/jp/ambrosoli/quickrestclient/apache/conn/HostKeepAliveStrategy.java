@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * サーバーのKeep-Aliveヘッダーと接続先ホスト毎の設定からコネクションの再利用期間を決定する
+ * {@link org.apache.http.conn.ConnectionKeepAliveStrategy}の実装クラスです。
+ * <p>
+ * 接続先ホスト名（大文字小文字を区別しません）に個別の期間が設定されていればその値を、設定されていなければデフォルトの期間を上限とします。
+ * レスポンスに{@code Keep-Alive: timeout=N}ヘッダーがある場合は、サーバーがコネクションを閉じる前に破棄するよう、
+ * そのタイムアウトから{@link #SAFETY_MARGIN}を差し引いた期間と上限のうち短い方を返します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class HostKeepAliveStrategy extends DefaultConnectionKeepAliveStrategy {
+
+    /** サーバーのタイムアウトより前にコネクションを破棄するための余裕（ミリ秒） */
+    public static final long SAFETY_MARGIN = 1000L;
+
+    /** デフォルトの再利用期間（ミリ秒） */
+    private final long defaultDuration;
+
+    /** ホスト名毎の再利用期間（ミリ秒） */
+    private final Map<String, Long> durationPerHost;
+
+    /**
+     * HostKeepAliveStrategyを生成します。
+     *
+     * @param defaultDuration
+     *            デフォルトの再利用期間（ミリ秒）。0以下の場合はサーバーの指定がなければ無期限
+     * @param durationPerHost
+     *            ホスト名毎の再利用期間（ミリ秒）。nullの場合はすべてのホストでデフォルトの期間を使用します
+     */
+    public HostKeepAliveStrategy(final long defaultDuration, final Map<String, Long> durationPerHost) {
+        this.defaultDuration = defaultDuration;
+        this.durationPerHost = new HashMap<String, Long>();
+        if (durationPerHost != null) {
+            for (Map.Entry<String, Long> entry : durationPerHost.entrySet()) {
+                this.durationPerHost.put(entry.getKey().toLowerCase(Locale.ENGLISH), entry.getValue());
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy#getKeepAliveDuration
+     * (org.apache.http.HttpResponse, org.apache.http.protocol.HttpContext)
+     */
+    @Override
+    public long getKeepAliveDuration(final HttpResponse response, final HttpContext context) {
+        long max = this.getMaxDuration(context);
+        long hint = super.getKeepAliveDuration(response, context);
+        if (hint <= 0) {
+            return max;
+        }
+
+        long duration = hint > SAFETY_MARGIN ? hint - SAFETY_MARGIN : hint / 2;
+        if (duration <= 0) {
+            // 0以下は無期限を意味するため、再利用されない最小の期間を返す
+            duration = 1L;
+        }
+        return max > 0 ? Math.min(duration, max) : duration;
+    }
+
+    /**
+     * 接続先ホストの再利用期間の上限を返します。
+     *
+     * @param context
+     *            HttpContext
+     * @return 再利用期間の上限（ミリ秒）
+     */
+    protected long getMaxDuration(final HttpContext context) {
+        if (this.durationPerHost.isEmpty() || context == null) {
+            return this.defaultDuration;
+        }
+        HttpHost target = (HttpHost) context.getAttribute(ExecutionContext.HTTP_TARGET_HOST);
+        if (target == null) {
+            return this.defaultDuration;
+        }
+        Long duration = this.durationPerHost.get(target.getHostName().toLowerCase(Locale.ENGLISH));
+        if (duration == null) {
+            return this.defaultDuration;
+        }
+        return duration.longValue();
+    }
+
+}
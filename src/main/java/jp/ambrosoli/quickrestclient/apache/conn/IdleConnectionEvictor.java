@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.conn.ClientConnectionManager;
+
+/**
+ * 一定間隔でコネクションプールのアイドルコネクションと期限切れコネクションを破棄するデーモンスレッドです。
+ * <p>
+ * ロードバランサーなどにより切断されたコネクションがプールに残っていると、
+ * しばらく通信がなかった後の最初のリクエストが失敗する場合があります。このスレッドはそのようなコネクションを事前に破棄します。
+ * 破棄処理で実行時例外が発生した場合はログに出力し、次の実行間隔で処理を継続します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class IdleConnectionEvictor extends Thread {
+
+    /** スレッド名の接頭辞 */
+    private static final String THREAD_NAME_PREFIX = "QuickRestClient-IdleConnectionEvictor-"; //$NON-NLS-1$
+
+    /** ロガー */
+    private static final Logger LOGGER = Logger.getLogger(IdleConnectionEvictor.class.getName());
+
+    /** スレッド番号 */
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    /** 対象のコネクションマネージャ */
+    private final ClientConnectionManager connectionManager;
+
+    /** アイドルタイムアウト（ミリ秒） */
+    private final long idleTimeout;
+
+    /** 実行間隔（ミリ秒） */
+    private final long interval;
+
+    /** 実行回数 */
+    private final AtomicLong runCount = new AtomicLong();
+
+    /** 最後に実行した時刻 */
+    private volatile long lastRunTime;
+
+    /** 終了している場合true */
+    private volatile boolean shutdown;
+
+    /**
+     * IdleConnectionEvictorを生成します。
+     *
+     * @param connectionManager
+     *            対象のコネクションマネージャ
+     * @param idleTimeout
+     *            アイドルタイムアウト（ミリ秒）。0以下の場合は期限切れのコネクションのみ破棄します
+     * @param interval
+     *            実行間隔（ミリ秒）
+     */
+    public IdleConnectionEvictor(final ClientConnectionManager connectionManager, final long idleTimeout,
+            final long interval) {
+        super(THREAD_NAME_PREFIX + THREAD_NUMBER.incrementAndGet());
+        if (connectionManager == null) {
+            throw new IllegalArgumentException(Messages.getString("message.connection.manager.null")); //$NON-NLS-1$
+        }
+        if (interval <= 0) {
+            throw new IllegalArgumentException(Messages.getString("message.eviction.interval.illegal")); //$NON-NLS-1$
+        }
+        this.connectionManager = connectionManager;
+        this.idleTimeout = idleTimeout;
+        this.interval = interval;
+        this.setDaemon(true);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Thread#run()
+     */
+    @Override
+    public void run() {
+        while (!this.shutdown) {
+            try {
+                Thread.sleep(this.interval);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (this.shutdown) {
+                break;
+            }
+            try {
+                this.evict();
+            } catch (RuntimeException e) {
+                // スレッドを終了させず、次の実行間隔で再度実行する
+                if (LOGGER.isLoggable(Level.WARNING)) {
+                    LOGGER.log(Level.WARNING, Messages.getString("message.eviction.failed"), e); //$NON-NLS-1$
+                }
+            }
+        }
+    }
+
+    /**
+     * 期限切れのコネクションとアイドルタイムアウトを超えたコネクションを破棄します。
+     */
+    public void evict() {
+        this.connectionManager.closeExpiredConnections();
+        if (this.idleTimeout > 0) {
+            this.connectionManager.closeIdleConnections(this.idleTimeout, TimeUnit.MILLISECONDS);
+        }
+        this.runCount.incrementAndGet();
+        this.lastRunTime = System.currentTimeMillis();
+    }
+
+    /**
+     * スレッドを終了します。
+     */
+    public void shutdown() {
+        this.shutdown = true;
+        this.interrupt();
+    }
+
+    /**
+     * 終了しているかどうかを返します。
+     *
+     * @return 終了している場合true
+     */
+    public boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    /**
+     * アイドルタイムアウトを返します。
+     *
+     * @return アイドルタイムアウト（ミリ秒）
+     */
+    public long getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    /**
+     * 実行間隔を返します。
+     *
+     * @return 実行間隔（ミリ秒）
+     */
+    public long getInterval() {
+        return this.interval;
+    }
+
+    /**
+     * 破棄処理の実行回数を返します。
+     *
+     * @return 実行回数
+     */
+    public long getRunCount() {
+        return this.runCount.get();
+    }
+
+    /**
+     * 最後に破棄処理を実行した時刻を返します。
+     *
+     * @return 最後に実行した時刻（エポックミリ秒）。未実行の場合は0
+     */
+    public long getLastRunTime() {
+        return this.lastRunTime;
+    }
+
+}
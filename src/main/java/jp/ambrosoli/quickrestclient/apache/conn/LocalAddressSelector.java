@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 接続時にソケットをバインドするローカルアドレスを順番に選択するクラスです。
+ * <p>
+ * 1つのローカルアドレスから同じ接続先のアドレスとポートに対して同時に接続できる数は、エフェメラルポートの数に制限されます。
+ * 複数のローカルアドレスを順番に使用することで、この上限を引き上げることができます。
+ * ローカルアドレスは接続先のアドレスと同じアドレスファミリー（IPv4/IPv6）のものから選択します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class LocalAddressSelector {
+
+    /** IPv4のローカルアドレス */
+    private final InetAddress[] inet4Addresses;
+
+    /** IPv6のローカルアドレス */
+    private final InetAddress[] inet6Addresses;
+
+    /** 選択した回数 */
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * LocalAddressSelectorを生成します。
+     *
+     * @param localAddresses
+     *            ローカルアドレス
+     */
+    public LocalAddressSelector(final Collection<InetAddress> localAddresses) {
+        if (localAddresses == null || localAddresses.isEmpty()) {
+            throw new IllegalArgumentException(Messages.getString("message.local.addresses.empty")); //$NON-NLS-1$
+        }
+        List<InetAddress> inet4 = new ArrayList<InetAddress>();
+        List<InetAddress> inet6 = new ArrayList<InetAddress>();
+        for (InetAddress address : localAddresses) {
+            if (address instanceof Inet6Address) {
+                inet6.add(address);
+            } else {
+                inet4.add(address);
+            }
+        }
+        this.inet4Addresses = inet4.toArray(new InetAddress[inet4.size()]);
+        this.inet6Addresses = inet6.toArray(new InetAddress[inet6.size()]);
+    }
+
+    /**
+     * 接続先のアドレスと同じアドレスファミリーのローカルアドレスを順番に選択して返します。
+     *
+     * @param remoteAddress
+     *            接続先のアドレス
+     * @return ローカルアドレス。同じアドレスファミリーのローカルアドレスがない場合はnull
+     */
+    public InetAddress select(final InetAddress remoteAddress) {
+        InetAddress[] candidates = remoteAddress instanceof Inet6Address ? this.inet6Addresses
+                : this.inet4Addresses;
+        if (candidates.length == 0) {
+            return null;
+        }
+        int index = (this.counter.getAndIncrement() & Integer.MAX_VALUE) % candidates.length;
+        return candidates[index];
+    }
+
+}
@@ -0,0 +1,862 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRoute;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.tsccm.AbstractConnPool;
+import org.apache.http.impl.conn.tsccm.BasicPoolEntry;
+import org.apache.http.impl.conn.tsccm.PoolEntryRequest;
+import org.apache.http.params.HttpParams;
+import org.apache.http.util.LangUtils;
+
+import jp.ambrosoli.quickrestclient.service.PoolStats;
+
+/**
+ * ルート毎に状態を分割して管理するコネクションプールです。
+ * <p>
+ * {@link org.apache.http.impl.conn.tsccm.ConnPoolByRoute}はプール全体で1つのロックを使用するため、
+ * 多数のスレッドが同時にコネクションを取得・返却するとロックの競合が発生します。
+ * このクラスはアイドルコネクションとリース中のコネクションをルート毎のパーティションで保持し、
+ * 取得と返却はそのルートのロックのみを取得して行います。
+ * プール全体の最大コネクション数は{@link AtomicInteger}で管理するため、異なるルートへのリクエストは互いに待機しません。
+ * </p>
+ * <p>
+ * プール全体の上限に達した場合は、他のルートのアイドルコネクションを破棄して空きを作ります。
+ * 破棄できるコネクションがない場合に限り、プール全体で共有する待機用のロックで空きを待ちます。
+ * {@link PoolingConnPool#CONNECTION_TIME_TO_LIVE}による最大生存期間の指定にも対応しています。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class PartitionedConnPool extends AbstractConnPool {
+
+    /** コネクションオペレーター */
+    private final ClientConnectionOperator operator;
+
+    /** HttpParams */
+    private final HttpParams params;
+
+    /** ルート毎の最大コネクション数 */
+    private final ConnPerRoute connPerRoute;
+
+    /** プール全体の最大コネクション数 */
+    private final int maxTotalConnections;
+
+    /** コネクションの最大生存期間（ミリ秒） */
+    private final long timeToLive;
+
+    /** ルート毎のパーティション */
+    private final ConcurrentMap<HttpRoute, RoutePartition> partitions = new ConcurrentHashMap<HttpRoute, RoutePartition>();
+
+    /** プール全体のコネクション数 */
+    private final AtomicInteger totalConnections = new AtomicInteger();
+
+    /** プール全体のアイドルコネクション数 */
+    private final AtomicInteger idleConnections = new AtomicInteger();
+
+    /** プール全体の上限による取得待ちのスレッド数 */
+    private final AtomicInteger globalWaiters = new AtomicInteger();
+
+    /** プール全体の上限による取得待ちに使用するロック */
+    private final Lock globalLock = new ReentrantLock();
+
+    /** プール全体の空きを通知するCondition */
+    private final Condition globalAvailable = this.globalLock.newCondition();
+
+    /** アイドルまたは期限切れにより破棄したコネクション数 */
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    /**
+     * PartitionedConnPoolを生成します。
+     *
+     * @param operator
+     *            コネクションオペレーター
+     * @param params
+     *            HttpParams
+     */
+    public PartitionedConnPool(final ClientConnectionOperator operator, final HttpParams params) {
+        super();
+        if (operator == null) {
+            throw new IllegalArgumentException(Messages.getString("message.operator.null")); //$NON-NLS-1$
+        }
+        if (params == null) {
+            throw new IllegalArgumentException(Messages.getString("message.params.null")); //$NON-NLS-1$
+        }
+        this.operator = operator;
+        this.params = params;
+        this.connPerRoute = ConnManagerParams.getMaxConnectionsPerRoute(params);
+        this.maxTotalConnections = ConnManagerParams.getMaxTotalConnections(params);
+        this.timeToLive = params.getLongParameter(PoolingConnPool.CONNECTION_TIME_TO_LIVE, 0L);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.AbstractConnPool#requestPoolEntry(org
+     * .apache.http.conn.routing.HttpRoute, java.lang.Object)
+     */
+    @Override
+    public PoolEntryRequest requestPoolEntry(final HttpRoute route, final Object state) {
+        return new PartitionedEntryRequest(route, state);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.AbstractConnPool#freeEntry(org.apache
+     * .http.impl.conn.tsccm.BasicPoolEntry, boolean, long,
+     * java.util.concurrent.TimeUnit)
+     */
+    @Override
+    public void freeEntry(final BasicPoolEntry entry, final boolean reusable, final long validDuration,
+            final TimeUnit timeUnit) {
+        if (!(entry instanceof PartitionedPoolEntry)) {
+            throw new IllegalArgumentException(Messages.getString("message.pool.entry.illegal")); //$NON-NLS-1$
+        }
+        PartitionedPoolEntry pooled = (PartitionedPoolEntry) entry;
+        RoutePartition partition = pooled.partition;
+        partition.lock.lock();
+        try {
+            if (!partition.leased.remove(pooled)) {
+                // シャットダウン時に既に閉じられている
+                return;
+            }
+            if (reusable && !this.isShutDown) {
+                long now = System.currentTimeMillis();
+                long expiry = validDuration > 0 ? now + timeUnit.toMillis(validDuration) : Long.MAX_VALUE;
+                if (this.timeToLive > 0) {
+                    // 生存期間を過ぎている場合も有効期限切れとして返却し、次回の取得時または破棄処理で閉じる
+                    expiry = Math.min(expiry, Math.max(pooled.created + this.timeToLive, now + 1L));
+                }
+                pooled.updated = now;
+                pooled.expiry = expiry;
+                partition.freeEntries.addFirst(pooled);
+                this.idleConnections.incrementAndGet();
+                partition.available.signal();
+            } else {
+                this.closeConnection(pooled.getOperatedConnection());
+                this.removeConnection(partition);
+            }
+        } finally {
+            partition.lock.unlock();
+        }
+        this.signalGlobalWaiters();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.AbstractConnPool#handleLostEntry(org.
+     * apache.http.conn.routing.HttpRoute)
+     */
+    @Override
+    @Deprecated
+    protected void handleLostEntry(final HttpRoute route) {
+        RoutePartition partition = this.partitions.get(route);
+        if (partition == null) {
+            return;
+        }
+        partition.lock.lock();
+        try {
+            this.removeConnection(partition);
+        } finally {
+            partition.lock.unlock();
+        }
+        this.signalGlobalWaiters();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.AbstractConnPool#closeIdleConnections
+     * (long, java.util.concurrent.TimeUnit)
+     */
+    @Override
+    public void closeIdleConnections(final long idletime, final TimeUnit tunit) {
+        if (tunit == null) {
+            throw new IllegalArgumentException(Messages.getString("message.time.unit.null")); //$NON-NLS-1$
+        }
+        long cutoff = System.currentTimeMillis() - tunit.toMillis(idletime);
+        for (RoutePartition partition : this.partitions.values()) {
+            partition.lock.lock();
+            try {
+                for (PartitionedPoolEntry entry : partition.freeEntries) {
+                    if (entry.updated <= cutoff) {
+                        this.closeConnection(entry.getOperatedConnection());
+                    }
+                }
+            } finally {
+                partition.lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.AbstractConnPool#closeExpiredConnections
+     * ()
+     */
+    @Override
+    public void closeExpiredConnections() {
+        long now = System.currentTimeMillis();
+        for (RoutePartition partition : this.partitions.values()) {
+            partition.lock.lock();
+            try {
+                for (PartitionedPoolEntry entry : partition.freeEntries) {
+                    if (entry.expiry <= now) {
+                        this.closeConnection(entry.getOperatedConnection());
+                    }
+                }
+            } finally {
+                partition.lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.AbstractConnPool#deleteClosedConnections
+     * ()
+     */
+    @Override
+    public void deleteClosedConnections() {
+        boolean deleted = false;
+        for (RoutePartition partition : this.partitions.values()) {
+            partition.lock.lock();
+            try {
+                Iterator<PartitionedPoolEntry> iter = partition.freeEntries.iterator();
+                while (iter.hasNext()) {
+                    PartitionedPoolEntry entry = iter.next();
+                    if (!entry.getOperatedConnection().isOpen()) {
+                        iter.remove();
+                        this.idleConnections.decrementAndGet();
+                        this.removeConnection(partition);
+                        this.evictedCount.incrementAndGet();
+                        deleted = true;
+                    }
+                }
+            } finally {
+                partition.lock.unlock();
+            }
+        }
+        if (deleted) {
+            this.signalGlobalWaiters();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.http.impl.conn.tsccm.AbstractConnPool#shutdown()
+     */
+    @Override
+    public void shutdown() {
+        if (this.isShutDown) {
+            return;
+        }
+        this.isShutDown = true;
+        for (RoutePartition partition : this.partitions.values()) {
+            partition.lock.lock();
+            try {
+                for (PartitionedPoolEntry entry : partition.freeEntries) {
+                    this.closeConnection(entry.getOperatedConnection());
+                }
+                for (PartitionedPoolEntry entry : partition.leased) {
+                    this.closeConnection(entry.getOperatedConnection());
+                }
+                this.idleConnections.addAndGet(-partition.freeEntries.size());
+                this.totalConnections.addAndGet(-partition.count);
+                partition.freeEntries.clear();
+                partition.leased.clear();
+                partition.count = 0;
+                partition.available.signalAll();
+            } finally {
+                partition.lock.unlock();
+            }
+        }
+        this.globalLock.lock();
+        try {
+            this.globalAvailable.signalAll();
+        } finally {
+            this.globalLock.unlock();
+        }
+    }
+
+    /**
+     * ルートのコネクション数を返します。
+     *
+     * @param route
+     *            ルート
+     * @return コネクション数
+     */
+    public int getConnectionsInPool(final HttpRoute route) {
+        RoutePartition partition = this.partitions.get(route);
+        if (partition == null) {
+            return 0;
+        }
+        partition.lock.lock();
+        try {
+            return partition.count;
+        } finally {
+            partition.lock.unlock();
+        }
+    }
+
+    /**
+     * プール全体のコネクション数を返します。
+     *
+     * @return コネクション数
+     */
+    public int getConnectionsInPool() {
+        return this.totalConnections.get();
+    }
+
+    /**
+     * コネクションプールの統計情報のスナップショットを返します。
+     *
+     * @return 統計情報
+     */
+    public PoolStats getStats() {
+        PoolStats total = new PoolStats();
+        total.setMax(this.maxTotalConnections);
+        total.setEvictedCount(this.evictedCount.get());
+        for (Map.Entry<HttpRoute, RoutePartition> entry : this.partitions.entrySet()) {
+            PoolStats stats = entry.getValue().toStats();
+            stats.setMax(this.connPerRoute.getMaxForRoute(entry.getKey()));
+            total.addRouteStats(entry.getKey().toString(), stats);
+
+            total.setLeased(total.getLeased() + stats.getLeased());
+            total.setAvailable(total.getAvailable() + stats.getAvailable());
+            total.setPending(total.getPending() + stats.getPending());
+            total.setAcquireCount(total.getAcquireCount() + stats.getAcquireCount());
+            total.setAcquireWaitTime(total.getAcquireWaitTime() + stats.getAcquireWaitTime());
+            total.setMaxAcquireWaitTime(Math.max(total.getMaxAcquireWaitTime(), stats.getMaxAcquireWaitTime()));
+            total.setAcquireTimeoutCount(total.getAcquireTimeoutCount() + stats.getAcquireTimeoutCount());
+        }
+        return total;
+    }
+
+    /**
+     * コネクションの最大生存期間を返します。
+     *
+     * @return 最大生存期間（ミリ秒）。0以下の場合は無期限
+     */
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    /**
+     * アイドルまたは期限切れにより破棄したコネクションの累計数を返します。
+     *
+     * @return 破棄したコネクション数
+     */
+    public long getEvictedCount() {
+        return this.evictedCount.get();
+    }
+
+    /**
+     * HttpParamsを返します。
+     *
+     * @return HttpParams
+     */
+    public HttpParams getParams() {
+        return this.params;
+    }
+
+    /**
+     * プールからコネクションを取得します。取得できない場合は空きができるまで待機します。
+     *
+     * @param route
+     *            ルート
+     * @param state
+     *            コネクションの状態
+     * @param timeout
+     *            待機時間。0以下の場合は無期限に待機します
+     * @param tunit
+     *            待機時間の単位
+     * @param request
+     *            取得要求
+     * @return プールエントリー
+     * @throws ConnectionPoolTimeoutException
+     *             待機時間内に取得できなかった場合
+     * @throws InterruptedException
+     *             待機中に割り込まれた場合、または取得要求が中断された場合
+     */
+    protected BasicPoolEntry getEntryBlocking(final HttpRoute route, final Object state, final long timeout,
+            final TimeUnit tunit, final PartitionedEntryRequest request) throws ConnectionPoolTimeoutException,
+            InterruptedException {
+        Date deadline = null;
+        if (timeout > 0) {
+            deadline = new Date(System.currentTimeMillis() + tunit.toMillis(timeout));
+        }
+        RoutePartition partition = this.getPartition(route);
+        int maxPerRoute = this.connPerRoute.getMaxForRoute(route);
+        long start = System.nanoTime();
+        partition.pending.incrementAndGet();
+        try {
+            for (;;) {
+                boolean globalLimit = false;
+                partition.lock.lock();
+                try {
+                    this.checkUsable(request);
+                    PartitionedPoolEntry entry = this.getFreeEntry(partition, state);
+                    if (entry == null && partition.count < maxPerRoute) {
+                        if (this.reserveConnection()) {
+                            partition.count++;
+                            entry = new PartitionedPoolEntry(this.operator, route, partition);
+                        } else {
+                            globalLimit = true;
+                        }
+                    }
+                    if (entry != null) {
+                        partition.leased.add(entry);
+                        partition.acquired(System.nanoTime() - start);
+                        return entry;
+                    }
+                    if (!globalLimit) {
+                        request.waitingOn(partition.lock, partition.available);
+                        if (!await(partition.available, deadline)) {
+                            throw this.timeout(partition);
+                        }
+                        continue;
+                    }
+                } finally {
+                    partition.lock.unlock();
+                }
+
+                // プール全体の上限に達している場合は他のルートのアイドルコネクションを破棄して空きを作る
+                if (!this.evictIdleConnection() && !this.awaitGlobal(deadline, request)) {
+                    throw this.timeout(partition);
+                }
+            }
+        } finally {
+            request.waitingOn(null, null);
+            partition.pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * ルートのパーティションからアイドルコネクションを取得します。パーティションのロックを取得した状態で呼び出します。
+     * <p>
+     * 状態が一致するコネクションを優先し、一致するものがない場合は最後に返却されたコネクションを閉じて再利用します。
+     * 期限切れのコネクションは閉じてプールから削除します。
+     * </p>
+     *
+     * @param partition
+     *            パーティション
+     * @param state
+     *            コネクションの状態
+     * @return プールエントリー。アイドルコネクションがない場合はnull
+     */
+    private PartitionedPoolEntry getFreeEntry(final RoutePartition partition, final Object state) {
+        long now = System.currentTimeMillis();
+        for (;;) {
+            if (partition.freeEntries.isEmpty()) {
+                return null;
+            }
+            PartitionedPoolEntry entry = null;
+            for (Iterator<PartitionedPoolEntry> iter = partition.freeEntries.iterator(); iter.hasNext();) {
+                PartitionedPoolEntry candidate = iter.next();
+                if (LangUtils.equals(state, candidate.getState())) {
+                    iter.remove();
+                    entry = candidate;
+                    break;
+                }
+            }
+            if (entry == null) {
+                entry = partition.freeEntries.removeFirst();
+                entry.setState(null);
+                this.closeConnection(entry.getOperatedConnection());
+            }
+            this.idleConnections.decrementAndGet();
+            if (entry.expiry > now) {
+                return entry;
+            }
+            this.closeConnection(entry.getOperatedConnection());
+            this.removeConnection(partition);
+        }
+    }
+
+    /**
+     * 最も長くアイドル状態のコネクションを1つ破棄します。
+     *
+     * @return 破棄した場合true
+     */
+    private boolean evictIdleConnection() {
+        if (this.idleConnections.get() <= 0) {
+            return false;
+        }
+        for (RoutePartition partition : this.partitions.values()) {
+            partition.lock.lock();
+            try {
+                if (!partition.freeEntries.isEmpty()) {
+                    PartitionedPoolEntry entry = partition.freeEntries.removeLast();
+                    this.idleConnections.decrementAndGet();
+                    this.closeConnection(entry.getOperatedConnection());
+                    this.removeConnection(partition);
+                    return true;
+                }
+            } finally {
+                partition.lock.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * プール全体に空きができるまで待機します。
+     *
+     * @param deadline
+     *            待機の期限。nullの場合は無期限
+     * @param request
+     *            取得要求
+     * @return 期限までに通知を受けた場合true
+     * @throws InterruptedException
+     *             待機中に割り込まれた場合、または取得要求が中断された場合
+     */
+    private boolean awaitGlobal(final Date deadline, final PartitionedEntryRequest request)
+            throws InterruptedException {
+        this.globalLock.lock();
+        this.globalWaiters.incrementAndGet();
+        try {
+            this.checkUsable(request);
+            // 待機数を加算した後に空きを確認し、返却側の通知との競合で待機し続けることを防ぐ
+            if (this.totalConnections.get() < this.maxTotalConnections || this.idleConnections.get() > 0) {
+                return true;
+            }
+            request.waitingOn(this.globalLock, this.globalAvailable);
+            return await(this.globalAvailable, deadline);
+        } finally {
+            this.globalWaiters.decrementAndGet();
+            this.globalLock.unlock();
+        }
+    }
+
+    /**
+     * プール全体の上限による取得待ちのスレッドに通知します。
+     */
+    private void signalGlobalWaiters() {
+        if (this.globalWaiters.get() <= 0) {
+            return;
+        }
+        this.globalLock.lock();
+        try {
+            this.globalAvailable.signalAll();
+        } finally {
+            this.globalLock.unlock();
+        }
+    }
+
+    /**
+     * プール全体のコネクション数に空きがあれば1つ確保します。
+     *
+     * @return 確保できた場合true
+     */
+    private boolean reserveConnection() {
+        for (;;) {
+            int current = this.totalConnections.get();
+            if (current >= this.maxTotalConnections) {
+                return false;
+            }
+            if (this.totalConnections.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * パーティションからコネクションを1つ削除します。パーティションのロックを取得した状態で呼び出します。
+     *
+     * @param partition
+     *            パーティション
+     */
+    private void removeConnection(final RoutePartition partition) {
+        if (partition.count > 0) {
+            partition.count--;
+            this.totalConnections.decrementAndGet();
+            partition.available.signal();
+        }
+    }
+
+    /**
+     * プールと取得要求が使用可能か確認します。
+     *
+     * @param request
+     *            取得要求
+     * @throws InterruptedException
+     *             取得要求が中断された場合
+     */
+    private void checkUsable(final PartitionedEntryRequest request) throws InterruptedException {
+        if (this.isShutDown) {
+            throw new IllegalStateException(Messages.getString("message.pool.shutdown")); //$NON-NLS-1$
+        }
+        if (request.aborted) {
+            throw new InterruptedException(Messages.getString("message.pool.request.aborted")); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * 取得待ちのタイムアウトを記録し、例外を生成します。
+     *
+     * @param partition
+     *            パーティション
+     * @return 例外
+     */
+    private ConnectionPoolTimeoutException timeout(final RoutePartition partition) {
+        partition.timeoutCount.incrementAndGet();
+        return new ConnectionPoolTimeoutException(Messages.getString("message.pool.timeout")); //$NON-NLS-1$
+    }
+
+    /**
+     * ルートのパーティションを返します。存在しない場合は生成します。
+     *
+     * @param route
+     *            ルート
+     * @return パーティション
+     */
+    private RoutePartition getPartition(final HttpRoute route) {
+        RoutePartition partition = this.partitions.get(route);
+        if (partition == null) {
+            RoutePartition created = new RoutePartition();
+            partition = this.partitions.putIfAbsent(route, created);
+            if (partition == null) {
+                partition = created;
+            }
+        }
+        return partition;
+    }
+
+    /**
+     * Conditionで期限まで待機します。
+     *
+     * @param condition
+     *            Condition
+     * @param deadline
+     *            待機の期限。nullの場合は無期限
+     * @return 期限までに通知を受けた場合true
+     * @throws InterruptedException
+     *             待機中に割り込まれた場合
+     */
+    private static boolean await(final Condition condition, final Date deadline) throws InterruptedException {
+        if (deadline == null) {
+            condition.await();
+            return true;
+        }
+        return condition.awaitUntil(deadline);
+    }
+
+    /**
+     * {@link PartitionedConnPool}からプールエントリーを取得する要求です。
+     */
+    protected class PartitionedEntryRequest implements PoolEntryRequest {
+
+        /** ルート */
+        private final HttpRoute route;
+
+        /** コネクションの状態 */
+        private final Object state;
+
+        /** 中断された場合true */
+        volatile boolean aborted;
+
+        /** 待機中のロック */
+        private Lock waitingLock;
+
+        /** 待機中のCondition */
+        private Condition waitingCondition;
+
+        /**
+         * PartitionedEntryRequestを生成します。
+         *
+         * @param route
+         *            ルート
+         * @param state
+         *            コネクションの状態
+         */
+        PartitionedEntryRequest(final HttpRoute route, final Object state) {
+            this.route = route;
+            this.state = state;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see
+         * org.apache.http.impl.conn.tsccm.PoolEntryRequest#getPoolEntry(long,
+         * java.util.concurrent.TimeUnit)
+         */
+        public BasicPoolEntry getPoolEntry(final long timeout, final TimeUnit tunit) throws InterruptedException,
+                ConnectionPoolTimeoutException {
+            return PartitionedConnPool.this.getEntryBlocking(this.route, this.state, timeout, tunit, this);
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see org.apache.http.impl.conn.tsccm.PoolEntryRequest#abortRequest()
+         */
+        public void abortRequest() {
+            Lock lock;
+            Condition condition;
+            synchronized (this) {
+                this.aborted = true;
+                lock = this.waitingLock;
+                condition = this.waitingCondition;
+            }
+            if (lock != null) {
+                lock.lock();
+                try {
+                    condition.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * 待機中のロックとConditionを記録します。
+         *
+         * @param lock
+         *            ロック
+         * @param condition
+         *            Condition
+         */
+        synchronized void waitingOn(final Lock lock, final Condition condition) {
+            this.waitingLock = lock;
+            this.waitingCondition = condition;
+        }
+    }
+
+    /**
+     * ルート毎のコネクションを保持するパーティションです。
+     */
+    private static class RoutePartition {
+
+        /** パーティションのロック */
+        final Lock lock = new ReentrantLock();
+
+        /** コネクションの返却を通知するCondition */
+        final Condition available = this.lock.newCondition();
+
+        /** アイドルコネクション。最後に返却されたものが先頭。lockで保護します */
+        final LinkedList<PartitionedPoolEntry> freeEntries = new LinkedList<PartitionedPoolEntry>();
+
+        /** リース中のコネクション。lockで保護します */
+        final Set<PartitionedPoolEntry> leased = new HashSet<PartitionedPoolEntry>();
+
+        /** コネクション数。lockで保護します */
+        int count;
+
+        /** 取得待ちのリクエスト数 */
+        final AtomicInteger pending = new AtomicInteger();
+
+        /** 取得に成功した回数 */
+        final AtomicLong acquireCount = new AtomicLong();
+
+        /** 取得に要した累計時間（ナノ秒） */
+        final AtomicLong acquireWaitNanos = new AtomicLong();
+
+        /** 取得に要した最大時間（ナノ秒） */
+        final AtomicLong maxAcquireWaitNanos = new AtomicLong();
+
+        /** 取得待ちがタイムアウトした回数 */
+        final AtomicLong timeoutCount = new AtomicLong();
+
+        void acquired(final long waitNanos) {
+            this.acquireCount.incrementAndGet();
+            this.acquireWaitNanos.addAndGet(waitNanos);
+            long max = this.maxAcquireWaitNanos.get();
+            while (waitNanos > max && !this.maxAcquireWaitNanos.compareAndSet(max, waitNanos)) {
+                max = this.maxAcquireWaitNanos.get();
+            }
+        }
+
+        PoolStats toStats() {
+            PoolStats stats = new PoolStats();
+            this.lock.lock();
+            try {
+                stats.setLeased(this.leased.size());
+                stats.setAvailable(this.freeEntries.size());
+            } finally {
+                this.lock.unlock();
+            }
+            stats.setPending(this.pending.get());
+            stats.setAcquireCount(this.acquireCount.get());
+            stats.setAcquireWaitTime(TimeUnit.NANOSECONDS.toMillis(this.acquireWaitNanos.get()));
+            stats.setMaxAcquireWaitTime(TimeUnit.NANOSECONDS.toMillis(this.maxAcquireWaitNanos.get()));
+            stats.setAcquireTimeoutCount(this.timeoutCount.get());
+            return stats;
+        }
+    }
+
+    /**
+     * 所属するパーティションと生成・返却時刻を保持するプールエントリーです。
+     */
+    private static class PartitionedPoolEntry extends BasicPoolEntry {
+
+        /** 所属するパーティション */
+        final RoutePartition partition;
+
+        /** 生成時刻 */
+        final long created;
+
+        /** 最後に返却された時刻。パーティションのロックで保護します */
+        long updated;
+
+        /** 有効期限。パーティションのロックで保護します */
+        long expiry = Long.MAX_VALUE;
+
+        PartitionedPoolEntry(final ClientConnectionOperator op, final HttpRoute route, final RoutePartition partition) {
+            super(op, route);
+            this.partition = partition;
+            this.created = System.currentTimeMillis();
+        }
+
+        OperatedClientConnection getOperatedConnection() {
+            return this.getConnection();
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.tsccm.AbstractConnPool;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.HttpParams;
+
+import jp.ambrosoli.quickrestclient.service.PoolStats;
+
+/**
+ * {@link PoolingConnPool}をコネクションプールとして使用する{@link ThreadSafeClientConnManager}の拡張クラスです。
+ * <p>
+ * {@link #getPoolStats()}でコネクションプールの統計情報を取得できます。
+ * コネクションには、SSL/TLSハンドシェイクの種類を記録する{@link TlsClientConnection}を使用します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class PoolingClientConnManager extends ThreadSafeClientConnManager {
+
+    /** コネクションのリーク検出。検出しない場合はnull */
+    private volatile ConnectionLeakDetector leakDetector;
+
+    /**
+     * PoolingClientConnManagerを生成します。
+     *
+     * @param params
+     *            HttpParams
+     * @param schreg
+     *            スキームレジストリ
+     */
+    public PoolingClientConnManager(final HttpParams params, final SchemeRegistry schreg) {
+        super(params, schreg);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager#createConnectionOperator
+     * (org.apache.http.conn.scheme.SchemeRegistry)
+     */
+    @Override
+    protected ClientConnectionOperator createConnectionOperator(final SchemeRegistry schreg) {
+        return new TlsClientConnectionOperator(schreg);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager#createConnectionPool
+     * (org.apache.http.params.HttpParams)
+     */
+    @Override
+    protected AbstractConnPool createConnectionPool(final HttpParams params) {
+        return new PoolingConnPool(this.connOperator, params);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager#requestConnection
+     * (org.apache.http.conn.routing.HttpRoute, java.lang.Object)
+     */
+    @Override
+    public ClientConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+        ClientConnectionRequest request = super.requestConnection(route, state);
+        ConnectionLeakDetector detector = this.leakDetector;
+        if (detector == null) {
+            return request;
+        }
+        return detector.track(request, route);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager#releaseConnection
+     * (org.apache.http.conn.ManagedClientConnection, long,
+     * java.util.concurrent.TimeUnit)
+     */
+    @Override
+    public void releaseConnection(final ManagedClientConnection conn, final long validDuration,
+            final TimeUnit timeUnit) {
+        ConnectionLeakDetector detector = this.leakDetector;
+        if (detector != null) {
+            detector.released(conn);
+        }
+        super.releaseConnection(conn, validDuration, timeUnit);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager#closeExpiredConnections
+     * ()
+     */
+    @Override
+    public void closeExpiredConnections() {
+        super.closeExpiredConnections();
+        ConnectionLeakDetector detector = this.leakDetector;
+        if (detector != null) {
+            detector.check();
+        }
+    }
+
+    /**
+     * コネクションプールを返します。
+     *
+     * @return コネクションプール
+     */
+    public PoolingConnPool getConnectionPool() {
+        return (PoolingConnPool) this.connectionPool;
+    }
+
+    /**
+     * コネクションプールの統計情報のスナップショットを返します。
+     *
+     * @return 統計情報
+     */
+    public PoolStats getPoolStats() {
+        return this.getConnectionPool().getStats();
+    }
+
+    /**
+     * コネクションのリーク検出を返します。
+     *
+     * @return リーク検出。検出しない場合はnull
+     */
+    public ConnectionLeakDetector getLeakDetector() {
+        return this.leakDetector;
+    }
+
+    /**
+     * コネクションのリーク検出を設定します。<br />
+     * nullを指定するとリークを検出しません。
+     *
+     * @param leakDetector
+     *            リーク検出
+     */
+    public void setLeakDetector(final ConnectionLeakDetector leakDetector) {
+        this.leakDetector = leakDetector;
+    }
+
+}
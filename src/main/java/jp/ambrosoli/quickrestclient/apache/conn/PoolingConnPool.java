@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRoute;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.tsccm.BasicPoolEntry;
+import org.apache.http.impl.conn.tsccm.ConnPoolByRoute;
+import org.apache.http.impl.conn.tsccm.RouteSpecificPool;
+import org.apache.http.impl.conn.tsccm.WaitingThreadAborter;
+import org.apache.http.params.HttpParams;
+
+import jp.ambrosoli.quickrestclient.service.PoolStats;
+
+/**
+ * コネクションの最大生存期間の管理と統計情報の収集を行う{@link ConnPoolByRoute}の拡張クラスです。
+ * <p>
+ * {@link #CONNECTION_TIME_TO_LIVE}に正の値が設定されている場合、コネクションの生成時刻を記録し、
+ * プールに返却する際に有効期限を残りの生存期間までに短縮します。生存期間を過ぎたコネクションは再利用されず、
+ * 次回の取得時または{@link org.apache.http.conn.ClientConnectionManager#closeExpiredConnections()}
+ * の呼び出し時に破棄されます。
+ * </p>
+ * <p>
+ * リース中・アイドル・取得待ちのコネクション数と取得待ち時間は、プールの状態が変化する度にルート毎のカウンターで集計します。
+ * {@link #getStats()}はプールのロックを取得せずにカウンターの値からスナップショットを生成します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class PoolingConnPool extends ConnPoolByRoute {
+
+    /** コネクションの最大生存期間（ミリ秒）を表すパラメータ名。0以下の場合は無期限 */
+    public static final String CONNECTION_TIME_TO_LIVE = "jp.ambrosoli.quickrestclient.conn.time-to-live"; //$NON-NLS-1$
+
+    /** HttpParams */
+    private final HttpParams params;
+
+    /** コネクションの最大生存期間（ミリ秒） */
+    private final long timeToLive;
+
+    /** プールエントリー毎のルートと生成時刻。poolLockで保護します */
+    private final Map<BasicPoolEntry, EntryInfo> entryInfos = new WeakHashMap<BasicPoolEntry, EntryInfo>();
+
+    /** ルート毎のカウンター */
+    private final ConcurrentMap<HttpRoute, RouteCounter> counters = new ConcurrentHashMap<HttpRoute, RouteCounter>();
+
+    /** アイドルまたは期限切れにより破棄したコネクション数 */
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    /**
+     * PoolingConnPoolを生成します。
+     *
+     * @param operator
+     *            コネクションオペレーター
+     * @param params
+     *            HttpParams
+     */
+    public PoolingConnPool(final ClientConnectionOperator operator, final HttpParams params) {
+        super(operator, params);
+        this.params = params;
+        this.timeToLive = params.getLongParameter(CONNECTION_TIME_TO_LIVE, 0L);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.ConnPoolByRoute#getEntryBlocking(org.
+     * apache.http.conn.routing.HttpRoute, java.lang.Object, long,
+     * java.util.concurrent.TimeUnit,
+     * org.apache.http.impl.conn.tsccm.WaitingThreadAborter)
+     */
+    @Override
+    protected BasicPoolEntry getEntryBlocking(final HttpRoute route, final Object state, final long timeout,
+            final TimeUnit tunit, final WaitingThreadAborter aborter) throws ConnectionPoolTimeoutException,
+            InterruptedException {
+        RouteCounter counter = this.getRouteCounter(route);
+        counter.pending.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            BasicPoolEntry entry = super.getEntryBlocking(route, state, timeout, tunit, aborter);
+            counter.acquired(System.nanoTime() - start);
+            return entry;
+        } catch (ConnectionPoolTimeoutException e) {
+            counter.timeoutCount.incrementAndGet();
+            throw e;
+        } finally {
+            counter.pending.decrementAndGet();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.ConnPoolByRoute#getFreeEntry(org.apache
+     * .http.impl.conn.tsccm.RouteSpecificPool, java.lang.Object)
+     */
+    @Override
+    protected BasicPoolEntry getFreeEntry(final RouteSpecificPool rospl, final Object state) {
+        this.poolLock.lock();
+        try {
+            int before = this.numConnections;
+            BasicPoolEntry entry = super.getFreeEntry(rospl, state);
+            // 期限切れで閉じられたアイドルコネクションと、取得したコネクションをアイドル数から除く
+            int removed = before - this.numConnections + (entry != null ? 1 : 0);
+            RouteCounter counter = this.getRouteCounter(rospl.getRoute());
+            counter.idle.addAndGet(-removed);
+            if (entry != null) {
+                counter.leased.incrementAndGet();
+            }
+            return entry;
+        } finally {
+            this.poolLock.unlock();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.ConnPoolByRoute#createEntry(org.apache
+     * .http.impl.conn.tsccm.RouteSpecificPool,
+     * org.apache.http.conn.ClientConnectionOperator)
+     */
+    @Override
+    protected BasicPoolEntry createEntry(final RouteSpecificPool rospl, final ClientConnectionOperator op) {
+        BasicPoolEntry entry = super.createEntry(rospl, op);
+        this.poolLock.lock();
+        try {
+            this.entryInfos.put(entry, new EntryInfo(rospl.getRoute(), System.currentTimeMillis()));
+        } finally {
+            this.poolLock.unlock();
+        }
+        this.getRouteCounter(rospl.getRoute()).leased.incrementAndGet();
+        return entry;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.ConnPoolByRoute#freeEntry(org.apache.
+     * http.impl.conn.tsccm.BasicPoolEntry, boolean, long,
+     * java.util.concurrent.TimeUnit)
+     */
+    @Override
+    public void freeEntry(final BasicPoolEntry entry, final boolean reusable, final long validDuration,
+            final TimeUnit timeUnit) {
+        this.poolLock.lock();
+        try {
+            EntryInfo info = reusable ? this.entryInfos.get(entry) : this.entryInfos.remove(entry);
+            if (info != null) {
+                RouteCounter counter = this.getRouteCounter(info.route);
+                counter.leased.decrementAndGet();
+                if (reusable && !this.isShutDown) {
+                    counter.idle.incrementAndGet();
+                }
+            }
+            if (!reusable || info == null || this.timeToLive <= 0) {
+                super.freeEntry(entry, reusable, validDuration, timeUnit);
+                return;
+            }
+
+            // 生存期間を過ぎている場合も有効期限切れとして返却し、次回の取得時または破棄処理で閉じる
+            long remaining = Math.max(info.created + this.timeToLive - System.currentTimeMillis(), 1L);
+            long validMillis = validDuration > 0 ? timeUnit.toMillis(validDuration) : Long.MAX_VALUE;
+            super.freeEntry(entry, true, Math.min(validMillis, remaining), TimeUnit.MILLISECONDS);
+        } finally {
+            this.poolLock.unlock();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.ConnPoolByRoute#deleteEntry(org.apache
+     * .http.impl.conn.tsccm.BasicPoolEntry)
+     */
+    @Override
+    protected void deleteEntry(final BasicPoolEntry entry) {
+        this.poolLock.lock();
+        try {
+            super.deleteEntry(entry);
+            EntryInfo info = this.entryInfos.remove(entry);
+            if (info != null) {
+                this.getRouteCounter(info.route).idle.decrementAndGet();
+            }
+        } finally {
+            this.poolLock.unlock();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.ConnPoolByRoute#handleLostEntry(org.apache
+     * .http.conn.routing.HttpRoute)
+     */
+    @Override
+    @Deprecated
+    protected void handleLostEntry(final HttpRoute route) {
+        this.poolLock.lock();
+        try {
+            super.handleLostEntry(route);
+            // 返却されずに回収されたエントリーはリース中のコネクション数から除く
+            this.getRouteCounter(route).leased.decrementAndGet();
+        } finally {
+            this.poolLock.unlock();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.tsccm.ConnPoolByRoute#deleteClosedConnections()
+     */
+    @Override
+    public void deleteClosedConnections() {
+        this.poolLock.lock();
+        try {
+            int before = this.numConnections;
+            super.deleteClosedConnections();
+            this.evictedCount.addAndGet(before - this.numConnections);
+        } finally {
+            this.poolLock.unlock();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.http.impl.conn.tsccm.ConnPoolByRoute#shutdown()
+     */
+    @Override
+    public void shutdown() {
+        this.poolLock.lock();
+        try {
+            super.shutdown();
+            this.entryInfos.clear();
+            for (RouteCounter counter : this.counters.values()) {
+                counter.leased.set(0);
+                counter.idle.set(0);
+            }
+        } finally {
+            this.poolLock.unlock();
+        }
+    }
+
+    /**
+     * コネクションプールの統計情報のスナップショットを返します。
+     *
+     * @return 統計情報
+     */
+    public PoolStats getStats() {
+        ConnPerRoute connPerRoute = ConnManagerParams.getMaxConnectionsPerRoute(this.params);
+        PoolStats total = new PoolStats();
+        total.setMax(ConnManagerParams.getMaxTotalConnections(this.params));
+        total.setEvictedCount(this.evictedCount.get());
+        for (Map.Entry<HttpRoute, RouteCounter> entry : this.counters.entrySet()) {
+            PoolStats stats = entry.getValue().toStats();
+            stats.setMax(connPerRoute.getMaxForRoute(entry.getKey()));
+            total.addRouteStats(entry.getKey().toString(), stats);
+
+            total.setLeased(total.getLeased() + stats.getLeased());
+            total.setAvailable(total.getAvailable() + stats.getAvailable());
+            total.setPending(total.getPending() + stats.getPending());
+            total.setAcquireCount(total.getAcquireCount() + stats.getAcquireCount());
+            total.setAcquireWaitTime(total.getAcquireWaitTime() + stats.getAcquireWaitTime());
+            total.setMaxAcquireWaitTime(Math.max(total.getMaxAcquireWaitTime(), stats.getMaxAcquireWaitTime()));
+            total.setAcquireTimeoutCount(total.getAcquireTimeoutCount() + stats.getAcquireTimeoutCount());
+        }
+        return total;
+    }
+
+    /**
+     * コネクションの最大生存期間を返します。
+     *
+     * @return 最大生存期間（ミリ秒）。0以下の場合は無期限
+     */
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    /**
+     * アイドルまたは期限切れにより破棄したコネクションの累計数を返します。
+     *
+     * @return 破棄したコネクション数
+     */
+    public long getEvictedCount() {
+        return this.evictedCount.get();
+    }
+
+    /**
+     * ルートのカウンターを返します。存在しない場合は生成します。
+     *
+     * @param route
+     *            ルート
+     * @return カウンター
+     */
+    private RouteCounter getRouteCounter(final HttpRoute route) {
+        RouteCounter counter = this.counters.get(route);
+        if (counter == null) {
+            RouteCounter created = new RouteCounter();
+            counter = this.counters.putIfAbsent(route, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * プールエントリーのルートと生成時刻を保持するクラスです。
+     */
+    private static class EntryInfo {
+
+        /** ルート */
+        final HttpRoute route;
+
+        /** 生成時刻 */
+        final long created;
+
+        EntryInfo(final HttpRoute route, final long created) {
+            this.route = route;
+            this.created = created;
+        }
+    }
+
+    /**
+     * ルート毎の統計情報を集計するカウンターです。
+     */
+    private static class RouteCounter {
+
+        /** リース中のコネクション数 */
+        final AtomicInteger leased = new AtomicInteger();
+
+        /** アイドルコネクション数 */
+        final AtomicInteger idle = new AtomicInteger();
+
+        /** 取得待ちのリクエスト数 */
+        final AtomicInteger pending = new AtomicInteger();
+
+        /** 取得に成功した回数 */
+        final AtomicLong acquireCount = new AtomicLong();
+
+        /** 取得に要した累計時間（ナノ秒） */
+        final AtomicLong acquireWaitNanos = new AtomicLong();
+
+        /** 取得に要した最大時間（ナノ秒） */
+        final AtomicLong maxAcquireWaitNanos = new AtomicLong();
+
+        /** 取得待ちがタイムアウトした回数 */
+        final AtomicLong timeoutCount = new AtomicLong();
+
+        void acquired(final long waitNanos) {
+            this.acquireCount.incrementAndGet();
+            this.acquireWaitNanos.addAndGet(waitNanos);
+            long max = this.maxAcquireWaitNanos.get();
+            while (waitNanos > max && !this.maxAcquireWaitNanos.compareAndSet(max, waitNanos)) {
+                max = this.maxAcquireWaitNanos.get();
+            }
+        }
+
+        PoolStats toStats() {
+            PoolStats stats = new PoolStats();
+            stats.setLeased(Math.max(this.leased.get(), 0));
+            stats.setAvailable(Math.max(this.idle.get(), 0));
+            stats.setPending(this.pending.get());
+            stats.setAcquireCount(this.acquireCount.get());
+            stats.setAcquireWaitTime(TimeUnit.NANOSECONDS.toMillis(this.acquireWaitNanos.get()));
+            stats.setMaxAcquireWaitTime(TimeUnit.NANOSECONDS.toMillis(this.maxAcquireWaitNanos.get()));
+            stats.setAcquireTimeoutCount(this.timeoutCount.get());
+            return stats;
+        }
+    }
+
+}
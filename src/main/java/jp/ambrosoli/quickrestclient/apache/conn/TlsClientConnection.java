@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.io.IOException;
+import java.net.Socket;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpHost;
+import org.apache.http.impl.HttpConnectionMetricsImpl;
+import org.apache.http.impl.conn.DefaultClientConnection;
+import org.apache.http.params.HttpParams;
+
+import jp.ambrosoli.quickrestclient.enums.TlsHandshake;
+
+/**
+ * SSL/TLSハンドシェイクでセッションが再開されたかどうかを記録する{@link DefaultClientConnection}の拡張クラスです。
+ * <p>
+ * 接続開始時刻よりSSLセッションの生成時刻が前であれば、キャッシュされたセッションが再開されたと判定します。
+ * 判定結果はコネクションのメトリクス（{@link #METRIC_TLS_HANDSHAKE}）に設定されます。
+ * </p>
+ * <p>
+ * {@link HappyEyeballsConnector}で接続中のコネクションを{@link #shutdown()}した場合は、接続中のソケットも閉じて接続を中断します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class TlsClientConnection extends DefaultClientConnection {
+
+    /** SSL/TLSハンドシェイクの種類を表すメトリクス名 */
+    public static final String METRIC_TLS_HANDSHAKE = "jp.ambrosoli.quickrestclient.tls-handshake"; //$NON-NLS-1$
+
+    /** 接続を開始した時刻 */
+    private volatile long openingTime;
+
+    /** 接続中の{@link HappyEyeballsConnector} */
+    private volatile HappyEyeballsConnector connector;
+
+    /** {@link #shutdown()}が呼び出された場合true */
+    private volatile boolean shutdownRequested;
+
+    /**
+     * {@link HappyEyeballsConnector}による接続の開始を通知します。
+     * 接続が完了するまでに{@link #shutdown()}が呼び出された場合は、接続を中断します。
+     *
+     * @param connector
+     *            接続に使用する{@link HappyEyeballsConnector}
+     */
+    public void connecting(final HappyEyeballsConnector connector) {
+        this.connector = connector;
+        if (this.shutdownRequested && connector != null) {
+            connector.abort();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.DefaultClientConnection#opening(java.net.Socket
+     * , org.apache.http.HttpHost)
+     */
+    @Override
+    public void opening(final Socket sock, final HttpHost target) throws IOException {
+        this.connector = null;
+        this.openingTime = System.currentTimeMillis();
+        super.opening(sock, target);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.http.impl.conn.DefaultClientConnection#shutdown()
+     */
+    @Override
+    public void shutdown() throws IOException {
+        this.shutdownRequested = true;
+        HappyEyeballsConnector current = this.connector;
+        if (current != null) {
+            current.abort();
+        }
+        super.shutdown();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.DefaultClientConnection#openCompleted(boolean,
+     * org.apache.http.params.HttpParams)
+     */
+    @Override
+    public void openCompleted(final boolean secure, final HttpParams params) throws IOException {
+        super.openCompleted(secure, params);
+        this.recordHandshake();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.DefaultClientConnection#update(java.net.Socket,
+     * org.apache.http.HttpHost, boolean, org.apache.http.params.HttpParams)
+     */
+    @Override
+    public void update(final Socket sock, final HttpHost target, final boolean secure, final HttpParams params)
+            throws IOException {
+        super.update(sock, target, secure, params);
+        this.recordHandshake();
+    }
+
+    /**
+     * SSL/TLSハンドシェイクの種類を返します。
+     *
+     * @return ハンドシェイクの種類
+     */
+    public TlsHandshake getTlsHandshake() {
+        Socket socket = this.getSocket();
+        if (!(socket instanceof SSLSocket)) {
+            return TlsHandshake.NONE;
+        }
+        SSLSession session = ((SSLSocket) socket).getSession();
+        if (session.getCreationTime() < this.openingTime) {
+            return TlsHandshake.RESUMED;
+        }
+        return TlsHandshake.FULL;
+    }
+
+    /**
+     * SSL/TLSハンドシェイクの種類をメトリクスに記録します。
+     */
+    protected void recordHandshake() {
+        HttpConnectionMetrics metrics = this.getMetrics();
+        if (metrics instanceof HttpConnectionMetricsImpl) {
+            ((HttpConnectionMetricsImpl) metrics).setMetric(METRIC_TLS_HANDSHAKE, this.getTlsHandshake());
+        }
+    }
+
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.HttpHostConnectException;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.scheme.LayeredSocketFactory;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.scheme.SocketFactory;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import jp.ambrosoli.quickrestclient.net.DnsResolver;
+import jp.ambrosoli.quickrestclient.net.SystemDnsResolver;
+
+/**
+ * {@link TlsClientConnection}を生成する{@link DefaultClientConnectionOperator}の拡張クラスです。
+ * <p>
+ * パラメータ{@link #CONNECT_ATTEMPT_DELAY}に正の値が設定されている場合は、接続先ホストのアドレスをすべて解決し、
+ * {@link HappyEyeballsConnector}を使用して時間差で並行して接続します。
+ * </p>
+ * <p>
+ * ルートにローカルアドレスが指定されておらず、パラメータ{@link #LOCAL_ADDRESS_SELECTOR}が設定されている場合は、
+ * {@link LocalAddressSelector}が選択したローカルアドレスにソケットをバインドします。
+ * </p>
+ * <p>
+ * {@link #SO_SNDBUF}と{@link #SO_RCVBUF}はTCPのウィンドウサイズの決定に反映されるよう、接続前のソケットに設定します。
+ * 接続したソケットには、{@link HttpConnectionParams}の設定に加えて{@link #SO_KEEPALIVE}の設定を適用します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class TlsClientConnectionOperator extends DefaultClientConnectionOperator {
+
+    /** 次のアドレスへの接続を開始するまでの試行間隔（ミリ秒、{@link Integer}）を表すパラメータ名 */
+    public static final String CONNECT_ATTEMPT_DELAY = "jp.ambrosoli.quickrestclient.connect-attempt-delay"; //$NON-NLS-1$
+
+    /** 接続先ホストの名前解決に使用する{@link DnsResolver}を表すパラメータ名 */
+    public static final String DNS_RESOLVER = "jp.ambrosoli.quickrestclient.dns-resolver"; //$NON-NLS-1$
+
+    /** ソケットの送信バッファサイズ（バイト、{@link Integer}）を表すパラメータ名 */
+    public static final String SO_SNDBUF = "jp.ambrosoli.quickrestclient.socket.send-buffer-size"; //$NON-NLS-1$
+
+    /** ソケットの受信バッファサイズ（バイト、{@link Integer}）を表すパラメータ名 */
+    public static final String SO_RCVBUF = "jp.ambrosoli.quickrestclient.socket.receive-buffer-size"; //$NON-NLS-1$
+
+    /** TCPキープアライブを有効にするかどうか（{@link Boolean}）を表すパラメータ名 */
+    public static final String SO_KEEPALIVE = "jp.ambrosoli.quickrestclient.socket.keepalive"; //$NON-NLS-1$
+
+    /** ソケットをバインドするローカルアドレスを選択する{@link LocalAddressSelector}を表すパラメータ名 */
+    public static final String LOCAL_ADDRESS_SELECTOR = "jp.ambrosoli.quickrestclient.local-address-selector"; //$NON-NLS-1$
+
+    /**
+     * TlsClientConnectionOperatorを生成します。
+     *
+     * @param schemes
+     *            スキームレジストリ
+     */
+    public TlsClientConnectionOperator(final SchemeRegistry schemes) {
+        super(schemes);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.DefaultClientConnectionOperator#createConnection
+     * ()
+     */
+    @Override
+    public OperatedClientConnection createConnection() {
+        return new TlsClientConnection();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.DefaultClientConnectionOperator#openConnection
+     * (org.apache.http.conn.OperatedClientConnection, org.apache.http.HttpHost,
+     * java.net.InetAddress, org.apache.http.protocol.HttpContext,
+     * org.apache.http.params.HttpParams)
+     */
+    @Override
+    public void openConnection(final OperatedClientConnection conn, final HttpHost target,
+            final InetAddress local, final HttpContext context, final HttpParams params) throws IOException {
+        if (conn == null || target == null || params == null || conn.isOpen()) {
+            super.openConnection(conn, target, local, context, params);
+            return;
+        }
+        int attemptDelay = params.getIntParameter(CONNECT_ATTEMPT_DELAY, 0);
+        LocalAddressSelector selector = this.getLocalAddressSelector(params);
+        boolean selectLocal = local == null && selector != null;
+        Scheme scheme = this.schemeRegistry.getScheme(target.getSchemeName());
+        SocketFactory sf = scheme.getSocketFactory();
+        if (attemptDelay <= 0 && !selectLocal || !(sf instanceof PlainSocketFactory)
+                && !(sf instanceof LayeredSocketFactory)) {
+            this.connectSocket(conn, target, local, context, params, scheme);
+            return;
+        }
+        InetAddress[] addresses = this.resolve(target.getHostName(), params);
+        InetAddress localAddress = selectLocal ? selector.select(addresses[0]) : local;
+        if (attemptDelay <= 0) {
+            this.connectSocket(conn, target, localAddress, context, params, scheme);
+            return;
+        }
+
+        int port = scheme.resolvePort(target.getPort());
+        HappyEyeballsConnector connector = new HappyEyeballsConnector(attemptDelay);
+        connector.setBufferSizes(params.getIntParameter(SO_SNDBUF, 0), params.getIntParameter(SO_RCVBUF, 0));
+        if (conn instanceof TlsClientConnection) {
+            // 接続中にコネクションが中断された場合に、接続中のソケットを閉じられるようにする
+            ((TlsClientConnection) conn).connecting(connector);
+        }
+        Socket sock;
+        try {
+            sock = connector.connect(addresses, port, localAddress, HttpConnectionParams
+                    .getConnectionTimeout(params));
+        } catch (ConnectException e) {
+            throw new HttpHostConnectException(target, e);
+        }
+        conn.opening(sock, target);
+        this.prepareSocket(sock, context, params);
+        conn.openCompleted(false, params);
+
+        if (sf instanceof LayeredSocketFactory) {
+            Socket layered = ((LayeredSocketFactory) sf).createSocket(sock, target.getHostName(), port, true);
+            this.prepareSocket(layered, context, params);
+            conn.update(layered, target, true, params);
+        }
+    }
+
+    /**
+     * スキームのソケットファクトリで接続します。{@link DefaultClientConnectionOperator}と同じ手順で接続しますが、
+     * 接続前のソケットに{@link #SO_SNDBUF}と{@link #SO_RCVBUF}を設定します。
+     *
+     * @param conn
+     *            コネクション
+     * @param target
+     *            接続先ホスト
+     * @param local
+     *            ローカルアドレス（nullの場合は指定しない）
+     * @param context
+     *            コンテキスト
+     * @param params
+     *            パラメータ
+     * @param scheme
+     *            接続先のスキーム
+     * @throws IOException
+     *             接続できなかった場合
+     */
+    protected void connectSocket(final OperatedClientConnection conn, final HttpHost target,
+            final InetAddress local, final HttpContext context, final HttpParams params, final Scheme scheme)
+            throws IOException {
+        SocketFactory sf = scheme.getSocketFactory();
+        Socket sock = sf.createSocket();
+        setBufferSizes(sock, params);
+        conn.opening(sock, target);
+        try {
+            Socket connsock = sf.connectSocket(sock, target.getHostName(), scheme.resolvePort(target.getPort()),
+                    local, 0, params);
+            if (sock != connsock) {
+                sock = connsock;
+                conn.opening(sock, target);
+            }
+        } catch (ConnectException e) {
+            throw new HttpHostConnectException(target, e);
+        }
+        this.prepareSocket(sock, context, params);
+        conn.openCompleted(sf.isSecure(sock), params);
+    }
+
+    /**
+     * パラメータの{@link #SO_SNDBUF}と{@link #SO_RCVBUF}をソケットに設定します。接続前のソケットに対して呼び出してください。
+     *
+     * @param sock
+     *            接続前のソケット
+     * @param params
+     *            パラメータ
+     * @throws IOException
+     *             ソケットオプションを設定できなかった場合
+     */
+    public static void setBufferSizes(final Socket sock, final HttpParams params) throws IOException {
+        int sendBufferSize = params.getIntParameter(SO_SNDBUF, 0);
+        if (sendBufferSize > 0) {
+            sock.setSendBufferSize(sendBufferSize);
+        }
+        int receiveBufferSize = params.getIntParameter(SO_RCVBUF, 0);
+        if (receiveBufferSize > 0) {
+            sock.setReceiveBufferSize(receiveBufferSize);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.impl.conn.DefaultClientConnectionOperator#prepareSocket
+     * (java.net.Socket, org.apache.http.protocol.HttpContext,
+     * org.apache.http.params.HttpParams)
+     */
+    @Override
+    protected void prepareSocket(final Socket sock, final HttpContext context, final HttpParams params)
+            throws IOException {
+        super.prepareSocket(sock, context, params);
+        if (params.getBooleanParameter(SO_KEEPALIVE, false)) {
+            sock.setKeepAlive(true);
+        }
+    }
+
+    /**
+     * パラメータからローカルアドレスを選択する{@link LocalAddressSelector}を取得します。
+     *
+     * @param params
+     *            パラメータ
+     * @return {@link LocalAddressSelector}。設定されていない場合はnull
+     */
+    protected LocalAddressSelector getLocalAddressSelector(final HttpParams params) {
+        Object selector = params.getParameter(LOCAL_ADDRESS_SELECTOR);
+        if (selector instanceof LocalAddressSelector) {
+            return (LocalAddressSelector) selector;
+        }
+        return null;
+    }
+
+    /**
+     * 接続先ホストのアドレスを解決します。
+     *
+     * @param host
+     *            ホスト名
+     * @param params
+     *            パラメータ
+     * @return アドレス
+     * @throws IOException
+     *             アドレスを解決できなかった場合
+     */
+    protected InetAddress[] resolve(final String host, final HttpParams params) throws IOException {
+        Object resolver = params.getParameter(DNS_RESOLVER);
+        if (resolver instanceof DnsResolver) {
+            return ((DnsResolver) resolver).resolve(host);
+        }
+        return SystemDnsResolver.INSTANCE.resolve(host);
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+
+import jp.ambrosoli.quickrestclient.enums.TlsHandshake;
+
+/**
+ * リクエストで行われたSSL/TLSハンドシェイクの種類を{@link HttpContext}に設定するインターセプターです。
+ * <p>
+ * コネクションで最初のリクエストの場合は{@link TlsClientConnection}が記録したハンドシェイクの種類を、
+ * 再利用されたコネクションの場合は{@link TlsHandshake#NONE}を{@link #TLS_HANDSHAKE}属性に設定します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class TlsHandshakeInterceptor implements HttpResponseInterceptor {
+
+    /** SSL/TLSハンドシェイクの種類を表すコンテキストの属性名 */
+    public static final String TLS_HANDSHAKE = "jp.ambrosoli.quickrestclient.tls-handshake"; //$NON-NLS-1$
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.HttpResponseInterceptor#process(org.apache.http.HttpResponse
+     * , org.apache.http.protocol.HttpContext)
+     */
+    public void process(final HttpResponse response, final HttpContext context) {
+        TlsHandshake handshake = TlsHandshake.NONE;
+        HttpConnection conn = (HttpConnection) context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+        if (conn != null) {
+            HttpConnectionMetrics metrics = conn.getMetrics();
+            Object metric = metrics.getMetric(TlsClientConnection.METRIC_TLS_HANDSHAKE);
+            if (metrics.getRequestCount() <= 1 && metric instanceof TlsHandshake) {
+                handshake = (TlsHandshake) metric;
+            }
+        }
+        context.setAttribute(TLS_HANDSHAKE, handshake);
+    }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.GeneralSecurityException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.scheme.HostNameResolver;
+import org.apache.http.conn.scheme.LayeredSocketFactory;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+
+/**
+ * 1つの{@link SSLContext}を共有してSSL/TLSソケットを生成する{@link LayeredSocketFactory}の実装クラスです。
+ * <p>
+ * {@link SSLContext}のクライアントセッションキャッシュを共有するため、同じ接続先への2回目以降のハンドシェイクでは
+ * セッションが再開されます。使用するプロトコルと暗号スイートを指定できます。ハンドシェイクは接続時に完了します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class TlsSocketFactory implements LayeredSocketFactory {
+
+    /** SSLContext */
+    private final SSLContext sslContext;
+
+    /** 使用するプロトコル */
+    private final String[] protocols;
+
+    /** 使用する暗号スイート */
+    private final String[] cipherSuites;
+
+    /** ホスト名の検証 */
+    private final X509HostnameVerifier hostnameVerifier;
+
+    /** ホスト名の解決 */
+    private final HostNameResolver nameResolver;
+
+    /**
+     * TlsSocketFactoryを生成します。
+     *
+     * @param sslContext
+     *            共有する{@link SSLContext}
+     * @param protocols
+     *            使用するプロトコル。nullの場合は{@link SSLContext}のデフォルト
+     * @param cipherSuites
+     *            使用する暗号スイート。nullの場合は{@link SSLContext}のデフォルト
+     * @param hostnameVerifier
+     *            ホスト名の検証。nullの場合は
+     *            {@link SSLSocketFactory#BROWSER_COMPATIBLE_HOSTNAME_VERIFIER}
+     */
+    public TlsSocketFactory(final SSLContext sslContext, final String[] protocols, final String[] cipherSuites,
+            final X509HostnameVerifier hostnameVerifier) {
+        this(sslContext, protocols, cipherSuites, hostnameVerifier, null);
+    }
+
+    /**
+     * ホスト名の解決方法を指定してTlsSocketFactoryを生成します。
+     *
+     * @param sslContext
+     *            共有する{@link SSLContext}
+     * @param protocols
+     *            使用するプロトコル。nullの場合は{@link SSLContext}のデフォルト
+     * @param cipherSuites
+     *            使用する暗号スイート。nullの場合は{@link SSLContext}のデフォルト
+     * @param hostnameVerifier
+     *            ホスト名の検証。nullの場合は
+     *            {@link SSLSocketFactory#BROWSER_COMPATIBLE_HOSTNAME_VERIFIER}
+     * @param nameResolver
+     *            ホスト名の解決。nullの場合はJVMの名前解決
+     */
+    public TlsSocketFactory(final SSLContext sslContext, final String[] protocols, final String[] cipherSuites,
+            final X509HostnameVerifier hostnameVerifier, final HostNameResolver nameResolver) {
+        if (sslContext == null) {
+            throw new IllegalArgumentException(Messages.getString("message.ssl.context.null")); //$NON-NLS-1$
+        }
+        this.sslContext = sslContext;
+        this.protocols = protocols != null ? protocols.clone() : null;
+        this.cipherSuites = cipherSuites != null ? cipherSuites.clone() : null;
+        this.hostnameVerifier = hostnameVerifier != null ? hostnameVerifier
+                : SSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER;
+        this.nameResolver = nameResolver;
+    }
+
+    /**
+     * デフォルトのトラストストアを使用する{@link SSLContext}を生成します。
+     *
+     * @param sessionCacheSize
+     *            セッションキャッシュの最大数。0以下の場合はデフォルト
+     * @param sessionTimeout
+     *            キャッシュしたセッションの有効期間（秒）。0以下の場合はデフォルト
+     * @return 生成した{@link SSLContext}
+     */
+    public static SSLContext createSSLContext(final int sessionCacheSize, final int sessionTimeout) {
+        try {
+            SSLContext sslContext = SSLContext.getInstance(SSLSocketFactory.TLS);
+            sslContext.init(null, null, null);
+            configureSessionCache(sslContext, sessionCacheSize, sessionTimeout);
+            return sslContext;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(Messages.getString("message.ssl.context.failed"), e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * {@link SSLContext}のクライアントセッションキャッシュを設定します。
+     *
+     * @param sslContext
+     *            {@link SSLContext}
+     * @param sessionCacheSize
+     *            セッションキャッシュの最大数。0以下の場合は変更しません
+     * @param sessionTimeout
+     *            キャッシュしたセッションの有効期間（秒）。0以下の場合は変更しません
+     */
+    public static void configureSessionCache(final SSLContext sslContext, final int sessionCacheSize,
+            final int sessionTimeout) {
+        SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+        if (sessionContext == null) {
+            return;
+        }
+        if (sessionCacheSize > 0) {
+            sessionContext.setSessionCacheSize(sessionCacheSize);
+        }
+        if (sessionTimeout > 0) {
+            sessionContext.setSessionTimeout(sessionTimeout);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.http.conn.scheme.SocketFactory#createSocket()
+     */
+    public Socket createSocket() throws IOException {
+        return this.configure((SSLSocket) this.sslContext.getSocketFactory().createSocket());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.conn.scheme.SocketFactory#connectSocket(java.net.Socket,
+     * java.lang.String, int, java.net.InetAddress, int,
+     * org.apache.http.params.HttpParams)
+     */
+    public Socket connectSocket(final Socket sock, final String host, final int port,
+            final InetAddress localAddress, final int localPort, final HttpParams params) throws IOException {
+        if (host == null) {
+            throw new IllegalArgumentException(Messages.getString("message.host.null")); //$NON-NLS-1$
+        }
+        if (params == null) {
+            throw new IllegalArgumentException(Messages.getString("message.params.null")); //$NON-NLS-1$
+        }
+
+        SSLSocket sslsock = (SSLSocket) (sock != null ? sock : this.createSocket());
+        TlsClientConnectionOperator.setBufferSizes(sslsock, params);
+        if (localAddress != null || localPort > 0) {
+            sslsock.bind(new InetSocketAddress(localAddress, localPort < 0 ? 0 : localPort));
+        }
+
+        InetSocketAddress remoteAddress;
+        if (this.nameResolver != null) {
+            remoteAddress = new InetSocketAddress(this.nameResolver.resolve(host), port);
+        } else {
+            remoteAddress = new InetSocketAddress(host, port);
+        }
+        try {
+            sslsock.connect(remoteAddress, HttpConnectionParams.getConnectionTimeout(params));
+        } catch (SocketTimeoutException e) {
+            throw new ConnectTimeoutException("Connect to " + remoteAddress + " timed out"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        sslsock.setSoTimeout(HttpConnectionParams.getSoTimeout(params));
+        this.handshake(sslsock, host);
+        return sslsock;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.conn.scheme.LayeredSocketFactory#createSocket(java.net
+     * .Socket, java.lang.String, int, boolean)
+     */
+    public Socket createSocket(final Socket socket, final String host, final int port, final boolean autoClose)
+            throws IOException {
+        SSLSocket sslsock = (SSLSocket) this.sslContext.getSocketFactory().createSocket(socket, host, port,
+                autoClose);
+        this.configure(sslsock);
+        this.handshake(sslsock, host);
+        return sslsock;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.http.conn.scheme.SocketFactory#isSecure(java.net.Socket)
+     */
+    public boolean isSecure(final Socket sock) {
+        if (!(sock instanceof SSLSocket)) {
+            throw new IllegalArgumentException(Messages.getString("message.socket.not.ssl")); //$NON-NLS-1$
+        }
+        if (sock.isClosed()) {
+            throw new IllegalArgumentException(Messages.getString("message.socket.closed")); //$NON-NLS-1$
+        }
+        return true;
+    }
+
+    /**
+     * 共有する{@link SSLContext}を返します。
+     *
+     * @return {@link SSLContext}
+     */
+    public SSLContext getSSLContext() {
+        return this.sslContext;
+    }
+
+    /**
+     * 使用するプロトコルと暗号スイートをソケットに設定します。
+     *
+     * @param sslsock
+     *            ソケット
+     * @return 設定したソケット
+     */
+    protected SSLSocket configure(final SSLSocket sslsock) {
+        if (this.protocols != null) {
+            sslsock.setEnabledProtocols(this.protocols);
+        }
+        if (this.cipherSuites != null) {
+            sslsock.setEnabledCipherSuites(this.cipherSuites);
+        }
+        return sslsock;
+    }
+
+    /**
+     * ハンドシェイクを行い、接続先のホスト名を検証します。検証に失敗した場合はソケットを閉じます。
+     *
+     * @param sslsock
+     *            ソケット
+     * @param host
+     *            接続先のホスト名
+     * @throws IOException
+     *             ハンドシェイクまたは検証に失敗した場合
+     */
+    protected void handshake(final SSLSocket sslsock, final String host) throws IOException {
+        try {
+            sslsock.startHandshake();
+            this.hostnameVerifier.verify(host, sslsock);
+        } catch (IOException e) {
+            try {
+                sslsock.close();
+            } catch (IOException ignore) {
+                // Do nothing.
+            }
+            throw e;
+        }
+    }
+
+}
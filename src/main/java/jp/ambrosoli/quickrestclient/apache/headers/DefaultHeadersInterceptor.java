@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.headers;
+
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * クライアント共通のデフォルトHTTPヘッダーをリクエストに追加するインターセプターです。
+ * <p>
+ * ヘッダーは生成時に一度だけ変換され、リクエスト毎の変換は行いません。 リクエストに同じ名前のヘッダーが既に設定されている場合は、
+ * リクエストのヘッダーを優先します。CONNECTリクエストには追加しません。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class DefaultHeadersInterceptor implements HttpRequestInterceptor {
+
+    /** CONNECTメソッド */
+    private static final String METHOD_CONNECT = "CONNECT"; //$NON-NLS-1$
+
+    /** デフォルトのHTTPヘッダー */
+    private final Header[] headers;
+
+    /**
+     * DefaultHeadersInterceptorを生成します。
+     *
+     * @param headers
+     *            デフォルトのHTTPヘッダー
+     */
+    public DefaultHeadersInterceptor(final Header[] headers) {
+        if (headers == null) {
+            throw new IllegalArgumentException();
+        }
+        this.headers = headers.clone();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.HttpRequestInterceptor#process(org.apache.http.HttpRequest
+     * , org.apache.http.protocol.HttpContext)
+     */
+    public void process(final HttpRequest request, final HttpContext context) {
+        if (METHOD_CONNECT.equalsIgnoreCase(request.getRequestLine().getMethod())) {
+            return;
+        }
+        boolean[] present = new boolean[this.headers.length];
+        for (int i = 0; i < this.headers.length; i++) {
+            present[i] = request.containsHeader(this.headers[i].getName());
+        }
+        for (int i = 0; i < this.headers.length; i++) {
+            if (!present[i]) {
+                request.addHeader(this.headers[i]);
+            }
+        }
+    }
+
+}
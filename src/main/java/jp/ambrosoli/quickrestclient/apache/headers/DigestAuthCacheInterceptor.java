@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.headers;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
+import org.apache.http.auth.AUTH;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.AuthState;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.params.AuthParams;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Digest認証の認証要求を接続先ホスト毎にキャッシュし、以降のリクエストで最初からAuthorizationヘッダーを送信するインターセプターです。
+ * <p>
+ * レスポンスインターセプターとして401レスポンスのDigest認証の認証要求を{@link DigestChallengeCache}に保存し、
+ * リクエストインターセプターとしてキャッシュした認証要求からnonce-countを増やしながらAuthorizationヘッダーを生成します。
+ * サーバーがstale=trueで応答した場合は新しいnonceに置き換え、Authentication-Infoヘッダーでnextnonceが通知された場合も
+ * それに従います。
+ * </p>
+ * <p>
+ * リクエストに既にAuthorizationヘッダーがある場合や、認証要求を受けてHttpClientが認証を処理している場合は何もしません。
+ * CONNECTリクエストには追加しません。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class DigestAuthCacheInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor {
+
+    /** CONNECTメソッド */
+    private static final String METHOD_CONNECT = "CONNECT"; //$NON-NLS-1$
+
+    /** Authentication-Infoヘッダー */
+    private static final String AUTHENTICATION_INFO = "Authentication-Info"; //$NON-NLS-1$
+
+    /** 認証要求のキャッシュ */
+    private final DigestChallengeCache cache;
+
+    /**
+     * DigestAuthCacheInterceptorを生成します。
+     *
+     * @param cache
+     *            認証要求のキャッシュ
+     */
+    public DigestAuthCacheInterceptor(final DigestChallengeCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException(Messages.getString("message.cache.null")); //$NON-NLS-1$
+        }
+        this.cache = cache;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.HttpRequestInterceptor#process(org.apache.http.HttpRequest
+     * , org.apache.http.protocol.HttpContext)
+     */
+    public void process(final HttpRequest request, final HttpContext context) {
+        if (context == null || METHOD_CONNECT.equalsIgnoreCase(request.getRequestLine().getMethod())) {
+            return;
+        }
+        if (request.containsHeader(AUTH.WWW_AUTH_RESP)) {
+            return;
+        }
+        AuthState authState = (AuthState) context.getAttribute(ClientContext.TARGET_AUTH_STATE);
+        if (authState != null && authState.getAuthScheme() != null) {
+            return;
+        }
+        HttpHost target = (HttpHost) context.getAttribute(ExecutionContext.HTTP_TARGET_HOST);
+        DigestChallenge challenge = this.cache.get(target);
+        if (challenge == null) {
+            return;
+        }
+        CredentialsProvider provider = (CredentialsProvider) context.getAttribute(ClientContext.CREDS_PROVIDER);
+        if (provider == null) {
+            return;
+        }
+        Credentials credentials = provider.getCredentials(new AuthScope(target.getHostName(), target.getPort(),
+                challenge.getRealm(), DigestChallenge.SCHEME_NAME));
+        if (credentials == null) {
+            return;
+        }
+        request.addHeader(challenge.authenticate(credentials, request.getRequestLine().getMethod(), request
+                .getRequestLine().getUri(), AuthParams.getCredentialCharset(request.getParams())));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.HttpResponseInterceptor#process(org.apache.http.HttpResponse
+     * , org.apache.http.protocol.HttpContext)
+     */
+    public void process(final HttpResponse response, final HttpContext context) {
+        if (context == null) {
+            return;
+        }
+        HttpHost target = (HttpHost) context.getAttribute(ExecutionContext.HTTP_TARGET_HOST);
+        if (target == null) {
+            return;
+        }
+        if (response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+            DigestChallenge challenge = null;
+            for (Header header : response.getHeaders(AUTH.WWW_AUTH)) {
+                challenge = DigestChallenge.parse(header);
+                if (challenge != null) {
+                    break;
+                }
+            }
+            if (challenge != null) {
+                this.cache.put(target, challenge);
+            } else {
+                this.cache.remove(target);
+            }
+            return;
+        }
+
+        Header authInfo = response.getFirstHeader(AUTHENTICATION_INFO);
+        if (authInfo == null) {
+            return;
+        }
+        DigestChallenge current = this.cache.get(target);
+        if (current == null) {
+            return;
+        }
+        for (HeaderElement element : authInfo.getElements()) {
+            if ("nextnonce".equalsIgnoreCase(element.getName()) && element.getValue() != null //$NON-NLS-1$
+                    && !element.getValue().equals(current.getNonce())) {
+                this.cache.replace(target, current, current.withNonce(element.getValue()));
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.headers;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Header;
+import org.apache.http.auth.AUTH;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.MalformedChallengeException;
+import org.apache.http.impl.auth.DigestScheme;
+import org.apache.http.message.BasicHeaderValueFormatter;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.message.BufferedHeader;
+import org.apache.http.util.CharArrayBuffer;
+import org.apache.http.util.EncodingUtils;
+
+import jp.ambrosoli.quickrestclient.util.ReflectionToStringBuilder;
+
+/**
+ * サーバーから受け取ったDigest認証の認証要求（realm、nonce、qopなど）を保持し、同じnonceを使ってAuthorizationヘッダーを生成するクラスです。
+ * <p>
+ * Authorizationヘッダーを生成する度にnonce-count（nc）を1ずつ増やすため、認証要求を受け取り直すことなく
+ * 同じnonceを複数のリクエストで使用できます。qopにauth-intのみが指定された認証要求には対応していません。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class DigestChallenge {
+
+    /** Digest認証のスキーム名 */
+    public static final String SCHEME_NAME = "digest"; //$NON-NLS-1$
+
+    /** qopのauth */
+    private static final String QOP_AUTH = "auth"; //$NON-NLS-1$
+
+    /** MD5-sessアルゴリズム */
+    private static final String ALGORITHM_MD5_SESS = "MD5-sess"; //$NON-NLS-1$
+
+    /** MD5アルゴリズム */
+    private static final String ALGORITHM_MD5 = "MD5"; //$NON-NLS-1$
+
+    /** 16進数の文字 */
+    private static final char[] HEXADECIMAL = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+    /** realm */
+    private final String realm;
+
+    /** nonce */
+    private final String nonce;
+
+    /** opaque */
+    private final String opaque;
+
+    /** アルゴリズム */
+    private final String algorithm;
+
+    /** qop（authまたはnull） */
+    private final String qop;
+
+    /** クライアントのnonce */
+    private final String cnonce;
+
+    /** 認証要求がstale=trueだった場合true */
+    private final boolean stale;
+
+    /** 最後に使用したnonce-count */
+    private final AtomicLong nonceCount;
+
+    /**
+     * DigestChallengeを生成します。
+     *
+     * @param realm
+     *            realm
+     * @param nonce
+     *            nonce
+     * @param opaque
+     *            opaque
+     * @param algorithm
+     *            アルゴリズム（nullの場合はMD5）
+     * @param qop
+     *            qop（authまたはnull）
+     * @param cnonce
+     *            クライアントのnonce（nullの場合は生成します）
+     * @param stale
+     *            認証要求がstale=trueだった場合true
+     * @param nonceCount
+     *            既に使用されたnonce-count
+     */
+    public DigestChallenge(final String realm, final String nonce, final String opaque, final String algorithm,
+            final String qop, final String cnonce, final boolean stale, final long nonceCount) {
+        if (realm == null || nonce == null) {
+            throw new IllegalArgumentException(Messages.getString("message.digest.challenge.illegal")); //$NON-NLS-1$
+        }
+        this.realm = realm;
+        this.nonce = nonce;
+        this.opaque = opaque;
+        this.algorithm = algorithm;
+        this.qop = qop;
+        this.cnonce = cnonce != null ? cnonce : DigestScheme.createCnonce();
+        this.stale = stale;
+        this.nonceCount = new AtomicLong(nonceCount);
+    }
+
+    /**
+     * WWW-Authenticateヘッダーを解析してDigestChallengeを生成します。
+     * <p>
+     * 認証要求に対してはHttpClientがnonce-count 00000001で再送するため、生成したDigestChallengeで最初に使用するnonce-countは
+     * 00000002になります。
+     * </p>
+     *
+     * @param header
+     *            WWW-Authenticateヘッダー
+     * @return 生成したDigestChallenge。Digest認証の認証要求でない場合や対応していない認証要求の場合はnull
+     */
+    public static DigestChallenge parse(final Header header) {
+        if (header == null) {
+            return null;
+        }
+        DigestScheme scheme = new DigestScheme();
+        try {
+            scheme.processChallenge(header);
+        } catch (MalformedChallengeException e) {
+            return null;
+        }
+
+        String qop = null;
+        String qopOptions = scheme.getParameter("qop"); //$NON-NLS-1$
+        if (qopOptions != null) {
+            StringTokenizer tokenizer = new StringTokenizer(qopOptions, ","); //$NON-NLS-1$
+            while (tokenizer.hasMoreTokens()) {
+                if (QOP_AUTH.equals(tokenizer.nextToken().trim())) {
+                    qop = QOP_AUTH;
+                    break;
+                }
+            }
+            if (qop == null) {
+                return null;
+            }
+        }
+        String algorithm = scheme.getParameter("algorithm"); //$NON-NLS-1$
+        if (algorithm != null && !ALGORITHM_MD5.equalsIgnoreCase(algorithm)
+                && !ALGORITHM_MD5_SESS.equalsIgnoreCase(algorithm)) {
+            return null;
+        }
+        boolean stale = "true".equalsIgnoreCase(scheme.getParameter("stale")); //$NON-NLS-1$ //$NON-NLS-2$
+        return new DigestChallenge(scheme.getParameter("realm"), scheme.getParameter("nonce"), //$NON-NLS-1$ //$NON-NLS-2$
+                scheme.getParameter("opaque"), algorithm, qop, null, stale, 1); //$NON-NLS-1$
+    }
+
+    /**
+     * nonceだけを新しい値に置き換えたDigestChallengeを返します。nonce-countは0から数え直します。
+     *
+     * @param nextNonce
+     *            新しいnonce
+     * @return 新しいDigestChallenge
+     */
+    public DigestChallenge withNonce(final String nextNonce) {
+        return new DigestChallenge(this.realm, nextNonce, this.opaque, this.algorithm, this.qop, null, false, 0);
+    }
+
+    /**
+     * 次のnonce-countを使用してAuthorizationヘッダーを生成します。
+     *
+     * @param credentials
+     *            認証情報
+     * @param method
+     *            リクエストメソッド
+     * @param uri
+     *            リクエストURI（Request-Lineに指定する値）
+     * @param charset
+     *            ユーザ名とパスワードの文字セット
+     * @return Authorizationヘッダー
+     */
+    public Header authenticate(final Credentials credentials, final String method, final String uri,
+            final String charset) {
+        if (credentials == null) {
+            throw new IllegalArgumentException(Messages.getString("message.credentials.null")); //$NON-NLS-1$
+        }
+        String username = credentials.getUserPrincipal().getName();
+        String nc = String.format("%08x", Long.valueOf(this.nonceCount.incrementAndGet())); //$NON-NLS-1$
+        MessageDigest digester = createMessageDigest();
+
+        String a1 = username + ':' + this.realm + ':' + credentials.getPassword();
+        String hashA1 = encode(digester.digest(EncodingUtils.getBytes(a1, charset)));
+        if (ALGORITHM_MD5_SESS.equalsIgnoreCase(this.algorithm)) {
+            hashA1 = encode(digester.digest(EncodingUtils.getAsciiBytes(hashA1 + ':' + this.nonce + ':'
+                    + this.cnonce)));
+        }
+        String hashA2 = encode(digester.digest(EncodingUtils.getAsciiBytes(method + ':' + uri)));
+        String value;
+        if (this.qop == null) {
+            value = hashA1 + ':' + this.nonce + ':' + hashA2;
+        } else {
+            value = hashA1 + ':' + this.nonce + ':' + nc + ':' + this.cnonce + ':' + this.qop + ':' + hashA2;
+        }
+        String response = encode(digester.digest(EncodingUtils.getAsciiBytes(value)));
+
+        List<BasicNameValuePair> params = new ArrayList<BasicNameValuePair>();
+        params.add(new BasicNameValuePair("username", username)); //$NON-NLS-1$
+        params.add(new BasicNameValuePair("realm", this.realm)); //$NON-NLS-1$
+        params.add(new BasicNameValuePair("nonce", this.nonce)); //$NON-NLS-1$
+        params.add(new BasicNameValuePair("uri", uri)); //$NON-NLS-1$
+        params.add(new BasicNameValuePair("response", response)); //$NON-NLS-1$
+        if (this.qop != null) {
+            params.add(new BasicNameValuePair("qop", this.qop)); //$NON-NLS-1$
+            params.add(new BasicNameValuePair("nc", nc)); //$NON-NLS-1$
+            params.add(new BasicNameValuePair("cnonce", this.cnonce)); //$NON-NLS-1$
+        }
+        if (this.algorithm != null) {
+            params.add(new BasicNameValuePair("algorithm", this.algorithm)); //$NON-NLS-1$
+        }
+        if (this.opaque != null) {
+            params.add(new BasicNameValuePair("opaque", this.opaque)); //$NON-NLS-1$
+        }
+
+        CharArrayBuffer buffer = new CharArrayBuffer(128);
+        buffer.append(AUTH.WWW_AUTH_RESP);
+        buffer.append(": Digest "); //$NON-NLS-1$
+        for (int i = 0; i < params.size(); i++) {
+            BasicNameValuePair param = params.get(i);
+            if (i > 0) {
+                buffer.append(", "); //$NON-NLS-1$
+            }
+            boolean quote = !"nc".equals(param.getName()) && !"qop".equals(param.getName()); //$NON-NLS-1$ //$NON-NLS-2$
+            BasicHeaderValueFormatter.DEFAULT.formatNameValuePair(buffer, param, quote);
+        }
+        return new BufferedHeader(buffer);
+    }
+
+    /**
+     * realmを返します。
+     *
+     * @return realm
+     */
+    public String getRealm() {
+        return this.realm;
+    }
+
+    /**
+     * nonceを返します。
+     *
+     * @return nonce
+     */
+    public String getNonce() {
+        return this.nonce;
+    }
+
+    /**
+     * qopを返します。
+     *
+     * @return qop（authまたはnull）
+     */
+    public String getQop() {
+        return this.qop;
+    }
+
+    /**
+     * 認証要求がstale=trueだったかどうかを返します。
+     *
+     * @return stale=trueだった場合true
+     */
+    public boolean isStale() {
+        return this.stale;
+    }
+
+    /**
+     * 最後に使用したnonce-countを返します。
+     *
+     * @return 最後に使用したnonce-count
+     */
+    public long getNonceCount() {
+        return this.nonceCount.get();
+    }
+
+    /**
+     * MD5の{@link MessageDigest}を生成します。
+     *
+     * @return {@link MessageDigest}
+     */
+    private static MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM_MD5);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * ダイジェストを16進数の文字列に変換します。
+     *
+     * @param binaryData
+     *            ダイジェスト
+     * @return 16進数の文字列
+     */
+    private static String encode(final byte[] binaryData) {
+        char[] buffer = new char[binaryData.length * 2];
+        for (int i = 0; i < binaryData.length; i++) {
+            buffer[i * 2] = HEXADECIMAL[(binaryData[i] & 0xf0) >> 4];
+            buffer[i * 2 + 1] = HEXADECIMAL[binaryData[i] & 0x0f];
+        }
+        return new String(buffer);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return ReflectionToStringBuilder.toString(this);
+    }
+
+}
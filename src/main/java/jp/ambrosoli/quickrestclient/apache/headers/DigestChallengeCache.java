@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.headers;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.HttpHost;
+
+import jp.ambrosoli.quickrestclient.util.URIUtil;
+
+/**
+ * 接続先ホスト毎にDigest認証の認証要求（{@link DigestChallenge}）をキャッシュするクラスです。
+ * <p>
+ * キーはホスト名（大文字小文字を区別しません）とポート番号です。スレッドセーフであり、複数のリクエストから同時に使用できます。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class DigestChallengeCache {
+
+    /** デフォルトのキャッシュの最大数 */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    /** キャッシュの最大数 */
+    private final int maxSize;
+
+    /** ホスト毎の認証要求 */
+    private final ConcurrentMap<String, DigestChallenge> challenges = new ConcurrentHashMap<String, DigestChallenge>();
+
+    /**
+     * DigestChallengeCacheを生成します。
+     */
+    public DigestChallengeCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * キャッシュの最大数を指定してDigestChallengeCacheを生成します。最大数を超える場合はキャッシュをすべて破棄します。
+     *
+     * @param maxSize
+     *            キャッシュの最大数
+     */
+    public DigestChallengeCache(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * ホストの認証要求を返します。
+     *
+     * @param host
+     *            接続先ホスト
+     * @return 認証要求。キャッシュされていない場合はnull
+     */
+    public DigestChallenge get(final HttpHost host) {
+        if (host == null) {
+            return null;
+        }
+        return this.challenges.get(toKey(host));
+    }
+
+    /**
+     * ホストの認証要求をキャッシュします。
+     *
+     * @param host
+     *            接続先ホスト
+     * @param challenge
+     *            認証要求
+     */
+    public void put(final HttpHost host, final DigestChallenge challenge) {
+        if (host == null || challenge == null) {
+            return;
+        }
+        if (this.challenges.size() >= this.maxSize) {
+            this.challenges.clear();
+        }
+        this.challenges.put(toKey(host), challenge);
+    }
+
+    /**
+     * ホストの認証要求が変わっていない場合にのみ、新しい認証要求に置き換えます。
+     *
+     * @param host
+     *            接続先ホスト
+     * @param oldChallenge
+     *            現在の認証要求
+     * @param newChallenge
+     *            新しい認証要求
+     * @return 置き換えた場合true
+     */
+    public boolean replace(final HttpHost host, final DigestChallenge oldChallenge, final DigestChallenge newChallenge) {
+        if (host == null || oldChallenge == null || newChallenge == null) {
+            return false;
+        }
+        return this.challenges.replace(toKey(host), oldChallenge, newChallenge);
+    }
+
+    /**
+     * ホストの認証要求を破棄します。
+     *
+     * @param host
+     *            接続先ホスト
+     */
+    public void remove(final HttpHost host) {
+        if (host == null) {
+            return;
+        }
+        this.challenges.remove(toKey(host));
+    }
+
+    /**
+     * キャッシュされている認証要求の数を返します。
+     *
+     * @return 認証要求の数
+     */
+    public int size() {
+        return this.challenges.size();
+    }
+
+    /**
+     * キャッシュをすべて破棄します。
+     */
+    public void clear() {
+        this.challenges.clear();
+    }
+
+    /**
+     * ホストのキャッシュのキーを返します。
+     *
+     * @param host
+     *            接続先ホスト
+     * @return キー
+     */
+    protected static String toKey(final HttpHost host) {
+        int port = host.getPort();
+        if (port < 0) {
+            port = URIUtil.SCHEME_NAME_HTTPS.equalsIgnoreCase(host.getSchemeName()) ? URIUtil.PORT_SSL
+                    : URIUtil.PORT_HTTP;
+        }
+        return host.getHostName().toLowerCase(Locale.ENGLISH) + ':' + port;
+    }
+
+}
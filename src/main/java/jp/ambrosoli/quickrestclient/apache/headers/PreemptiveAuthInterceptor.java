@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.headers;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.auth.AUTH;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.AuthState;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import jp.ambrosoli.quickrestclient.enums.AuthType;
+import jp.ambrosoli.quickrestclient.params.AuthInfo;
+import jp.ambrosoli.quickrestclient.util.URIUtil;
+
+/**
+ * サーバーからの認証要求（401）を待たずに、最初のリクエストからBasic認証のAuthorizationヘッダーを送信するインターセプターです。
+ * <p>
+ * Authorizationヘッダーはユーザ名とパスワードの組毎に一度だけ生成してキャッシュし、リクエスト毎のエンコードは行いません。
+ * 認証情報は{@link #setPreemptiveAuth(HttpContext, URI, AuthInfo)}でリクエストURIの対象範囲とともにコンテキストに設定し、
+ * リクエストURIと同じホスト・ポートへのリクエストにのみ送信します。クライアント共通の認証情報も同様にリクエスト毎に設定します。
+ * 対象範囲が設定されていない場合や、リダイレクトで別のホストへ送信する場合は送信しません。
+ * </p>
+ * <p>
+ * リクエストに既にAuthorizationヘッダーがある場合や、認証要求を受けてHttpClientが認証を処理している場合は何もしません。
+ * CONNECTリクエストには追加しません。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class PreemptiveAuthInterceptor implements HttpRequestInterceptor {
+
+    /** リクエスト毎のAuthorizationヘッダーを保持するコンテキストの属性名 */
+    public static final String PREEMPTIVE_AUTH_HEADER = "jp.ambrosoli.quickrestclient.preemptive-auth-header"; //$NON-NLS-1$
+
+    /** リクエスト毎の認証情報の対象範囲を保持するコンテキストの属性名 */
+    public static final String PREEMPTIVE_AUTH_SCOPE = "jp.ambrosoli.quickrestclient.preemptive-auth-scope"; //$NON-NLS-1$
+
+    /** CONNECTメソッド */
+    private static final String METHOD_CONNECT = "CONNECT"; //$NON-NLS-1$
+
+    /** キャッシュするAuthorizationヘッダーの最大数 */
+    private static final int MAX_CACHE_SIZE = 256;
+
+    /** ユーザ名とパスワードの組毎のAuthorizationヘッダー */
+    private static final ConcurrentMap<String, Header> HEADER_CACHE = new ConcurrentHashMap<String, Header>();
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.HttpRequestInterceptor#process(org.apache.http.HttpRequest
+     * , org.apache.http.protocol.HttpContext)
+     */
+    public void process(final HttpRequest request, final HttpContext context) {
+        if (METHOD_CONNECT.equalsIgnoreCase(request.getRequestLine().getMethod())) {
+            return;
+        }
+        if (request.containsHeader(AUTH.WWW_AUTH_RESP) || context == null) {
+            return;
+        }
+
+        AuthState authState = (AuthState) context.getAttribute(ClientContext.TARGET_AUTH_STATE);
+        if (authState != null && authState.getAuthScheme() != null) {
+            return;
+        }
+        // 対象範囲のない認証情報は、どのホストにも送信しない
+        AuthScope scope = (AuthScope) context.getAttribute(PREEMPTIVE_AUTH_SCOPE);
+        if (scope == null) {
+            return;
+        }
+        HttpHost target = (HttpHost) context.getAttribute(ExecutionContext.HTTP_TARGET_HOST);
+        if (!matches(scope, target)) {
+            return;
+        }
+        Header header = (Header) context.getAttribute(PREEMPTIVE_AUTH_HEADER);
+        if (header != null) {
+            request.addHeader(header);
+        }
+    }
+
+    /**
+     * 認証情報をリクエストURIのホスト・ポートを対象範囲としてコンテキストに設定します。
+     * <p>
+     * 認証情報がPreemptive Basicでない場合はAuthorizationヘッダーを設定しないため、ヘッダーは送信されません。
+     * </p>
+     *
+     * @param context
+     *            リクエスト毎のコンテキスト
+     * @param uri
+     *            リクエストURI
+     * @param authInfo
+     *            リクエスト毎またはクライアント共通の認証情報
+     */
+    public static void setPreemptiveAuth(final HttpContext context, final URI uri, final AuthInfo authInfo) {
+        if (context == null || uri == null || authInfo == null) {
+            return;
+        }
+        context.setAttribute(PREEMPTIVE_AUTH_SCOPE, new AuthScope(uri.getHost(), URIUtil.getPort(uri)));
+        Header header = getAuthorizationHeader(authInfo);
+        if (header != null) {
+            context.setAttribute(PREEMPTIVE_AUTH_HEADER, header);
+        }
+    }
+
+    /**
+     * Preemptive Basic認証のAuthorizationヘッダーを返します。ヘッダーはユーザ名とパスワードの組毎にキャッシュされます。
+     *
+     * @param authInfo
+     *            認証情報
+     * @return Authorizationヘッダー。認証情報がPreemptive Basicでない場合はnull
+     */
+    public static Header getAuthorizationHeader(final AuthInfo authInfo) {
+        if (authInfo == null || !authInfo.preemptive || authInfo.type != AuthType.BASIC) {
+            return null;
+        }
+        String key = authInfo.username + ':' + authInfo.password;
+        Header header = HEADER_CACHE.get(key);
+        if (header != null) {
+            return header;
+        }
+        header = BasicScheme.authenticate(new UsernamePasswordCredentials(authInfo.username, authInfo.password),
+                HTTP.DEFAULT_PROTOCOL_CHARSET, false);
+        if (HEADER_CACHE.size() >= MAX_CACHE_SIZE) {
+            HEADER_CACHE.clear();
+        }
+        Header cached = HEADER_CACHE.putIfAbsent(key, header);
+        return cached != null ? cached : header;
+    }
+
+    /**
+     * 接続先ホストが認証情報の対象範囲に含まれるかどうかを返します。
+     *
+     * @param scope
+     *            認証情報の対象範囲
+     * @param target
+     *            接続先ホスト
+     * @return 対象範囲に含まれる場合true
+     */
+    protected static boolean matches(final AuthScope scope, final HttpHost target) {
+        if (target == null) {
+            return false;
+        }
+        int port = target.getPort();
+        if (port < 0) {
+            port = URIUtil.SCHEME_NAME_HTTPS.equalsIgnoreCase(target.getSchemeName()) ? URIUtil.PORT_SSL
+                    : URIUtil.PORT_HTTP;
+        }
+        return scope.match(new AuthScope(target.getHostName(), port)) >= 0;
+    }
+
+}
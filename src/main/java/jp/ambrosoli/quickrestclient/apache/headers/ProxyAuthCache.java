@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.headers;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScheme;
+
+import jp.ambrosoli.quickrestclient.util.URIUtil;
+
+/**
+ * プロキシ毎に認証に成功した認証方式（{@link AuthScheme}）をキャッシュするクラスです。
+ * <p>
+ * キーはプロキシのホスト名（大文字小文字を区別しません）とポート番号です。スレッドセーフであり、複数のリクエストから同時に使用できます。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class ProxyAuthCache {
+
+    /** デフォルトのキャッシュの最大数 */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    /** キャッシュの最大数 */
+    private final int maxSize;
+
+    /** プロキシ毎の認証方式 */
+    private final ConcurrentMap<String, AuthScheme> schemes = new ConcurrentHashMap<String, AuthScheme>();
+
+    /**
+     * ProxyAuthCacheを生成します。
+     */
+    public ProxyAuthCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * キャッシュの最大数を指定してProxyAuthCacheを生成します。最大数を超える場合はキャッシュをすべて破棄します。
+     *
+     * @param maxSize
+     *            キャッシュの最大数
+     */
+    public ProxyAuthCache(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * プロキシの認証方式を返します。
+     *
+     * @param proxy
+     *            プロキシ
+     * @return 認証方式。キャッシュされていない場合はnull
+     */
+    public AuthScheme get(final HttpHost proxy) {
+        if (proxy == null) {
+            return null;
+        }
+        return this.schemes.get(toKey(proxy));
+    }
+
+    /**
+     * プロキシの認証方式をキャッシュします。
+     *
+     * @param proxy
+     *            プロキシ
+     * @param scheme
+     *            認証方式
+     */
+    public void put(final HttpHost proxy, final AuthScheme scheme) {
+        if (proxy == null || scheme == null) {
+            return;
+        }
+        if (this.schemes.size() >= this.maxSize) {
+            this.schemes.clear();
+        }
+        this.schemes.put(toKey(proxy), scheme);
+    }
+
+    /**
+     * プロキシの認証方式をキャッシュから削除します。
+     *
+     * @param proxy
+     *            プロキシ
+     */
+    public void remove(final HttpHost proxy) {
+        if (proxy == null) {
+            return;
+        }
+        this.schemes.remove(toKey(proxy));
+    }
+
+    /**
+     * キャッシュされている認証方式の数を返します。
+     *
+     * @return キャッシュの数
+     */
+    public int size() {
+        return this.schemes.size();
+    }
+
+    /**
+     * キャッシュをすべて破棄します。
+     */
+    public void clear() {
+        this.schemes.clear();
+    }
+
+    /**
+     * キャッシュのキーを生成します。
+     *
+     * @param proxy
+     *            プロキシ
+     * @return キー
+     */
+    protected static String toKey(final HttpHost proxy) {
+        int port = proxy.getPort();
+        if (port < 0) {
+            port = URIUtil.SCHEME_NAME_HTTPS.equalsIgnoreCase(proxy.getSchemeName()) ? URIUtil.PORT_SSL
+                    : URIUtil.PORT_HTTP;
+        }
+        return proxy.getHostName().toLowerCase(Locale.ENGLISH) + ':' + port;
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.headers;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
+import org.apache.http.auth.AUTH;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.AuthState;
+import org.apache.http.auth.AuthenticationException;
+import org.apache.http.auth.Credentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * プロキシ認証に成功した認証方式をプロキシ毎にキャッシュし、以降のリクエストで最初からProxy-Authorizationヘッダーを送信するインターセプターです。
+ * <p>
+ * HttpClientはリクエスト毎にプロキシ認証の状態を初期化するため、新しいトンネルを確立する度にCONNECTリクエストが407で拒否されてから再送されます。
+ * レスポンスインターセプターとして認証に成功した認証方式を{@link ProxyAuthCache}に保存し、
+ * リクエストインターセプターとしてCONNECTリクエストと、トンネルを使用せずにプロキシへ送信するリクエストにProxy-Authorizationヘッダーを追加します。
+ * プロキシが407で応答した場合はキャッシュを破棄し、HttpClientの認証処理に任せます。
+ * </p>
+ * <p>
+ * トンネル内で接続先に送信するリクエストにはヘッダーを追加しません。
+ * コネクション毎に認証を行う認証方式（NTLMなど）はキャッシュしません。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class ProxyAuthCacheInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor {
+
+    /** CONNECTメソッド */
+    private static final String METHOD_CONNECT = "CONNECT"; //$NON-NLS-1$
+
+    /** 認証方式のキャッシュ */
+    private final ProxyAuthCache cache;
+
+    /**
+     * ProxyAuthCacheInterceptorを生成します。
+     *
+     * @param cache
+     *            認証方式のキャッシュ
+     */
+    public ProxyAuthCacheInterceptor(final ProxyAuthCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException(Messages.getString("message.proxy.auth.cache.null")); //$NON-NLS-1$
+        }
+        this.cache = cache;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.HttpRequestInterceptor#process(org.apache.http.HttpRequest
+     * , org.apache.http.protocol.HttpContext)
+     */
+    public void process(final HttpRequest request, final HttpContext context) {
+        if (context == null || request.containsHeader(AUTH.PROXY_AUTH_RESP)) {
+            return;
+        }
+        HttpHost proxy = (HttpHost) context.getAttribute(ExecutionContext.HTTP_PROXY_HOST);
+        if (proxy == null || !isSentToProxy(request, context)) {
+            return;
+        }
+        AuthState authState = (AuthState) context.getAttribute(ClientContext.PROXY_AUTH_STATE);
+        if (authState != null && authState.getAuthScheme() != null) {
+            return;
+        }
+        AuthScheme scheme = this.cache.get(proxy);
+        if (scheme == null) {
+            return;
+        }
+        CredentialsProvider provider = (CredentialsProvider) context.getAttribute(ClientContext.CREDS_PROVIDER);
+        if (provider == null) {
+            return;
+        }
+        Credentials credentials = provider.getCredentials(new AuthScope(proxy.getHostName(), proxy.getPort(),
+                scheme.getRealm(), scheme.getSchemeName()));
+        if (credentials == null) {
+            return;
+        }
+        try {
+            request.addHeader(scheme.authenticate(credentials, request));
+        } catch (AuthenticationException e) {
+            this.cache.remove(proxy);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.http.HttpResponseInterceptor#process(org.apache.http.HttpResponse
+     * , org.apache.http.protocol.HttpContext)
+     */
+    public void process(final HttpResponse response, final HttpContext context) {
+        if (context == null) {
+            return;
+        }
+        HttpHost proxy = (HttpHost) context.getAttribute(ExecutionContext.HTTP_PROXY_HOST);
+        if (proxy == null) {
+            return;
+        }
+        if (response.getStatusLine().getStatusCode() == HttpStatus.SC_PROXY_AUTHENTICATION_REQUIRED) {
+            this.cache.remove(proxy);
+            return;
+        }
+        AuthState authState = (AuthState) context.getAttribute(ClientContext.PROXY_AUTH_STATE);
+        if (authState == null || authState.getCredentials() == null) {
+            return;
+        }
+        AuthScheme scheme = authState.getAuthScheme();
+        if (scheme != null && scheme.isComplete() && !scheme.isConnectionBased()) {
+            this.cache.put(proxy, scheme);
+        }
+    }
+
+    /**
+     * リクエストがプロキシに対して送信されるかどうかを返します。
+     *
+     * @param request
+     *            リクエスト
+     * @param context
+     *            コンテキスト
+     * @return CONNECTリクエスト、またはトンネルを使用しないルートのリクエストの場合true
+     */
+    protected static boolean isSentToProxy(final HttpRequest request, final HttpContext context) {
+        if (METHOD_CONNECT.equalsIgnoreCase(request.getRequestLine().getMethod())) {
+            return true;
+        }
+        Object conn = context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+        if (!(conn instanceof ManagedClientConnection)) {
+            return false;
+        }
+        HttpRoute route = ((ManagedClientConnection) conn).getRoute();
+        return route != null && route.getProxyHost() != null && !route.isTunnelled();
+    }
+
+}
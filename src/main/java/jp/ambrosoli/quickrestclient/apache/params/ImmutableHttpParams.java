@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.params;
+
+import org.apache.http.params.AbstractHttpParams;
+import org.apache.http.params.HttpParams;
+
+/**
+ * 変更できない{@link HttpParams}の実装クラスです。
+ * <p>
+ * 生成時にパラメータをコピーして保持するため、複数のリクエストやスレッドで安全に共有できます。
+ * パラメータを変更しようとした場合は{@link UnsupportedOperationException}をスローします。
+ * 変更が必要な場合は{@link #copy()}で変更可能なコピーを取得してください。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class ImmutableHttpParams extends AbstractHttpParams {
+
+    /** パラメータ */
+    private final HttpParams params;
+
+    /**
+     * ImmutableHttpParamsを生成します。
+     *
+     * @param params
+     *            コピー元のパラメータ
+     */
+    public ImmutableHttpParams(final HttpParams params) {
+        if (params == null) {
+            throw new IllegalArgumentException(Messages.getString("message.params.null")); //$NON-NLS-1$
+        }
+        this.params = params.copy();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.http.params.HttpParams#getParameter(java.lang.String)
+     */
+    public Object getParameter(final String name) {
+        return this.params.getParameter(name);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.http.params.HttpParams#setParameter(java.lang.String,
+     * java.lang.Object)
+     */
+    public HttpParams setParameter(final String name, final Object value) {
+        throw new UnsupportedOperationException(Messages.getString("message.params.immutable")); //$NON-NLS-1$
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.http.params.HttpParams#removeParameter(java.lang.String)
+     */
+    public boolean removeParameter(final String name) {
+        throw new UnsupportedOperationException(Messages.getString("message.params.immutable")); //$NON-NLS-1$
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.http.params.HttpParams#copy()
+     */
+    public HttpParams copy() {
+        return this.params.copy();
+    }
+
+}
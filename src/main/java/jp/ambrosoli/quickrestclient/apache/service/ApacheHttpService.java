@@ -21,6 +21,17 @@ package jp.ambrosoli.quickrestclient.apache.service;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntityEnclosingRequest;
@@ -42,7 +53,9 @@ import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.conn.scheme.HostNameResolver;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
@@ -55,16 +68,29 @@ import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
 
 import jp.ambrosoli.quickrestclient.Http;
+import jp.ambrosoli.quickrestclient.apache.conn.DnsHostNameResolver;
+import jp.ambrosoli.quickrestclient.apache.conn.TlsSocketFactory;
 import jp.ambrosoli.quickrestclient.apache.headers.ApacheHeaderBuilder;
+import jp.ambrosoli.quickrestclient.apache.headers.DigestAuthCacheInterceptor;
+import jp.ambrosoli.quickrestclient.apache.headers.DigestChallengeCache;
+import jp.ambrosoli.quickrestclient.apache.headers.PreemptiveAuthInterceptor;
+import jp.ambrosoli.quickrestclient.apache.headers.ProxyAuthCache;
+import jp.ambrosoli.quickrestclient.apache.headers.ProxyAuthCacheInterceptor;
 import jp.ambrosoli.quickrestclient.apache.params.ApacheEnclosingParamBuilder;
+import jp.ambrosoli.quickrestclient.apache.params.ImmutableHttpParams;
 import jp.ambrosoli.quickrestclient.apache.response.ApacheResponseHandler;
 import jp.ambrosoli.quickrestclient.enums.AuthType;
 import jp.ambrosoli.quickrestclient.enums.HttpMethod;
+import jp.ambrosoli.quickrestclient.exception.ConnectionPoolTimeoutRuntimeException;
+import jp.ambrosoli.quickrestclient.exception.DeadlineExceededRuntimeException;
 import jp.ambrosoli.quickrestclient.exception.IORuntimeException;
 import jp.ambrosoli.quickrestclient.exception.SocketTimeoutRuntimeException;
 import jp.ambrosoli.quickrestclient.headers.HttpHeaders;
+import jp.ambrosoli.quickrestclient.net.DnsResolver;
 import jp.ambrosoli.quickrestclient.params.AuthInfo;
 import jp.ambrosoli.quickrestclient.params.BasicQueryStringBuilder;
 import jp.ambrosoli.quickrestclient.params.ProxyInfo;
@@ -82,6 +108,37 @@ import jp.ambrosoli.quickrestclient.util.URIUtil;
  */
 public class ApacheHttpService implements HttpService {
 
+    /** すべてのインスタンスで共有するDigest認証の認証要求のキャッシュ */
+    protected static final DigestChallengeCache SHARED_DIGEST_CHALLENGE_CACHE = new DigestChallengeCache();
+
+    /** すべてのインスタンスで共有するプロキシ認証の認証方式のキャッシュ */
+    protected static final ProxyAuthCache SHARED_PROXY_AUTH_CACHE = new ProxyAuthCache();
+
+    /** キャッシュするテンプレートの最大数 */
+    protected static final int MAX_TEMPLATES = 256;
+
+    /** 設定毎に生成した{@link HttpParams}のテンプレートのキャッシュ */
+    protected static final ConcurrentMap<List<Object>, HttpParams> HTTP_PARAMS_TEMPLATES = new ConcurrentHashMap<List<Object>, HttpParams>();
+
+    /** スキーム、ポート、リゾルバ毎に生成した{@link SchemeRegistry}のテンプレートのキャッシュ */
+    protected static final ConcurrentMap<List<Object>, SchemeRegistry> SCHEME_REGISTRY_TEMPLATES = new ConcurrentHashMap<List<Object>, SchemeRegistry>();
+
+    /** 期限を超過したリクエストを中断するタイマー */
+    protected static final ScheduledThreadPoolExecutor DEADLINE_TIMER = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactory() {
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable, "QuickRestClient-Deadline"); //$NON-NLS-1$
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /** キャンセルした中断タスクをタイマーのキューから削除する間隔（キャンセル回数） */
+    protected static final int DEADLINE_PURGE_INTERVAL = 1000;
+
+    /** キャンセルした中断タスクの数 */
+    private static final AtomicInteger DEADLINE_CANCELS = new AtomicInteger();
+
     /*
      * (non-Javadoc)
      *
@@ -90,32 +147,198 @@ public class ApacheHttpService implements HttpService {
      * .client.request.HttpRequest)
      */
     public HttpResponse execute(final HttpRequest request) {
-        HttpParams httpParams = this.createHttpParams();
-        this.setProtocolVersion(httpParams, request.getProtocol());
-        this.setTimeout(httpParams, request.getTimeout());
-        this.setProxy(httpParams, request.getProxyInfo());
-        this.setCharset(httpParams, request.getCharset());
+        HttpParams httpParams = this.getHttpParams(request);
 
         URI uri = request.getUri();
         HttpUriRequest httpUriRequest = this.createHttpUriRequest(uri, request.getMethod(),
                 request.getParams(), request.getCharset());
         this.setHeaders(httpUriRequest, request.getHeaders());
 
-        SchemeRegistry schreg = this.createSchemeRegistry(uri);
+        SchemeRegistry schreg = this.getSchemeRegistry(uri, request.getDnsResolver());
         ClientConnectionManager conman = this.createClientConnectionManager(httpParams, schreg);
         AbstractHttpClient client = this.createHttpClient(conman, httpParams);
         this.setCredentialsAuthenticate(uri, request.getAuthInfo(), client.getCredentialsProvider());
+        if (this.setProxyCredentials(request.getProxyInfo(), client.getCredentialsProvider())) {
+            this.addProxyAuthCacheInterceptor(client);
+        }
+        if (request.getAuthInfo() != null && request.getAuthInfo().type == AuthType.DIGEST) {
+            this.addDigestAuthCacheInterceptor(client);
+        }
+        HttpContext context = this.createPreemptiveAuthContext(uri, request.getAuthInfo(), client);
+
+        try {
+            return this.executeHttpClient(client, httpUriRequest, context, request.getDeadline());
+        } finally {
+            conman.shutdown();
+        }
+
+    }
 
+    /**
+     * {@link HttpClient}を使用してリクエストを送信し、レスポンスを返します。
+     *
+     * @param client
+     *            {@link HttpClient}のインスタンス
+     * @param httpUriRequest
+     *            送信するリクエスト
+     * @param context
+     *            リクエスト毎のコンテキスト（nullの場合はクライアントのデフォルト）
+     * @return レスポンス
+     */
+    protected HttpResponse executeHttpClient(final HttpClient client, final HttpUriRequest httpUriRequest,
+            final HttpContext context) {
         try {
-            return client.execute(httpUriRequest, new ApacheResponseHandler());
+            return client.execute(httpUriRequest, new ApacheResponseHandler(), context);
+        } catch (ConnectionPoolTimeoutException e) {
+            throw new ConnectionPoolTimeoutRuntimeException(e);
         } catch (SocketTimeoutException e) {
             throw new SocketTimeoutRuntimeException(e);
         } catch (IOException e) {
             throw new IORuntimeException(e);
+        }
+    }
+
+    /**
+     * 期限を指定して{@link HttpClient}を使用してリクエストを送信し、レスポンスを返します。<br />
+     * 期限を超過した場合は{@link HttpUriRequest#abort()}によってリクエストを中断します。
+     *
+     * @param client
+     *            {@link HttpClient}のインスタンス
+     * @param httpUriRequest
+     *            送信するリクエスト
+     * @param context
+     *            リクエスト毎のコンテキスト（nullの場合はクライアントのデフォルト）
+     * @param deadline
+     *            期限（ミリ秒）。0以下の場合は期限なし
+     * @return レスポンス
+     * @throws DeadlineExceededRuntimeException
+     *             期限を超過した場合
+     */
+    protected HttpResponse executeHttpClient(final HttpClient client, final HttpUriRequest httpUriRequest,
+            final HttpContext context, final long deadline) {
+        if (deadline <= 0) {
+            return this.executeHttpClient(client, httpUriRequest, context);
+        }
+        long expiresAt = System.currentTimeMillis() + deadline;
+        ScheduledFuture<?> abort = DEADLINE_TIMER.schedule(new Runnable() {
+            public void run() {
+                httpUriRequest.abort();
+            }
+        }, deadline, TimeUnit.MILLISECONDS);
+        try {
+            return this.executeHttpClient(client, httpUriRequest, context);
+        } catch (IORuntimeException e) {
+            if (System.currentTimeMillis() < expiresAt) {
+                throw e;
+            }
+            IOException cause = e.getCause() instanceof IOException ? (IOException) e.getCause() : null;
+            throw new DeadlineExceededRuntimeException(Messages.getString("message.deadline.exceeded"), cause); //$NON-NLS-1$
         } finally {
-            conman.shutdown();
+            cancelAbort(abort);
         }
+    }
 
+    /**
+     * 期限を超過したリクエストを中断するタスクをキャンセルします。<br />
+     * キャンセルしたタスクは期限までタイマーのキューに残り、リクエストを保持し続けるため、
+     * {@link #DEADLINE_PURGE_INTERVAL}回キャンセルする毎に{@link ScheduledThreadPoolExecutor#purge()}でキューから削除します。
+     *
+     * @param abort
+     *            中断するタスク
+     */
+    protected static void cancelAbort(final ScheduledFuture<?> abort) {
+        if (abort.cancel(false) && DEADLINE_CANCELS.incrementAndGet() % DEADLINE_PURGE_INTERVAL == 0) {
+            DEADLINE_TIMER.purge();
+        }
+    }
+
+    /**
+     * タイムアウトがリクエストの期限を超えないように制限します。
+     *
+     * @param timeout
+     *            タイムアウト（ミリ秒）。0の場合は無制限
+     * @param deadline
+     *            期限（ミリ秒）。0以下の場合は期限なし
+     * @return 制限したタイムアウト（ミリ秒）
+     */
+    protected static int limitTimeout(final int timeout, final long deadline) {
+        if (deadline <= 0 || timeout > 0 && timeout <= deadline) {
+            return timeout;
+        }
+        return (int) Math.min(deadline, Integer.MAX_VALUE);
+    }
+
+    /**
+     * リクエストの設定に対応する{@link HttpParams}のテンプレートを返します。<br />
+     * プロトコルバージョン、タイムアウト、プロキシー、文字コードが同じリクエストは、生成済みの変更できない
+     * {@link HttpParams}を共有します。
+     *
+     * @param request
+     *            リクエスト
+     * @return {@link HttpParams}のテンプレート
+     */
+    protected HttpParams getHttpParams(final HttpRequest request) {
+        int connectTimeout = limitTimeout(request.getConnectTimeout(), request.getDeadline());
+        int readTimeout = limitTimeout(request.getReadTimeout(), request.getDeadline());
+        ProxyInfo proxy = request.getProxyInfo();
+        List<Object> key = Arrays.<Object> asList(request.getProtocol(), Integer.valueOf(connectTimeout), Integer
+                .valueOf(readTimeout), proxy != null ? proxy.getHost() : null, proxy != null ? Integer.valueOf(proxy
+                .getPort()) : null, request.getCharset());
+        HttpParams template = HTTP_PARAMS_TEMPLATES.get(key);
+        if (template != null) {
+            return template;
+        }
+
+        HttpParams httpParams = this.createHttpParams();
+        this.setProtocolVersion(httpParams, request.getProtocol());
+        this.setTimeout(httpParams, connectTimeout, readTimeout);
+        this.setProxy(httpParams, proxy);
+        this.setCharset(httpParams, request.getCharset());
+        return putTemplate(HTTP_PARAMS_TEMPLATES, key, new ImmutableHttpParams(httpParams));
+    }
+
+    /**
+     * URIのスキームとポート、リゾルバに対応する{@link SchemeRegistry}のテンプレートを返します。<br />
+     * 返された{@link SchemeRegistry}は複数のリクエストで共有されるため、変更しないでください。
+     *
+     * @param uri
+     *            リクエストURI
+     * @param dnsResolver
+     *            リゾルバ。nullの場合はJVMの名前解決を使用します
+     * @return {@link SchemeRegistry}のテンプレート
+     */
+    protected SchemeRegistry getSchemeRegistry(final URI uri, final DnsResolver dnsResolver) {
+        if (uri == null) {
+            throw new NullPointerException(Messages.getString("message.url.null")); //$NON-NLS-1$
+        }
+        List<Object> key = Arrays.<Object> asList(uri.getScheme(), Integer.valueOf(URIUtil.getPort(uri)),
+                dnsResolver);
+        SchemeRegistry template = SCHEME_REGISTRY_TEMPLATES.get(key);
+        if (template != null) {
+            return template;
+        }
+        return putTemplate(SCHEME_REGISTRY_TEMPLATES, key, this.createSchemeRegistry(uri, dnsResolver));
+    }
+
+    /**
+     * テンプレートをキャッシュに格納します。<br />
+     * キャッシュが上限に達している場合は、キャッシュをクリアしてから格納します。
+     *
+     * @param templates
+     *            テンプレートのキャッシュ
+     * @param key
+     *            キー
+     * @param template
+     *            テンプレート
+     * @return キャッシュに格納されたテンプレート
+     */
+    private static <T> T putTemplate(final ConcurrentMap<List<Object>, T> templates, final List<Object> key,
+            final T template) {
+        if (templates.size() >= MAX_TEMPLATES) {
+            templates.clear();
+        }
+        T current = templates.putIfAbsent(key, template);
+        return current != null ? current : template;
     }
 
     /**
@@ -126,8 +349,21 @@ public class ApacheHttpService implements HttpService {
      * @return 生成した{@link SchemeRegistry}のインスタンス
      */
     protected SchemeRegistry createSchemeRegistry(final URI uri) {
+        return this.createSchemeRegistry(uri, null);
+    }
+
+    /**
+     * ホスト名の名前解決に使用するリゾルバを指定して{@link SchemeRegistry}を生成します。
+     *
+     * @param uri
+     *            リクエストURI
+     * @param dnsResolver
+     *            リゾルバ。nullの場合はJVMの名前解決を使用します
+     * @return 生成した{@link SchemeRegistry}のインスタンス
+     */
+    protected SchemeRegistry createSchemeRegistry(final URI uri, final DnsResolver dnsResolver) {
         SchemeRegistry schreg = new SchemeRegistry();
-        SocketFactory factory = this.getSocketFactory(uri);
+        SocketFactory factory = this.getSocketFactory(uri, dnsResolver);
         int port = URIUtil.getPort(uri);
         Scheme scheme = new Scheme(uri.getScheme(), factory, port);
         schreg.register(scheme);
@@ -142,15 +378,31 @@ public class ApacheHttpService implements HttpService {
      * @return ソケットファクトリ
      */
     protected SocketFactory getSocketFactory(final URI uri) {
+        return this.getSocketFactory(uri, null);
+    }
+
+    /**
+     * スキームに応じて、指定したリゾルバでホスト名を解決するソケットファクトリを生成して返します。
+     *
+     * @param uri
+     *            URI
+     * @param dnsResolver
+     *            リゾルバ。nullの場合はJVMの名前解決を使用します
+     * @return ソケットファクトリ
+     */
+    protected SocketFactory getSocketFactory(final URI uri, final DnsResolver dnsResolver) {
         if (uri == null) {
             throw new NullPointerException(Messages.getString("message.url.null")); //$NON-NLS-1$
         }
 
+        HostNameResolver nameResolver = dnsResolver != null ? new DnsHostNameResolver(dnsResolver) : null;
         SocketFactory factory;
         if (URIUtil.isPlain(uri)) {
-            factory = PlainSocketFactory.getSocketFactory();
+            factory = nameResolver != null ? new PlainSocketFactory(nameResolver) : PlainSocketFactory
+                    .getSocketFactory();
         } else if (URIUtil.isSSL(uri)) {
-            factory = SSLSocketFactory.getSocketFactory();
+            factory = nameResolver != null ? new SSLSocketFactory(DefaultSSLContextHolder.SSL_CONTEXT,
+                    nameResolver) : SSLSocketFactory.getSocketFactory();
         } else {
             throw new IllegalArgumentException(Messages.getString("message.invalid.scheme")); //$NON-NLS-1$
         }
@@ -302,8 +554,22 @@ public class ApacheHttpService implements HttpService {
      *            タイムアウト時間
      */
     protected void setTimeout(final HttpParams httpParams, final int timeout) {
-        HttpConnectionParams.setConnectionTimeout(httpParams, timeout);
-        HttpConnectionParams.setSoTimeout(httpParams, timeout);
+        this.setTimeout(httpParams, timeout, timeout);
+    }
+
+    /**
+     * 接続タイムアウトと読み込みタイムアウトを設定します。
+     *
+     * @param httpParams
+     *            HttpParams
+     * @param connectTimeout
+     *            接続タイムアウト（ミリ秒）
+     * @param readTimeout
+     *            読み込みタイムアウト（ミリ秒）
+     */
+    protected void setTimeout(final HttpParams httpParams, final int connectTimeout, final int readTimeout) {
+        HttpConnectionParams.setConnectionTimeout(httpParams, connectTimeout);
+        HttpConnectionParams.setSoTimeout(httpParams, readTimeout);
     }
 
     /**
@@ -382,4 +648,96 @@ public class ApacheHttpService implements HttpService {
         provider.setCredentials(authscope, credentials);
     }
 
+    /**
+     * プロキシ認証の情報を設定します。
+     *
+     * @param proxy
+     *            プロキシの情報
+     * @param provider
+     *            {@link CredentialsProvider}
+     * @return 認証情報を設定した場合true
+     */
+    protected boolean setProxyCredentials(final ProxyInfo proxy, final CredentialsProvider provider) {
+        if (proxy == null || proxy.getUsername() == null || provider == null) {
+            return false;
+        }
+        provider.setCredentials(new AuthScope(proxy.getHost(), proxy.getPort()), new UsernamePasswordCredentials(
+                proxy.getUsername(), proxy.getPassword()));
+        return true;
+    }
+
+    /**
+     * プロキシ認証に成功した認証方式をキャッシュして再利用する{@link ProxyAuthCacheInterceptor}を追加します。
+     *
+     * @param client
+     *            {@link AbstractHttpClient}
+     */
+    protected void addProxyAuthCacheInterceptor(final AbstractHttpClient client) {
+        ProxyAuthCacheInterceptor interceptor = new ProxyAuthCacheInterceptor(this.getProxyAuthCache());
+        client.addRequestInterceptor(interceptor);
+        client.addResponseInterceptor(interceptor);
+    }
+
+    /**
+     * プロキシ認証の認証方式のキャッシュを返します。リクエスト毎にクライアントを生成するため、すべてのインスタンスで共有するキャッシュを返します。
+     *
+     * @return プロキシ認証の認証方式のキャッシュ
+     */
+    protected ProxyAuthCache getProxyAuthCache() {
+        return SHARED_PROXY_AUTH_CACHE;
+    }
+
+    /**
+     * Digest認証の認証要求をキャッシュして再利用する{@link DigestAuthCacheInterceptor}を追加します。
+     *
+     * @param client
+     *            {@link AbstractHttpClient}
+     */
+    protected void addDigestAuthCacheInterceptor(final AbstractHttpClient client) {
+        DigestAuthCacheInterceptor interceptor = new DigestAuthCacheInterceptor(this.getDigestChallengeCache());
+        client.addRequestInterceptor(interceptor);
+        client.addResponseInterceptor(interceptor);
+    }
+
+    /**
+     * Digest認証の認証要求のキャッシュを返します。リクエスト毎にクライアントを生成するため、すべてのインスタンスで共有するキャッシュを返します。
+     *
+     * @return Digest認証の認証要求のキャッシュ
+     */
+    protected DigestChallengeCache getDigestChallengeCache() {
+        return SHARED_DIGEST_CHALLENGE_CACHE;
+    }
+
+    /**
+     * Preemptive Basic認証の場合に、最初のリクエストからAuthorizationヘッダーを送信するよう設定したコンテキストを生成します。
+     *
+     * @param uri
+     *            リクエストURI
+     * @param authInfo
+     *            認証情報
+     * @param client
+     *            {@link AbstractHttpClient}
+     * @return 生成したコンテキスト。Preemptive Basic認証でない場合はnull
+     */
+    protected HttpContext createPreemptiveAuthContext(final URI uri, final AuthInfo authInfo,
+            final AbstractHttpClient client) {
+        if (PreemptiveAuthInterceptor.getAuthorizationHeader(authInfo) == null) {
+            return null;
+        }
+        HttpContext context = new BasicHttpContext();
+        PreemptiveAuthInterceptor.setPreemptiveAuth(context, uri, authInfo);
+        client.addRequestInterceptor(new PreemptiveAuthInterceptor());
+        return context;
+    }
+
+    /**
+     * リゾルバを指定した場合に使用する、デフォルトのトラストストアの{@link SSLContext}を保持するクラスです。 最初に使用する時に生成します。
+     */
+    private static class DefaultSSLContextHolder {
+
+        /** デフォルトのトラストストアの{@link SSLContext} */
+        static final SSLContext SSL_CONTEXT = TlsSocketFactory.createSSLContext(0, 0);
+
+    }
+
 }
@@ -15,8 +15,11 @@
  */
 package jp.ambrosoli.quickrestclient.apache.service;
 
+import jp.ambrosoli.quickrestclient.client.ClientConfig;
+import jp.ambrosoli.quickrestclient.client.PooledHttpServiceFactory;
 import jp.ambrosoli.quickrestclient.service.HttpService;
 import jp.ambrosoli.quickrestclient.service.HttpServiceFactory;
+import jp.ambrosoli.quickrestclient.service.PooledHttpService;
 
 /**
  * {@link ApacheHttpService}を生成するファクトリクラスです。
@@ -24,11 +27,20 @@ import jp.ambrosoli.quickrestclient.service.HttpServiceFactory;
  * @author willard379
  * @since 0.1.0
  */
-public class ApacheHttpServiceFactory extends HttpServiceFactory {
+public class ApacheHttpServiceFactory extends HttpServiceFactory implements PooledHttpServiceFactory {
 
     @Override
     public HttpService create() {
         return new ApacheHttpService();
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.client.PooledHttpServiceFactory#create(jp.ambrosoli.quickrestclient.client.ClientConfig)
+     */
+    public PooledHttpService create(final ClientConfig config) {
+        return new PooledApacheHttpService(config);
+    }
+
 }
@@ -0,0 +1,767 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpException;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.HttpRequestRetryHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.HostNameResolver;
+import org.apache.http.conn.scheme.LayeredSocketFactory;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+import jp.ambrosoli.quickrestclient.apache.conn.ConnectionLeakDetector;
+import jp.ambrosoli.quickrestclient.apache.conn.DnsHostNameResolver;
+import jp.ambrosoli.quickrestclient.apache.conn.HostConnPerRoute;
+import jp.ambrosoli.quickrestclient.apache.conn.HostKeepAliveStrategy;
+import jp.ambrosoli.quickrestclient.apache.conn.IdleConnectionEvictor;
+import jp.ambrosoli.quickrestclient.apache.conn.LocalAddressSelector;
+import jp.ambrosoli.quickrestclient.apache.conn.PartitionedClientConnManager;
+import jp.ambrosoli.quickrestclient.apache.conn.PoolingClientConnManager;
+import jp.ambrosoli.quickrestclient.apache.conn.PoolingConnPool;
+import jp.ambrosoli.quickrestclient.apache.conn.TlsClientConnectionOperator;
+import jp.ambrosoli.quickrestclient.apache.conn.TlsHandshakeInterceptor;
+import jp.ambrosoli.quickrestclient.apache.conn.TlsSocketFactory;
+import jp.ambrosoli.quickrestclient.apache.headers.ApacheHeaderBuilder;
+import jp.ambrosoli.quickrestclient.apache.headers.DefaultHeadersInterceptor;
+import jp.ambrosoli.quickrestclient.apache.headers.DigestChallengeCache;
+import jp.ambrosoli.quickrestclient.apache.headers.PreemptiveAuthInterceptor;
+import jp.ambrosoli.quickrestclient.apache.headers.ProxyAuthCache;
+import jp.ambrosoli.quickrestclient.client.ClientConfig;
+import jp.ambrosoli.quickrestclient.enums.TlsHandshake;
+import jp.ambrosoli.quickrestclient.exception.IORuntimeException;
+import jp.ambrosoli.quickrestclient.headers.HttpHeaders;
+import jp.ambrosoli.quickrestclient.params.AuthInfo;
+import jp.ambrosoli.quickrestclient.request.HttpRequest;
+import jp.ambrosoli.quickrestclient.response.AbstractHttpResponse;
+import jp.ambrosoli.quickrestclient.response.HttpResponse;
+import jp.ambrosoli.quickrestclient.service.PoolStats;
+import jp.ambrosoli.quickrestclient.service.PooledHttpService;
+import jp.ambrosoli.quickrestclient.util.URIUtil;
+
+/**
+ * コネクションプールを共有してRESTエンドポイントのサービス呼び出しを行うクラスです。
+ * <p>
+ * {@link ApacheHttpService}はリクエスト毎にコネクションマネージャを生成・破棄しますが、このクラスは
+ * 1つの{@link ClientConnectionManager}と{@link AbstractHttpClient}
+ * をインスタンスの生存期間中保持し、Keep-Aliveによるコネクションの再利用を行います。
+ * {@link ClientConfig}の値は生成時にクライアント共通のパラメータとして一度だけ設定され、
+ * リクエストの値が{@link ClientConfig}と異なる場合のみリクエスト単位のパラメータとコンテキストに設定されます。
+ * そのため1つのインスタンスを複数のスレッドから同時に使用できます。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class PooledApacheHttpService extends ApacheHttpService implements PooledHttpService {
+
+    /** プールタイムアウトが無期限の場合に事前生成でコネクションの取得を待機する時間（ミリ秒） */
+    private static final long PREWARM_POOL_TIMEOUT = 1000L;
+
+    /** クライアントの設定 */
+    protected final ClientConfig config;
+
+    /** クライアント共通の{@link HttpParams} */
+    protected final HttpParams httpParams;
+
+    /** 共有するコネクションマネージャ */
+    protected final ClientConnectionManager connectionManager;
+
+    /** 共有する{@link AbstractHttpClient} */
+    protected final AbstractHttpClient httpClient;
+
+    /** アイドルコネクションを破棄するスレッド */
+    protected final IdleConnectionEvictor evictor;
+
+    /** Digest認証の認証要求のキャッシュ */
+    private final DigestChallengeCache digestChallengeCache = new DigestChallengeCache();
+
+    /** プロキシ認証の認証方式のキャッシュ */
+    private final ProxyAuthCache proxyAuthCache = new ProxyAuthCache();
+
+    /** 終了している場合true */
+    private volatile boolean shutdown;
+
+    /** コネクションプールを解放した場合true */
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /** 実行中のリクエスト数 */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /** 実行中のリクエストの完了を待機するためのロック */
+    private final Object drainLock = new Object();
+
+    /**
+     * PooledApacheHttpServiceを生成します。
+     */
+    public PooledApacheHttpService() {
+        this(new ClientConfig());
+    }
+
+    /**
+     * 設定を指定してPooledApacheHttpServiceを生成します。<br />
+     * 設定はコピーして保持するため、生成後に設定を変更してもこのサービスには反映されません。
+     *
+     * @param config
+     *            クライアントの設定
+     */
+    public PooledApacheHttpService(final ClientConfig config) {
+        super();
+        if (config == null) {
+            throw new IllegalArgumentException(Messages.getString("message.config.null")); //$NON-NLS-1$
+        }
+        this.config = new ClientConfig(config);
+        this.httpParams = this.createHttpParams();
+        this.setProtocolVersion(this.httpParams, this.config.getProtocol());
+        this.setTimeout(this.httpParams, this.config.getConnectTimeout() >= 0 ? this.config.getConnectTimeout()
+                : this.config.getTimeout(), this.config.getReadTimeout() >= 0 ? this.config.getReadTimeout()
+                : this.config.getTimeout());
+        this.setProxy(this.httpParams, this.config.getProxyInfo());
+        this.setCharset(this.httpParams, this.config.getCharset());
+        this.setPoolLimits(this.httpParams, this.config);
+        this.setConnectParams(this.httpParams, this.config);
+        this.setSocketParams(this.httpParams, this.config);
+        HttpConnectionParams.setStaleCheckingEnabled(this.httpParams, this.config.isStaleCheckingEnabled());
+
+        SchemeRegistry schreg = this.createSchemeRegistry();
+        this.connectionManager = this.createClientConnectionManager(this.httpParams, schreg);
+        this.httpClient = this.createHttpClient(this.connectionManager, this.httpParams);
+        this.setKeepAliveStrategy(this.httpClient, this.config);
+        this.setDefaultHeaders(this.httpClient, this.config.getHeaders());
+        this.httpClient.addResponseInterceptor(new TlsHandshakeInterceptor());
+        this.httpClient.addRequestInterceptor(new PreemptiveAuthInterceptor());
+        this.addDigestAuthCacheInterceptor(this.httpClient);
+        this.setProxyCredentials(this.config.getProxyInfo(), this.httpClient.getCredentialsProvider());
+        this.addProxyAuthCacheInterceptor(this.httpClient);
+        this.setRetryHandler(this.httpClient);
+
+        this.evictor = this.createIdleConnectionEvictor(this.connectionManager, this.config);
+        if (this.evictor != null) {
+            this.evictor.start();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * jp.ambrosoli.quickrestclient.apache.service.ApacheHttpService#execute
+     * (jp.ambrosoli.quickrestclient.request.HttpRequest)
+     */
+    @Override
+    public HttpResponse execute(final HttpRequest request) {
+        this.inFlight.incrementAndGet();
+        try {
+            if (this.shutdown) {
+                throw new IllegalStateException(Messages.getString("message.service.shutdown")); //$NON-NLS-1$
+            }
+            return this.executeRequest(request);
+        } finally {
+            if (this.inFlight.decrementAndGet() == 0 && this.shutdown) {
+                synchronized (this.drainLock) {
+                    this.drainLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * 共有する{@link AbstractHttpClient}を使用してリクエストを送信し、レスポンスを返します。
+     *
+     * @param request
+     *            リクエスト
+     * @return レスポンス
+     */
+    protected HttpResponse executeRequest(final HttpRequest request) {
+        URI uri = request.getUri();
+        HttpUriRequest httpUriRequest = this.createHttpUriRequest(uri, request.getMethod(),
+                request.getParams(), request.getCharset());
+        this.setHeaders(httpUriRequest, request.getHeaders());
+
+        HttpParams requestParams = httpUriRequest.getParams();
+        if (!isEqual(request.getProtocol(), this.config.getProtocol())) {
+            this.setProtocolVersion(requestParams, request.getProtocol());
+        }
+        int connectTimeout = limitTimeout(request.getConnectTimeout(), request.getDeadline());
+        int readTimeout = limitTimeout(request.getReadTimeout(), request.getDeadline());
+        if (connectTimeout != HttpConnectionParams.getConnectionTimeout(this.httpParams)
+                || readTimeout != HttpConnectionParams.getSoTimeout(this.httpParams)) {
+            this.setTimeout(requestParams, connectTimeout, readTimeout);
+        }
+        if (request.getPoolTimeout() >= 0) {
+            ConnManagerParams.setTimeout(requestParams, request.getPoolTimeout());
+        }
+        if (request.getProxyInfo() != this.config.getProxyInfo()) {
+            this.setProxy(requestParams, request.getProxyInfo());
+        }
+        if (!isEqual(request.getCharset(), this.config.getCharset())) {
+            this.setCharset(requestParams, request.getCharset());
+        }
+        if (request.getDnsResolver() != null && request.getDnsResolver() != this.config.getDnsResolver()) {
+            requestParams.setParameter(TlsClientConnectionOperator.DNS_RESOLVER, request.getDnsResolver());
+        }
+
+        HttpContext context = this.createHttpContext(uri, request);
+        HttpResponse response = this.executeHttpClient(this.httpClient, httpUriRequest, context,
+                request.getDeadline());
+        if (response instanceof AbstractHttpResponse) {
+            TlsHandshake handshake = (TlsHandshake) context.getAttribute(TlsHandshakeInterceptor.TLS_HANDSHAKE);
+            if (handshake != null) {
+                ((AbstractHttpResponse) response).setTlsHandshake(handshake);
+            }
+        }
+        return response;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.service.PooledHttpService#shutdown()
+     */
+    public void shutdown() {
+        this.shutdown(0L, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * jp.ambrosoli.quickrestclient.service.PooledHttpService#shutdown(long,
+     * java.util.concurrent.TimeUnit)
+     */
+    public boolean shutdown(final long timeout, final TimeUnit unit) {
+        this.shutdown = true;
+        boolean drained = this.awaitInFlight(unit.toMillis(timeout));
+        if (this.released.compareAndSet(false, true)) {
+            if (this.evictor != null) {
+                this.evictor.shutdown();
+            }
+            this.connectionManager.shutdown();
+        }
+        return drained;
+    }
+
+    /**
+     * 実行中のリクエストがすべて完了するまで待機します。
+     *
+     * @param timeout
+     *            最大待機時間（ミリ秒）
+     * @return 実行中のリクエストがすべて完了した場合true、タイムアウトまたは割り込みが発生した場合false
+     */
+    private boolean awaitInFlight(final long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (this.drainLock) {
+            while (this.inFlight.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    this.drainLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 実行中のリクエスト数を返します。
+     *
+     * @return 実行中のリクエスト数
+     */
+    public int getInFlightCount() {
+        return this.inFlight.get();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.service.PooledHttpService#isShutdown()
+     */
+    public boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.service.PooledHttpService#getPoolStats()
+     */
+    public PoolStats getPoolStats() {
+        PoolStats stats;
+        if (this.connectionManager instanceof PoolingClientConnManager) {
+            stats = ((PoolingClientConnManager) this.connectionManager).getPoolStats();
+        } else if (this.connectionManager instanceof PartitionedClientConnManager) {
+            stats = ((PartitionedClientConnManager) this.connectionManager).getPoolStats();
+        } else {
+            stats = new PoolStats();
+        }
+        if (this.evictor != null) {
+            stats.setEvictionRunCount(this.evictor.getRunCount());
+        }
+        ConnectionLeakDetector leakDetector = this.getLeakDetector();
+        if (leakDetector != null) {
+            stats.setLeakCount(leakDetector.getLeakCount());
+        }
+        return stats;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.service.PooledHttpService#prewarm(java.net.URI, int)
+     */
+    public int prewarm(final URI uri, final int count) {
+        if (this.shutdown) {
+            throw new IllegalStateException(Messages.getString("message.service.shutdown")); //$NON-NLS-1$
+        }
+        if (uri == null) {
+            throw new IllegalArgumentException(Messages.getString("message.url.null")); //$NON-NLS-1$
+        }
+        if (count <= 0) {
+            throw new IllegalArgumentException(Messages.getString("message.prewarm.count.illegal")); //$NON-NLS-1$
+        }
+
+        HttpContext context = new BasicHttpContext();
+        HttpRoute route = this.determineRoute(uri, context);
+        if (route.isTunnelled()) {
+            // プロキシー経由のトンネル接続はCONNECTリクエストが必要なため事前生成しない
+            return 0;
+        }
+
+        // ルート毎の上限を超えて要求すると、プールの空きを待ち続けてしまう
+        int limit = Math.min(count, ConnManagerParams.getMaxConnectionsPerRoute(this.httpParams).getMaxForRoute(route));
+        long poolTimeout = this.config.getPoolTimeout() > 0 ? this.config.getPoolTimeout() : PREWARM_POOL_TIMEOUT;
+
+        // すべてのコネクションを同時に保持しないと、プールから同じコネクションが返されてしまう
+        List<ManagedClientConnection> connections = new ArrayList<ManagedClientConnection>(limit);
+        try {
+            for (int i = 0; i < limit; i++) {
+                ManagedClientConnection conn;
+                try {
+                    conn = this.connectionManager.requestConnection(route, null).getConnection(poolTimeout,
+                            TimeUnit.MILLISECONDS);
+                } catch (ConnectionPoolTimeoutException e) {
+                    break;
+                }
+                connections.add(conn);
+                if (!conn.isOpen()) {
+                    conn.open(route, context, this.httpParams);
+                }
+                conn.markReusable();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            this.releaseConnections(connections);
+            throw new IORuntimeException(e);
+        }
+        this.releaseConnections(connections);
+        return connections.size();
+    }
+
+    /**
+     * クライアントの設定のコピーを返します。返された設定を変更しても、このサービスには反映されません。
+     *
+     * @return クライアントの設定
+     */
+    public ClientConfig getConfig() {
+        return new ClientConfig(this.config);
+    }
+
+    /**
+     * 共有するコネクションマネージャを返します。
+     *
+     * @return コネクションマネージャ
+     */
+    public ClientConnectionManager getConnectionManager() {
+        return this.connectionManager;
+    }
+
+    /**
+     * アイドルコネクションを破棄するスレッドを返します。
+     *
+     * @return アイドルコネクションを破棄するスレッド。破棄処理を行わない場合はnull
+     */
+    public IdleConnectionEvictor getIdleConnectionEvictor() {
+        return this.evictor;
+    }
+
+    /**
+     * コネクションのリーク検出を返します。
+     *
+     * @return リーク検出。検出しない場合はnull
+     */
+    public ConnectionLeakDetector getLeakDetector() {
+        if (this.connectionManager instanceof PoolingClientConnManager) {
+            return ((PoolingClientConnManager) this.connectionManager).getLeakDetector();
+        }
+        if (this.connectionManager instanceof PartitionedClientConnManager) {
+            return ((PartitionedClientConnManager) this.connectionManager).getLeakDetector();
+        }
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * jp.ambrosoli.quickrestclient.apache.service.ApacheHttpService#createClientConnectionManager
+     * (org.apache.http.params.HttpParams,
+     * org.apache.http.conn.scheme.SchemeRegistry)
+     */
+    @Override
+    protected ClientConnectionManager createClientConnectionManager(final HttpParams params,
+            final SchemeRegistry schreg) {
+        ConnectionLeakDetector leakDetector = this.createLeakDetector(this.config);
+        if (this.config.isPartitionedPool()) {
+            PartitionedClientConnManager conman = new PartitionedClientConnManager(params, schreg);
+            conman.setLeakDetector(leakDetector);
+            return conman;
+        }
+        PoolingClientConnManager conman = new PoolingClientConnManager(params, schreg);
+        conman.setLeakDetector(leakDetector);
+        return conman;
+    }
+
+    /**
+     * コネクションのリーク検出を生成します。
+     *
+     * @param config
+     *            クライアントの設定
+     * @return リーク検出。検出しない場合はnull
+     */
+    protected ConnectionLeakDetector createLeakDetector(final ClientConfig config) {
+        if (config.getLeakDetectionInterval() <= 0) {
+            return null;
+        }
+        return new ConnectionLeakDetector(config.getLeakDetectionInterval(), config.getLeakDetectionThreshold());
+    }
+
+    /**
+     * アイドルコネクションを破棄するスレッドを生成します。
+     *
+     * @param conman
+     *            コネクションマネージャ
+     * @param config
+     *            クライアントの設定
+     * @return 生成したスレッド。実行間隔に0以下が設定されている場合はnull
+     */
+    protected IdleConnectionEvictor createIdleConnectionEvictor(final ClientConnectionManager conman,
+            final ClientConfig config) {
+        if (config.getEvictionInterval() <= 0) {
+            return null;
+        }
+        return new IdleConnectionEvictor(conman, config.getIdleConnectionTimeout(), config.getEvictionInterval());
+    }
+
+    /**
+     * URIの接続先へのルートを、クライアント共通のパラメータ（プロキシー等）に基づいて決定します。
+     *
+     * @param uri
+     *            接続先のURI
+     * @param context
+     *            HttpContext
+     * @return ルート
+     */
+    protected HttpRoute determineRoute(final URI uri, final HttpContext context) {
+        HttpHost target = new HttpHost(uri.getHost(), uri.getPort(), uri.getScheme());
+        BasicHttpRequest request = new BasicHttpRequest("GET", uri.toString()); //$NON-NLS-1$
+        request.setParams(this.httpParams);
+        try {
+            return this.httpClient.getRoutePlanner().determineRoute(target, request, context);
+        } catch (HttpException e) {
+            throw new IllegalArgumentException(Messages.getString("message.invalid.scheme"), e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * コネクションをコネクションプールに返却します。オープンしていて再利用可能なコネクションはプールに残ります。
+     *
+     * @param connections
+     *            返却するコネクション
+     */
+    protected void releaseConnections(final List<ManagedClientConnection> connections) {
+        for (ManagedClientConnection conn : connections) {
+            this.connectionManager.releaseConnection(conn, this.config.getKeepAliveDuration(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * http/httpsの両方のスキームを登録した{@link SchemeRegistry}を生成します。
+     *
+     * @return 生成した{@link SchemeRegistry}のインスタンス
+     */
+    protected SchemeRegistry createSchemeRegistry() {
+        HostNameResolver nameResolver = this.createHostNameResolver(this.config);
+        SchemeRegistry schreg = new SchemeRegistry();
+        schreg.register(new Scheme(URIUtil.SCHEME_NAME_HTTP, nameResolver != null ? new PlainSocketFactory(
+                nameResolver) : PlainSocketFactory.getSocketFactory(), URIUtil.PORT_HTTP));
+        schreg.register(new Scheme(URIUtil.SCHEME_NAME_HTTPS, this.createSSLSocketFactory(this.config),
+                URIUtil.PORT_SSL));
+        return schreg;
+    }
+
+    /**
+     * クライアントで共有するhttps用のソケットファクトリを生成します。<br />
+     * {@link ClientConfig}に{@link SSLContext}が設定されていない場合は、クライアント毎に1つ生成します。
+     *
+     * @param config
+     *            クライアントの設定
+     * @return 生成したソケットファクトリ
+     */
+    protected LayeredSocketFactory createSSLSocketFactory(final ClientConfig config) {
+        SSLContext sslContext = config.getSslContext();
+        if (sslContext == null) {
+            sslContext = TlsSocketFactory.createSSLContext(config.getSslSessionCacheSize(),
+                    config.getSslSessionTimeout());
+        } else {
+            TlsSocketFactory.configureSessionCache(sslContext, config.getSslSessionCacheSize(),
+                    config.getSslSessionTimeout());
+        }
+        return new TlsSocketFactory(sslContext, config.getSslProtocols(), config.getSslCipherSuites(), null,
+                this.createHostNameResolver(config));
+    }
+
+    /**
+     * {@link ClientConfig}に設定されたリゾルバでホスト名を解決する{@link HostNameResolver}を生成します。
+     *
+     * @param config
+     *            クライアントの設定
+     * @return 生成した{@link HostNameResolver}。リゾルバが設定されていない場合はnull
+     */
+    protected HostNameResolver createHostNameResolver(final ClientConfig config) {
+        if (config.getDnsResolver() == null) {
+            return null;
+        }
+        return new DnsHostNameResolver(config.getDnsResolver());
+    }
+
+    /**
+     * Digest認証の認証要求のキャッシュを返します。キャッシュはクライアント毎に保持します。
+     *
+     * @return Digest認証の認証要求のキャッシュ
+     */
+    @Override
+    protected DigestChallengeCache getDigestChallengeCache() {
+        return this.digestChallengeCache;
+    }
+
+    /**
+     * プロキシ認証の認証方式のキャッシュを返します。キャッシュはクライアント毎に保持します。
+     *
+     * @return プロキシ認証の認証方式のキャッシュ
+     */
+    @Override
+    protected ProxyAuthCache getProxyAuthCache() {
+        return this.proxyAuthCache;
+    }
+
+    /**
+     * リクエスト毎の{@link HttpContext}を生成します。認証情報はクライアント間で共有せず、このコンテキストに設定します。<br />
+     * クライアント共通のBasic/Digest認証の情報も、リクエストURIのホストとポートを対象としてこのコンテキストに設定します。
+     *
+     * @param uri
+     *            リクエストURI
+     * @param request
+     *            リクエスト
+     * @return 生成した{@link HttpContext}
+     */
+    protected HttpContext createHttpContext(final URI uri, final HttpRequest request) {
+        HttpContext context = new BasicHttpContext();
+        boolean authChanged = request.getAuthInfo() != null
+                && !isEqual(request.getAuthInfo(), this.config.getAuthInfo());
+        boolean proxyChanged = request.getProxyInfo() != null && request.getProxyInfo().getUsername() != null
+                && request.getProxyInfo() != this.config.getProxyInfo();
+        AuthInfo authInfo = authChanged ? request.getAuthInfo() : this.config.getAuthInfo();
+        if (authInfo != null || proxyChanged) {
+            // コンテキストの認証情報はクライアントの認証情報を置き換えるため、プロキシの認証情報も設定する
+            CredentialsProvider provider = new BasicCredentialsProvider();
+            this.setCredentialsAuthenticate(uri, authInfo, provider);
+            this.setProxyCredentials(proxyChanged ? request.getProxyInfo() : this.config.getProxyInfo(), provider);
+            context.setAttribute(ClientContext.CREDS_PROVIDER, provider);
+        }
+        // クライアント共通の認証情報もリクエストURIの対象範囲に限定し、他のホストやリダイレクト先へ送信しない
+        PreemptiveAuthInterceptor.setPreemptiveAuth(context, uri, authInfo);
+        return context;
+    }
+
+    /**
+     * コネクションプールの最大コネクション数、取得待ちタイムアウト時間、コネクションの最大生存期間を設定します。
+     *
+     * @param httpParams
+     *            HttpParams
+     * @param config
+     *            クライアントの設定
+     */
+    protected void setPoolLimits(final HttpParams httpParams, final ClientConfig config) {
+        ConnManagerParams.setMaxTotalConnections(httpParams, config.getMaxConnectionsTotal());
+        ConnManagerParams.setMaxConnectionsPerRoute(httpParams,
+                new HostConnPerRoute(config.getMaxConnectionsPerRoute(), config.getMaxConnectionsPerHost()));
+        ConnManagerParams.setTimeout(httpParams, config.getPoolTimeout());
+        httpParams.setLongParameter(PoolingConnPool.CONNECTION_TIME_TO_LIVE, config.getConnectionTimeToLive());
+    }
+
+    /**
+     * 複数のアドレスに解決されるホストへの接続で使用する試行間隔とリゾルバ、ソケットをバインドするローカルアドレスを設定します。
+     *
+     * @param httpParams
+     *            HttpParams
+     * @param config
+     *            クライアントの設定
+     */
+    protected void setConnectParams(final HttpParams httpParams, final ClientConfig config) {
+        httpParams.setIntParameter(TlsClientConnectionOperator.CONNECT_ATTEMPT_DELAY, config.getConnectAttemptDelay());
+        if (config.getDnsResolver() != null) {
+            httpParams.setParameter(TlsClientConnectionOperator.DNS_RESOLVER, config.getDnsResolver());
+        }
+        if (!config.getLocalAddresses().isEmpty()) {
+            httpParams.setParameter(TlsClientConnectionOperator.LOCAL_ADDRESS_SELECTOR, new LocalAddressSelector(
+                    config.getLocalAddresses()));
+        }
+    }
+
+    /**
+     * TCP_NODELAY、SO_SNDBUF、SO_RCVBUF、SO_KEEPALIVE、SO_LINGERと入出力バッファサイズを設定します。
+     *
+     * @param httpParams
+     *            HttpParams
+     * @param config
+     *            クライアントの設定
+     */
+    protected void setSocketParams(final HttpParams httpParams, final ClientConfig config) {
+        HttpConnectionParams.setTcpNoDelay(httpParams, config.isTcpNoDelay());
+        HttpConnectionParams.setLinger(httpParams, config.getLinger());
+        HttpConnectionParams.setSocketBufferSize(httpParams, config.getSocketBufferSize());
+        httpParams.setIntParameter(TlsClientConnectionOperator.SO_SNDBUF, config.getSendBufferSize());
+        httpParams.setIntParameter(TlsClientConnectionOperator.SO_RCVBUF, config.getReceiveBufferSize());
+        httpParams.setBooleanParameter(TlsClientConnectionOperator.SO_KEEPALIVE, config.isSoKeepAlive());
+    }
+
+    /**
+     * このサービスの終了後はリクエストを再試行しない{@link HttpRequestRetryHandler}を設定します。<br />
+     * 終了時に中断されたリクエストが、再試行によって新しいコネクションで送信されることを防ぎます。
+     *
+     * @param client
+     *            {@link AbstractHttpClient}
+     */
+    protected void setRetryHandler(final AbstractHttpClient client) {
+        final HttpRequestRetryHandler delegate = client.getHttpRequestRetryHandler();
+        client.setHttpRequestRetryHandler(new HttpRequestRetryHandler() {
+            public boolean retryRequest(final IOException exception, final int executionCount,
+                    final HttpContext context) {
+                if (PooledApacheHttpService.this.shutdown) {
+                    return false;
+                }
+                return delegate.retryRequest(exception, executionCount, context);
+            }
+        });
+    }
+
+    /**
+     * コネクションの再利用期間を決定する{@link HostKeepAliveStrategy}を設定します。
+     *
+     * @param client
+     *            {@link AbstractHttpClient}
+     * @param config
+     *            クライアントの設定
+     */
+    protected void setKeepAliveStrategy(final AbstractHttpClient client, final ClientConfig config) {
+        client.setKeepAliveStrategy(new HostKeepAliveStrategy(config.getKeepAliveDuration(), config
+                .getKeepAliveDurationPerHost()));
+    }
+
+    /**
+     * クライアント共通のデフォルトHTTPヘッダーを設定します。
+     *
+     * @param client
+     *            {@link AbstractHttpClient}
+     * @param httpHeaders
+     *            デフォルトのHTTPヘッダー
+     */
+    protected void setDefaultHeaders(final AbstractHttpClient client, final HttpHeaders httpHeaders) {
+        if (httpHeaders == null || httpHeaders.isEmpty()) {
+            return;
+        }
+        Header[] headers = httpHeaders.getConformedHeaders(new ApacheHeaderBuilder());
+        if (headers == null || headers.length == 0) {
+            return;
+        }
+        client.addRequestInterceptor(new DefaultHeadersInterceptor(headers));
+    }
+
+    /**
+     * 2つの文字列が等しいかどうかを返します。
+     *
+     * @param a
+     *            文字列
+     * @param b
+     *            文字列
+     * @return 等しい場合（どちらもnullの場合を含む）true、その他の場合false
+     */
+    private static boolean isEqual(final String a, final String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * 2つの認証情報が同じ値かどうかを返します。<br />
+     * RestClientとこのサービスはそれぞれ設定のコピーを保持するため、認証情報は参照ではなく値で比較します。
+     *
+     * @param a
+     *            認証情報
+     * @param b
+     *            認証情報
+     * @return 同じ値の場合（どちらもnullの場合を含む）true、その他の場合false
+     */
+    private static boolean isEqual(final AuthInfo a, final AuthInfo b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.type == b.type && isEqual(a.username, b.username) && isEqual(a.password, b.password)
+                && a.preemptive == b.preemptive;
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.service;
+
+import jp.ambrosoli.quickrestclient.service.HttpService;
+import jp.ambrosoli.quickrestclient.service.HttpServiceFactory;
+
+/**
+ * コネクションプールを共有する{@link PooledApacheHttpService}を返すファクトリクラスです。
+ * <p>
+ * {@link #create()}は常に同じ{@link PooledApacheHttpService}を返すため、
+ * このファクトリを{@link HttpServiceFactory#register(String, HttpServiceFactory)}
+ * で登録すると、すべての{@link jp.ambrosoli.quickrestclient.request.HttpRequestBuilder#execute()}
+ * でコネクションが再利用されます。 アプリケーションの終了時には{@link #shutdown()}を呼び出してください。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class PooledApacheHttpServiceFactory extends ApacheHttpServiceFactory {
+
+    /** 共有するサービス */
+    private volatile PooledApacheHttpService service;
+
+    @Override
+    public HttpService create() {
+        PooledApacheHttpService result = this.service;
+        if (result == null) {
+            synchronized (this) {
+                result = this.service;
+                if (result == null) {
+                    result = this.createService();
+                    this.service = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 共有するサービスを終了し、コネクションプールを解放します。
+     */
+    public synchronized void shutdown() {
+        if (this.service != null) {
+            this.service.shutdown();
+        }
+    }
+
+    /**
+     * 共有する{@link PooledApacheHttpService}を生成します。
+     *
+     * @return {@link PooledApacheHttpService}のインスタンス
+     */
+    protected PooledApacheHttpService createService() {
+        return new PooledApacheHttpService();
+    }
+
+}
@@ -0,0 +1,1019 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.client;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.SSLContext;
+
+import jp.ambrosoli.quickrestclient.headers.HttpHeaders;
+import jp.ambrosoli.quickrestclient.net.DnsResolver;
+import jp.ambrosoli.quickrestclient.params.AuthInfo;
+import jp.ambrosoli.quickrestclient.params.NameValueObject;
+import jp.ambrosoli.quickrestclient.params.ProxyInfo;
+import jp.ambrosoli.quickrestclient.util.StringUtil;
+
+/**
+ * {@link RestClient}の設定を保持するクラスです。
+ * <p>
+ * ここで設定した値は{@link RestClient}から生成されるすべてのリクエストのデフォルト値になります。
+ * {@link RestClient}は生成時に設定をコピーするため、生成後に設定を変更しても、生成済みの{@link RestClient}には反映されません。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class ClientConfig {
+
+    /** デフォルトのタイムアウト時間 */
+    public static final int DEFAULT_TIMEOUT = 5000;
+
+    /** デフォルトのコネクションプール全体の最大コネクション数 */
+    public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 100;
+
+    /** デフォルトのルート（接続先ホスト）毎の最大コネクション数 */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+
+    /** デフォルトのコネクションプールからの取得待ちタイムアウト時間 */
+    public static final int DEFAULT_POOL_TIMEOUT = 1000;
+
+    /** デフォルトのアイドルコネクションの破棄までの時間 */
+    public static final int DEFAULT_IDLE_CONNECTION_TIMEOUT = 30000;
+
+    /** デフォルトのアイドルコネクション破棄処理の実行間隔 */
+    public static final int DEFAULT_EVICTION_INTERVAL = 5000;
+
+    /** デフォルトのコネクションの再利用期間 */
+    public static final long DEFAULT_KEEP_ALIVE_DURATION = 30000L;
+
+    /** デフォルトの次のアドレスへの接続を開始するまでの試行間隔 */
+    public static final int DEFAULT_CONNECT_ATTEMPT_DELAY = 250;
+
+    /** デフォルトのソケットの入出力バッファサイズ */
+    public static final int DEFAULT_SOCKET_BUFFER_SIZE = 8192;
+
+    /** 使用する{@link jp.ambrosoli.quickrestclient.service.HttpServiceFactory}の識別子 */
+    protected String factoryName;
+
+    /** タイムアウト（ミリ秒） */
+    protected int timeout = DEFAULT_TIMEOUT;
+
+    /** 接続タイムアウト（ミリ秒）。負の値の場合は{@link #timeout}を使用する */
+    protected int connectTimeout = -1;
+
+    /** 読み込みタイムアウト（ミリ秒）。負の値の場合は{@link #timeout}を使用する */
+    protected int readTimeout = -1;
+
+    /** リクエスト全体の期限（ミリ秒）。0以下の場合は期限なし */
+    protected long deadline;
+
+    /** 文字コード */
+    protected String charset = StringUtil.DEFAULT_ENCODING;
+
+    /** プロトコルバージョン */
+    protected String protocol;
+
+    /** デフォルトのHTTPヘッダー */
+    protected HttpHeaders headers;
+
+    /** プロキシーの情報 */
+    protected ProxyInfo proxyInfo;
+
+    /** HTTP認証の情報 */
+    protected AuthInfo authInfo;
+
+    /** コネクションプール全体の最大コネクション数 */
+    protected int maxConnectionsTotal = DEFAULT_MAX_CONNECTIONS_TOTAL;
+
+    /** ルート毎の最大コネクション数 */
+    protected int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+    /** ホスト名毎の最大コネクション数 */
+    protected Map<String, Integer> maxConnectionsPerHost = new HashMap<String, Integer>();
+
+    /** コネクションプールからの取得待ちタイムアウト（ミリ秒） */
+    protected int poolTimeout = DEFAULT_POOL_TIMEOUT;
+
+    /** アイドルコネクションの破棄までの時間（ミリ秒） */
+    protected int idleConnectionTimeout = DEFAULT_IDLE_CONNECTION_TIMEOUT;
+
+    /** コネクションの最大生存期間（ミリ秒） */
+    protected long connectionTimeToLive;
+
+    /** アイドルコネクション破棄処理の実行間隔（ミリ秒） */
+    protected int evictionInterval = DEFAULT_EVICTION_INTERVAL;
+
+    /** コネクションの再利用期間（ミリ秒） */
+    protected long keepAliveDuration = DEFAULT_KEEP_ALIVE_DURATION;
+
+    /** ホスト名毎のコネクションの再利用期間（ミリ秒） */
+    protected Map<String, Long> keepAliveDurationPerHost = new HashMap<String, Long>();
+
+    /** コネクション取得時に切断されていないか確認する場合true */
+    protected boolean staleCheckingEnabled = true;
+
+    /** ルート毎に分割したコネクションプールを使用する場合true */
+    protected boolean partitionedPool;
+
+    /** コネクションのリークを検出する間隔（取得回数） */
+    protected int leakDetectionInterval;
+
+    /** コネクションのリークとみなす保持期間（ミリ秒） */
+    protected long leakDetectionThreshold;
+
+    /** httpsで使用する{@link SSLContext} */
+    protected SSLContext sslContext;
+
+    /** httpsで使用するプロトコル */
+    protected String[] sslProtocols;
+
+    /** httpsで使用する暗号スイート */
+    protected String[] sslCipherSuites;
+
+    /** SSLセッションキャッシュの最大数 */
+    protected int sslSessionCacheSize;
+
+    /** キャッシュしたSSLセッションの有効期間（秒） */
+    protected int sslSessionTimeout;
+
+    /** ホスト名の名前解決を行うリゾルバ */
+    protected DnsResolver dnsResolver;
+
+    /** 次のアドレスへの接続を開始するまでの試行間隔（ミリ秒） */
+    protected int connectAttemptDelay = DEFAULT_CONNECT_ATTEMPT_DELAY;
+
+    /** ソケットをバインドするローカルアドレス */
+    protected List<InetAddress> localAddresses = new ArrayList<InetAddress>();
+
+    /** Nagleアルゴリズムを無効にするかどうか（TCP_NODELAY） */
+    protected boolean tcpNoDelay = true;
+
+    /** ソケットの送信バッファサイズ（SO_SNDBUF） */
+    protected int sendBufferSize;
+
+    /** ソケットの受信バッファサイズ（SO_RCVBUF） */
+    protected int receiveBufferSize;
+
+    /** TCPキープアライブを有効にするかどうか（SO_KEEPALIVE） */
+    protected boolean soKeepAlive;
+
+    /** ソケットを閉じる際の待機時間（SO_LINGER、秒） */
+    protected int linger = -1;
+
+    /** ソケットの入出力バッファサイズ */
+    protected int socketBufferSize = DEFAULT_SOCKET_BUFFER_SIZE;
+
+    /**
+     * ClientConfigを生成します。
+     */
+    public ClientConfig() {
+        super();
+    }
+
+    /**
+     * 指定した設定をコピーしたClientConfigを生成します。<br />
+     * ヘッダー、認証情報、ホスト名毎の設定、ローカルアドレス、httpsのプロトコルと暗号スイートは複製するため、
+     * コピー元の設定を変更してもコピーには反映されません。
+     *
+     * @param config
+     *            コピー元の設定
+     * @throws IllegalArgumentException
+     *             設定がnullの場合
+     */
+    public ClientConfig(final ClientConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException(Messages.getString("message.config.null")); //$NON-NLS-1$
+        }
+        this.factoryName = config.factoryName;
+        this.timeout = config.timeout;
+        this.connectTimeout = config.connectTimeout;
+        this.readTimeout = config.readTimeout;
+        this.deadline = config.deadline;
+        this.charset = config.charset;
+        this.protocol = config.protocol;
+        this.proxyInfo = config.proxyInfo;
+        this.maxConnectionsTotal = config.maxConnectionsTotal;
+        this.maxConnectionsPerRoute = config.maxConnectionsPerRoute;
+        this.poolTimeout = config.poolTimeout;
+        this.idleConnectionTimeout = config.idleConnectionTimeout;
+        this.connectionTimeToLive = config.connectionTimeToLive;
+        this.evictionInterval = config.evictionInterval;
+        this.keepAliveDuration = config.keepAliveDuration;
+        this.staleCheckingEnabled = config.staleCheckingEnabled;
+        this.partitionedPool = config.partitionedPool;
+        this.leakDetectionInterval = config.leakDetectionInterval;
+        this.leakDetectionThreshold = config.leakDetectionThreshold;
+        this.sslContext = config.sslContext;
+        this.sslSessionCacheSize = config.sslSessionCacheSize;
+        this.sslSessionTimeout = config.sslSessionTimeout;
+        this.dnsResolver = config.dnsResolver;
+        this.connectAttemptDelay = config.connectAttemptDelay;
+        this.tcpNoDelay = config.tcpNoDelay;
+        this.sendBufferSize = config.sendBufferSize;
+        this.receiveBufferSize = config.receiveBufferSize;
+        this.soKeepAlive = config.soKeepAlive;
+        this.linger = config.linger;
+        this.socketBufferSize = config.socketBufferSize;
+        if (config.headers != null) {
+            this.headers = new HttpHeaders();
+            this.headers.addHeaders(config.headers.getHeaders());
+        }
+        if (config.authInfo != null) {
+            this.authInfo = new AuthInfo(config.authInfo.type, config.authInfo.username, config.authInfo.password,
+                    config.authInfo.preemptive);
+        }
+        this.maxConnectionsPerHost.putAll(config.maxConnectionsPerHost);
+        this.keepAliveDurationPerHost.putAll(config.keepAliveDurationPerHost);
+        this.localAddresses.addAll(config.localAddresses);
+        this.sslProtocols = config.sslProtocols != null ? config.sslProtocols.clone() : null;
+        this.sslCipherSuites = config.sslCipherSuites != null ? config.sslCipherSuites.clone() : null;
+    }
+
+    /**
+     * 使用する{@link jp.ambrosoli.quickrestclient.service.HttpServiceFactory}の識別子を返します。
+     *
+     * @return ファクトリーの識別子。デフォルトのファクトリーを使用する場合はnull
+     */
+    public String getFactoryName() {
+        return this.factoryName;
+    }
+
+    /**
+     * 使用する{@link jp.ambrosoli.quickrestclient.service.HttpServiceFactory}の識別子を設定します。
+     *
+     * @param factoryName
+     *            ファクトリーの識別子。デフォルトのファクトリーを使用する場合はnull
+     */
+    public void setFactoryName(final String factoryName) {
+        this.factoryName = factoryName;
+    }
+
+    /**
+     * タイムアウト時間を返します。
+     *
+     * @return タイムアウト時間
+     */
+    public int getTimeout() {
+        return this.timeout;
+    }
+
+    /**
+     * タイムアウト時間を設定します。
+     *
+     * @param timeout
+     *            タイムアウト時間
+     */
+    public void setTimeout(final int timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * 文字コードを返します。
+     *
+     * @return 文字コード
+     */
+    public String getCharset() {
+        return this.charset;
+    }
+
+    /**
+     * 文字コードを設定します。
+     *
+     * @param charset
+     *            文字コード
+     */
+    public void setCharset(final String charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * プロトコルバージョンを返します。
+     *
+     * @return プロトコルバージョン
+     */
+    public String getProtocol() {
+        return this.protocol;
+    }
+
+    /**
+     * プロトコルバージョンを設定します。
+     *
+     * @param protocol
+     *            プロトコルバージョン
+     */
+    public void setProtocol(final String protocol) {
+        this.protocol = protocol;
+    }
+
+    /**
+     * デフォルトのHTTPヘッダーを返します。
+     *
+     * @return HTTPヘッダー
+     */
+    public HttpHeaders getHeaders() {
+        return this.headers;
+    }
+
+    /**
+     * デフォルトのHTTPヘッダーを追加します。
+     *
+     * @param header
+     *            HTTPヘッダー
+     */
+    public void addHeader(final NameValueObject header) {
+        if (this.headers == null) {
+            this.headers = new HttpHeaders();
+        }
+        this.headers.addHeader(header);
+    }
+
+    /**
+     * デフォルトのHTTPヘッダーを追加します。
+     *
+     * @param headers
+     *            HTTPヘッダー
+     */
+    public void addHeaders(final List<? extends NameValueObject> headers) {
+        if (this.headers == null) {
+            this.headers = new HttpHeaders();
+        }
+        this.headers.addHeaders(headers);
+    }
+
+    /**
+     * プロキシーの情報を返します。
+     *
+     * @return プロキシーの情報
+     */
+    public ProxyInfo getProxyInfo() {
+        return this.proxyInfo;
+    }
+
+    /**
+     * プロキシーの情報を設定します。
+     *
+     * @param proxyInfo
+     *            プロキシーの情報
+     */
+    public void setProxyInfo(final ProxyInfo proxyInfo) {
+        this.proxyInfo = proxyInfo;
+    }
+
+    /**
+     * HTTP認証の情報を返します。
+     *
+     * @return 認証情報
+     */
+    public AuthInfo getAuthInfo() {
+        return this.authInfo;
+    }
+
+    /**
+     * HTTP認証の情報を設定します。
+     *
+     * @param authInfo
+     *            認証情報
+     */
+    public void setAuthInfo(final AuthInfo authInfo) {
+        this.authInfo = authInfo;
+    }
+
+    /**
+     * コネクションプール全体の最大コネクション数を返します。
+     *
+     * @return 最大コネクション数
+     */
+    public int getMaxConnectionsTotal() {
+        return this.maxConnectionsTotal;
+    }
+
+    /**
+     * コネクションプール全体の最大コネクション数を設定します。
+     *
+     * @param maxConnectionsTotal
+     *            最大コネクション数
+     */
+    public void setMaxConnectionsTotal(final int maxConnectionsTotal) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    /**
+     * ルート（接続先ホスト）毎の最大コネクション数を返します。
+     *
+     * @return 最大コネクション数
+     */
+    public int getMaxConnectionsPerRoute() {
+        return this.maxConnectionsPerRoute;
+    }
+
+    /**
+     * ルート（接続先ホスト）毎の最大コネクション数を設定します。
+     * {@link #setMaxConnectionsPerHost(String, int)}で個別に設定したホストには適用されません。
+     *
+     * @param maxConnectionsPerRoute
+     *            最大コネクション数
+     */
+    public void setMaxConnectionsPerRoute(final int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * ホスト名毎に個別に設定した最大コネクション数を返します。
+     *
+     * @return ホスト名をキーとした最大コネクション数（変更不可）
+     */
+    public Map<String, Integer> getMaxConnectionsPerHost() {
+        return Collections.unmodifiableMap(this.maxConnectionsPerHost);
+    }
+
+    /**
+     * 指定したホストへの最大コネクション数を設定します。
+     *
+     * @param host
+     *            ホスト名
+     * @param maxConnections
+     *            最大コネクション数
+     */
+    public void setMaxConnectionsPerHost(final String host, final int maxConnections) {
+        if (StringUtil.isEmpty(host)) {
+            throw new IllegalArgumentException(Messages.getString("message.host.null.blank")); //$NON-NLS-1$
+        }
+        this.maxConnectionsPerHost.put(host, Integer.valueOf(maxConnections));
+    }
+
+    /**
+     * コネクションプールからの取得待ちタイムアウト時間を返します。
+     *
+     * @return タイムアウト時間（ミリ秒）
+     */
+    public int getPoolTimeout() {
+        return this.poolTimeout;
+    }
+
+    /**
+     * コネクションプールからの取得待ちタイムアウト時間を設定します。<br />
+     * プールが枯渇した状態でこの時間を超えると
+     * {@link jp.ambrosoli.quickrestclient.exception.ConnectionPoolTimeoutRuntimeException}
+     * が発生します。0を指定すると無期限に待機します。
+     *
+     * @param poolTimeout
+     *            タイムアウト時間（ミリ秒）
+     */
+    public void setPoolTimeout(final int poolTimeout) {
+        this.poolTimeout = poolTimeout;
+    }
+
+    /**
+     * アイドルコネクションの破棄までの時間を返します。
+     *
+     * @return 破棄までの時間（ミリ秒）
+     */
+    public int getIdleConnectionTimeout() {
+        return this.idleConnectionTimeout;
+    }
+
+    /**
+     * アイドルコネクションの破棄までの時間を設定します。<br />
+     * プール内でこの時間を超えて使用されていないコネクションは、バックグラウンドで破棄されます。
+     * 0を指定するとアイドル時間による破棄を行いません。
+     *
+     * @param idleConnectionTimeout
+     *            破棄までの時間（ミリ秒）
+     */
+    public void setIdleConnectionTimeout(final int idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    /**
+     * コネクションの最大生存期間を返します。
+     *
+     * @return 最大生存期間（ミリ秒）
+     */
+    public long getConnectionTimeToLive() {
+        return this.connectionTimeToLive;
+    }
+
+    /**
+     * コネクションの最大生存期間を設定します。<br />
+     * 接続してからこの期間を超えたコネクションは再利用せずに破棄されます。0を指定すると無期限になります。
+     *
+     * @param connectionTimeToLive
+     *            最大生存期間（ミリ秒）
+     */
+    public void setConnectionTimeToLive(final long connectionTimeToLive) {
+        this.connectionTimeToLive = connectionTimeToLive;
+    }
+
+    /**
+     * アイドルコネクション破棄処理の実行間隔を返します。
+     *
+     * @return 実行間隔（ミリ秒）
+     */
+    public int getEvictionInterval() {
+        return this.evictionInterval;
+    }
+
+    /**
+     * アイドルコネクション破棄処理の実行間隔を設定します。<br />
+     * 0を指定するとバックグラウンドでの破棄処理を行いません。
+     *
+     * @param evictionInterval
+     *            実行間隔（ミリ秒）
+     */
+    public void setEvictionInterval(final int evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    /**
+     * コネクションの再利用期間を返します。
+     *
+     * @return 再利用期間（ミリ秒）
+     */
+    public long getKeepAliveDuration() {
+        return this.keepAliveDuration;
+    }
+
+    /**
+     * コネクションの再利用期間を設定します。<br />
+     * レスポンスを受信してからこの期間を超えたコネクションは再利用されません。
+     * サーバーが{@code Keep-Alive}ヘッダーでより短いタイムアウトを指定した場合は、サーバーの指定が優先されます。
+     * 0を指定するとサーバーの指定がない限り無期限になります。
+     * {@link #setKeepAliveDuration(String, long)}で個別に設定したホストには適用されません。
+     *
+     * @param keepAliveDuration
+     *            再利用期間（ミリ秒）
+     */
+    public void setKeepAliveDuration(final long keepAliveDuration) {
+        this.keepAliveDuration = keepAliveDuration;
+    }
+
+    /**
+     * ホスト名毎に個別に設定したコネクションの再利用期間を返します。
+     *
+     * @return ホスト名をキーとした再利用期間（ミリ秒、変更不可）
+     */
+    public Map<String, Long> getKeepAliveDurationPerHost() {
+        return Collections.unmodifiableMap(this.keepAliveDurationPerHost);
+    }
+
+    /**
+     * 指定したホストへのコネクションの再利用期間を設定します。
+     *
+     * @param host
+     *            ホスト名
+     * @param keepAliveDuration
+     *            再利用期間（ミリ秒）
+     */
+    public void setKeepAliveDuration(final String host, final long keepAliveDuration) {
+        if (StringUtil.isEmpty(host)) {
+            throw new IllegalArgumentException(Messages.getString("message.host.null.blank")); //$NON-NLS-1$
+        }
+        this.keepAliveDurationPerHost.put(host, Long.valueOf(keepAliveDuration));
+    }
+
+    /**
+     * コネクション取得時に切断されていないか確認するかどうかを返します。
+     *
+     * @return 確認する場合true
+     */
+    public boolean isStaleCheckingEnabled() {
+        return this.staleCheckingEnabled;
+    }
+
+    /**
+     * コネクション取得時に切断されていないか確認するかどうかを設定します。<br />
+     * 確認にはリクエスト毎にブロッキング読み込みが発生します。
+     * 再利用期間とアイドルコネクションの破棄によって切断済みのコネクションが使用されない場合は、falseを指定して確認を省略できます。
+     *
+     * @param staleCheckingEnabled
+     *            確認する場合true
+     */
+    public void setStaleCheckingEnabled(final boolean staleCheckingEnabled) {
+        this.staleCheckingEnabled = staleCheckingEnabled;
+    }
+
+    /**
+     * ルート毎に分割したコネクションプールを使用するかどうかを返します。
+     *
+     * @return 使用する場合true
+     */
+    public boolean isPartitionedPool() {
+        return this.partitionedPool;
+    }
+
+    /**
+     * ルート毎に分割したコネクションプールを使用するかどうかを設定します。<br />
+     * trueを指定すると、ルート毎のロックでコネクションの取得と返却を行うプールを使用します。
+     * 多数のスレッドが異なるホストへ同時にリクエストを送信する場合に、プール全体のロックによる待機を減らせます。
+     *
+     * @param partitionedPool
+     *            使用する場合true
+     */
+    public void setPartitionedPool(final boolean partitionedPool) {
+        this.partitionedPool = partitionedPool;
+    }
+
+    /**
+     * コネクションのリークを検出する間隔を返します。
+     *
+     * @return 検出する間隔（取得回数）。0以下の場合は検出しない
+     */
+    public int getLeakDetectionInterval() {
+        return this.leakDetectionInterval;
+    }
+
+    /**
+     * コネクションのリークを検出する間隔を設定します。<br />
+     * プールから取得したコネクションをこの回数に1回の割合で追跡し、返却されずにガベージコレクションされた場合に
+     * 取得時のスタックトレースとともに警告をログに出力します。1を指定するとすべてのコネクションを追跡します。
+     * 0を指定するとリークを検出しません。
+     *
+     * @param leakDetectionInterval
+     *            検出する間隔（取得回数）
+     */
+    public void setLeakDetectionInterval(final int leakDetectionInterval) {
+        this.leakDetectionInterval = leakDetectionInterval;
+    }
+
+    /**
+     * コネクションのリークとみなす保持期間を返します。
+     *
+     * @return 保持期間（ミリ秒）
+     */
+    public long getLeakDetectionThreshold() {
+        return this.leakDetectionThreshold;
+    }
+
+    /**
+     * コネクションのリークとみなす保持期間を設定します。<br />
+     * 追跡中のコネクションがこの期間を超えて返却されない場合にも警告をログに出力します。
+     * 0を指定するとガベージコレクションされたコネクションのみを検出します。
+     *
+     * @param leakDetectionThreshold
+     *            保持期間（ミリ秒）
+     */
+    public void setLeakDetectionThreshold(final long leakDetectionThreshold) {
+        this.leakDetectionThreshold = leakDetectionThreshold;
+    }
+
+    /**
+     * httpsで使用する{@link SSLContext}を返します。
+     *
+     * @return {@link SSLContext}。クライアント毎に生成する場合はnull
+     */
+    public SSLContext getSslContext() {
+        return this.sslContext;
+    }
+
+    /**
+     * httpsで使用する{@link SSLContext}を設定します。<br />
+     * 独自のトラストストアやクライアント証明書を使用する場合に設定します。
+     * 設定しない場合は、デフォルトのトラストストアを使用する{@link SSLContext}をクライアント毎に1つ生成します。
+     *
+     * @param sslContext
+     *            {@link SSLContext}
+     */
+    public void setSslContext(final SSLContext sslContext) {
+        this.sslContext = sslContext;
+    }
+
+    /**
+     * httpsで使用するプロトコルを返します。
+     *
+     * @return プロトコル。デフォルトを使用する場合はnull
+     */
+    public String[] getSslProtocols() {
+        return this.sslProtocols;
+    }
+
+    /**
+     * httpsで使用するプロトコル（例: TLSv1.2）を設定します。
+     *
+     * @param sslProtocols
+     *            プロトコル。デフォルトを使用する場合はnull
+     */
+    public void setSslProtocols(final String... sslProtocols) {
+        this.sslProtocols = sslProtocols;
+    }
+
+    /**
+     * httpsで使用する暗号スイートを返します。
+     *
+     * @return 暗号スイート。デフォルトを使用する場合はnull
+     */
+    public String[] getSslCipherSuites() {
+        return this.sslCipherSuites;
+    }
+
+    /**
+     * httpsで使用する暗号スイートを設定します。
+     *
+     * @param sslCipherSuites
+     *            暗号スイート。デフォルトを使用する場合はnull
+     */
+    public void setSslCipherSuites(final String... sslCipherSuites) {
+        this.sslCipherSuites = sslCipherSuites;
+    }
+
+    /**
+     * SSLセッションキャッシュの最大数を返します。
+     *
+     * @return 最大数
+     */
+    public int getSslSessionCacheSize() {
+        return this.sslSessionCacheSize;
+    }
+
+    /**
+     * SSLセッションキャッシュの最大数を設定します。0を指定するとJavaのデフォルト値を使用します。
+     *
+     * @param sslSessionCacheSize
+     *            最大数
+     */
+    public void setSslSessionCacheSize(final int sslSessionCacheSize) {
+        this.sslSessionCacheSize = sslSessionCacheSize;
+    }
+
+    /**
+     * キャッシュしたSSLセッションの有効期間を返します。
+     *
+     * @return 有効期間（秒）
+     */
+    public int getSslSessionTimeout() {
+        return this.sslSessionTimeout;
+    }
+
+    /**
+     * キャッシュしたSSLセッションの有効期間を設定します。0を指定するとJavaのデフォルト値を使用します。
+     *
+     * @param sslSessionTimeout
+     *            有効期間（秒）
+     */
+    public void setSslSessionTimeout(final int sslSessionTimeout) {
+        this.sslSessionTimeout = sslSessionTimeout;
+    }
+
+    /**
+     * ホスト名の名前解決を行うリゾルバを返します。
+     *
+     * @return リゾルバ。JVMの名前解決を使用する場合はnull
+     */
+    public DnsResolver getDnsResolver() {
+        return this.dnsResolver;
+    }
+
+    /**
+     * ホスト名の名前解決を行うリゾルバを設定します。<br />
+     * 名前解決の結果をキャッシュする場合は{@link jp.ambrosoli.quickrestclient.net.CachingDnsResolver}を設定します。
+     * 設定しない場合はJVMの名前解決を使用します。
+     *
+     * @param dnsResolver
+     *            リゾルバ
+     */
+    public void setDnsResolver(final DnsResolver dnsResolver) {
+        this.dnsResolver = dnsResolver;
+    }
+
+    /**
+     * 次のアドレスへの接続を開始するまでの試行間隔を返します。
+     *
+     * @return 試行間隔（ミリ秒）
+     */
+    public int getConnectAttemptDelay() {
+        return this.connectAttemptDelay;
+    }
+
+    /**
+     * 次のアドレスへの接続を開始するまでの試行間隔を設定します。<br />
+     * 接続先ホストが複数のアドレスに解決される場合、試行間隔が経過しても接続できなければ次のアドレスへの接続を並行して開始し、
+     * 最初に接続できたコネクションを使用します。0以下を設定した場合は並行して接続しません。
+     *
+     * @param connectAttemptDelay
+     *            試行間隔（ミリ秒）
+     */
+    public void setConnectAttemptDelay(final int connectAttemptDelay) {
+        this.connectAttemptDelay = connectAttemptDelay;
+    }
+
+    /**
+     * Nagleアルゴリズムを無効にするかどうかを返します。
+     *
+     * @return Nagleアルゴリズムを無効にする場合はtrue
+     */
+    public boolean isTcpNoDelay() {
+        return this.tcpNoDelay;
+    }
+
+    /**
+     * Nagleアルゴリズムを無効にするかどうかを設定します（TCP_NODELAY）。<br />
+     * デフォルトはtrueです。小さなリクエストを送信する際の遅延を避けるため、通常は無効にしたままにします。
+     *
+     * @param tcpNoDelay
+     *            Nagleアルゴリズムを無効にする場合はtrue
+     */
+    public void setTcpNoDelay(final boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    /**
+     * ソケットの送信バッファサイズを返します。
+     *
+     * @return 送信バッファサイズ（バイト）。OSのデフォルトを使用する場合は0
+     */
+    public int getSendBufferSize() {
+        return this.sendBufferSize;
+    }
+
+    /**
+     * ソケットの送信バッファサイズを設定します（SO_SNDBUF）。<br />
+     * 0以下を設定した場合はOSのデフォルトを使用します。
+     *
+     * @param sendBufferSize
+     *            送信バッファサイズ（バイト）
+     */
+    public void setSendBufferSize(final int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    /**
+     * ソケットの受信バッファサイズを返します。
+     *
+     * @return 受信バッファサイズ（バイト）。OSのデフォルトを使用する場合は0
+     */
+    public int getReceiveBufferSize() {
+        return this.receiveBufferSize;
+    }
+
+    /**
+     * ソケットの受信バッファサイズを設定します（SO_RCVBUF）。<br />
+     * 大きなレスポンスを受信する場合は大きな値を設定します。0以下を設定した場合はOSのデフォルトを使用します。
+     *
+     * @param receiveBufferSize
+     *            受信バッファサイズ（バイト）
+     */
+    public void setReceiveBufferSize(final int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    /**
+     * TCPキープアライブを有効にするかどうかを返します。
+     *
+     * @return TCPキープアライブを有効にする場合はtrue
+     */
+    public boolean isSoKeepAlive() {
+        return this.soKeepAlive;
+    }
+
+    /**
+     * TCPキープアライブを有効にするかどうかを設定します（SO_KEEPALIVE）。
+     *
+     * @param soKeepAlive
+     *            TCPキープアライブを有効にする場合はtrue
+     */
+    public void setSoKeepAlive(final boolean soKeepAlive) {
+        this.soKeepAlive = soKeepAlive;
+    }
+
+    /**
+     * ソケットを閉じる際の待機時間を返します。
+     *
+     * @return 待機時間（秒）。OSのデフォルトを使用する場合は負の値
+     */
+    public int getLinger() {
+        return this.linger;
+    }
+
+    /**
+     * ソケットを閉じる際に未送信のデータの送信を待機する時間を設定します（SO_LINGER）。<br />
+     * 0を設定した場合はSO_LINGERを無効にします。負の値を設定した場合はOSのデフォルトを使用します。
+     *
+     * @param linger
+     *            待機時間（秒）
+     */
+    public void setLinger(final int linger) {
+        this.linger = linger;
+    }
+
+    /**
+     * ソケットの入出力バッファサイズを返します。
+     *
+     * @return 入出力バッファサイズ（バイト）
+     */
+    public int getSocketBufferSize() {
+        return this.socketBufferSize;
+    }
+
+    /**
+     * HTTPメッセージの読み書きに使用する入出力バッファのサイズを設定します。<br />
+     * デフォルトは8192バイトです。
+     *
+     * @param socketBufferSize
+     *            入出力バッファサイズ（バイト）
+     */
+    public void setSocketBufferSize(final int socketBufferSize) {
+        this.socketBufferSize = socketBufferSize;
+    }
+
+    /**
+     * 接続タイムアウトを返します。
+     *
+     * @return 接続タイムアウト（ミリ秒）。{@link #getTimeout()}を使用する場合は負の値
+     */
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * 接続タイムアウトを設定します。
+     *
+     * @param connectTimeout
+     *            接続タイムアウト（ミリ秒）。負の値の場合は{@link #getTimeout()}を使用します
+     */
+    public void setConnectTimeout(final int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * 読み込みタイムアウト（SO_TIMEOUT）を返します。
+     *
+     * @return 読み込みタイムアウト（ミリ秒）。{@link #getTimeout()}を使用する場合は負の値
+     */
+    public int getReadTimeout() {
+        return this.readTimeout;
+    }
+
+    /**
+     * 読み込みタイムアウト（SO_TIMEOUT）を設定します。
+     *
+     * @param readTimeout
+     *            読み込みタイムアウト（ミリ秒）。負の値の場合は{@link #getTimeout()}を使用します
+     */
+    public void setReadTimeout(final int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * リクエスト全体の期限を返します。
+     *
+     * @return 期限（ミリ秒）。期限なしの場合は0
+     */
+    public long getDeadline() {
+        return this.deadline;
+    }
+
+    /**
+     * リクエストの送信からレスポンスの受信完了までの期限を設定します。<br />
+     * 期限を超過したリクエストは中断され、
+     * {@link jp.ambrosoli.quickrestclient.exception.DeadlineExceededRuntimeException}がスローされます。
+     *
+     * @param deadline
+     *            期限（ミリ秒）。0以下の場合は期限なし
+     */
+    public void setDeadline(final long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * ソケットをバインドするローカルアドレスを返します。
+     *
+     * @return ローカルアドレス（変更不可）
+     */
+    public List<InetAddress> getLocalAddresses() {
+        return Collections.unmodifiableList(this.localAddresses);
+    }
+
+    /**
+     * ソケットをバインドするローカルアドレスを追加します。<br />
+     * 複数のローカルアドレスを追加した場合は、接続毎に接続先と同じアドレスファミリーのローカルアドレスを順番に使用します。
+     * 1つのローカルアドレスから同じ接続先に同時に接続できる数はエフェメラルポートの数に制限されるため、
+     * 大量の同時接続を行う場合に使用します。
+     *
+     * @param localAddress
+     *            ローカルアドレス
+     */
+    public void addLocalAddress(final InetAddress localAddress) {
+        if (localAddress == null) {
+            throw new IllegalArgumentException(Messages.getString("message.local.address.null")); //$NON-NLS-1$
+        }
+        this.localAddresses.add(localAddress);
+    }
+
+}
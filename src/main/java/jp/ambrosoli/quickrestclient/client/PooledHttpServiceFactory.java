@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.client;
+
+import jp.ambrosoli.quickrestclient.service.PooledHttpService;
+
+/**
+ * コネクションプールを保持する{@link PooledHttpService}を生成できるファクトリーのインタフェースです。
+ * <p>
+ * {@link RestClient}は、{@link ClientConfig#getFactoryName()}で指定した
+ * {@link jp.ambrosoli.quickrestclient.service.HttpServiceFactory}がこのインタフェースを実装している場合のみ使用できます。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public interface PooledHttpServiceFactory {
+
+    /**
+     * 設定に基づいてコネクションプールを保持する{@link PooledHttpService}を生成します。
+     *
+     * @param config
+     *            クライアントの設定
+     * @return PooledHttpService
+     */
+    PooledHttpService create(ClientConfig config);
+
+}
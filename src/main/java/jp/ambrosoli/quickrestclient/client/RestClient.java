@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.client;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+
+import jp.ambrosoli.quickrestclient.request.HttpRequestBuilder;
+import jp.ambrosoli.quickrestclient.service.HttpServiceFactory;
+import jp.ambrosoli.quickrestclient.service.PoolStats;
+import jp.ambrosoli.quickrestclient.service.PooledHttpService;
+import jp.ambrosoli.quickrestclient.util.URIUtil;
+
+/**
+ * 設定とコネクションプールを保持し、複数のスレッドで共有できるHTTPクライアントです。
+ * <p>
+ * 接続先のサービス毎に1つのインスタンスを生成し、使い終わったら{@link #close()}を呼び出してください。
+ * </p>
+ *
+ * <pre>
+ * RestClient client = Http.client(config);
+ * HttpResponse response = client.url(&quot;http://example.com/api&quot;).params(add(&quot;q&quot;, &quot;value&quot;)).execute();
+ * </pre>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class RestClient implements Closeable {
+
+    /** クライアントの設定 */
+    protected final ClientConfig config;
+
+    /** コネクションプールを保持するサービス */
+    protected final PooledHttpService httpService;
+
+    /**
+     * RestClientを生成します。<br />
+     * 設定はコピーして保持するため、生成後に設定を変更してもこのクライアントには反映されません。
+     *
+     * @param config
+     *            クライアントの設定
+     * @throws IllegalArgumentException
+     *             設定がnullの場合、またはファクトリーが{@link PooledHttpServiceFactory}を実装していない場合
+     */
+    public RestClient(final ClientConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException(Messages.getString("message.config.null")); //$NON-NLS-1$
+        }
+        this.config = new ClientConfig(config);
+        HttpServiceFactory factory = HttpServiceFactory.getFactory(this.config.getFactoryName());
+        if (!(factory instanceof PooledHttpServiceFactory)) {
+            throw new IllegalArgumentException(Messages.getString(
+                    "message.factory.pooled.unsupported", factory.getClass().getName())); //$NON-NLS-1$
+        }
+        this.httpService = ((PooledHttpServiceFactory) factory).create(this.config);
+    }
+
+    /**
+     * URLを設定し、このクライアントの設定をデフォルト値とした{@link HttpRequestBuilder}を返します。
+     *
+     * @param url
+     *            URL
+     * @return HttpBuilderオブジェクト
+     */
+    public HttpRequestBuilder url(final String url) {
+        if (this.httpService.isShutdown()) {
+            throw new IllegalStateException(Messages.getString("message.client.closed")); //$NON-NLS-1$
+        }
+        HttpRequestBuilder builder = new HttpRequestBuilder(url, this.httpService);
+        builder.timeout(this.config.getTimeout());
+        builder.connectTimeout(this.config.getConnectTimeout());
+        builder.readTimeout(this.config.getReadTimeout());
+        builder.deadline(this.config.getDeadline());
+        builder.charset(this.config.getCharset());
+        builder.protocol(this.config.getProtocol());
+        builder.proxy(this.config.getProxyInfo());
+        builder.auth(this.config.getAuthInfo());
+        builder.dnsResolver(this.config.getDnsResolver());
+        return builder;
+    }
+
+    /**
+     * 指定したURLの接続先へのコネクションを事前に生成し、コネクションプールに格納します。<br />
+     * デプロイ直後など、最初のリクエストを受け付ける前に呼び出すことで、接続やSSLハンドシェイクの時間を削減できます。
+     *
+     * @param url
+     *            接続先のURL
+     * @param count
+     *            生成するコネクション数
+     * @return 実際に生成したコネクション数
+     */
+    public int prewarm(final String url, final int count) {
+        if (this.httpService.isShutdown()) {
+            throw new IllegalStateException(Messages.getString("message.client.closed")); //$NON-NLS-1$
+        }
+        return this.httpService.prewarm(URIUtil.toURI(url), count);
+    }
+
+    /**
+     * クライアントの設定のコピーを返します。返された設定を変更しても、このクライアントには反映されません。
+     *
+     * @return クライアントの設定
+     */
+    public ClientConfig getConfig() {
+        return new ClientConfig(this.config);
+    }
+
+    /**
+     * このクライアントが使用する{@link PooledHttpService}を返します。
+     *
+     * @return {@link PooledHttpService}
+     */
+    public PooledHttpService getHttpService() {
+        return this.httpService;
+    }
+
+    /**
+     * コネクションプールの統計情報のスナップショットを返します。
+     *
+     * @return 統計情報
+     */
+    public PoolStats getPoolStats() {
+        return this.httpService.getPoolStats();
+    }
+
+    /**
+     * このクライアントがクローズされているかどうかを返します。
+     *
+     * @return クローズされている場合true、その他の場合false
+     */
+    public boolean isClosed() {
+        return this.httpService.isShutdown();
+    }
+
+    /**
+     * コネクションプールを解放し、このクライアントをクローズします。
+     */
+    public void close() {
+        this.httpService.shutdown();
+    }
+
+    /**
+     * 新しいリクエストの受け付けを停止し、実行中のリクエストの完了を待機してからこのクライアントをクローズします。<br />
+     * ローリングリスタートなどで、受信中のレスポンスを中断せずに終了する場合に使用します。
+     *
+     * @param timeout
+     *            最大待機時間
+     * @param unit
+     *            最大待機時間の単位
+     * @return 実行中のリクエストがすべて完了した場合true、待機中にタイムアウトした場合false
+     */
+    public boolean close(final long timeout, final TimeUnit unit) {
+        return this.httpService.shutdown(timeout, unit);
+    }
+
+}
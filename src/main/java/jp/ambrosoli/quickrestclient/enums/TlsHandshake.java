@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.enums;
+
+/**
+ * リクエストで行われたSSL/TLSハンドシェイクの種類を表すEnumです。
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public enum TlsHandshake {
+
+    /** ハンドシェイクなし（平文の通信、または確立済みのコネクションの再利用） */
+    NONE,
+
+    /** 新しいセッションを確立する完全なハンドシェイク */
+    FULL,
+
+    /** キャッシュされたセッションを再開する短縮ハンドシェイク */
+    RESUMED;
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.exception;
+
+import java.io.IOException;
+
+/**
+ * リクエスト全体の期限（デッドライン）を超過したため、リクエストを中断したことを表す例外です。
+ * <p>
+ * 接続、送信、受信のいずれの段階で中断されたかに関わらず、デッドラインの超過はこの例外で通知します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class DeadlineExceededRuntimeException extends IORuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededRuntimeException() {
+        super();
+    }
+
+    public DeadlineExceededRuntimeException(final String arg0, final IOException arg1) {
+        super(arg0, arg1);
+    }
+
+    public DeadlineExceededRuntimeException(final String arg0) {
+        super(arg0);
+    }
+
+    public DeadlineExceededRuntimeException(final IOException arg0) {
+        super(arg0);
+    }
+
+}
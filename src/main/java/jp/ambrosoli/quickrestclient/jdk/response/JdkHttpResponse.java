@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.jdk.response;
+
+import java.net.http.HttpHeaders;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import jp.ambrosoli.quickrestclient.headers.HttpHeader;
+import jp.ambrosoli.quickrestclient.response.AbstractHttpResponse;
+import jp.ambrosoli.quickrestclient.response.ByteArrayResponseContent;
+
+/**
+ * JDK標準の{@link java.net.http.HttpClient}のHTTPレスポンスを扱うクラスです。
+ * <p>
+ * HTTP/2のレスポンスではヘッダー名が小文字で返されます。 ヘッダー名による取得は大文字小文字を区別しません。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class JdkHttpResponse extends AbstractHttpResponse {
+
+    /** Content-Typeヘッダー */
+    private static final String CONTENT_TYPE = "Content-Type"; //$NON-NLS-1$
+
+    /** Content-Lengthヘッダー */
+    private static final String CONTENT_LENGTH = "Content-Length"; //$NON-NLS-1$
+
+    /** JDKのレスポンス */
+    private final java.net.http.HttpResponse<byte[]> response;
+
+    /**
+     * JdkHttpResponseを生成します。
+     *
+     * @param response
+     *            JDKのレスポンス
+     */
+    public JdkHttpResponse(final java.net.http.HttpResponse<byte[]> response) {
+        super();
+        if (response == null) {
+            throw new NullPointerException();
+        }
+        this.response = response;
+        super.setContent(new ByteArrayResponseContent(response.body()));
+    }
+
+    public List<HttpHeader> getAllHeaders() {
+        List<HttpHeader> headerList = new ArrayList<HttpHeader>();
+        for (Map.Entry<String, List<String>> entry : this.response.headers().map().entrySet()) {
+            for (String value : entry.getValue()) {
+                headerList.add(new HttpHeader(entry.getKey(), value));
+            }
+        }
+        return headerList;
+    }
+
+    public String getContentType() {
+        return this.response.headers().firstValue(CONTENT_TYPE).orElse(null);
+    }
+
+    public long getContentLength() {
+        byte[] body = this.response.body();
+        if (body == null) {
+            return 0;
+        }
+        return this.response.headers().firstValueAsLong(CONTENT_LENGTH).orElse(-1L);
+    }
+
+    public HttpHeader getHeader(final String headerName) {
+        String value = this.response.headers().firstValue(headerName).orElse(null);
+        if (value == null) {
+            return null;
+        }
+        return new HttpHeader(headerName, value);
+    }
+
+    public List<HttpHeader> getHeaders(final String headerName) {
+        HttpHeaders headers = this.response.headers();
+        List<HttpHeader> headerList = new ArrayList<HttpHeader>();
+        for (String value : headers.allValues(headerName)) {
+            headerList.add(new HttpHeader(headerName, value));
+        }
+        return headerList;
+    }
+
+    public int getStatusCode() {
+        return this.response.statusCode();
+    }
+
+    /**
+     * レスポンスのプロトコルバージョンを返します。
+     *
+     * @return プロトコルバージョン
+     */
+    public java.net.http.HttpClient.Version getVersion() {
+        return this.response.version();
+    }
+
+}
@@ -0,0 +1,693 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.jdk.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.net.Authenticator;
+import java.net.InetSocketAddress;
+import java.net.PasswordAuthentication;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import jp.ambrosoli.quickrestclient.Http;
+import jp.ambrosoli.quickrestclient.enums.AuthType;
+import jp.ambrosoli.quickrestclient.enums.HttpMethod;
+import jp.ambrosoli.quickrestclient.exception.DeadlineExceededRuntimeException;
+import jp.ambrosoli.quickrestclient.exception.IORuntimeException;
+import jp.ambrosoli.quickrestclient.exception.SocketTimeoutRuntimeException;
+import jp.ambrosoli.quickrestclient.exception.UnsupportedEncodingRuntimeException;
+import jp.ambrosoli.quickrestclient.headers.HttpHeaders;
+import jp.ambrosoli.quickrestclient.jdk.response.JdkHttpResponse;
+import jp.ambrosoli.quickrestclient.params.AuthInfo;
+import jp.ambrosoli.quickrestclient.params.BasicQueryStringBuilder;
+import jp.ambrosoli.quickrestclient.params.NameValueObject;
+import jp.ambrosoli.quickrestclient.params.ProxyInfo;
+import jp.ambrosoli.quickrestclient.params.RequestParams;
+import jp.ambrosoli.quickrestclient.request.HttpRequest;
+import jp.ambrosoli.quickrestclient.response.HttpResponse;
+import jp.ambrosoli.quickrestclient.service.HttpService;
+import jp.ambrosoli.quickrestclient.util.StringUtil;
+import jp.ambrosoli.quickrestclient.util.URIUtil;
+
+/**
+ * JDK標準の{@link HttpClient}（Java 11以降）を使用したRESTエンドポイントのサービス呼び出しを行うクラスです。
+ * <p>
+ * {@link HttpClient}はコネクションプールを内部に持ち、HTTP/2では1つのコネクションで複数のリクエストを多重化します。
+ * プロトコルバージョン、接続タイムアウト、プロキシー、認証情報が同じリクエストは同じ{@link HttpClient}を共有するため、
+ * リクエスト毎にインスタンスを生成してもコネクションは再利用されます。
+ * </p>
+ * <p>
+ * Basic認証の認証情報は、リクエスト先と同じホスト・ポートからの認証要求（401）にだけ応答します。
+ * 別のホストからの認証要求を受けた場合は{@link IORuntimeException}が発生します。
+ * Preemptive Basic認証の場合は最初のリクエストからAuthorizationヘッダー（プロキシ認証の情報があれば
+ * Proxy-Authorizationヘッダーも）を送信し、リダイレクトはこのクラスが処理して
+ * 別のホストへのリダイレクトではAuthorizationヘッダーを送信しません。
+ * </p>
+ * <p>
+ * プロトコルバージョンを指定しない場合はHTTP/2で接続し、サーバーが対応していなければHTTP/1.1で通信します。
+ * HTTP/1.0、Digest認証、{@link HttpRequest#getDnsResolver()}はサポートしません。
+ * また、{@code Connection}や{@code Host}などJDKが管理するヘッダーは送信されません。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class JdkHttpService implements HttpService {
+
+    /** キャッシュするクライアントの最大数 */
+    protected static final int MAX_CLIENTS = 256;
+
+    /** 設定毎に生成した{@link HttpClient}のキャッシュ */
+    protected static final ConcurrentMap<List<Object>, HttpClient> HTTP_CLIENTS = new ConcurrentHashMap<List<Object>, HttpClient>();
+
+    /** {@link HttpClient}が送信を許可しないヘッダー名（小文字） */
+    protected static final Set<String> RESTRICTED_HEADERS = Collections.unmodifiableSet(new HashSet<String>(Arrays
+            .asList("connection", "content-length", "expect", "host", "upgrade"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+    /** Content-Typeヘッダー */
+    private static final String CONTENT_TYPE = "Content-Type"; //$NON-NLS-1$
+
+    /** Authorizationヘッダー */
+    private static final String AUTHORIZATION = "Authorization"; //$NON-NLS-1$
+
+    /** Proxy-Authorizationヘッダー */
+    private static final String PROXY_AUTHORIZATION = "Proxy-Authorization"; //$NON-NLS-1$
+
+    /** Locationヘッダー */
+    private static final String LOCATION = "Location"; //$NON-NLS-1$
+
+    /** 追跡するリダイレクトの最大回数（{@link HttpClient}の既定値と同じ） */
+    protected static final int MAX_REDIRECTS = 5;
+
+    /** リダイレクトとして扱うステータスコード */
+    protected static final Set<Integer> REDIRECT_STATUS_CODES = Collections.unmodifiableSet(new HashSet<Integer>(
+            Arrays.asList(Integer.valueOf(301), Integer.valueOf(302), Integer.valueOf(303), Integer.valueOf(307),
+                    Integer.valueOf(308))));
+
+    /** フォームのContent-Type */
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded; charset="; //$NON-NLS-1$
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * jp.ambrosoli.quickrestclient.service.HttpService#execute(jp.ambrosoli
+     * .quickrestclient.request.HttpRequest)
+     */
+    public HttpResponse execute(final HttpRequest request) {
+        java.net.http.HttpRequest httpRequest = this.createHttpRequest(request);
+        HttpClient client = this.getHttpClient(request);
+        return this.executeWithDeadline(client, httpRequest, request.getDeadline());
+    }
+
+    /**
+     * HTTPリクエストを非同期に送信します。
+     * <p>
+     * 呼び出し元のスレッドをブロックせず、レスポンスを受信すると完了する{@link CompletableFuture}を返します。
+     * 通信に失敗した場合、{@link CompletableFuture}は{@link IOException}を原因として例外で完了します。
+     * {@link HttpRequest#getDeadline()}は適用されないため、必要に応じて
+     * {@link CompletableFuture#get(long, TimeUnit)}で待機時間を指定してください。
+     * </p>
+     *
+     * @param request
+     *            リクエスト
+     * @return レスポンスを受け取る{@link CompletableFuture}
+     */
+    public CompletableFuture<HttpResponse> executeAsync(final HttpRequest request) {
+        java.net.http.HttpRequest httpRequest = this.createHttpRequest(request);
+        HttpClient client = this.getHttpClient(request);
+        return this.sendAsync(client, httpRequest).thenApply(
+                new Function<java.net.http.HttpResponse<byte[]>, HttpResponse>() {
+                    public HttpResponse apply(final java.net.http.HttpResponse<byte[]> response) {
+                        return new JdkHttpResponse(response);
+                    }
+                });
+    }
+
+    /**
+     * 期限を指定してリクエストを送信し、レスポンスを返します。<br />
+     * 期限を超過した場合はリクエストを中断します。
+     *
+     * @param client
+     *            {@link HttpClient}のインスタンス
+     * @param httpRequest
+     *            送信するリクエスト
+     * @param deadline
+     *            期限（ミリ秒）。0以下の場合は無制限
+     * @return レスポンス
+     * @throws DeadlineExceededRuntimeException
+     *             期限を超過した場合
+     */
+    protected HttpResponse executeWithDeadline(final HttpClient client,
+            final java.net.http.HttpRequest httpRequest, final long deadline) {
+        CompletableFuture<java.net.http.HttpResponse<byte[]>> future = this.sendAsync(client, httpRequest);
+        try {
+            return new JdkHttpResponse(deadline > 0 ? future.get(deadline, TimeUnit.MILLISECONDS) : future.get());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new DeadlineExceededRuntimeException(Messages.getString("message.deadline.exceeded")); //$NON-NLS-1$
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw toRuntimeException((IOException) e.getCause());
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IORuntimeException(new IOException(e.getCause()));
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw toRuntimeException(e);
+        }
+    }
+
+    /**
+     * リクエストを非同期に送信します。<br />
+     * {@link HttpClient}がリダイレクトを追跡しない場合は、{@link #createRedirectRequest}で生成したリクエストで
+     * リダイレクトを追跡します。
+     *
+     * @param client
+     *            {@link HttpClient}のインスタンス
+     * @param httpRequest
+     *            送信するリクエスト
+     * @return レスポンスを受け取る{@link CompletableFuture}
+     */
+    protected CompletableFuture<java.net.http.HttpResponse<byte[]>> sendAsync(final HttpClient client,
+            final java.net.http.HttpRequest httpRequest) {
+        return this.sendAsync(client, httpRequest, 0);
+    }
+
+    /**
+     * リクエストを非同期に送信し、必要に応じてリダイレクトを追跡します。
+     *
+     * @param client
+     *            {@link HttpClient}のインスタンス
+     * @param httpRequest
+     *            送信するリクエスト
+     * @param redirects
+     *            これまでに追跡したリダイレクトの回数
+     * @return レスポンスを受け取る{@link CompletableFuture}
+     */
+    private CompletableFuture<java.net.http.HttpResponse<byte[]>> sendAsync(final HttpClient client,
+            final java.net.http.HttpRequest httpRequest, final int redirects) {
+        CompletableFuture<java.net.http.HttpResponse<byte[]>> future = client.sendAsync(httpRequest, BodyHandlers
+                .ofByteArray());
+        if (client.followRedirects() != HttpClient.Redirect.NEVER) {
+            return future;
+        }
+        return future.thenCompose(new Function<java.net.http.HttpResponse<byte[]>,
+                CompletionStage<java.net.http.HttpResponse<byte[]>>>() {
+            public CompletionStage<java.net.http.HttpResponse<byte[]>> apply(
+                    final java.net.http.HttpResponse<byte[]> response) {
+                java.net.http.HttpRequest redirect = JdkHttpService.this.createRedirectRequest(httpRequest, response,
+                        redirects);
+                if (redirect == null) {
+                    return CompletableFuture.completedFuture(response);
+                }
+                return JdkHttpService.this.sendAsync(client, redirect, redirects + 1);
+            }
+        });
+    }
+
+    /**
+     * リダイレクト先へのリクエストを生成して返します。<br />
+     * {@link HttpClient.Redirect#NORMAL}と同様にHTTPSからHTTPへのリダイレクトは追跡せず、303と、POSTに対する301・302は
+     * GETに変更します。別のホストへのリダイレクトではAuthorizationヘッダーを引き継ぎません。
+     *
+     * @param previous
+     *            リダイレクトを受け取ったリクエスト
+     * @param response
+     *            レスポンス
+     * @param redirects
+     *            これまでに追跡したリダイレクトの回数
+     * @return リダイレクト先へのリクエスト。追跡しない場合はnull
+     */
+    protected java.net.http.HttpRequest createRedirectRequest(final java.net.http.HttpRequest previous,
+            final java.net.http.HttpResponse<?> response, final int redirects) {
+        int status = response.statusCode();
+        if (redirects >= MAX_REDIRECTS || !REDIRECT_STATUS_CODES.contains(Integer.valueOf(status))) {
+            return null;
+        }
+        String location = response.headers().firstValue(LOCATION).orElse(null);
+        if (location == null) {
+            return null;
+        }
+        URI uri;
+        try {
+            uri = previous.uri().resolve(location);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!URIUtil.isPlain(uri) && !URIUtil.isSSL(uri) || URIUtil.isSSL(previous.uri()) && !URIUtil.isSSL(uri)) {
+            return null;
+        }
+
+        java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(uri);
+        boolean changeToGet = status == 303 || (status == 301 || status == 302)
+                && previous.method().equals(HttpMethod.POST.name());
+        if (changeToGet) {
+            builder.GET();
+        } else {
+            builder.method(previous.method(), previous.bodyPublisher().orElse(BodyPublishers.noBody()));
+        }
+        if (previous.timeout().isPresent()) {
+            builder.timeout(previous.timeout().get());
+        }
+        boolean sameHost = isSameHost(previous.uri(), uri);
+        for (Map.Entry<String, List<String>> header : previous.headers().map().entrySet()) {
+            String name = header.getKey();
+            if (!sameHost && name.equalsIgnoreCase(AUTHORIZATION) || changeToGet
+                    && name.equalsIgnoreCase(CONTENT_TYPE)) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                builder.header(name, value);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 2つのURIのホストとポートが同じかどうかを返します。
+     *
+     * @param uri
+     *            URI
+     * @param other
+     *            比較するURI
+     * @return ホストとポートが同じ場合true
+     */
+    protected static boolean isSameHost(final URI uri, final URI other) {
+        return uri.getHost() != null && uri.getHost().equalsIgnoreCase(other.getHost())
+                && URIUtil.getPort(uri) == URIUtil.getPort(other);
+    }
+
+    /**
+     * リクエストの設定に対応する{@link HttpClient}を返します。<br />
+     * プロトコルバージョン、接続タイムアウト、プロキシー、認証情報が同じリクエストは、生成済みの{@link HttpClient}を共有します。
+     * 認証情報を指定したリクエストは、認証情報の対象となるホスト・ポートも同じ場合にだけ共有します。
+     * パスワードは平文のままキャッシュのキーに保持せず、{@link #digest(String, String)}のハッシュ値を使用します。
+     *
+     * @param request
+     *            リクエスト
+     * @return {@link HttpClient}のインスタンス
+     */
+    protected HttpClient getHttpClient(final HttpRequest request) {
+        ProxyInfo proxy = request.getProxyInfo();
+        AuthInfo authInfo = getBasicAuthInfo(request);
+        URI uri = request.getUri();
+        List<Object> key = Arrays.<Object> asList(request.getProtocol(), Integer.valueOf(request
+                .getConnectTimeout()), proxy != null ? proxy.getHost() : null, proxy != null ? Integer
+                .valueOf(proxy.getPort()) : null, proxy != null ? digest(proxy.getUsername(), proxy.getPassword())
+                : null, authInfo != null ? uri.getHost().toLowerCase(Locale.ENGLISH) : null,
+                authInfo != null ? Integer.valueOf(URIUtil.getPort(uri)) : null,
+                authInfo != null ? digest(authInfo.username, authInfo.password) : null, Boolean
+                        .valueOf(authInfo != null && authInfo.preemptive));
+        HttpClient client = HTTP_CLIENTS.get(key);
+        if (client != null) {
+            return client;
+        }
+
+        client = this.createHttpClient(request);
+        if (HTTP_CLIENTS.size() >= MAX_CLIENTS) {
+            HTTP_CLIENTS.clear();
+        }
+        HttpClient current = HTTP_CLIENTS.putIfAbsent(key, client);
+        return current != null ? current : client;
+    }
+
+    /**
+     * リクエストの設定に従って{@link HttpClient}を生成して返します。<br />
+     * Preemptive Basic認証の場合は、別のホストへのリダイレクトでAuthorizationヘッダーを送信しないように
+     * {@link HttpClient}のリダイレクトの追跡を無効にします。また、{@link Authenticator}を設定した{@link HttpClient}は
+     * リクエストのAuthorizationヘッダーを送信しないため、{@link CredentialsAuthenticator}を設定しません。
+     *
+     * @param request
+     *            リクエスト
+     * @return {@link HttpClient}のインスタンス
+     */
+    protected HttpClient createHttpClient(final HttpRequest request) {
+        AuthInfo authInfo = getBasicAuthInfo(request);
+        boolean preemptive = authInfo != null && authInfo.preemptive;
+        HttpClient.Builder builder = HttpClient.newBuilder().version(this.getVersion(request.getProtocol()))
+                .followRedirects(preemptive ? HttpClient.Redirect.NEVER : HttpClient.Redirect.NORMAL);
+        if (request.getConnectTimeout() > 0) {
+            builder.connectTimeout(Duration.ofMillis(request.getConnectTimeout()));
+        }
+        ProxyInfo proxy = request.getProxyInfo();
+        if (proxy != null) {
+            builder.proxy(ProxySelector.of(new InetSocketAddress(proxy.getHost(), proxy.getPort())));
+        }
+        if (!preemptive && (proxy != null && proxy.getUsername() != null || authInfo != null)) {
+            builder.authenticator(new CredentialsAuthenticator(proxy, authInfo, request.getUri()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * リクエストに指定されたBasic認証の認証情報を返します。
+     *
+     * @param request
+     *            リクエスト
+     * @return Basic認証の認証情報。指定されていない場合はnull
+     */
+    protected static AuthInfo getBasicAuthInfo(final HttpRequest request) {
+        AuthInfo authInfo = request.getAuthInfo();
+        return authInfo != null && authInfo.type == AuthType.BASIC ? authInfo : null;
+    }
+
+    /**
+     * ユーザ名とパスワードを{@link #HTTP_CLIENTS}のキーに使用するSHA-256のハッシュ値に変換します。
+     *
+     * @param username
+     *            ユーザ名
+     * @param password
+     *            パスワード
+     * @return ハッシュ値。ユーザ名がnullの場合はnull
+     */
+    protected static String digest(final String username, final String password) {
+        if (username == null) {
+            return null;
+        }
+        try {
+            MessageDigest digester = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+            digester.update(StringUtil.getBytes(username, StringUtil.DEFAULT_ENCODING));
+            digester.update((byte) 0);
+            if (password != null) {
+                digester.update(StringUtil.getBytes(password, StringUtil.DEFAULT_ENCODING));
+            }
+            return new BigInteger(1, digester.digest()).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * プロトコルバージョンに対応する{@link HttpClient.Version}を返します。
+     *
+     * @param protocol
+     *            プロトコルバージョン。nullの場合はHTTP/2
+     * @return {@link HttpClient.Version}
+     * @throws IllegalArgumentException
+     *             サポートしていないプロトコルバージョンの場合
+     */
+    protected HttpClient.Version getVersion(final String protocol) {
+        if (protocol == null) {
+            return HttpClient.Version.HTTP_2;
+        }
+        if (protocol.equals(Http.HTTP_1_1)) {
+            return HttpClient.Version.HTTP_1_1;
+        }
+        throw new IllegalArgumentException(Messages.getString("message.version.illegal")); //$NON-NLS-1$
+    }
+
+    /**
+     * {@link java.net.http.HttpRequest}を生成して返します。
+     *
+     * @param request
+     *            リクエスト
+     * @return {@link java.net.http.HttpRequest}のインスタンス
+     */
+    protected java.net.http.HttpRequest createHttpRequest(final HttpRequest request) {
+        HttpMethod method = request.getMethod();
+        String encoding = StringUtil.isNotEmpty(request.getCharset()) ? request.getCharset()
+                : StringUtil.DEFAULT_ENCODING;
+        boolean enclosing = method == HttpMethod.POST || method == HttpMethod.PUT;
+
+        URI uri = enclosing ? request.getUri() : this.addQueryString(request.getUri(), request.getParams(),
+                encoding);
+        java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(uri);
+        if (enclosing) {
+            builder.method(method.name(), this.createFormBody(request.getParams(), encoding));
+            if (request.getParams() != null && !request.getParams().isEmpty()) {
+                builder.header(CONTENT_TYPE, FORM_CONTENT_TYPE + encoding);
+            }
+        } else {
+            builder.method(method.name(), BodyPublishers.noBody());
+        }
+        if (request.getReadTimeout() > 0) {
+            builder.timeout(Duration.ofMillis(request.getReadTimeout()));
+        }
+        this.setHeaders(builder, request.getHeaders());
+        this.setAuthorization(builder, request.getAuthInfo(), request.getProxyInfo());
+        return builder.build();
+    }
+
+    /**
+     * クエリストリングを追加した新しいURIを生成して返します。リクエストパラメータがない場合はURIをそのまま返します。
+     *
+     * @param uri
+     *            URI
+     * @param params
+     *            リクエストパラメータ
+     * @param encoding
+     *            文字コード
+     * @return クエリストリングを追加した新しいURI。リクエストパラメータがない場合は引数で受け取ったURI
+     */
+    protected URI addQueryString(final URI uri, final RequestParams params, final String encoding) {
+        if (params == null || params.isEmpty()) {
+            return uri;
+        }
+        return URIUtil.addQueryString(uri, params.getConformedParams(new BasicQueryStringBuilder(), encoding));
+    }
+
+    /**
+     * リクエストパラメータをURLエンコードしたフォームの本文を生成します。
+     *
+     * @param params
+     *            リクエストパラメータ
+     * @param encoding
+     *            文字コード
+     * @return フォームの本文
+     */
+    protected BodyPublisher createFormBody(final RequestParams params, final String encoding) {
+        if (params == null || params.isEmpty()) {
+            return BodyPublishers.noBody();
+        }
+        String queryString = params.getConformedParams(new BasicQueryStringBuilder(), encoding);
+        try {
+            return BodyPublishers.ofByteArray(queryString.substring(1).getBytes(encoding));
+        } catch (UnsupportedEncodingException e) {
+            throw new UnsupportedEncodingRuntimeException(e);
+        }
+    }
+
+    /**
+     * HTTPヘッダを設定します。<br />
+     * 同じ名前のヘッダーはリクエストで指定した値で置き換え、{@link #RESTRICTED_HEADERS}に含まれるヘッダーは無視します。
+     *
+     * @param builder
+     *            {@link java.net.http.HttpRequest.Builder}
+     * @param httpHeaders
+     *            設定するヘッダ
+     */
+    protected void setHeaders(final java.net.http.HttpRequest.Builder builder, final HttpHeaders httpHeaders) {
+        if (httpHeaders == null || httpHeaders.isEmpty()) {
+            return;
+        }
+        Set<String> replaced = new HashSet<String>();
+        for (NameValueObject header : httpHeaders.getHeaders()) {
+            String name = header.getName().toLowerCase(Locale.ENGLISH);
+            if (RESTRICTED_HEADERS.contains(name)) {
+                continue;
+            }
+            if (replaced.add(name)) {
+                builder.setHeader(header.getName(), header.getValue());
+            } else {
+                builder.header(header.getName(), header.getValue());
+            }
+        }
+    }
+
+    /**
+     * Preemptive Basic認証の場合、AuthorizationヘッダーとProxy-Authorizationヘッダーを設定します。<br />
+     * Preemptiveでない場合、サーバーとプロキシからの認証要求には{@link CredentialsAuthenticator}が応答します。
+     *
+     * @param builder
+     *            {@link java.net.http.HttpRequest.Builder}
+     * @param authInfo
+     *            認証情報
+     * @param proxy
+     *            プロキシの情報
+     * @throws UnsupportedOperationException
+     *             Basic認証以外の認証情報が指定された場合
+     */
+    protected void setAuthorization(final java.net.http.HttpRequest.Builder builder, final AuthInfo authInfo,
+            final ProxyInfo proxy) {
+        if (authInfo == null || authInfo.type == null) {
+            return;
+        }
+        if (authInfo.type != AuthType.BASIC) {
+            throw new UnsupportedOperationException(Messages.getString("message.auth.unsupported", authInfo.type)); //$NON-NLS-1$
+        }
+        if (!authInfo.preemptive) {
+            return;
+        }
+        builder.setHeader(AUTHORIZATION, basic(authInfo.username, authInfo.password));
+        if (proxy != null && proxy.getUsername() != null) {
+            builder.setHeader(PROXY_AUTHORIZATION, basic(proxy.getUsername(), proxy.getPassword()));
+        }
+    }
+
+    /**
+     * Basic認証の資格情報を返します。
+     *
+     * @param username
+     *            ユーザ名
+     * @param password
+     *            パスワード
+     * @return Basic認証の資格情報
+     */
+    private static String basic(final String username, final String password) {
+        String credentials = username + ":" + (password != null ? password : ""); //$NON-NLS-1$ //$NON-NLS-2$
+        return "Basic " //$NON-NLS-1$
+                + Base64.getEncoder().encodeToString(StringUtil.getBytes(credentials, StringUtil.DEFAULT_ENCODING));
+    }
+
+    /**
+     * {@link IOException}を対応する実行時例外に変換します。
+     *
+     * @param e
+     *            {@link IOException}
+     * @return 実行時例外
+     */
+    protected static IORuntimeException toRuntimeException(final IOException e) {
+        if (e instanceof HttpTimeoutException) {
+            IORuntimeException timeout = new SocketTimeoutRuntimeException(e.getMessage());
+            timeout.initCause(e);
+            return timeout;
+        }
+        return new IORuntimeException(e);
+    }
+
+    /**
+     * 割り込みを{@link IORuntimeException}に変換し、スレッドの割り込み状態を復元します。
+     *
+     * @param e
+     *            {@link InterruptedException}
+     * @return 実行時例外
+     */
+    protected static IORuntimeException toRuntimeException(final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException cause = new InterruptedIOException(Messages.getString("message.interrupted")); //$NON-NLS-1$
+        cause.initCause(e);
+        return new IORuntimeException(cause);
+    }
+
+    /**
+     * プロキシ認証とサーバー認証の認証情報を返す{@link Authenticator}です。
+     * <p>
+     * サーバー認証の認証情報は、生成時に指定したURIと同じホスト・ポートからの認証要求にだけ返します。
+     * JDKはデフォルトでCONNECTトンネルのBasic認証を無効にしているため、HTTPSの通信でプロキシのBasic認証を使用するには
+     * システムプロパティ{@code jdk.http.auth.tunneling.disabledSchemes}を空にしてください。
+     * </p>
+     */
+    protected static class CredentialsAuthenticator extends Authenticator {
+
+        /** プロキシのユーザ名 */
+        private final String proxyUsername;
+
+        /** プロキシのパスワード */
+        private final String proxyPassword;
+
+        /** サーバー認証のユーザ名 */
+        private final String username;
+
+        /** サーバー認証のパスワード */
+        private final String password;
+
+        /** サーバー認証の対象となるホスト */
+        private final String host;
+
+        /** サーバー認証の対象となるポート */
+        private final int port;
+
+        /**
+         * CredentialsAuthenticatorを生成します。
+         *
+         * @param proxy
+         *            プロキシの情報。プロキシ認証を行わない場合はnull
+         * @param authInfo
+         *            サーバー認証の認証情報。サーバー認証を行わない場合はnull
+         * @param uri
+         *            サーバー認証の対象となるURI
+         */
+        public CredentialsAuthenticator(final ProxyInfo proxy, final AuthInfo authInfo, final URI uri) {
+            this.proxyUsername = proxy != null ? proxy.getUsername() : null;
+            this.proxyPassword = proxy != null ? proxy.getPassword() : null;
+            this.username = authInfo != null ? authInfo.username : null;
+            this.password = authInfo != null ? authInfo.password : null;
+            this.host = uri.getHost();
+            this.port = URIUtil.getPort(uri);
+        }
+
+        @Override
+        protected PasswordAuthentication getPasswordAuthentication() {
+            if (this.getRequestorType() == RequestorType.PROXY) {
+                return createPasswordAuthentication(this.proxyUsername, this.proxyPassword);
+            }
+            if (this.host == null || !this.host.equalsIgnoreCase(this.getRequestingHost())
+                    || this.port != this.getRequestingPort()) {
+                return null;
+            }
+            return createPasswordAuthentication(this.username, this.password);
+        }
+
+        /**
+         * {@link PasswordAuthentication}を生成して返します。
+         *
+         * @param username
+         *            ユーザ名
+         * @param password
+         *            パスワード
+         * @return {@link PasswordAuthentication}。ユーザ名がnullの場合はnull
+         */
+        private static PasswordAuthentication createPasswordAuthentication(final String username,
+                final String password) {
+            if (username == null) {
+                return null;
+            }
+            return new PasswordAuthentication(username, password != null ? password.toCharArray() : new char[0]);
+        }
+
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.jdk.service;
+
+import jp.ambrosoli.quickrestclient.service.HttpService;
+import jp.ambrosoli.quickrestclient.service.HttpServiceFactory;
+
+/**
+ * {@link JdkHttpService}を生成するファクトリクラスです。
+ * <p>
+ * Java 11以降で使用できます。 デフォルトのファクトリーとして使用するには、システムプロパティ
+ * {@value jp.ambrosoli.quickrestclient.service.HttpServiceFactory#FACTORY_PROPERTY}にこのクラス名を指定してください。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class JdkHttpServiceFactory extends HttpServiceFactory {
+
+    @Override
+    public HttpService create() {
+        return new JdkHttpService();
+    }
+
+}
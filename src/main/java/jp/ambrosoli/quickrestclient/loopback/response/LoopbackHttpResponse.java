@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.loopback.response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jp.ambrosoli.quickrestclient.headers.HttpHeader;
+import jp.ambrosoli.quickrestclient.response.AbstractHttpResponse;
+import jp.ambrosoli.quickrestclient.response.ByteArrayResponseContent;
+import jp.ambrosoli.quickrestclient.util.StringUtil;
+
+/**
+ * {@link jp.ambrosoli.quickrestclient.loopback.service.LoopbackHandler}が返すHTTPレスポンスを扱うクラスです。
+ * <p>
+ * ステータスコード、ヘッダー、本文をそのまま保持します。通信を行わないため、Content-Lengthヘッダーを指定しない場合は本文の長さを返します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class LoopbackHttpResponse extends AbstractHttpResponse {
+
+    /** Content-Typeヘッダー */
+    private static final String CONTENT_TYPE = "Content-Type"; //$NON-NLS-1$
+
+    /** Content-Lengthヘッダー */
+    private static final String CONTENT_LENGTH = "Content-Length"; //$NON-NLS-1$
+
+    /** 文字列の本文のContent-Type */
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=" + StringUtil.DEFAULT_ENCODING; //$NON-NLS-1$
+
+    /** ステータスコード */
+    private final int statusCode;
+
+    /** ヘッダー */
+    private final List<HttpHeader> headers;
+
+    /** 本文 */
+    private final byte[] body;
+
+    /**
+     * 本文のないLoopbackHttpResponseを生成します。
+     *
+     * @param statusCode
+     *            ステータスコード
+     */
+    public LoopbackHttpResponse(final int statusCode) {
+        this(statusCode, null, new byte[0]);
+    }
+
+    /**
+     * 文字列の本文を持つLoopbackHttpResponseを生成します。<br />
+     * 本文はUTF-8でエンコードし、Content-Typeは{@code text/plain; charset=UTF-8}になります。
+     *
+     * @param statusCode
+     *            ステータスコード
+     * @param body
+     *            本文
+     */
+    public LoopbackHttpResponse(final int statusCode, final String body) {
+        this(statusCode, null, StringUtil.getBytes(body, StringUtil.DEFAULT_ENCODING));
+        this.headers.add(new HttpHeader(CONTENT_TYPE, TEXT_CONTENT_TYPE));
+    }
+
+    /**
+     * LoopbackHttpResponseを生成します。
+     *
+     * @param statusCode
+     *            ステータスコード
+     * @param headers
+     *            ヘッダー。nullの場合はヘッダーなし
+     * @param body
+     *            本文。nullの場合は空
+     */
+    public LoopbackHttpResponse(final int statusCode, final List<HttpHeader> headers, final byte[] body) {
+        super(new ByteArrayResponseContent(body != null ? body : new byte[0]));
+        this.statusCode = statusCode;
+        this.headers = headers != null ? new ArrayList<HttpHeader>(headers) : new ArrayList<HttpHeader>();
+        this.body = body != null ? body : new byte[0];
+    }
+
+    public List<HttpHeader> getAllHeaders() {
+        return new ArrayList<HttpHeader>(this.headers);
+    }
+
+    public String getContentType() {
+        HttpHeader header = this.getHeader(CONTENT_TYPE);
+        return header != null ? header.getValue() : null;
+    }
+
+    public long getContentLength() {
+        HttpHeader header = this.getHeader(CONTENT_LENGTH);
+        if (header == null) {
+            return this.body.length;
+        }
+        try {
+            return Long.parseLong(header.getValue());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public HttpHeader getHeader(final String headerName) {
+        for (HttpHeader header : this.headers) {
+            if (header.getName().equalsIgnoreCase(headerName)) {
+                return header;
+            }
+        }
+        return null;
+    }
+
+    public List<HttpHeader> getHeaders(final String headerName) {
+        List<HttpHeader> headerList = new ArrayList<HttpHeader>();
+        for (HttpHeader header : this.headers) {
+            if (header.getName().equalsIgnoreCase(headerName)) {
+                headerList.add(header);
+            }
+        }
+        return headerList;
+    }
+
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.loopback.service;
+
+import jp.ambrosoli.quickrestclient.request.HttpRequest;
+import jp.ambrosoli.quickrestclient.response.HttpResponse;
+
+/**
+ * {@link LoopbackHttpService}に送信されたリクエストを同じプロセス内で処理するインタフェースです。
+ * <p>
+ * 実装クラスは複数のスレッドから同時に呼び出されるため、スレッドセーフでなければなりません。
+ * 通信エラーを再現する場合は、{@link jp.ambrosoli.quickrestclient.exception.IORuntimeException}などの実行時例外をスローしてください。
+ * スローした例外はそのまま呼び出し元に伝播します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public interface LoopbackHandler {
+
+    /**
+     * リクエストを処理してレスポンスを返します。
+     *
+     * @param request
+     *            リクエスト
+     * @return レスポンス
+     */
+    HttpResponse handle(HttpRequest request);
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.loopback.service;
+
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jp.ambrosoli.quickrestclient.loopback.response.LoopbackHttpResponse;
+import jp.ambrosoli.quickrestclient.request.HttpRequest;
+import jp.ambrosoli.quickrestclient.response.HttpResponse;
+import jp.ambrosoli.quickrestclient.service.PoolStats;
+import jp.ambrosoli.quickrestclient.service.PooledHttpService;
+
+/**
+ * リクエストを同じプロセス内の{@link LoopbackHandler}に渡し、返されたレスポンスをそのまま返す{@link jp.ambrosoli.quickrestclient.service.HttpService}です。
+ * <p>
+ * ソケットを使用せず、リクエストのURIのパスに対応するハンドラーを{@link LoopbackHttpServiceFactory}から検索して呼び出します。
+ * 通信の影響を受けずにリクエストの組み立てやレスポンスの処理に要するCPU時間とメモリ割り当てを測定する場合や、
+ * 外部のサーバーに依存せずにテストを行う場合に使用します。 一致するハンドラーがない場合は404 Not Foundを返します。
+ * </p>
+ * <p>
+ * コネクションプールを持たないため、{@link #getPoolStats()}のリース中のコネクション数は処理中のリクエスト数を表します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class LoopbackHttpService implements PooledHttpService {
+
+    /** 終了を待機する間隔（ミリ秒） */
+    private static final long AWAIT_INTERVAL = 10L;
+
+    /** ハンドラーを保持するファクトリー */
+    private final LoopbackHttpServiceFactory factory;
+
+    /** 処理中のリクエスト数 */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /** 処理したリクエストの累計数 */
+    private final AtomicLong requestCount = new AtomicLong();
+
+    /** 終了した場合true */
+    private volatile boolean shutdown;
+
+    /**
+     * LoopbackHttpServiceを生成します。
+     *
+     * @param factory
+     *            ハンドラーを保持するファクトリー
+     */
+    public LoopbackHttpService(final LoopbackHttpServiceFactory factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException(Messages.getString("message.factory.null")); //$NON-NLS-1$
+        }
+        this.factory = factory;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * jp.ambrosoli.quickrestclient.service.HttpService#execute(jp.ambrosoli
+     * .quickrestclient.request.HttpRequest)
+     */
+    public HttpResponse execute(final HttpRequest request) {
+        if (this.shutdown) {
+            throw new IllegalStateException(Messages.getString("message.service.shutdown")); //$NON-NLS-1$
+        }
+        this.active.incrementAndGet();
+        try {
+            this.requestCount.incrementAndGet();
+            String path = request.getUri().getPath();
+            LoopbackHandler handler = this.factory.getHandler(path);
+            if (handler == null) {
+                return new LoopbackHttpResponse(HttpURLConnection.HTTP_NOT_FOUND);
+            }
+            HttpResponse response = handler.handle(request);
+            if (response == null) {
+                throw new IllegalStateException(Messages.getString("message.response.null", path)); //$NON-NLS-1$
+            }
+            return response;
+        } finally {
+            this.active.decrementAndGet();
+        }
+    }
+
+    /**
+     * 処理したリクエストの累計数を返します。
+     *
+     * @return 処理したリクエストの累計数
+     */
+    public long getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.service.PooledHttpService#shutdown()
+     */
+    public void shutdown() {
+        this.shutdown = true;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.service.PooledHttpService#shutdown(long,
+     * java.util.concurrent.TimeUnit)
+     */
+    public boolean shutdown(final long timeout, final TimeUnit unit) {
+        this.shutdown = true;
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        while (this.active.get() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(AWAIT_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.service.PooledHttpService#isShutdown()
+     */
+    public boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.service.PooledHttpService#getPoolStats()
+     */
+    public PoolStats getPoolStats() {
+        PoolStats stats = new PoolStats();
+        stats.setLeased(this.active.get());
+        return stats;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.service.PooledHttpService#prewarm(java.net.URI,
+     * int)
+     */
+    public int prewarm(final URI uri, final int count) {
+        return 0;
+    }
+
+}
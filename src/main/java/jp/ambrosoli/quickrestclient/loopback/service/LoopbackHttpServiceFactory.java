@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.loopback.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import jp.ambrosoli.quickrestclient.client.ClientConfig;
+import jp.ambrosoli.quickrestclient.client.PooledHttpServiceFactory;
+import jp.ambrosoli.quickrestclient.service.HttpService;
+import jp.ambrosoli.quickrestclient.service.HttpServiceFactory;
+import jp.ambrosoli.quickrestclient.service.PooledHttpService;
+
+/**
+ * {@link LoopbackHttpService}を生成するファクトリクラスです。
+ * <p>
+ * パス毎に{@link LoopbackHandler}を登録し、このファクトリーを{@link HttpServiceFactory#register(String, HttpServiceFactory)}
+ * で登録して使用します。生成したサービスはすべて、このファクトリーに登録したハンドラーを共有します。
+ * </p>
+ *
+ * <pre>
+ * LoopbackHttpServiceFactory factory = new LoopbackHttpServiceFactory();
+ * factory.addHandler(&quot;/api/users&quot;, handler);
+ * HttpServiceFactory.register(LoopbackHttpServiceFactory.FACTORY_NAME, factory);
+ * ClientConfig config = new ClientConfig();
+ * config.setFactoryName(LoopbackHttpServiceFactory.FACTORY_NAME);
+ * RestClient client = Http.client(config);
+ * </pre>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class LoopbackHttpServiceFactory extends HttpServiceFactory implements PooledHttpServiceFactory {
+
+    /** 登録する際の標準のファクトリーの識別子 */
+    public static final String FACTORY_NAME = "loopback"; //$NON-NLS-1$
+
+    /** パス毎のハンドラー */
+    private final ConcurrentMap<String, LoopbackHandler> handlers = new ConcurrentHashMap<String, LoopbackHandler>();
+
+    /** パスに一致するハンドラーがない場合に使用するハンドラー */
+    private volatile LoopbackHandler defaultHandler;
+
+    /**
+     * パスに対応するハンドラーを登録します。既に登録されている場合は置き換えます。
+     *
+     * @param path
+     *            URIのパス（例： "/api/users"）
+     * @param handler
+     *            ハンドラー
+     * @return このファクトリー
+     */
+    public LoopbackHttpServiceFactory addHandler(final String path, final LoopbackHandler handler) {
+        if (path == null) {
+            throw new IllegalArgumentException(Messages.getString("message.path.null")); //$NON-NLS-1$
+        }
+        if (handler == null) {
+            throw new IllegalArgumentException(Messages.getString("message.handler.null", path)); //$NON-NLS-1$
+        }
+        this.handlers.put(path, handler);
+        return this;
+    }
+
+    /**
+     * パスに対応するハンドラーの登録を解除します。
+     *
+     * @param path
+     *            URIのパス
+     */
+    public void removeHandler(final String path) {
+        if (path != null) {
+            this.handlers.remove(path);
+        }
+    }
+
+    /**
+     * パスに一致するハンドラーがない場合に使用するハンドラーを設定します。
+     *
+     * @param handler
+     *            ハンドラー。nullの場合、一致しないリクエストには404 Not Foundを返します
+     * @return このファクトリー
+     */
+    public LoopbackHttpServiceFactory setDefaultHandler(final LoopbackHandler handler) {
+        this.defaultHandler = handler;
+        return this;
+    }
+
+    /**
+     * パスに対応するハンドラーを返します。
+     *
+     * @param path
+     *            URIのパス
+     * @return ハンドラー。登録されていない場合はデフォルトのハンドラー、それもない場合はnull
+     */
+    public LoopbackHandler getHandler(final String path) {
+        LoopbackHandler handler = path != null ? this.handlers.get(path) : null;
+        return handler != null ? handler : this.defaultHandler;
+    }
+
+    @Override
+    public HttpService create() {
+        return new LoopbackHttpService(this);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.client.PooledHttpServiceFactory#create(jp.ambrosoli.quickrestclient.client.ClientConfig)
+     */
+    public PooledHttpService create(final ClientConfig config) {
+        return new LoopbackHttpService(this);
+    }
+
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.net;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 名前解決の結果をキャッシュする{@link DnsResolver}の実装クラスです。
+ * <p>
+ * 解決できたホスト名はTTLの間、解決できなかったホスト名はネガティブキャッシュのTTLの間キャッシュします。
+ * 1つのホスト名に複数のアドレスがある場合は、呼び出す度に先頭のアドレスを順番に入れ替えて返すため（ラウンドロビン）、
+ * 先頭のアドレスに接続するクライアントのコネクションは各アドレスに分散されます。
+ * キャッシュの件数が上限に達した場合は、期限切れのエントリを破棄し、それでも上限を超える場合はすべて破棄します。
+ * 同じホスト名の名前解決が同時に要求された場合は、1つのスレッドだけが名前解決を行い、他のスレッドはその結果を待機して共有します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class CachingDnsResolver implements DnsResolver {
+
+    /** デフォルトのTTL（ミリ秒） */
+    public static final long DEFAULT_TTL = 30000L;
+
+    /** デフォルトのネガティブキャッシュのTTL（ミリ秒） */
+    public static final long DEFAULT_NEGATIVE_TTL = 5000L;
+
+    /** デフォルトのキャッシュの最大件数 */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    /** 実際に名前解決を行うリゾルバ */
+    private final DnsResolver delegate;
+
+    /** TTL（ミリ秒） */
+    private final long ttl;
+
+    /** ネガティブキャッシュのTTL（ミリ秒） */
+    private final long negativeTtl;
+
+    /** キャッシュの最大件数 */
+    private final int maxEntries;
+
+    /** ホスト名毎のキャッシュ */
+    private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<String, Entry>();
+
+    /** ホスト名毎の実行中の名前解決 */
+    private final ConcurrentMap<String, FutureTask<Entry>> inFlight = new ConcurrentHashMap<String, FutureTask<Entry>>();
+
+    /**
+     * JVMの名前解決を使用するCachingDnsResolverを生成します。
+     */
+    public CachingDnsResolver() {
+        this(SystemDnsResolver.INSTANCE);
+    }
+
+    /**
+     * 名前解決を行うリゾルバを指定してCachingDnsResolverを生成します。
+     *
+     * @param delegate
+     *            実際に名前解決を行うリゾルバ
+     */
+    public CachingDnsResolver(final DnsResolver delegate) {
+        this(delegate, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * CachingDnsResolverを生成します。
+     *
+     * @param delegate
+     *            実際に名前解決を行うリゾルバ
+     * @param ttl
+     *            TTL（ミリ秒）。0の場合はキャッシュしません
+     * @param negativeTtl
+     *            ネガティブキャッシュのTTL（ミリ秒）。0の場合は解決できなかったホスト名をキャッシュしません
+     * @param maxEntries
+     *            キャッシュの最大件数
+     */
+    public CachingDnsResolver(final DnsResolver delegate, final long ttl, final long negativeTtl,
+            final int maxEntries) {
+        if (delegate == null) {
+            throw new IllegalArgumentException(Messages.getString("message.resolver.null")); //$NON-NLS-1$
+        }
+        if (ttl < 0 || negativeTtl < 0) {
+            throw new IllegalArgumentException(Messages.getString("message.ttl.illegal")); //$NON-NLS-1$
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException(Messages.getString("message.max.entries.illegal")); //$NON-NLS-1$
+        }
+        this.delegate = delegate;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.maxEntries = maxEntries;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.net.DnsResolver#resolve(java.lang.String)
+     */
+    public InetAddress[] resolve(final String host) throws UnknownHostException {
+        if (host == null) {
+            throw new IllegalArgumentException(Messages.getString("message.host.null")); //$NON-NLS-1$
+        }
+        String key = host.toLowerCase(Locale.ENGLISH);
+        long now = System.currentTimeMillis();
+        Entry entry = this.cache.get(key);
+        if (entry == null || entry.isExpired(now)) {
+            entry = this.lookupOnce(host, key, now);
+        }
+        if (entry.addresses == null) {
+            throw new UnknownHostException(Messages.getString("message.host.not.resolved", host)); //$NON-NLS-1$
+        }
+        return entry.rotate();
+    }
+
+    /**
+     * ホスト名のキャッシュを破棄します。
+     *
+     * @param host
+     *            ホスト名
+     */
+    public void invalidate(final String host) {
+        if (host == null) {
+            return;
+        }
+        this.cache.remove(host.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * キャッシュをすべて破棄します。
+     */
+    public void clear() {
+        this.cache.clear();
+    }
+
+    /**
+     * キャッシュされているホスト名の件数を返します。
+     *
+     * @return キャッシュされているホスト名の件数
+     */
+    public int size() {
+        return this.cache.size();
+    }
+
+    /**
+     * 同じホスト名の名前解決が実行中でなければ{@link #lookup(String, String, long)}を実行し、実行中であればその結果を待機します。
+     *
+     * @param host
+     *            ホスト名
+     * @param key
+     *            キャッシュのキー
+     * @param now
+     *            現在時刻
+     * @return キャッシュのエントリ
+     * @throws UnknownHostException
+     *             ホスト名を解決できず、ネガティブキャッシュを行わない場合
+     */
+    private Entry lookupOnce(final String host, final String key, final long now) throws UnknownHostException {
+        FutureTask<Entry> task = new FutureTask<Entry>(new Callable<Entry>() {
+            public Entry call() throws UnknownHostException {
+                // 待機している間に他のスレッドがキャッシュした結果があれば使用する
+                Entry cached = CachingDnsResolver.this.cache.get(key);
+                if (cached != null && !cached.isExpired(now)) {
+                    return cached;
+                }
+                return CachingDnsResolver.this.lookup(host, key, now);
+            }
+        });
+        FutureTask<Entry> running = this.inFlight.putIfAbsent(key, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                this.inFlight.remove(key, task);
+            }
+        }
+        return await(running);
+    }
+
+    /**
+     * 名前解決の完了を待機して結果を返します。<br />
+     * 名前解決自体は割り込みできないため、待機中に割り込まれた場合も完了まで待機し、割り込み状態を復元します。
+     *
+     * @param task
+     *            名前解決のタスク
+     * @return キャッシュのエントリ
+     * @throws UnknownHostException
+     *             ホスト名を解決できなかった場合
+     */
+    private static Entry await(final FutureTask<Entry> task) throws UnknownHostException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UnknownHostException) {
+                throw (UnknownHostException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 実際に名前解決を行い、結果をキャッシュします。
+     *
+     * @param host
+     *            ホスト名
+     * @param key
+     *            キャッシュのキー
+     * @param now
+     *            現在時刻
+     * @return キャッシュのエントリ
+     * @throws UnknownHostException
+     *             ホスト名を解決できず、ネガティブキャッシュを行わない場合
+     */
+    protected Entry lookup(final String host, final String key, final long now) throws UnknownHostException {
+        Entry entry;
+        try {
+            InetAddress[] addresses = this.delegate.resolve(host);
+            if (addresses == null || addresses.length == 0) {
+                throw new UnknownHostException(Messages.getString("message.host.not.resolved", host)); //$NON-NLS-1$
+            }
+            entry = new Entry(addresses.clone(), now + this.ttl);
+            if (this.ttl > 0) {
+                this.store(key, entry, now);
+            }
+        } catch (UnknownHostException e) {
+            if (this.negativeTtl > 0) {
+                this.store(key, new Entry(null, now + this.negativeTtl), now);
+            }
+            throw e;
+        }
+        return entry;
+    }
+
+    /**
+     * エントリをキャッシュに格納します。
+     *
+     * @param key
+     *            キャッシュのキー
+     * @param entry
+     *            キャッシュのエントリ
+     * @param now
+     *            現在時刻
+     */
+    private void store(final String key, final Entry entry, final long now) {
+        if (this.cache.size() >= this.maxEntries && !this.cache.containsKey(key)) {
+            for (Iterator<Entry> it = this.cache.values().iterator(); it.hasNext();) {
+                if (it.next().isExpired(now)) {
+                    it.remove();
+                }
+            }
+            if (this.cache.size() >= this.maxEntries) {
+                this.cache.clear();
+            }
+        }
+        this.cache.put(key, entry);
+    }
+
+    /**
+     * 名前解決の結果のキャッシュのエントリです。
+     */
+    protected static class Entry {
+
+        /** 解決したアドレス。解決できなかった場合はnull */
+        final InetAddress[] addresses;
+
+        /** 有効期限 */
+        final long expiry;
+
+        /** 次に先頭にするアドレスの位置 */
+        private final AtomicInteger next = new AtomicInteger();
+
+        /**
+         * Entryを生成します。
+         *
+         * @param addresses
+         *            解決したアドレス
+         * @param expiry
+         *            有効期限
+         */
+        Entry(final InetAddress[] addresses, final long expiry) {
+            this.addresses = addresses;
+            this.expiry = expiry;
+        }
+
+        /**
+         * 有効期限が切れているかどうかを返します。
+         *
+         * @param now
+         *            現在時刻
+         * @return 有効期限が切れている場合true
+         */
+        boolean isExpired(final long now) {
+            return now >= this.expiry;
+        }
+
+        /**
+         * 先頭のアドレスを順番に入れ替えたアドレスの配列を返します。
+         *
+         * @return アドレスの配列
+         */
+        InetAddress[] rotate() {
+            int length = this.addresses.length;
+            int start = (this.next.getAndIncrement() & Integer.MAX_VALUE) % length;
+            InetAddress[] rotated = new InetAddress[length];
+            for (int i = 0; i < length; i++) {
+                rotated[i] = this.addresses[(start + i) % length];
+            }
+            return rotated;
+        }
+
+    }
+
+}
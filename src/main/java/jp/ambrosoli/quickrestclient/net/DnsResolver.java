@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.net;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * ホスト名をIPアドレスに解決するインターフェースです。
+ * <p>
+ * クライアントに実装クラスを設定することで、JVMの名前解決を置き換えることができます。 テストでは実際のDNSを使わずに固定のアドレスを返す実装を使用できます。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public interface DnsResolver {
+
+    /**
+     * ホスト名を解決します。
+     *
+     * @param host
+     *            ホスト名
+     * @return 解決したIPアドレス（1件以上）
+     * @throws UnknownHostException
+     *             ホスト名を解決できない場合
+     */
+    InetAddress[] resolve(String host) throws UnknownHostException;
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.net;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * JVMの名前解決（{@link InetAddress#getAllByName(String)}）を使用する{@link DnsResolver}の実装クラスです。
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class SystemDnsResolver implements DnsResolver {
+
+    /** 共有インスタンス */
+    public static final SystemDnsResolver INSTANCE = new SystemDnsResolver();
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see jp.ambrosoli.quickrestclient.net.DnsResolver#resolve(java.lang.String)
+     */
+    public InetAddress[] resolve(final String host) throws UnknownHostException {
+        return InetAddress.getAllByName(host);
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.nio.conn;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 同じサイズの{@link ByteBuffer}を再利用するプールです。
+ * <p>
+ * 返却されたバッファは上限の数まで保持し、上限を超えた分は破棄します。 スレッドセーフです。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class ByteBufferPool {
+
+    /** デフォルトのバッファサイズ */
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    /** デフォルトの保持するバッファの最大数 */
+    public static final int DEFAULT_MAX_POOLED = 64;
+
+    /** バッファサイズ */
+    private final int bufferSize;
+
+    /** 保持するバッファの最大数 */
+    private final int maxPooled;
+
+    /** 直接バッファを使用する場合true */
+    private final boolean direct;
+
+    /** 保持しているバッファ */
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    /** 保持しているバッファの数 */
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * デフォルトの設定でByteBufferPoolを生成します。
+     */
+    public ByteBufferPool() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED, false);
+    }
+
+    /**
+     * ByteBufferPoolを生成します。
+     *
+     * @param bufferSize
+     *            バッファサイズ
+     * @param maxPooled
+     *            保持するバッファの最大数
+     * @param direct
+     *            直接バッファを使用する場合true
+     */
+    public ByteBufferPool(final int bufferSize, final int maxPooled, final boolean direct) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException(Messages.getString("message.buffer.size.illegal")); //$NON-NLS-1$
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.direct = direct;
+    }
+
+    /**
+     * バッファを取得します。保持しているバッファがない場合は新しく生成します。
+     *
+     * @return クリアされたバッファ
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = this.buffers.poll();
+        if (buffer == null) {
+            return this.direct ? ByteBuffer.allocateDirect(this.bufferSize) : ByteBuffer.allocate(this.bufferSize);
+        }
+        this.pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * バッファを返却します。
+     *
+     * @param buffer
+     *            返却するバッファ。サイズが異なる場合やnullの場合は無視します
+     */
+    public void release(final ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != this.bufferSize || buffer.isDirect() != this.direct) {
+            return;
+        }
+        if (this.pooled.incrementAndGet() > this.maxPooled) {
+            this.pooled.decrementAndGet();
+            return;
+        }
+        this.buffers.offer(buffer);
+    }
+
+    /**
+     * 保持しているバッファの数を返します。
+     *
+     * @return 保持しているバッファの数
+     */
+    public int getPooledCount() {
+        return this.pooled.get();
+    }
+
+    /**
+     * バッファサイズを返します。
+     *
+     * @return バッファサイズ
+     */
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.nio.conn;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import jp.ambrosoli.quickrestclient.nio.response.HttpResponseParser;
+
+/**
+ * {@link NioHttpEngine}が管理するノンブロッキングのコネクションです。
+ * <p>
+ * セレクタースレッドからのみ参照します。 キープアライブしている間は同じパーサーを再利用します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+class NioConnection {
+
+    /** チャネル */
+    final SocketChannel channel;
+
+    /** 接続先のアドレス */
+    final InetSocketAddress address;
+
+    /** レスポンスのパーサー */
+    final HttpResponseParser parser = new HttpResponseParser();
+
+    /** セレクションキー */
+    SelectionKey key;
+
+    /** 実行中の交換。アイドル状態の場合はnull */
+    NioExchange exchange;
+
+    /** 送信中のリクエスト */
+    ByteBuffer output;
+
+    /** 接続が完了した場合true */
+    boolean connected;
+
+    /** キープアライブしたコネクションを再利用した場合true */
+    boolean reused;
+
+    /** タイムアウトする時刻（ミリ秒）。0の場合はタイムアウトしない */
+    long timeoutAt;
+
+    /** アイドル状態になった時刻（ミリ秒） */
+    long idleSince;
+
+    /**
+     * NioConnectionを生成します。
+     *
+     * @param channel
+     *            チャネル
+     * @param address
+     *            接続先のアドレス
+     */
+    NioConnection(final SocketChannel channel, final InetSocketAddress address) {
+        this.channel = channel;
+        this.address = address;
+    }
+
+    /**
+     * 交換を割り当て、リクエストの送信を開始できる状態にします。
+     *
+     * @param exchange
+     *            交換
+     */
+    void assign(final NioExchange exchange) {
+        this.exchange = exchange;
+        this.output = exchange.newRequestBuffer();
+        this.parser.reset(exchange.isHead());
+        exchange.connection = this;
+    }
+
+    /**
+     * 交換の割り当てを解除します。
+     */
+    void release() {
+        if (this.exchange != null) {
+            this.exchange.connection = null;
+        }
+        this.exchange = null;
+        this.output = null;
+        this.timeoutAt = 0;
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.nio.conn;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jp.ambrosoli.quickrestclient.nio.response.NioHttpResponse;
+
+/**
+ * {@link NioHttpEngine}で実行する1回のリクエストとレスポンスの交換を表すクラスです。
+ * <p>
+ * リクエストを送信したスレッドは{@link #await(long)}でレスポンスの受信を待機し、{@link #getResponse()}で結果を取得します。
+ * 結果はセレクタースレッドから一度だけ設定されます。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class NioExchange {
+
+    /** 接続先のアドレス */
+    private final InetSocketAddress address;
+
+    /** 送信するリクエスト */
+    private final ByteBuffer request;
+
+    /** HEADリクエストの場合true */
+    private final boolean head;
+
+    /** 接続タイムアウト（ミリ秒） */
+    private final int connectTimeout;
+
+    /** 読み込みタイムアウト（ミリ秒） */
+    private final int readTimeout;
+
+    /** 完了を通知するラッチ */
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    /** 完了した場合true */
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    /** レスポンス */
+    private volatile NioHttpResponse response;
+
+    /** 失敗した原因 */
+    private volatile IOException failure;
+
+    /** 使用しているコネクション（セレクタースレッドからのみ参照します） */
+    NioConnection connection;
+
+    /** 送信を試みた回数（セレクタースレッドからのみ参照します） */
+    int attempts;
+
+    /**
+     * NioExchangeを生成します。
+     *
+     * @param address
+     *            接続先のアドレス
+     * @param request
+     *            送信するリクエスト
+     * @param head
+     *            HEADリクエストの場合true
+     * @param connectTimeout
+     *            接続タイムアウト（ミリ秒）。0の場合は無制限
+     * @param readTimeout
+     *            読み込みタイムアウト（ミリ秒）。0の場合は無制限
+     */
+    public NioExchange(final InetSocketAddress address, final ByteBuffer request, final boolean head,
+            final int connectTimeout, final int readTimeout) {
+        this.address = address;
+        this.request = request.asReadOnlyBuffer();
+        this.head = head;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * レスポンスの受信を待機します。
+     *
+     * @param timeout
+     *            最大待機時間（ミリ秒）。0以下の場合は無制限
+     * @return 完了した場合true、最大待機時間を超過した場合false
+     * @throws InterruptedException
+     *             待機中に割り込まれた場合
+     */
+    public boolean await(final long timeout) throws InterruptedException {
+        if (timeout <= 0) {
+            this.latch.await();
+            return true;
+        }
+        return this.latch.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 受信したレスポンスを返します。
+     *
+     * @return レスポンス。完了していない場合はnull
+     * @throws IOException
+     *             通信に失敗した場合
+     */
+    public NioHttpResponse getResponse() throws IOException {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        return this.response;
+    }
+
+    /**
+     * 完了したかどうかを返します。
+     *
+     * @return 完了した場合true
+     */
+    public boolean isDone() {
+        return this.done.get();
+    }
+
+    /**
+     * レスポンスを設定して完了します。
+     *
+     * @param response
+     *            レスポンス
+     * @return 完了した場合true、既に完了していた場合false
+     */
+    boolean complete(final NioHttpResponse response) {
+        if (!this.done.compareAndSet(false, true)) {
+            return false;
+        }
+        this.response = response;
+        this.latch.countDown();
+        return true;
+    }
+
+    /**
+     * 失敗した原因を設定して完了します。
+     *
+     * @param failure
+     *            失敗した原因
+     * @return 完了した場合true、既に完了していた場合false
+     */
+    boolean fail(final IOException failure) {
+        if (!this.done.compareAndSet(false, true)) {
+            return false;
+        }
+        this.failure = failure;
+        this.latch.countDown();
+        return true;
+    }
+
+    /**
+     * 送信するリクエストを先頭から読み込むバッファを返します。
+     *
+     * @return リクエストのバッファ
+     */
+    ByteBuffer newRequestBuffer() {
+        return this.request.duplicate();
+    }
+
+    /**
+     * 接続先のアドレスを返します。
+     *
+     * @return 接続先のアドレス
+     */
+    public InetSocketAddress getAddress() {
+        return this.address;
+    }
+
+    /**
+     * HEADリクエストかどうかを返します。
+     *
+     * @return HEADリクエストの場合true
+     */
+    public boolean isHead() {
+        return this.head;
+    }
+
+    /**
+     * 接続タイムアウトを返します。
+     *
+     * @return 接続タイムアウト（ミリ秒）
+     */
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * 読み込みタイムアウトを返します。
+     *
+     * @return 読み込みタイムアウト（ミリ秒）
+     */
+    public int getReadTimeout() {
+        return this.readTimeout;
+    }
+
+}
@@ -0,0 +1,665 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.nio.conn;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jp.ambrosoli.quickrestclient.exception.IORuntimeException;
+import jp.ambrosoli.quickrestclient.nio.response.NioHttpResponse;
+
+/**
+ * 1つのセレクタースレッドで複数のHTTP/1.1コネクションを多重化して処理するエンジンです。
+ * <p>
+ * {@link #execute(NioExchange)}で受け付けた交換はセレクタースレッドで処理されます。
+ * レスポンスを最後まで受信したコネクションは、キープアライブが可能であれば接続先毎にアイドル状態で保持し、次の交換で再利用します。
+ * キープアライブしていたコネクションがサーバーによって切断されていた場合は、新しいコネクションで一度だけ送信し直します。
+ * </p>
+ * <p>
+ * 受信にはすべてのコネクションで共有する{@link ByteBufferPool}のバッファを使用するため、
+ * コネクションの数が増えても受信バッファのメモリは増えません。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class NioHttpEngine {
+
+    /** デフォルトの接続先毎に保持するアイドル状態のコネクションの最大数 */
+    public static final int DEFAULT_MAX_IDLE_PER_ROUTE = 8;
+
+    /** デフォルトのアイドル状態のコネクションを保持する時間（ミリ秒） */
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000L;
+
+    /** タイムアウトを確認する間隔（ミリ秒） */
+    private static final long CHECK_INTERVAL = 50L;
+
+    /** 送信を試みる最大回数 */
+    private static final int MAX_ATTEMPTS = 2;
+
+    /** 共有するエンジン */
+    private static NioHttpEngine defaultEngine;
+
+    /** セレクター */
+    private final Selector selector;
+
+    /** 受信バッファのプール */
+    private final ByteBufferPool bufferPool;
+
+    /** 接続先毎に保持するアイドル状態のコネクションの最大数 */
+    private final int maxIdlePerRoute;
+
+    /** アイドル状態のコネクションを保持する時間（ミリ秒） */
+    private final long idleTimeout;
+
+    /** セレクタースレッドで実行するタスク */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    /** 接続先毎のアイドル状態のコネクション（セレクタースレッドからのみ参照します） */
+    private final Map<InetSocketAddress, LinkedList<NioConnection>> idleConnections = new HashMap<InetSocketAddress, LinkedList<NioConnection>>();
+
+    /** アイドル状態のコネクションの数 */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /** 開いているコネクションの数 */
+    private final AtomicInteger openCount = new AtomicInteger();
+
+    /** 新しく接続した回数 */
+    private final AtomicLong connectCount = new AtomicLong();
+
+    /** セレクタースレッド */
+    private final Thread thread;
+
+    /** 終了した場合true */
+    private volatile boolean shutdown;
+
+    /**
+     * デフォルトの設定でNioHttpEngineを生成し、セレクタースレッドを開始します。
+     */
+    public NioHttpEngine() {
+        this(new ByteBufferPool(), DEFAULT_MAX_IDLE_PER_ROUTE, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * NioHttpEngineを生成し、セレクタースレッドを開始します。
+     *
+     * @param bufferPool
+     *            受信バッファのプール
+     * @param maxIdlePerRoute
+     *            接続先毎に保持するアイドル状態のコネクションの最大数
+     * @param idleTimeout
+     *            アイドル状態のコネクションを保持する時間（ミリ秒）
+     */
+    public NioHttpEngine(final ByteBufferPool bufferPool, final int maxIdlePerRoute, final long idleTimeout) {
+        if (bufferPool == null) {
+            throw new IllegalArgumentException(Messages.getString("message.buffer.pool.null")); //$NON-NLS-1$
+        }
+        this.bufferPool = bufferPool;
+        this.maxIdlePerRoute = maxIdlePerRoute;
+        this.idleTimeout = idleTimeout;
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+        this.thread = new Thread(new Runnable() {
+            public void run() {
+                NioHttpEngine.this.run();
+            }
+        }, "QuickRestClient-NIO"); //$NON-NLS-1$
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * すべての{@link jp.ambrosoli.quickrestclient.nio.service.NioHttpService}で共有するエンジンを返します。<br />
+     * 最初に呼び出された時点で生成します。
+     *
+     * @return 共有するエンジン
+     */
+    public static synchronized NioHttpEngine getDefault() {
+        if (defaultEngine == null || defaultEngine.isShutdown()) {
+            defaultEngine = new NioHttpEngine();
+        }
+        return defaultEngine;
+    }
+
+    /**
+     * 交換の処理を開始します。<br />
+     * 結果は{@link NioExchange#await(long)}で待機して取得してください。
+     *
+     * @param exchange
+     *            交換
+     * @return 引数で受け取った交換
+     * @throws IllegalStateException
+     *             エンジンが終了している場合
+     */
+    public NioExchange execute(final NioExchange exchange) {
+        if (this.shutdown) {
+            throw new IllegalStateException(Messages.getString("message.engine.shutdown")); //$NON-NLS-1$
+        }
+        Runnable task = new Runnable() {
+            public void run() {
+                try {
+                    NioHttpEngine.this.start(exchange);
+                } catch (RuntimeException e) {
+                    NioHttpEngine.this.abort(exchange, e);
+                }
+            }
+        };
+        this.submit(task);
+        if (this.shutdown && this.tasks.remove(task)) {
+            // セレクタースレッドが未処理のタスクを失敗させた後に登録した場合は、実行されないためここで失敗させる
+            exchange.fail(new IOException(Messages.getString("message.engine.shutdown"))); //$NON-NLS-1$
+        }
+        return exchange;
+    }
+
+    /**
+     * 交換を中断し、使用しているコネクションを切断します。
+     *
+     * @param exchange
+     *            交換
+     * @param cause
+     *            中断した原因
+     */
+    public void cancel(final NioExchange exchange, final IOException cause) {
+        exchange.fail(cause);
+        this.submit(new Runnable() {
+            public void run() {
+                NioConnection conn = exchange.connection;
+                if (conn != null && conn.exchange == exchange) {
+                    NioHttpEngine.this.close(conn);
+                }
+            }
+        });
+    }
+
+    /**
+     * エンジンを終了します。<br />
+     * すべてのコネクションを切断し、処理中の交換は{@link IOException}で失敗します。
+     */
+    public void shutdown() {
+        this.shutdown = true;
+        this.selector.wakeup();
+    }
+
+    /**
+     * エンジンが終了したかどうかを返します。
+     *
+     * @return 終了した場合true
+     */
+    public boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    /**
+     * アイドル状態のコネクションの数を返します。
+     *
+     * @return アイドル状態のコネクションの数
+     */
+    public int getIdleCount() {
+        return this.idleCount.get();
+    }
+
+    /**
+     * 開いているコネクションの数を返します。
+     *
+     * @return 開いているコネクションの数
+     */
+    public int getOpenCount() {
+        return this.openCount.get();
+    }
+
+    /**
+     * 新しく接続した回数を返します。
+     *
+     * @return 新しく接続した回数
+     */
+    public long getConnectCount() {
+        return this.connectCount.get();
+    }
+
+    /**
+     * タスクをセレクタースレッドで実行するよう登録します。
+     *
+     * @param task
+     *            タスク
+     */
+    private void submit(final Runnable task) {
+        this.tasks.offer(task);
+        this.selector.wakeup();
+    }
+
+    /**
+     * セレクタースレッドの処理です。
+     */
+    private void run() {
+        try {
+            while (!this.shutdown) {
+                this.selector.select(CHECK_INTERVAL);
+                Runnable task;
+                while ((task = this.tasks.poll()) != null) {
+                    runQuietly(task);
+                }
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    this.handle(key);
+                }
+                this.checkTimeouts(System.currentTimeMillis());
+            }
+        } catch (IOException e) {
+            // セレクターが使用できなくなった場合は終了する
+        } finally {
+            this.shutdown = true;
+            this.closeAll();
+        }
+    }
+
+    /**
+     * 交換にコネクションを割り当てて送信を開始します。
+     *
+     * @param exchange
+     *            交換
+     */
+    private void start(final NioExchange exchange) {
+        if (exchange.isDone()) {
+            return;
+        }
+        if (this.shutdown) {
+            exchange.fail(new IOException(Messages.getString("message.engine.shutdown"))); //$NON-NLS-1$
+            return;
+        }
+        exchange.attempts++;
+        NioConnection conn = this.pollIdle(exchange.getAddress());
+        if (conn != null) {
+            conn.reused = true;
+            conn.assign(exchange);
+            this.startWriting(conn);
+            return;
+        }
+
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            conn = new NioConnection(channel, exchange.getAddress());
+            conn.assign(exchange);
+            this.openCount.incrementAndGet();
+            this.connectCount.incrementAndGet();
+            conn.connected = channel.connect(exchange.getAddress());
+            conn.key = channel.register(this.selector, 0, conn);
+            if (conn.connected) {
+                this.startWriting(conn);
+            } else {
+                conn.key.interestOps(SelectionKey.OP_CONNECT);
+                conn.timeoutAt = deadline(exchange.getConnectTimeout());
+            }
+        } catch (IOException e) {
+            if (conn != null) {
+                this.close(conn);
+            } else if (channel != null) {
+                closeQuietly(channel);
+            }
+            exchange.fail(e);
+        }
+    }
+
+    /**
+     * リクエストの送信を開始します。
+     *
+     * @param conn
+     *            コネクション
+     */
+    private void startWriting(final NioConnection conn) {
+        conn.timeoutAt = deadline(conn.exchange.getReadTimeout());
+        conn.key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * 準備ができたチャネルを処理します。
+     *
+     * @param key
+     *            セレクションキー
+     */
+    private void handle(final SelectionKey key) {
+        NioConnection conn = (NioConnection) key.attachment();
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isConnectable()) {
+                if (conn.channel.finishConnect()) {
+                    conn.connected = true;
+                    this.startWriting(conn);
+                }
+            } else if (key.isWritable()) {
+                conn.channel.write(conn.output);
+                if (!conn.output.hasRemaining()) {
+                    conn.timeoutAt = deadline(conn.exchange.getReadTimeout());
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } else if (key.isReadable()) {
+                this.read(conn);
+            }
+        } catch (CancelledKeyException e) {
+            this.fail(conn, new IOException(Messages.getString("message.connection.cancelled"))); //$NON-NLS-1$
+        } catch (IOException e) {
+            this.fail(conn, e);
+        } catch (RuntimeException e) {
+            // 予期しない例外はこのコネクションの交換だけを失敗させ、セレクタースレッドは継続する
+            NioExchange exchange = conn.exchange;
+            if (exchange == null) {
+                this.removeIdle(conn);
+                this.close(conn);
+            } else {
+                this.abort(exchange, e);
+            }
+        }
+    }
+
+    /**
+     * レスポンスを受信して解析します。
+     *
+     * @param conn
+     *            コネクション
+     * @throws IOException
+     *             受信または解析に失敗した場合
+     */
+    private void read(final NioConnection conn) throws IOException {
+        ByteBuffer buffer = this.bufferPool.acquire();
+        try {
+            int read = conn.channel.read(buffer);
+            if (conn.exchange == null) {
+                // アイドル状態のコネクションが切断された、または予期しないデータを受信した
+                this.removeIdle(conn);
+                this.close(conn);
+                return;
+            }
+            if (read < 0) {
+                conn.parser.endOfInput();
+                this.complete(conn, false);
+                return;
+            }
+            buffer.flip();
+            if (conn.parser.parse(buffer)) {
+                this.complete(conn, !buffer.hasRemaining() && conn.parser.isKeepAlive());
+            } else {
+                conn.timeoutAt = deadline(conn.exchange.getReadTimeout());
+            }
+        } finally {
+            this.bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * レスポンスの受信を完了し、コネクションをアイドル状態にするか切断します。
+     *
+     * @param conn
+     *            コネクション
+     * @param keepAlive
+     *            コネクションを再利用できる場合true
+     */
+    private void complete(final NioConnection conn, final boolean keepAlive) {
+        NioExchange exchange = conn.exchange;
+        NioHttpResponse response = new NioHttpResponse(conn.parser);
+        conn.release();
+        if (keepAlive && !this.shutdown && this.offerIdle(conn)) {
+            conn.key.interestOps(SelectionKey.OP_READ);
+        } else {
+            this.close(conn);
+        }
+        exchange.complete(response);
+    }
+
+    /**
+     * コネクションを切断し、交換を失敗させます。<br />
+     * キープアライブしていたコネクションでレスポンスを1バイトも受信していない場合は、新しいコネクションで送信し直します。
+     *
+     * @param conn
+     *            コネクション
+     * @param cause
+     *            失敗した原因
+     */
+    private void fail(final NioConnection conn, final IOException cause) {
+        NioExchange exchange = conn.exchange;
+        boolean retry = conn.reused && !conn.parser.isStarted() && !(cause instanceof SocketTimeoutException);
+        if (exchange == null) {
+            this.removeIdle(conn);
+        }
+        this.close(conn);
+        if (exchange == null) {
+            return;
+        }
+        if (retry && exchange.attempts < MAX_ATTEMPTS && !this.shutdown) {
+            this.start(exchange);
+        } else {
+            exchange.fail(cause);
+        }
+    }
+
+    /**
+     * 予期しない例外が発生した交換を、送信し直さずに失敗させます。<br />
+     * 交換が使用しているコネクションは切断します。
+     *
+     * @param exchange
+     *            交換
+     * @param cause
+     *            発生した例外
+     */
+    private void abort(final NioExchange exchange, final RuntimeException cause) {
+        NioConnection conn = exchange.connection;
+        if (conn != null && conn.exchange == exchange) {
+            this.close(conn);
+        }
+        IOException failure = new IOException(Messages.getString("message.unexpected.error")); //$NON-NLS-1$
+        failure.initCause(cause);
+        exchange.fail(failure);
+    }
+
+    /**
+     * タイムアウトした交換と、保持する時間を超過したアイドル状態のコネクションを切断します。
+     *
+     * @param now
+     *            現在時刻（ミリ秒）
+     */
+    private void checkTimeouts(final long now) {
+        List<NioConnection> expired = new ArrayList<NioConnection>();
+        for (SelectionKey key : this.selector.keys()) {
+            NioConnection conn = (NioConnection) key.attachment();
+            if (conn == null) {
+                continue;
+            }
+            if (conn.exchange != null ? conn.timeoutAt > 0 && now >= conn.timeoutAt : now - conn.idleSince >= this.idleTimeout) {
+                expired.add(conn);
+            }
+        }
+        for (NioConnection conn : expired) {
+            if (conn.exchange == null) {
+                this.removeIdle(conn);
+                this.close(conn);
+            } else {
+                String key = conn.connected ? "message.read.timeout" : "message.connect.timeout"; //$NON-NLS-1$ //$NON-NLS-2$
+                this.fail(conn, new SocketTimeoutException(Messages.getString(key)));
+            }
+        }
+    }
+
+    /**
+     * 接続先のアイドル状態のコネクションを取り出します。
+     *
+     * @param address
+     *            接続先のアドレス
+     * @return アイドル状態のコネクション。ない場合はnull
+     */
+    private NioConnection pollIdle(final InetSocketAddress address) {
+        LinkedList<NioConnection> idle = this.idleConnections.get(address);
+        while (idle != null && !idle.isEmpty()) {
+            NioConnection conn = idle.removeFirst();
+            this.idleCount.decrementAndGet();
+            if (conn.key.isValid() && conn.channel.isOpen()) {
+                return conn;
+            }
+            this.close(conn);
+        }
+        return null;
+    }
+
+    /**
+     * コネクションをアイドル状態で保持します。
+     *
+     * @param conn
+     *            コネクション
+     * @return 保持した場合true、上限に達している場合false
+     */
+    private boolean offerIdle(final NioConnection conn) {
+        LinkedList<NioConnection> idle = this.idleConnections.get(conn.address);
+        if (idle == null) {
+            idle = new LinkedList<NioConnection>();
+            this.idleConnections.put(conn.address, idle);
+        }
+        if (idle.size() >= this.maxIdlePerRoute) {
+            return false;
+        }
+        conn.idleSince = System.currentTimeMillis();
+        idle.addFirst(conn);
+        this.idleCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * アイドル状態のコネクションを保持しているリストから取り除きます。
+     *
+     * @param conn
+     *            コネクション
+     */
+    private void removeIdle(final NioConnection conn) {
+        LinkedList<NioConnection> idle = this.idleConnections.get(conn.address);
+        if (idle != null && idle.remove(conn)) {
+            this.idleCount.decrementAndGet();
+            if (idle.isEmpty()) {
+                this.idleConnections.remove(conn.address);
+            }
+        }
+    }
+
+    /**
+     * コネクションを切断します。
+     *
+     * @param conn
+     *            コネクション
+     */
+    private void close(final NioConnection conn) {
+        if (conn.key != null) {
+            conn.key.cancel();
+        }
+        if (conn.channel.isOpen()) {
+            closeQuietly(conn.channel);
+            this.openCount.decrementAndGet();
+        }
+        conn.release();
+    }
+
+    /**
+     * すべてのコネクションを切断し、処理中の交換を失敗させます。
+     */
+    private void closeAll() {
+        IOException cause = new IOException(Messages.getString("message.engine.shutdown")); //$NON-NLS-1$
+        for (SelectionKey key : this.selector.keys()) {
+            NioConnection conn = (NioConnection) key.attachment();
+            if (conn == null) {
+                continue;
+            }
+            NioExchange exchange = conn.exchange;
+            this.close(conn);
+            if (exchange != null) {
+                exchange.fail(cause);
+            }
+        }
+        this.idleConnections.clear();
+        this.idleCount.set(0);
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            // 開始前の交換は失敗させる
+            runQuietly(task);
+        }
+        try {
+            this.selector.close();
+        } catch (IOException e) {
+            // Do nothing.
+        }
+    }
+
+    /**
+     * タイムアウトする時刻を返します。
+     *
+     * @param timeout
+     *            タイムアウト（ミリ秒）。0以下の場合は無制限
+     * @return タイムアウトする時刻（ミリ秒）。無制限の場合は0
+     */
+    private static long deadline(final int timeout) {
+        return timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+    }
+
+    /**
+     * タスクを実行します。<br />
+     * タスクで発生した実行時例外は、他の交換に影響しないよう無視します。
+     *
+     * @param task
+     *            タスク
+     */
+    private static void runQuietly(final Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            // Do nothing.
+        }
+    }
+
+    /**
+     * 例外を無視してチャネルを閉じます。
+     *
+     * @param channel
+     *            チャネル
+     */
+    private static void closeQuietly(final SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Do nothing.
+        }
+    }
+
+}
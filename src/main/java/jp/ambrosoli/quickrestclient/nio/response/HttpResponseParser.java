@@ -0,0 +1,600 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.nio.response;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import jp.ambrosoli.quickrestclient.headers.HttpHeader;
+
+/**
+ * {@link ByteBuffer}で受信したHTTP/1.1のレスポンスを逐次解析するパーサーです。
+ * <p>
+ * 受信したデータを{@link #parse(ByteBuffer)}に渡すと、レスポンスが完結した時点でtrueを返します。
+ * データはいくつに分割されていても構いません。 ステータス行とヘッダーはバイト列のまま行単位でバッファに蓄積し、
+ * 1行につきヘッダー名と値の2つの文字列だけを生成します。 本文はContent-Length、chunked、コネクションの切断による終端に対応します。
+ * </p>
+ * <p>
+ * インスタンスはスレッドセーフではありません。{@link #reset(boolean)}を呼び出すと、同じコネクションの次のレスポンスの解析に再利用できます。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class HttpResponseParser {
+
+    /** 1行の最大長 */
+    public static final int MAX_LINE_LENGTH = 8192;
+
+    /** ヘッダーの最大数 */
+    public static final int MAX_HEADER_COUNT = 256;
+
+    /** 本文の長さが不明な場合の初期バッファサイズ */
+    private static final int INITIAL_BODY_SIZE = 1024;
+
+    /** CR */
+    private static final byte CR = '\r';
+
+    /** LF */
+    private static final byte LF = '\n';
+
+    /** 解析の状態 */
+    private enum State {
+        /** ステータス行 */
+        STATUS_LINE,
+        /** ヘッダー */
+        HEADERS,
+        /** Content-Lengthで長さが決まる本文 */
+        BODY_LENGTH,
+        /** チャンクのサイズ行 */
+        CHUNK_SIZE,
+        /** チャンクのデータ */
+        CHUNK_DATA,
+        /** チャンクのデータの後の改行 */
+        CHUNK_DATA_END,
+        /** トレーラー */
+        TRAILERS,
+        /** コネクションの切断で終わる本文 */
+        BODY_EOF,
+        /** 完了 */
+        DONE
+    }
+
+    /** 現在の状態 */
+    private State state = State.STATUS_LINE;
+
+    /** HEADリクエストに対するレスポンスの場合true */
+    private boolean headRequest;
+
+    /** 行のバッファ */
+    private byte[] line = new byte[256];
+
+    /** 行のバッファに蓄積した長さ */
+    private int lineLength;
+
+    /** プロトコルバージョン */
+    private String protocol;
+
+    /** ステータスコード */
+    private int statusCode;
+
+    /** ヘッダー */
+    private final List<HttpHeader> headers = new ArrayList<HttpHeader>();
+
+    /** Content-Length。指定されていない場合は-1 */
+    private long contentLength;
+
+    /** chunkedの場合true */
+    private boolean chunked;
+
+    /** Connection: closeの場合true */
+    private boolean connectionClose;
+
+    /** Connection: keep-aliveの場合true */
+    private boolean connectionKeepAlive;
+
+    /** 本文 */
+    private byte[] body;
+
+    /** 本文の長さ */
+    private int bodyLength;
+
+    /** 現在のチャンク、またはContent-Lengthの残りの長さ */
+    private long remaining;
+
+    /** 1バイト以上受信した場合true */
+    private boolean started;
+
+    /**
+     * HttpResponseParserを生成します。
+     */
+    public HttpResponseParser() {
+        this.reset(false);
+    }
+
+    /**
+     * 次のレスポンスを解析するために状態を初期化します。
+     *
+     * @param headRequest
+     *            HEADリクエストに対するレスポンスの場合true
+     */
+    public void reset(final boolean headRequest) {
+        this.state = State.STATUS_LINE;
+        this.headRequest = headRequest;
+        this.lineLength = 0;
+        this.protocol = null;
+        this.statusCode = 0;
+        this.headers.clear();
+        this.contentLength = -1;
+        this.chunked = false;
+        this.connectionClose = false;
+        this.connectionKeepAlive = false;
+        this.body = null;
+        this.bodyLength = 0;
+        this.remaining = 0;
+        this.started = false;
+    }
+
+    /**
+     * 受信したデータを解析します。<br />
+     * レスポンスが完結した場合、以降のデータはバッファに残ったままになります。
+     *
+     * @param buffer
+     *            受信したデータ
+     * @return レスポンスが完結した場合true
+     * @throws IOException
+     *             レスポンスの形式が不正な場合
+     */
+    public boolean parse(final ByteBuffer buffer) throws IOException {
+        if (buffer.hasRemaining()) {
+            this.started = true;
+        }
+        while (this.state != State.DONE && buffer.hasRemaining()) {
+            switch (this.state) {
+            case STATUS_LINE:
+                if (this.readLine(buffer)) {
+                    this.parseStatusLine();
+                }
+                break;
+            case HEADERS:
+                if (this.readLine(buffer)) {
+                    this.parseHeaderLine();
+                }
+                break;
+            case BODY_LENGTH:
+            case CHUNK_DATA:
+                this.readBody(buffer);
+                break;
+            case CHUNK_SIZE:
+                if (this.readLine(buffer)) {
+                    this.parseChunkSize();
+                }
+                break;
+            case CHUNK_DATA_END:
+                if (this.readLine(buffer)) {
+                    if (this.lineLength != 0) {
+                        throw new IOException(Messages.getString("message.chunk.illegal")); //$NON-NLS-1$
+                    }
+                    this.state = State.CHUNK_SIZE;
+                }
+                break;
+            case TRAILERS:
+                if (this.readLine(buffer)) {
+                    // トレーラーは読み捨てる
+                    if (this.lineLength == 0) {
+                        this.state = State.DONE;
+                    }
+                    this.lineLength = 0;
+                }
+                break;
+            case BODY_EOF:
+                this.remaining = buffer.remaining();
+                this.readBody(buffer);
+                break;
+            default:
+                throw new AssertionError();
+            }
+        }
+        return this.state == State.DONE;
+    }
+
+    /**
+     * コネクションが切断されたことを通知します。
+     *
+     * @return 本文がコネクションの切断で終わるレスポンスが完結した場合true
+     * @throws IOException
+     *             レスポンスの途中で切断された場合
+     */
+    public boolean endOfInput() throws IOException {
+        if (this.state == State.BODY_EOF) {
+            this.state = State.DONE;
+            return true;
+        }
+        if (this.state == State.DONE) {
+            return true;
+        }
+        throw new IOException(Messages.getString("message.connection.closed")); //$NON-NLS-1$
+    }
+
+    /**
+     * 1バイト以上受信したかどうかを返します。
+     *
+     * @return 受信した場合true
+     */
+    public boolean isStarted() {
+        return this.started;
+    }
+
+    /**
+     * レスポンスが完結したかどうかを返します。
+     *
+     * @return 完結した場合true
+     */
+    public boolean isDone() {
+        return this.state == State.DONE;
+    }
+
+    /**
+     * レスポンスの後にコネクションを再利用できるかどうかを返します。
+     *
+     * @return 再利用できる場合true
+     */
+    public boolean isKeepAlive() {
+        if (this.state != State.DONE || this.connectionClose || this.contentLength < 0 && !this.chunked
+                && hasBody(this.statusCode, this.headRequest)) {
+            return false;
+        }
+        if ("HTTP/1.0".equals(this.protocol)) { //$NON-NLS-1$
+            return this.connectionKeepAlive;
+        }
+        return true;
+    }
+
+    /**
+     * ステータスコードを返します。
+     *
+     * @return ステータスコード
+     */
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    /**
+     * プロトコルバージョンを返します。
+     *
+     * @return プロトコルバージョン
+     */
+    public String getProtocol() {
+        return this.protocol;
+    }
+
+    /**
+     * ヘッダーのコピーを返します。
+     *
+     * @return ヘッダー
+     */
+    public List<HttpHeader> getHeaders() {
+        return new ArrayList<HttpHeader>(this.headers);
+    }
+
+    /**
+     * 本文のコピーを返します。
+     *
+     * @return 本文。本文がない場合は空の配列
+     */
+    public byte[] getBody() {
+        byte[] copy = new byte[this.bodyLength];
+        if (this.body != null) {
+            System.arraycopy(this.body, 0, copy, 0, this.bodyLength);
+        }
+        return copy;
+    }
+
+    /**
+     * 行を読み込みます。末尾のCRLF（またはLF）は行のバッファに含めません。
+     *
+     * @param buffer
+     *            受信したデータ
+     * @return 行が完結した場合true
+     * @throws IOException
+     *             行が長すぎる場合
+     */
+    private boolean readLine(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == LF) {
+                if (this.lineLength > 0 && this.line[this.lineLength - 1] == CR) {
+                    this.lineLength--;
+                }
+                return true;
+            }
+            if (this.lineLength >= MAX_LINE_LENGTH) {
+                throw new IOException(Messages.getString("message.line.too.long")); //$NON-NLS-1$
+            }
+            if (this.lineLength == this.line.length) {
+                byte[] expanded = new byte[Math.min(this.line.length * 2, MAX_LINE_LENGTH)];
+                System.arraycopy(this.line, 0, expanded, 0, this.lineLength);
+                this.line = expanded;
+            }
+            this.line[this.lineLength++] = b;
+        }
+        return false;
+    }
+
+    /**
+     * ステータス行を解析します。
+     *
+     * @throws IOException
+     *             ステータス行の形式が不正な場合
+     */
+    private void parseStatusLine() throws IOException {
+        int length = this.lineLength;
+        this.lineLength = 0;
+        if (length == 0) {
+            // レスポンスの前の空行は無視する
+            return;
+        }
+        int first = this.indexOf((byte) ' ', 0, length);
+        if (first < 0 || length < first + 4 || !this.startsWith("HTTP/")) { //$NON-NLS-1$
+            throw new IOException(Messages.getString("message.status.line.illegal")); //$NON-NLS-1$
+        }
+        int code = 0;
+        for (int i = first + 1; i < first + 4; i++) {
+            int digit = this.line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException(Messages.getString("message.status.line.illegal")); //$NON-NLS-1$
+            }
+            code = code * 10 + digit;
+        }
+        this.protocol = toLatin1(this.line, 0, first);
+        this.statusCode = code;
+        this.state = State.HEADERS;
+    }
+
+    /**
+     * ヘッダー行を解析します。空行の場合は本文の読み込みを開始します。
+     *
+     * @throws IOException
+     *             ヘッダー行の形式が不正な場合
+     */
+    private void parseHeaderLine() throws IOException {
+        int length = this.lineLength;
+        this.lineLength = 0;
+        if (length == 0) {
+            this.startBody();
+            return;
+        }
+        int colon = this.indexOf((byte) ':', 0, length);
+        if (colon <= 0) {
+            throw new IOException(Messages.getString("message.header.illegal")); //$NON-NLS-1$
+        }
+        if (this.headers.size() >= MAX_HEADER_COUNT) {
+            throw new IOException(Messages.getString("message.header.too.many")); //$NON-NLS-1$
+        }
+        int start = colon + 1;
+        int end = length;
+        while (start < end && isWhitespace(this.line[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(this.line[end - 1])) {
+            end--;
+        }
+        String name = toLatin1(this.line, 0, colon);
+        String value = toLatin1(this.line, start, end - start);
+        this.headers.add(new HttpHeader(name, value));
+
+        if ("Content-Length".equalsIgnoreCase(name)) { //$NON-NLS-1$
+            try {
+                this.contentLength = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IOException(Messages.getString("message.header.illegal")); //$NON-NLS-1$
+            }
+            if (this.contentLength < 0 || this.contentLength > Integer.MAX_VALUE) {
+                throw new IOException(Messages.getString("message.header.illegal")); //$NON-NLS-1$
+            }
+        } else if ("Transfer-Encoding".equalsIgnoreCase(name)) { //$NON-NLS-1$
+            this.chunked = value.toLowerCase(Locale.ENGLISH).endsWith("chunked"); //$NON-NLS-1$
+        } else if ("Connection".equalsIgnoreCase(name)) { //$NON-NLS-1$
+            String token = value.toLowerCase(Locale.ENGLISH);
+            this.connectionClose |= token.indexOf("close") >= 0; //$NON-NLS-1$
+            this.connectionKeepAlive |= token.indexOf("keep-alive") >= 0; //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * ヘッダーの内容に従って本文の読み込みを開始します。
+     */
+    private void startBody() {
+        if (this.statusCode >= 100 && this.statusCode < 200) {
+            // 100 Continueなどの中間レスポンスは読み捨てて次のレスポンスを待つ
+            boolean head = this.headRequest;
+            boolean started = this.started;
+            this.reset(head);
+            this.started = started;
+            return;
+        }
+        if (!hasBody(this.statusCode, this.headRequest)) {
+            this.state = State.DONE;
+        } else if (this.chunked) {
+            this.body = new byte[INITIAL_BODY_SIZE];
+            this.state = State.CHUNK_SIZE;
+        } else if (this.contentLength >= 0) {
+            // Content-Lengthはサーバーが送信した値のため、受信した分だけバッファを拡張する
+            this.body = new byte[(int) Math.min(this.contentLength, INITIAL_BODY_SIZE)];
+            this.remaining = this.contentLength;
+            this.state = this.contentLength == 0 ? State.DONE : State.BODY_LENGTH;
+        } else {
+            this.body = new byte[INITIAL_BODY_SIZE];
+            this.state = State.BODY_EOF;
+        }
+    }
+
+    /**
+     * チャンクのサイズ行を解析します。
+     *
+     * @throws IOException
+     *             サイズの形式が不正な場合
+     */
+    private void parseChunkSize() throws IOException {
+        int length = this.lineLength;
+        this.lineLength = 0;
+        long size = 0;
+        int digits = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = Character.digit(this.line[i], 16);
+            if (digit < 0) {
+                if (this.line[i] == ';' || isWhitespace(this.line[i])) {
+                    break;
+                }
+                throw new IOException(Messages.getString("message.chunk.illegal")); //$NON-NLS-1$
+            }
+            if (++digits > 15) {
+                throw new IOException(Messages.getString("message.chunk.illegal")); //$NON-NLS-1$
+            }
+            size = size * 16 + digit;
+        }
+        if (digits == 0) {
+            throw new IOException(Messages.getString("message.chunk.illegal")); //$NON-NLS-1$
+        }
+        if (size == 0) {
+            this.state = State.TRAILERS;
+            return;
+        }
+        this.remaining = size;
+        this.state = State.CHUNK_DATA;
+    }
+
+    /**
+     * 残りの長さを上限として本文を読み込みます。
+     *
+     * @param buffer
+     *            受信したデータ
+     */
+    private void readBody(final ByteBuffer buffer) {
+        int count = (int) Math.min(this.remaining, buffer.remaining());
+        this.ensureBodyCapacity(count);
+        buffer.get(this.body, this.bodyLength, count);
+        this.bodyLength += count;
+        this.remaining -= count;
+        if (this.remaining > 0 || this.state == State.BODY_EOF) {
+            return;
+        }
+        this.state = this.state == State.CHUNK_DATA ? State.CHUNK_DATA_END : State.DONE;
+    }
+
+    /**
+     * 本文のバッファを拡張します。
+     *
+     * @param count
+     *            追加する長さ
+     */
+    private void ensureBodyCapacity(final int count) {
+        int required = this.bodyLength + count;
+        if (required <= this.body.length) {
+            return;
+        }
+        long capacity = Math.max(required, (long) this.body.length * 2);
+        if (this.state == State.BODY_LENGTH) {
+            capacity = Math.min(capacity, this.bodyLength + this.remaining);
+        }
+        byte[] expanded = new byte[(int) Math.min(capacity, Integer.MAX_VALUE)];
+        System.arraycopy(this.body, 0, expanded, 0, this.bodyLength);
+        this.body = expanded;
+    }
+
+    /**
+     * 行のバッファから指定したバイトを検索します。
+     *
+     * @param b
+     *            検索するバイト
+     * @param from
+     *            検索の開始位置
+     * @param to
+     *            検索の終了位置
+     * @return 見つかった位置。見つからない場合は-1
+     */
+    private int indexOf(final byte b, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (this.line[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 行のバッファが指定したASCII文字列で始まるかどうかを返します。
+     *
+     * @param prefix
+     *            ASCII文字列
+     * @return 始まる場合true
+     */
+    private boolean startsWith(final String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (this.line[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * バイト列をISO-8859-1として文字列に変換します。
+     *
+     * @param bytes
+     *            バイト列
+     * @param offset
+     *            開始位置
+     * @param length
+     *            長さ
+     * @return 文字列
+     */
+    private static String toLatin1(final byte[] bytes, final int offset, final int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (bytes[offset + i] & 0xff);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 空白文字かどうかを返します。
+     *
+     * @param b
+     *            バイト
+     * @return 空白文字の場合true
+     */
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * レスポンスに本文があるかどうかを返します。
+     *
+     * @param statusCode
+     *            ステータスコード
+     * @param headRequest
+     *            HEADリクエストに対するレスポンスの場合true
+     * @return 本文がある場合true
+     */
+    private static boolean hasBody(final int statusCode, final boolean headRequest) {
+        return !headRequest && statusCode != 204 && statusCode != 304 && statusCode >= 200;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.nio.response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jp.ambrosoli.quickrestclient.headers.HttpHeader;
+import jp.ambrosoli.quickrestclient.response.AbstractHttpResponse;
+import jp.ambrosoli.quickrestclient.response.ByteArrayResponseContent;
+
+/**
+ * {@link HttpResponseParser}で解析したHTTPレスポンスを扱うクラスです。
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class NioHttpResponse extends AbstractHttpResponse {
+
+    /** Content-Typeヘッダー */
+    private static final String CONTENT_TYPE = "Content-Type"; //$NON-NLS-1$
+
+    /** Content-Lengthヘッダー */
+    private static final String CONTENT_LENGTH = "Content-Length"; //$NON-NLS-1$
+
+    /** プロトコルバージョン */
+    private final String protocol;
+
+    /** ステータスコード */
+    private final int statusCode;
+
+    /** ヘッダー */
+    private final List<HttpHeader> headers;
+
+    /**
+     * 解析を完了したパーサーからNioHttpResponseを生成します。
+     *
+     * @param parser
+     *            解析を完了したパーサー
+     */
+    public NioHttpResponse(final HttpResponseParser parser) {
+        super(new ByteArrayResponseContent(parser.getBody()));
+        this.protocol = parser.getProtocol();
+        this.statusCode = parser.getStatusCode();
+        this.headers = parser.getHeaders();
+    }
+
+    public List<HttpHeader> getAllHeaders() {
+        return new ArrayList<HttpHeader>(this.headers);
+    }
+
+    public String getContentType() {
+        HttpHeader header = this.getHeader(CONTENT_TYPE);
+        return header != null ? header.getValue() : null;
+    }
+
+    public long getContentLength() {
+        HttpHeader header = this.getHeader(CONTENT_LENGTH);
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.getValue());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public HttpHeader getHeader(final String headerName) {
+        for (HttpHeader header : this.headers) {
+            if (header.getName().equalsIgnoreCase(headerName)) {
+                return header;
+            }
+        }
+        return null;
+    }
+
+    public List<HttpHeader> getHeaders(final String headerName) {
+        List<HttpHeader> headerList = new ArrayList<HttpHeader>();
+        for (HttpHeader header : this.headers) {
+            if (header.getName().equalsIgnoreCase(headerName)) {
+                headerList.add(header);
+            }
+        }
+        return headerList;
+    }
+
+    public int getStatusCode() {
+        return this.statusCode;
+    }
+
+    /**
+     * プロトコルバージョンを返します。
+     *
+     * @return プロトコルバージョン
+     */
+    public String getProtocol() {
+        return this.protocol;
+    }
+
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.nio.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.impl.auth.BasicScheme;
+
+import jp.ambrosoli.quickrestclient.Http;
+import jp.ambrosoli.quickrestclient.enums.AuthType;
+import jp.ambrosoli.quickrestclient.enums.HttpMethod;
+import jp.ambrosoli.quickrestclient.exception.DeadlineExceededRuntimeException;
+import jp.ambrosoli.quickrestclient.exception.IORuntimeException;
+import jp.ambrosoli.quickrestclient.exception.SocketTimeoutRuntimeException;
+import jp.ambrosoli.quickrestclient.headers.HttpHeaders;
+import jp.ambrosoli.quickrestclient.nio.conn.NioExchange;
+import jp.ambrosoli.quickrestclient.nio.conn.NioHttpEngine;
+import jp.ambrosoli.quickrestclient.params.AuthInfo;
+import jp.ambrosoli.quickrestclient.params.BasicQueryStringBuilder;
+import jp.ambrosoli.quickrestclient.params.NameValueObject;
+import jp.ambrosoli.quickrestclient.params.ProxyInfo;
+import jp.ambrosoli.quickrestclient.params.RequestParams;
+import jp.ambrosoli.quickrestclient.request.HttpRequest;
+import jp.ambrosoli.quickrestclient.response.HttpResponse;
+import jp.ambrosoli.quickrestclient.service.HttpService;
+import jp.ambrosoli.quickrestclient.util.StringUtil;
+import jp.ambrosoli.quickrestclient.util.URIUtil;
+
+/**
+ * {@link NioHttpEngine}を使用したRESTエンドポイントのサービス呼び出しを行うクラスです。
+ * <p>
+ * HttpClientの通信処理を使用せず、java.nioのチャネルとセレクターで通信します。
+ * Basic認証の資格情報はApache HttpClientを使用するサービスと同じく{@link BasicScheme}で生成します。
+ * 送受信は1つのセレクタースレッドが多重化して処理するため、同時に多数のリクエストを送信しても通信のためのスレッドは増えません。
+ * レスポンスを最後まで受信したコネクションはキープアライブして再利用します。
+ * </p>
+ * <p>
+ * サポートするのはhttpスキームのHTTP/1.1（およびHTTP/1.0）のみです。 https、Digest認証、リダイレクトの追跡はサポートしません。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class NioHttpService implements HttpService {
+
+    /** サポートするスキーム */
+    protected static final String HTTP_SCHEME = "http"; //$NON-NLS-1$
+
+    /** デフォルトのポート番号 */
+    protected static final int DEFAULT_PORT = 80;
+
+    /** サービスが生成するため、リクエストでは指定できないヘッダー名（小文字） */
+    protected static final Set<String> RESTRICTED_HEADERS = Collections.unmodifiableSet(new HashSet<String>(Arrays
+            .asList("connection", "content-length", "host", "transfer-encoding"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+    /** ヘッダーの文字コード */
+    private static final String HEADER_ENCODING = "ISO-8859-1"; //$NON-NLS-1$
+
+    /** 改行 */
+    private static final String CRLF = "\r\n"; //$NON-NLS-1$
+
+    /** フォームのContent-Type */
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded; charset="; //$NON-NLS-1$
+
+    /** 使用するエンジン */
+    private final NioHttpEngine engine;
+
+    /**
+     * 共有のエンジンを使用するNioHttpServiceを生成します。
+     */
+    public NioHttpService() {
+        this(NioHttpEngine.getDefault());
+    }
+
+    /**
+     * 指定したエンジンを使用するNioHttpServiceを生成します。
+     *
+     * @param engine
+     *            使用するエンジン
+     */
+    public NioHttpService(final NioHttpEngine engine) {
+        this.engine = engine;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * jp.ambrosoli.quickrestclient.service.HttpService#execute(jp.ambrosoli
+     * .quickrestclient.request.HttpRequest)
+     */
+    public HttpResponse execute(final HttpRequest request) {
+        URI uri = request.getUri();
+        if (!HTTP_SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException(Messages.getString("message.scheme.unsupported", uri.getScheme())); //$NON-NLS-1$
+        }
+        ByteBuffer requestBuffer = this.createRequest(request);
+        InetSocketAddress address = this.resolveAddress(request);
+        NioExchange exchange = this.engine.execute(new NioExchange(address, requestBuffer,
+                request.getMethod() == HttpMethod.HEAD, request.getConnectTimeout(), request.getReadTimeout()));
+        return this.await(exchange, request.getDeadline());
+    }
+
+    /**
+     * レスポンスの受信を待機します。
+     *
+     * @param exchange
+     *            交換
+     * @param deadline
+     *            期限（ミリ秒）。0以下の場合は無制限
+     * @return レスポンス
+     * @throws DeadlineExceededRuntimeException
+     *             期限を超過した場合
+     */
+    protected HttpResponse await(final NioExchange exchange, final long deadline) {
+        try {
+            if (!exchange.await(deadline)) {
+                this.engine.cancel(exchange, new InterruptedIOException(Messages
+                        .getString("message.deadline.exceeded"))); //$NON-NLS-1$
+                throw new DeadlineExceededRuntimeException(Messages.getString("message.deadline.exceeded")); //$NON-NLS-1$
+            }
+            return exchange.getResponse();
+        } catch (IOException e) {
+            throw toRuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException cause = new InterruptedIOException(Messages.getString("message.interrupted")); //$NON-NLS-1$
+            cause.initCause(e);
+            this.engine.cancel(exchange, cause);
+            throw new IORuntimeException(cause);
+        }
+    }
+
+    /**
+     * 接続先のアドレスを返します。<br />
+     * プロキシが指定されている場合はプロキシのアドレスを返します。
+     *
+     * @param request
+     *            リクエスト
+     * @return 接続先のアドレス
+     */
+    protected InetSocketAddress resolveAddress(final HttpRequest request) {
+        ProxyInfo proxy = request.getProxyInfo();
+        String host = proxy != null ? proxy.getHost() : request.getUri().getHost();
+        int port = proxy != null ? proxy.getPort() : getPort(request.getUri());
+        try {
+            InetAddress address = request.getDnsResolver() != null ? request.getDnsResolver().resolve(host)[0]
+                    : InetAddress.getByName(host);
+            return new InetSocketAddress(address, port);
+        } catch (UnknownHostException e) {
+            throw new IORuntimeException(e);
+        }
+    }
+
+    /**
+     * 送信するリクエストのバイト列を生成します。
+     *
+     * @param request
+     *            リクエスト
+     * @return リクエストのバイト列
+     */
+    protected ByteBuffer createRequest(final HttpRequest request) {
+        HttpMethod method = request.getMethod();
+        String encoding = StringUtil.isNotEmpty(request.getCharset()) ? request.getCharset()
+                : StringUtil.DEFAULT_ENCODING;
+        boolean enclosing = method == HttpMethod.POST || method == HttpMethod.PUT;
+        URI uri = enclosing ? request.getUri() : this.addQueryString(request.getUri(), request.getParams(),
+                encoding);
+        String protocol = this.getProtocol(request.getProtocol());
+        byte[] body = enclosing ? this.createFormBody(request.getParams(), encoding) : null;
+
+        StringBuilder head = new StringBuilder(256);
+        head.append(method.name()).append(' ').append(this.getRequestTarget(uri, request.getProxyInfo() != null))
+                .append(' ').append(protocol).append(CRLF);
+        appendHeader(head, "Host", getHostHeader(uri)); //$NON-NLS-1$
+        if (Http.HTTP_1_0.equals(protocol)) {
+            appendHeader(head, "Connection", "keep-alive"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        this.appendHeaders(head, request.getHeaders());
+        this.appendAuthorization(head, request.getAuthInfo());
+        this.appendProxyAuthorization(head, request.getProxyInfo());
+        if (body != null) {
+            if (body.length > 0) {
+                appendHeader(head, "Content-Type", FORM_CONTENT_TYPE + encoding); //$NON-NLS-1$
+            }
+            appendHeader(head, "Content-Length", String.valueOf(body.length)); //$NON-NLS-1$
+        }
+        head.append(CRLF);
+
+        byte[] headBytes = StringUtil.getBytes(head.toString(), HEADER_ENCODING);
+        ByteBuffer buffer = ByteBuffer.allocate(headBytes.length + (body != null ? body.length : 0));
+        buffer.put(headBytes);
+        if (body != null) {
+            buffer.put(body);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * プロトコルバージョンを返します。
+     *
+     * @param protocol
+     *            リクエストで指定したプロトコルバージョン。nullの場合はHTTP/1.1
+     * @return プロトコルバージョン
+     * @throws IllegalArgumentException
+     *             サポートしていないプロトコルバージョンの場合
+     */
+    protected String getProtocol(final String protocol) {
+        if (protocol == null || protocol.equals(Http.HTTP_1_1)) {
+            return Http.HTTP_1_1;
+        }
+        if (protocol.equals(Http.HTTP_1_0)) {
+            return Http.HTTP_1_0;
+        }
+        throw new IllegalArgumentException(Messages.getString("message.version.illegal")); //$NON-NLS-1$
+    }
+
+    /**
+     * リクエストラインに指定するリクエストターゲットを返します。<br />
+     * プロキシを経由する場合は絶対URI、それ以外の場合はパスとクエリストリングを返します。
+     *
+     * @param uri
+     *            URI
+     * @param proxy
+     *            プロキシを経由する場合true
+     * @return リクエストターゲット
+     */
+    protected String getRequestTarget(final URI uri, final boolean proxy) {
+        StringBuilder target = new StringBuilder();
+        if (proxy) {
+            target.append(uri.getScheme()).append("://").append(getHostHeader(uri)); //$NON-NLS-1$
+        }
+        String path = uri.getRawPath();
+        target.append(StringUtil.isNotEmpty(path) ? path : "/"); //$NON-NLS-1$
+        if (uri.getRawQuery() != null) {
+            target.append('?').append(uri.getRawQuery());
+        }
+        return target.toString();
+    }
+
+    /**
+     * クエリストリングを追加した新しいURIを生成して返します。リクエストパラメータがない場合はURIをそのまま返します。
+     *
+     * @param uri
+     *            URI
+     * @param params
+     *            リクエストパラメータ
+     * @param encoding
+     *            文字コード
+     * @return クエリストリングを追加した新しいURI。リクエストパラメータがない場合は引数で受け取ったURI
+     */
+    protected URI addQueryString(final URI uri, final RequestParams params, final String encoding) {
+        if (params == null || params.isEmpty()) {
+            return uri;
+        }
+        return URIUtil.addQueryString(uri, params.getConformedParams(new BasicQueryStringBuilder(), encoding));
+    }
+
+    /**
+     * リクエストパラメータをURLエンコードしたフォームの本文を生成します。
+     *
+     * @param params
+     *            リクエストパラメータ
+     * @param encoding
+     *            文字コード
+     * @return フォームの本文。リクエストパラメータがない場合は空の配列
+     */
+    protected byte[] createFormBody(final RequestParams params, final String encoding) {
+        if (params == null || params.isEmpty()) {
+            return new byte[0];
+        }
+        String queryString = params.getConformedParams(new BasicQueryStringBuilder(), encoding);
+        return StringUtil.getBytes(queryString.substring(1), encoding);
+    }
+
+    /**
+     * リクエストで指定したHTTPヘッダを追加します。<br />
+     * {@link #RESTRICTED_HEADERS}に含まれるヘッダーは無視します。
+     *
+     * @param head
+     *            リクエストのヘッダー部
+     * @param httpHeaders
+     *            追加するヘッダ
+     */
+    protected void appendHeaders(final StringBuilder head, final HttpHeaders httpHeaders) {
+        if (httpHeaders == null || httpHeaders.isEmpty()) {
+            return;
+        }
+        for (NameValueObject header : httpHeaders.getHeaders()) {
+            if (RESTRICTED_HEADERS.contains(header.getName().toLowerCase(Locale.ENGLISH))) {
+                continue;
+            }
+            appendHeader(head, header.getName(), header.getValue());
+        }
+    }
+
+    /**
+     * Basic認証のAuthorizationヘッダーを追加します。<br />
+     * 認証要求を待たずに、常に最初のリクエストから送信します。
+     *
+     * @param head
+     *            リクエストのヘッダー部
+     * @param authInfo
+     *            認証情報
+     * @throws UnsupportedOperationException
+     *             Basic認証以外の認証情報が指定された場合
+     */
+    protected void appendAuthorization(final StringBuilder head, final AuthInfo authInfo) {
+        if (authInfo == null || authInfo.type == null) {
+            return;
+        }
+        if (authInfo.type != AuthType.BASIC) {
+            throw new UnsupportedOperationException(Messages.getString("message.auth.unsupported", authInfo.type)); //$NON-NLS-1$
+        }
+        appendHeader(head, "Authorization", basic(authInfo.username, authInfo.password, false)); //$NON-NLS-1$
+    }
+
+    /**
+     * プロキシに認証情報が設定されている場合、Basic認証のProxy-Authorizationヘッダーを追加します。
+     *
+     * @param head
+     *            リクエストのヘッダー部
+     * @param proxy
+     *            プロキシの情報
+     */
+    protected void appendProxyAuthorization(final StringBuilder head, final ProxyInfo proxy) {
+        if (proxy == null || proxy.getUsername() == null) {
+            return;
+        }
+        appendHeader(head, "Proxy-Authorization", basic(proxy.getUsername(), proxy.getPassword(), true)); //$NON-NLS-1$
+    }
+
+    /**
+     * {@link IOException}を対応する実行時例外に変換します。
+     *
+     * @param e
+     *            {@link IOException}
+     * @return 実行時例外
+     */
+    protected static IORuntimeException toRuntimeException(final IOException e) {
+        if (e instanceof SocketTimeoutException) {
+            IORuntimeException timeout = new SocketTimeoutRuntimeException(e.getMessage());
+            timeout.initCause(e);
+            return timeout;
+        }
+        return new IORuntimeException(e);
+    }
+
+    /**
+     * Hostヘッダーの値を返します。
+     *
+     * @param uri
+     *            URI
+     * @return Hostヘッダーの値
+     */
+    private static String getHostHeader(final URI uri) {
+        if (uri.getPort() < 0 || uri.getPort() == DEFAULT_PORT) {
+            return uri.getHost();
+        }
+        return uri.getHost() + ':' + uri.getPort();
+    }
+
+    /**
+     * 接続先のポート番号を返します。
+     *
+     * @param uri
+     *            URI
+     * @return ポート番号
+     */
+    private static int getPort(final URI uri) {
+        return uri.getPort() < 0 ? DEFAULT_PORT : uri.getPort();
+    }
+
+    /**
+     * ヘッダーを1行追加します。
+     *
+     * @param head
+     *            リクエストのヘッダー部
+     * @param name
+     *            ヘッダー名
+     * @param value
+     *            値
+     */
+    private static void appendHeader(final StringBuilder head, final String name, final String value) {
+        head.append(name).append(": ").append(value != null ? value : "").append(CRLF); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Basic認証の資格情報を返します。
+     *
+     * @param username
+     *            ユーザ名
+     * @param password
+     *            パスワード
+     * @param proxy
+     *            プロキシの資格情報の場合true
+     * @return Basic認証の資格情報
+     */
+    private static String basic(final String username, final String password, final boolean proxy) {
+        UsernamePasswordCredentials credentials = new UsernamePasswordCredentials(username, password != null ? password
+                : ""); //$NON-NLS-1$
+        return BasicScheme.authenticate(credentials, StringUtil.DEFAULT_ENCODING, proxy).getValue();
+    }
+
+}
@@ -34,6 +34,9 @@ public class AuthInfo {
     /** パスワード */
     public String password;
 
+    /** 最初のリクエストから認証ヘッダーを送信する場合true（Basic認証のみ有効） */
+    public boolean preemptive;
+
     /**
      * AuthInfoを生成します。
      * 
@@ -50,6 +53,28 @@ public class AuthInfo {
         this.password = password;
     }
 
+    /**
+     * AuthInfoを生成します。
+     * <p>
+     * preemptiveにtrueを指定すると、サーバーからの認証要求（401）を待たずに最初のリクエストから
+     * Authorizationヘッダーを送信します。Basic認証以外では無視されます。
+     * </p>
+     * 
+     * @param type
+     *            認証タイプ
+     * @param username
+     *            ユーザ名
+     * @param password
+     *            パスワード
+     * @param preemptive
+     *            最初のリクエストから認証ヘッダーを送信する場合true
+     * @since 0.3.0
+     */
+    public AuthInfo(final AuthType type, final String username, final String password, final boolean preemptive) {
+        this(type, username, password);
+        this.preemptive = preemptive;
+    }
+
     /**
      * AuthInfoを生成します。
      */
@@ -32,6 +32,12 @@ public class ProxyInfo {
     /** ポート */
     private int port;
 
+    /** プロキシ認証のユーザ名 */
+    private String username;
+
+    /** プロキシ認証のパスワード */
+    private String password;
+
     /**
      * ProxyInfoインスタンスを生成します。
      * 
@@ -46,6 +52,24 @@ public class ProxyInfo {
         this.port = port;
     }
 
+    /**
+     * プロキシ認証の認証情報を指定してProxyInfoインスタンスを生成します。
+     * 
+     * @param host
+     *            ホスト名
+     * @param port
+     *            ポート
+     * @param username
+     *            プロキシ認証のユーザ名
+     * @param password
+     *            プロキシ認証のパスワード
+     */
+    public ProxyInfo(final String host, final int port, final String username, final String password) {
+        this(host, port);
+        this.username = username;
+        this.password = password;
+    }
+
     /**
      * ホスト名を返します。
      * 
@@ -64,4 +88,22 @@ public class ProxyInfo {
         return this.port;
     }
 
+    /**
+     * プロキシ認証のユーザ名を返します。
+     * 
+     * @return ユーザ名。プロキシ認証を行わない場合はnull
+     */
+    public String getUsername() {
+        return this.username;
+    }
+
+    /**
+     * プロキシ認証のパスワードを返します。
+     * 
+     * @return パスワード
+     */
+    public String getPassword() {
+        return this.password;
+    }
+
 }
@@ -20,6 +20,7 @@ import java.util.List;
 
 import jp.ambrosoli.quickrestclient.enums.HttpMethod;
 import jp.ambrosoli.quickrestclient.headers.HttpHeaders;
+import jp.ambrosoli.quickrestclient.net.DnsResolver;
 import jp.ambrosoli.quickrestclient.params.AuthInfo;
 import jp.ambrosoli.quickrestclient.params.NameValueObject;
 import jp.ambrosoli.quickrestclient.params.ProxyInfo;
@@ -62,9 +63,24 @@ public class HttpRequest {
     /** タイムアウト（ミリ秒） */
     protected int timeout = DEFAULT_TIMEOUT;
 
+    /** 接続タイムアウト（ミリ秒）。負の値の場合は{@link #timeout}を使用する */
+    protected int connectTimeout = -1;
+
+    /** 読み込みタイムアウト（ミリ秒）。負の値の場合は{@link #timeout}を使用する */
+    protected int readTimeout = -1;
+
+    /** コネクションプールからの取得待ちタイムアウト（ミリ秒）。負の値の場合はクライアントの設定を使用する */
+    protected int poolTimeout = -1;
+
+    /** リクエスト全体の期限（ミリ秒）。0以下の場合は期限なし */
+    protected long deadline;
+
     /** 文字コード */
     protected String charset = StringUtil.DEFAULT_ENCODING;
 
+    /** ホスト名の名前解決を行うリゾルバ */
+    protected DnsResolver dnsResolver;
+
     /**
      * HttpRequestを生成します。
      *
@@ -255,4 +271,113 @@ public class HttpRequest {
         this.timeout = timeout;
     }
 
+    /**
+     * ホスト名の名前解決を行うリゾルバを返します。
+     *
+     * @return リゾルバ。JVMの名前解決を使用する場合はnull
+     * @since 0.3.0
+     */
+    public DnsResolver getDnsResolver() {
+        return this.dnsResolver;
+    }
+
+    /**
+     * ホスト名の名前解決を行うリゾルバを設定します。
+     *
+     * @param dnsResolver
+     *            リゾルバ。nullの場合はJVMの名前解決を使用します
+     * @since 0.3.0
+     */
+    public void setDnsResolver(final DnsResolver dnsResolver) {
+        this.dnsResolver = dnsResolver;
+    }
+
+    /**
+     * 接続タイムアウトを返します。
+     *
+     * @return 接続タイムアウト（ミリ秒）。設定されていない場合は{@link #getTimeout()}
+     * @since 0.3.0
+     */
+    public int getConnectTimeout() {
+        return this.connectTimeout >= 0 ? this.connectTimeout : this.timeout;
+    }
+
+    /**
+     * 接続タイムアウトを設定します。
+     *
+     * @param connectTimeout
+     *            接続タイムアウト（ミリ秒）。負の値の場合は{@link #getTimeout()}を使用します
+     * @since 0.3.0
+     */
+    public void setConnectTimeout(final int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * 読み込みタイムアウト（SO_TIMEOUT）を返します。
+     *
+     * @return 読み込みタイムアウト（ミリ秒）。設定されていない場合は{@link #getTimeout()}
+     * @since 0.3.0
+     */
+    public int getReadTimeout() {
+        return this.readTimeout >= 0 ? this.readTimeout : this.timeout;
+    }
+
+    /**
+     * 読み込みタイムアウト（SO_TIMEOUT）を設定します。<br />
+     * 読み込みタイムアウトはデータを受信する毎にリセットされるため、レスポンス全体の受信時間は制限しません。
+     * 全体の時間を制限する場合は{@link #setDeadline(long)}を使用します。
+     *
+     * @param readTimeout
+     *            読み込みタイムアウト（ミリ秒）。負の値の場合は{@link #getTimeout()}を使用します
+     * @since 0.3.0
+     */
+    public void setReadTimeout(final int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * コネクションプールからの取得待ちタイムアウトを返します。
+     *
+     * @return 取得待ちタイムアウト（ミリ秒）。クライアントの設定を使用する場合は負の値
+     * @since 0.3.0
+     */
+    public int getPoolTimeout() {
+        return this.poolTimeout;
+    }
+
+    /**
+     * コネクションプールからの取得待ちタイムアウトを設定します。
+     *
+     * @param poolTimeout
+     *            取得待ちタイムアウト（ミリ秒）。負の値の場合はクライアントの設定を使用します
+     * @since 0.3.0
+     */
+    public void setPoolTimeout(final int poolTimeout) {
+        this.poolTimeout = poolTimeout;
+    }
+
+    /**
+     * リクエスト全体の期限を返します。
+     *
+     * @return 期限（ミリ秒）。期限なしの場合は0
+     * @since 0.3.0
+     */
+    public long getDeadline() {
+        return this.deadline;
+    }
+
+    /**
+     * リクエストの送信からレスポンスの受信完了までの期限を設定します。<br />
+     * 期限を超過した場合は、コネクションの取得、接続、送信、受信のいずれの段階であってもリクエストを中断し、
+     * {@link jp.ambrosoli.quickrestclient.exception.DeadlineExceededRuntimeException}をスローします。
+     *
+     * @param deadline
+     *            期限（ミリ秒）。0以下の場合は期限なし
+     * @since 0.3.0
+     */
+    public void setDeadline(final long deadline) {
+        this.deadline = deadline;
+    }
+
 }
@@ -22,6 +22,7 @@ import org.apache.http.protocol.HTTP;
 import jp.ambrosoli.quickrestclient.enums.AuthType;
 import jp.ambrosoli.quickrestclient.enums.HttpMethod;
 import jp.ambrosoli.quickrestclient.headers.HttpHeader;
+import jp.ambrosoli.quickrestclient.net.DnsResolver;
 import jp.ambrosoli.quickrestclient.params.AuthInfo;
 import jp.ambrosoli.quickrestclient.params.NameValueObject;
 import jp.ambrosoli.quickrestclient.params.ProxyInfo;
@@ -43,6 +44,9 @@ public class HttpRequestBuilder {
     /** HTTPリクエストの内容 */
     protected HttpRequest request;
 
+    /** リクエストを送信するサービス */
+    protected HttpService httpService;
+
     /**
      * HttpBuilderを生成します。
      *
@@ -56,14 +60,30 @@ public class HttpRequestBuilder {
         this.request = new HttpRequest(URIUtil.toURI(url));
     }
 
+    /**
+     * リクエストを送信するサービスを指定してHttpBuilderを生成します。
+     *
+     * @param url
+     *            URL
+     * @param httpService
+     *            リクエストを送信するサービス。nullの場合はデフォルトのファクトリーから生成したサービスを使用します
+     */
+    public HttpRequestBuilder(final String url, final HttpService httpService) {
+        this(url);
+        this.httpService = httpService;
+    }
+
     /**
      * HTTPリクエストを送信し、通信結果を返します。
      *
      * @return 通信結果
      */
     public HttpResponse execute() {
-        HttpService httpService = HttpServiceFactory.getFactory().create();
-        return httpService.execute(this.request);
+        HttpService service = this.httpService;
+        if (service == null) {
+            service = HttpServiceFactory.getFactory().create();
+        }
+        return service.execute(this.request);
     }
 
     /**
@@ -99,6 +119,53 @@ public class HttpRequestBuilder {
         return this;
     }
 
+    /**
+     * プロキシ認証を行うプロキシを設定します。
+     *
+     * @param hostname
+     *            プロキシサーバのホスト名
+     * @param port
+     *            プロキシサーバのポート
+     * @param username
+     *            プロキシ認証のユーザ名
+     * @param password
+     *            プロキシ認証のパスワード
+     * @return HttpBuilderオブジェクト
+     */
+    public HttpRequestBuilder proxy(final String hostname, final int port, final String username,
+            final String password) {
+        if (hostname == null) {
+            throw new IllegalArgumentException(Messages.getString("message.hostname.null")); //$NON-NLS-1$
+        }
+        this.request.setProxyInfo(new ProxyInfo(hostname, port, username, password));
+        return this;
+    }
+
+    /**
+     * プロキシを設定します。
+     *
+     * @param proxyInfo
+     *            プロキシの情報
+     * @return HttpBuilderオブジェクト
+     */
+    public HttpRequestBuilder proxy(final ProxyInfo proxyInfo) {
+        this.request.setProxyInfo(proxyInfo);
+        return this;
+    }
+
+    /**
+     * ホスト名の名前解決を行うリゾルバを設定します。
+     *
+     * @param dnsResolver
+     *            リゾルバ。nullの場合はJVMの名前解決を使用します
+     * @return HttpBuilderオブジェクト
+     * @since 0.3.0
+     */
+    public HttpRequestBuilder dnsResolver(final DnsResolver dnsResolver) {
+        this.request.setDnsResolver(dnsResolver);
+        return this;
+    }
+
     /**
      * HTTPプロトコルバージョンを設定します。
      *
@@ -187,7 +254,8 @@ public class HttpRequestBuilder {
     }
 
     /**
-     * タイムアウト（SO_TIMEOUT）をミリ秒単位で設定します。
+     * タイムアウト（SO_TIMEOUT）をミリ秒単位で設定します。<br />
+     * {@link #connectTimeout(int)}、{@link #readTimeout(int)}を設定していない場合は、接続タイムアウトと読み込みタイムアウトの両方に使用します。
      *
      * @param timeout
      *            タイムアウト（ミリ秒）
@@ -198,6 +266,60 @@ public class HttpRequestBuilder {
         return this;
     }
 
+    /**
+     * 接続タイムアウトをミリ秒単位で設定します。
+     *
+     * @param connectTimeout
+     *            接続タイムアウト（ミリ秒）
+     * @return HttpBuilderオブジェクト
+     * @since 0.3.0
+     */
+    public HttpRequestBuilder connectTimeout(final int connectTimeout) {
+        this.request.setConnectTimeout(connectTimeout);
+        return this;
+    }
+
+    /**
+     * 読み込みタイムアウト（SO_TIMEOUT）をミリ秒単位で設定します。
+     *
+     * @param readTimeout
+     *            読み込みタイムアウト（ミリ秒）
+     * @return HttpBuilderオブジェクト
+     * @since 0.3.0
+     */
+    public HttpRequestBuilder readTimeout(final int readTimeout) {
+        this.request.setReadTimeout(readTimeout);
+        return this;
+    }
+
+    /**
+     * コネクションプールからの取得待ちタイムアウトをミリ秒単位で設定します。
+     *
+     * @param poolTimeout
+     *            取得待ちタイムアウト（ミリ秒）
+     * @return HttpBuilderオブジェクト
+     * @since 0.3.0
+     */
+    public HttpRequestBuilder poolTimeout(final int poolTimeout) {
+        this.request.setPoolTimeout(poolTimeout);
+        return this;
+    }
+
+    /**
+     * リクエストの送信からレスポンスの受信完了までの期限をミリ秒単位で設定します。<br />
+     * 期限を超過した場合はリクエストを中断し、
+     * {@link jp.ambrosoli.quickrestclient.exception.DeadlineExceededRuntimeException}をスローします。
+     *
+     * @param deadline
+     *            期限（ミリ秒）
+     * @return HttpBuilderオブジェクト
+     * @since 0.3.0
+     */
+    public HttpRequestBuilder deadline(final long deadline) {
+        this.request.setDeadline(deadline);
+        return this;
+    }
+
     /**
      * ACCEPTヘッダを設定します。
      *
@@ -259,4 +381,44 @@ public class HttpRequestBuilder {
         return this;
     }
 
+    /**
+     * Digest,BasicなどのHTTP認証の情報を設定します.
+     *
+     * @param authType
+     *            認証の種類(設定可能な値は{@link AuthType}を参照)
+     * @param user
+     *            ユーザ
+     * @param password
+     *            パスワード
+     * @param preemptive
+     *            最初のリクエストから認証ヘッダーを送信する場合true(Basic認証のみ有効)
+     * @return HttpBuilderオブジェクト
+     * @since 0.3.0
+     */
+    public HttpRequestBuilder auth(final String authType, final String user, final String password,
+            final boolean preemptive) {
+        this.request.authInfo = new AuthInfo(AuthType.valueOf(authType), user, password, preemptive);
+        return this;
+    }
+
+    /**
+     * Digest,BasicなどのHTTP認証の情報を設定します.
+     *
+     * @param type
+     *            認証の種類(設定可能な値は{@link AuthType}を参照)
+     * @param user
+     *            ユーザ
+     * @param password
+     *            パスワード
+     * @param preemptive
+     *            最初のリクエストから認証ヘッダーを送信する場合true(Basic認証のみ有効)
+     * @return HttpBuilderオブジェクト
+     * @since 0.3.0
+     */
+    public HttpRequestBuilder auth(final AuthType type, final String user, final String password,
+            final boolean preemptive) {
+        this.request.authInfo = new AuthInfo(type, user, password, preemptive);
+        return this;
+    }
+
 }
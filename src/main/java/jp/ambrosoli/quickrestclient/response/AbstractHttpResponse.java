@@ -19,6 +19,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 
+import jp.ambrosoli.quickrestclient.enums.TlsHandshake;
 import jp.ambrosoli.quickrestclient.util.OutputStreamUtil;
 
 /**
@@ -32,6 +33,9 @@ public abstract class AbstractHttpResponse implements HttpResponse {
     /** HTTPレスポンスの内容 */
     protected ResponseContent content;
 
+    /** SSL/TLSハンドシェイクの種類 */
+    protected TlsHandshake tlsHandshake = TlsHandshake.NONE;
+
     /**
      * AbstractHttpResponseを生成します。
      */
@@ -133,4 +137,24 @@ public abstract class AbstractHttpResponse implements HttpResponse {
         this.content.writeTo(output);
     }
 
+    /**
+     * このリクエストで行われたSSL/TLSハンドシェイクの種類を返します。<br />
+     * 確立済みのコネクションを再利用した場合と平文の通信の場合は{@link TlsHandshake#NONE}を返します。
+     * 
+     * @return ハンドシェイクの種類
+     */
+    public TlsHandshake getTlsHandshake() {
+        return this.tlsHandshake;
+    }
+
+    /**
+     * SSL/TLSハンドシェイクの種類を設定します。
+     * 
+     * @param tlsHandshake
+     *            ハンドシェイクの種類
+     */
+    public void setTlsHandshake(final TlsHandshake tlsHandshake) {
+        this.tlsHandshake = tlsHandshake;
+    }
+
 }
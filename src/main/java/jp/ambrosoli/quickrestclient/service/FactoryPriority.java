@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * {@link HttpServiceFactoryLoader}で複数のファクトリーが検出された場合の優先度を指定するアノテーションです。
+ * <p>
+ * 優先度はファクトリーのクラスから読み取るため、選択されなかったファクトリーは生成されません。
+ * 値が大きいほど優先されます。アノテーションのないファクトリーの優先度は0です。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface FactoryPriority {
+
+    /**
+     * 優先度を返します。
+     *
+     * @return 優先度
+     */
+    int value();
+
+}
@@ -15,21 +15,43 @@
  */
 package jp.ambrosoli.quickrestclient.service;
 
-import java.util.HashMap;
-import java.util.Map;
-
-import jp.ambrosoli.quickrestclient.apache.service.ApacheHttpServiceFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * {@link HttpService}のファクトリクラスです。
+ * <p>
+ * ファクトリーの取得はリクエスト毎に行われるため、ロックを取得せずに参照できるよう、
+ * 名前付きのファクトリーを{@link ConcurrentHashMap}で、デフォルトのファクトリーをvolatileなフィールドで保持します。
+ * デフォルトのファクトリーは最初に必要になった時点で一度だけ、次の順序で決定されます。
+ * </p>
+ * <ol>
+ * <li>システムプロパティ{@value #FACTORY_PROPERTY}が設定されている場合、その値で登録されたファクトリー、
+ * または同じクラス名のファクトリー</li>
+ * <li>{@link HttpServiceFactoryLoader}で検出したファクトリーのうち、{@link FactoryPriority}が最も大きいもの</li>
+ * <li>{@value #DEFAULT_FACTORY_CLASS_NAME}</li>
+ * </ol>
+ * <p>
+ * 実装クラスはクラス名で読み込むため、使用されない通信ライブラリのクラスは読み込まれません。
+ * </p>
  *
  * @author willard379
  * @since 0.1.0
  */
 public abstract class HttpServiceFactory {
 
+    /** デフォルトのファクトリーを指定するシステムプロパティ */
+    public static final String FACTORY_PROPERTY = "jp.ambrosoli.quickrestclient.factory"; //$NON-NLS-1$
+
+    /** ファクトリーが検出されなかった場合に使用するファクトリーのクラス名 */
+    public static final String DEFAULT_FACTORY_CLASS_NAME = "jp.ambrosoli.quickrestclient.apache.service.ApacheHttpServiceFactory"; //$NON-NLS-1$
+
     /** ファクトリーのキャッシュ */
-    private static final Map<String, HttpServiceFactory> cache = new HashMap<String, HttpServiceFactory>();
+    private static final ConcurrentMap<String, HttpServiceFactory> cache = new ConcurrentHashMap<String, HttpServiceFactory>(
+            16, 0.75f, 1);
+
+    /** デフォルトのファクトリー */
+    private static volatile HttpServiceFactory defaultFactory;
 
     /**
      * デフォルトのファクトリーのインスタンスを返します。
@@ -37,14 +59,75 @@ public abstract class HttpServiceFactory {
      * @return デフォルトのファクトリー
      */
     public static HttpServiceFactory getFactory() {
-        HttpServiceFactory factory = cache.get(null);
+        HttpServiceFactory factory = defaultFactory;
         if (factory == null) {
-            factory = new ApacheHttpServiceFactory();
-            register(null, factory);
+            factory = initDefaultFactory();
         }
         return factory;
     }
 
+    /**
+     * デフォルトのファクトリーが未登録の場合に生成して登録します。
+     *
+     * @return デフォルトのファクトリー
+     */
+    private static synchronized HttpServiceFactory initDefaultFactory() {
+        if (defaultFactory == null) {
+            defaultFactory = resolveDefaultFactory();
+        }
+        return defaultFactory;
+    }
+
+    /**
+     * デフォルトのファクトリーを決定します。
+     *
+     * @return デフォルトのファクトリー
+     * @throws IllegalStateException
+     *             ファクトリーの生成に失敗した場合
+     */
+    private static HttpServiceFactory resolveDefaultFactory() {
+        ClassLoader classLoader = getClassLoader();
+        String factoryName = System.getProperty(FACTORY_PROPERTY);
+        if (factoryName != null && factoryName.trim().length() > 0) {
+            factoryName = factoryName.trim();
+            HttpServiceFactory factory = cache.get(factoryName);
+            if (factory != null) {
+                return factory;
+            }
+            return HttpServiceFactoryLoader.newInstance(factoryName, classLoader);
+        }
+
+        HttpServiceFactory factory = HttpServiceFactoryLoader.loadFactory(classLoader);
+        if (factory != null) {
+            return factory;
+        }
+        return HttpServiceFactoryLoader.newInstance(DEFAULT_FACTORY_CLASS_NAME, HttpServiceFactory.class
+                .getClassLoader());
+    }
+
+    /**
+     * ファクトリーの検出に使用するクラスローダーを返します。
+     *
+     * @return コンテキストクラスローダー。設定されていない場合はこのクラスを読み込んだクラスローダー
+     */
+    private static ClassLoader getClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = HttpServiceFactory.class.getClassLoader();
+        }
+        return classLoader;
+    }
+
+    /**
+     * デフォルトのファクトリーを登録します。
+     *
+     * @param factory
+     *            登録するファクトリー
+     */
+    private static synchronized void setDefaultFactory(final HttpServiceFactory factory) {
+        defaultFactory = factory;
+    }
+
     /**
      * factoryNameで指定されたファクトリーのインスタンスを返します。
      *
@@ -69,7 +152,7 @@ public abstract class HttpServiceFactory {
      * ファクトリーを登録します。
      *
      * @param factoryName
-     *            ファクトリーの識別子
+     *            ファクトリーの識別子。nullの場合はデフォルトのファクトリーを置き換えます
      * @param factory
      *            登録するファクトリー
      */
@@ -77,6 +160,10 @@ public abstract class HttpServiceFactory {
         if (factory == null) {
             throw new IllegalArgumentException(Messages.getString("message.factory.null", factoryName)); //$NON-NLS-1$
         }
+        if (factoryName == null) {
+            setDefaultFactory(factory);
+            return;
+        }
         cache.put(factoryName, factory);
     }
 
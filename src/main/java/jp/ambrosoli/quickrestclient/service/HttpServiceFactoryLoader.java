@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * クラスパス上の{@code META-INF/services/jp.ambrosoli.quickrestclient.service.HttpServiceFactory}
+ * に記述された{@link HttpServiceFactory}の実装クラスを検出するクラスです。
+ * <p>
+ * 設定ファイルの書式は{@code java.util.ServiceLoader}と同じで、1行に1つの完全修飾クラス名を記述します。
+ * {@code #}以降はコメントとして扱います。 ファクトリーは{@link #load(ClassLoader)}を呼び出した時点で初めて生成されます。
+ * {@link #loadFactory(ClassLoader)}は優先度をクラスの{@link FactoryPriority}から読み取り、選択したファクトリーのみを生成します。
+ * 実行環境で読み込めないクラス（ビルドに含まれていない、または実行環境より新しいJavaを必要とするファクトリー）は無視します。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public final class HttpServiceFactoryLoader {
+
+    /** 設定ファイルのパス */
+    public static final String SERVICES_RESOURCE = "META-INF/services/" + HttpServiceFactory.class.getName(); //$NON-NLS-1$
+
+    /** 設定ファイルの文字コード */
+    private static final String SERVICES_ENCODING = "UTF-8"; //$NON-NLS-1$
+
+    /** コメントの開始文字 */
+    private static final char COMMENT_CHAR = '#';
+
+    /**
+     * 設定ファイルに記述されたファクトリーを、記述された順に生成して返します。
+     * <p>
+     * 同じクラス名が複数回記述されている場合は最初の1つだけを生成します。
+     * </p>
+     *
+     * @param classLoader
+     *            設定ファイルとファクトリーの読み込みに使用するクラスローダー
+     * @return 検出したファクトリー。見つからない場合は空のリスト
+     * @throws IllegalStateException
+     *             設定ファイルの読み込み、またはファクトリーの生成に失敗した場合
+     */
+    public static List<HttpServiceFactory> load(final ClassLoader classLoader) {
+        Set<String> classNames = findClassNames(classLoader);
+        List<HttpServiceFactory> factories = new ArrayList<HttpServiceFactory>(classNames.size());
+        for (String className : classNames) {
+            Class<?> clazz = loadClass(className, classLoader);
+            if (clazz != null) {
+                factories.add(newInstance(clazz));
+            }
+        }
+        return factories;
+    }
+
+    /**
+     * 設定ファイルに記述されたファクトリーのうち、{@link FactoryPriority}が最も大きいものを生成して返します。
+     * <p>
+     * 優先度が同じ場合は先に記述されたファクトリーを返します。優先度はクラスのアノテーションから読み取るため、
+     * 選択されなかったファクトリーは生成されません。
+     * </p>
+     *
+     * @param classLoader
+     *            設定ファイルとファクトリーの読み込みに使用するクラスローダー
+     * @return 検出したファクトリー。見つからない場合はnull
+     * @throws IllegalStateException
+     *             設定ファイルの読み込み、またはファクトリーの生成に失敗した場合
+     */
+    public static HttpServiceFactory loadFactory(final ClassLoader classLoader) {
+        Class<?> selected = null;
+        int selectedPriority = 0;
+        for (String className : findClassNames(classLoader)) {
+            Class<?> clazz = loadClass(className, classLoader);
+            if (clazz == null) {
+                continue;
+            }
+            int priority = getPriority(clazz);
+            if (selected == null || priority > selectedPriority) {
+                selected = clazz;
+                selectedPriority = priority;
+            }
+        }
+        return selected != null ? newInstance(selected) : null;
+    }
+
+    /**
+     * ファクトリーのクラスに指定された優先度を返します。
+     *
+     * @param clazz
+     *            ファクトリーのクラス
+     * @return 優先度。{@link FactoryPriority}が指定されていない場合は0
+     */
+    private static int getPriority(final Class<?> clazz) {
+        FactoryPriority priority = clazz.getAnnotation(FactoryPriority.class);
+        return priority != null ? priority.value() : 0;
+    }
+
+    /**
+     * クラス名を指定してファクトリーを生成します。
+     *
+     * @param className
+     *            ファクトリーの完全修飾クラス名
+     * @param classLoader
+     *            ファクトリーの読み込みに使用するクラスローダー
+     * @return 生成したファクトリー
+     * @throws IllegalStateException
+     *             ファクトリーの生成に失敗した場合
+     */
+    public static HttpServiceFactory newInstance(final String className, final ClassLoader classLoader) {
+        Class<?> clazz = loadClass(className, classLoader);
+        if (clazz == null) {
+            throw new IllegalStateException(Messages.getString("message.factory.load.failed", className)); //$NON-NLS-1$
+        }
+        return newInstance(clazz);
+    }
+
+    /**
+     * ファクトリーのクラスを読み込みます。
+     *
+     * @param className
+     *            ファクトリーの完全修飾クラス名
+     * @param classLoader
+     *            ファクトリーの読み込みに使用するクラスローダー
+     * @return 読み込んだクラス。実行環境で読み込めない場合はnull
+     */
+    private static Class<?> loadClass(final String className, final ClassLoader classLoader) {
+        try {
+            return Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * ファクトリーのクラスをインスタンス化します。
+     *
+     * @param clazz
+     *            ファクトリーのクラス
+     * @return 生成したファクトリー
+     * @throws IllegalStateException
+     *             ファクトリーの生成に失敗した場合
+     */
+    private static HttpServiceFactory newInstance(final Class<?> clazz) {
+        try {
+            return clazz.asSubclass(HttpServiceFactory.class).getDeclaredConstructor().newInstance();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(Messages.getString("message.factory.load.failed", clazz.getName()), //$NON-NLS-1$
+                    e.getCause());
+        } catch (ClassCastException e) {
+            throw new IllegalStateException(Messages.getString("message.factory.load.failed", clazz.getName()), e); //$NON-NLS-1$
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(Messages.getString("message.factory.load.failed", clazz.getName()), e); //$NON-NLS-1$
+        } catch (InstantiationException e) {
+            throw new IllegalStateException(Messages.getString("message.factory.load.failed", clazz.getName()), e); //$NON-NLS-1$
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(Messages.getString("message.factory.load.failed", clazz.getName()), e); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * クラスパス上のすべての設定ファイルから、記述された順に重複を除いてクラス名を読み込みます。
+     *
+     * @param classLoader
+     *            設定ファイルの読み込みに使用するクラスローダー
+     * @return 読み込んだクラス名
+     * @throws IllegalStateException
+     *             設定ファイルの読み込みに失敗した場合
+     */
+    private static Set<String> findClassNames(final ClassLoader classLoader) {
+        Set<String> classNames = new LinkedHashSet<String>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(SERVICES_RESOURCE);
+            while (resources.hasMoreElements()) {
+                readClassNames(resources.nextElement(), classNames);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(Messages.getString("message.factory.load.failed", SERVICES_RESOURCE), e); //$NON-NLS-1$
+        }
+        return classNames;
+    }
+
+    /**
+     * 設定ファイルからクラス名を読み込みます。
+     *
+     * @param resource
+     *            設定ファイルのURL
+     * @param classNames
+     *            読み込んだクラス名を追加するセット
+     * @throws IOException
+     *             設定ファイルの読み込みに失敗した場合
+     */
+    private static void readClassNames(final URL resource, final Set<String> classNames) throws IOException {
+        InputStream in = resource.openStream();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, SERVICES_ENCODING));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf(COMMENT_CHAR);
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                line = line.trim();
+                if (line.length() > 0) {
+                    classNames.add(line);
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+}
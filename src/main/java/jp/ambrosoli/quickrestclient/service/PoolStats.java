@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jp.ambrosoli.quickrestclient.util.ReflectionToStringBuilder;
+
+/**
+ * コネクションプールの統計情報のスナップショットを保持するクラスです。
+ * <p>
+ * プール全体の統計情報は{@link #getRouteStats()}でルート（接続先）毎の統計情報を保持します。
+ * ルート毎の統計情報では、破棄に関する項目は常に0になります。各値は個別のカウンターから取得するため、
+ * 取得中にリクエストが行われた場合は項目間で厳密に整合しないことがあります。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ * @see PooledHttpService#getPoolStats()
+ */
+public class PoolStats {
+
+    /** リース中（使用中）のコネクション数 */
+    protected int leased;
+
+    /** プール内で利用可能なアイドルコネクション数 */
+    protected int available;
+
+    /** コネクションの取得を待機しているリクエスト数 */
+    protected int pending;
+
+    /** 最大コネクション数 */
+    protected int max;
+
+    /** コネクションの取得に成功した累計回数 */
+    protected long acquireCount;
+
+    /** コネクションの取得に要した累計時間（ミリ秒） */
+    protected long acquireWaitTime;
+
+    /** コネクションの取得に要した最大時間（ミリ秒） */
+    protected long maxAcquireWaitTime;
+
+    /** コネクションの取得待ちがタイムアウトした累計回数 */
+    protected long acquireTimeoutCount;
+
+    /** アイドルまたは期限切れにより破棄したコネクションの累計数 */
+    protected long evictedCount;
+
+    /** アイドルコネクション破棄処理の実行回数 */
+    protected long evictionRunCount;
+
+    /** 返却されずに検出されたコネクションの累計数 */
+    protected long leakCount;
+
+    /** ルート毎の統計情報 */
+    protected Map<String, PoolStats> routeStats = new LinkedHashMap<String, PoolStats>();
+
+    /**
+     * リース中（使用中）のコネクション数を返します。
+     *
+     * @return コネクション数
+     */
+    public int getLeased() {
+        return this.leased;
+    }
+
+    /**
+     * リース中（使用中）のコネクション数を設定します。
+     *
+     * @param leased
+     *            コネクション数
+     */
+    public void setLeased(final int leased) {
+        this.leased = leased;
+    }
+
+    /**
+     * プール内で利用可能なアイドルコネクション数を返します。
+     *
+     * @return コネクション数
+     */
+    public int getAvailable() {
+        return this.available;
+    }
+
+    /**
+     * プール内で利用可能なアイドルコネクション数を設定します。
+     *
+     * @param available
+     *            コネクション数
+     */
+    public void setAvailable(final int available) {
+        this.available = available;
+    }
+
+    /**
+     * コネクションの取得を待機しているリクエスト数を返します。
+     *
+     * @return リクエスト数
+     */
+    public int getPending() {
+        return this.pending;
+    }
+
+    /**
+     * コネクションの取得を待機しているリクエスト数を設定します。
+     *
+     * @param pending
+     *            リクエスト数
+     */
+    public void setPending(final int pending) {
+        this.pending = pending;
+    }
+
+    /**
+     * 最大コネクション数を返します。
+     *
+     * @return 最大コネクション数
+     */
+    public int getMax() {
+        return this.max;
+    }
+
+    /**
+     * 最大コネクション数を設定します。
+     *
+     * @param max
+     *            最大コネクション数
+     */
+    public void setMax(final int max) {
+        this.max = max;
+    }
+
+    /**
+     * コネクションの取得に成功した累計回数を返します。
+     *
+     * @return 取得回数
+     */
+    public long getAcquireCount() {
+        return this.acquireCount;
+    }
+
+    /**
+     * コネクションの取得に成功した累計回数を設定します。
+     *
+     * @param acquireCount
+     *            取得回数
+     */
+    public void setAcquireCount(final long acquireCount) {
+        this.acquireCount = acquireCount;
+    }
+
+    /**
+     * コネクションの取得に要した累計時間を返します。
+     *
+     * @return 累計時間（ミリ秒）
+     */
+    public long getAcquireWaitTime() {
+        return this.acquireWaitTime;
+    }
+
+    /**
+     * コネクションの取得に要した累計時間を設定します。
+     *
+     * @param acquireWaitTime
+     *            累計時間（ミリ秒）
+     */
+    public void setAcquireWaitTime(final long acquireWaitTime) {
+        this.acquireWaitTime = acquireWaitTime;
+    }
+
+    /**
+     * コネクションの取得に要した最大時間を返します。
+     *
+     * @return 最大時間（ミリ秒）
+     */
+    public long getMaxAcquireWaitTime() {
+        return this.maxAcquireWaitTime;
+    }
+
+    /**
+     * コネクションの取得に要した最大時間を設定します。
+     *
+     * @param maxAcquireWaitTime
+     *            最大時間（ミリ秒）
+     */
+    public void setMaxAcquireWaitTime(final long maxAcquireWaitTime) {
+        this.maxAcquireWaitTime = maxAcquireWaitTime;
+    }
+
+    /**
+     * コネクションの取得待ちがタイムアウトした累計回数を返します。
+     *
+     * @return タイムアウト回数
+     */
+    public long getAcquireTimeoutCount() {
+        return this.acquireTimeoutCount;
+    }
+
+    /**
+     * コネクションの取得待ちがタイムアウトした累計回数を設定します。
+     *
+     * @param acquireTimeoutCount
+     *            タイムアウト回数
+     */
+    public void setAcquireTimeoutCount(final long acquireTimeoutCount) {
+        this.acquireTimeoutCount = acquireTimeoutCount;
+    }
+
+    /**
+     * アイドルまたは期限切れにより破棄したコネクションの累計数を返します。
+     *
+     * @return 破棄したコネクション数
+     */
+    public long getEvictedCount() {
+        return this.evictedCount;
+    }
+
+    /**
+     * アイドルまたは期限切れにより破棄したコネクションの累計数を設定します。
+     *
+     * @param evictedCount
+     *            破棄したコネクション数
+     */
+    public void setEvictedCount(final long evictedCount) {
+        this.evictedCount = evictedCount;
+    }
+
+    /**
+     * アイドルコネクション破棄処理の実行回数を返します。
+     *
+     * @return 実行回数
+     */
+    public long getEvictionRunCount() {
+        return this.evictionRunCount;
+    }
+
+    /**
+     * アイドルコネクション破棄処理の実行回数を設定します。
+     *
+     * @param evictionRunCount
+     *            実行回数
+     */
+    public void setEvictionRunCount(final long evictionRunCount) {
+        this.evictionRunCount = evictionRunCount;
+    }
+
+    /**
+     * 返却されずにガベージコレクションされた、または保持期間の上限を超えたコネクションの累計数を返します。
+     *
+     * @return リーク数。リークを検出しない場合は0
+     */
+    public long getLeakCount() {
+        return this.leakCount;
+    }
+
+    /**
+     * 返却されずにガベージコレクションされた、または保持期間の上限を超えたコネクションの累計数を設定します。
+     *
+     * @param leakCount
+     *            リーク数
+     */
+    public void setLeakCount(final long leakCount) {
+        this.leakCount = leakCount;
+    }
+
+    /**
+     * コネクションの取得に要した平均時間を返します。
+     *
+     * @return 平均時間（ミリ秒）。取得実績がない場合は0
+     */
+    public double getAverageAcquireWaitTime() {
+        if (this.acquireCount == 0) {
+            return 0;
+        }
+        return (double) this.acquireWaitTime / this.acquireCount;
+    }
+
+    /**
+     * ルート毎の統計情報を返します。
+     *
+     * @return ルートの文字列表現をキーとした統計情報
+     */
+    public Map<String, PoolStats> getRouteStats() {
+        return this.routeStats;
+    }
+
+    /**
+     * ルートの統計情報を追加します。
+     *
+     * @param route
+     *            ルートの文字列表現
+     * @param stats
+     *            ルートの統計情報
+     */
+    public void addRouteStats(final String route, final PoolStats stats) {
+        this.routeStats.put(route, stats);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return ReflectionToStringBuilder.toString(this);
+    }
+
+}
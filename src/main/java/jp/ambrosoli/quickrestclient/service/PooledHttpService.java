@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.service;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * コネクションプールを保持し、複数のリクエストでコネクションを再利用する{@link HttpService}です。
+ * <p>
+ * このインタフェースの実装クラスはスレッドセーフでなければなりません。 使用し終えたら{@link #shutdown()}
+ * を呼び出してコネクションプールを解放してください。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public interface PooledHttpService extends HttpService {
+
+    /**
+     * コネクションプールを解放し、このサービスを終了します。<br />
+     * 終了後に{@link #execute(jp.ambrosoli.quickrestclient.request.HttpRequest)}
+     * を呼び出すと{@link IllegalStateException}が発生します。 実行中のリクエストは待機せずに中断されます。
+     */
+    void shutdown();
+
+    /**
+     * 新しいリクエストの受け付けを停止し、実行中のリクエストの完了を待機してからコネクションプールを解放します。<br />
+     * 指定した時間が経過しても完了しないリクエストは、コネクションプールの解放によって中断されます。
+     *
+     * @param timeout
+     *            最大待機時間
+     * @param unit
+     *            最大待機時間の単位
+     * @return 実行中のリクエストがすべて完了した場合true、待機中にタイムアウトまたは割り込みが発生した場合false
+     */
+    boolean shutdown(long timeout, TimeUnit unit);
+
+    /**
+     * このサービスが終了しているかどうかを返します。
+     *
+     * @return 終了している場合true、その他の場合false
+     */
+    boolean isShutdown();
+
+    /**
+     * コネクションプールの統計情報のスナップショットを返します。<br />
+     * プール全体と接続先毎のリース中・アイドル・取得待ちのコネクション数と、コネクションの取得に要した時間を取得できます。
+     *
+     * @return 統計情報
+     */
+    PoolStats getPoolStats();
+
+    /**
+     * 指定したURIの接続先へのコネクションを事前に生成し、コネクションプールに格納します。<br />
+     * httpsの場合はSSLハンドシェイクまで完了します。プールの上限または取得待ちタイムアウトに達した場合は、
+     * それまでに生成したコネクションのみを格納します。
+     *
+     * @param uri
+     *            接続先のURI
+     * @param count
+     *            生成するコネクション数
+     * @return 実際に生成したコネクション数
+     */
+    int prewarm(URI uri, int count);
+}
@@ -75,6 +75,30 @@ public final class StringUtil {
         }
     }
 
+    /**
+     * 文字列からバイト配列へ変換して返します。
+     *
+     * @param str
+     *            文字列
+     * @param encoding
+     *            文字エンコード
+     * @throws UnsupportedEncodingRuntimeException
+     *             {@link UnsupportedEncodingException}が発生した場合
+     * @return 文字列から変換したバイト配列
+     * @since 0.3.0
+     */
+    public static byte[] getBytes(final String str, final String encoding) {
+        if (str == null) {
+            return null;
+        }
+        String enc = StringUtil.isNotEmpty(encoding) ? encoding : DEFAULT_ENCODING;
+        try {
+            return str.getBytes(enc);
+        } catch (UnsupportedEncodingException e) {
+            throw new UnsupportedEncodingRuntimeException(e);
+        }
+    }
+
     /**
      * 配列の要素をseparator文字で連結した１つの文字列にして返します。
      *
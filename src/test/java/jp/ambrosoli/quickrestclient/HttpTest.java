@@ -25,6 +25,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
@@ -33,13 +35,29 @@ import org.junit.rules.ExpectedException;
 import jp.ambrosoli.quickrestclient.exception.SocketTimeoutRuntimeException;
 import jp.ambrosoli.quickrestclient.headers.HttpHeader;
 import jp.ambrosoli.quickrestclient.response.HttpResponse;
+import jp.ambrosoli.quickrestclient.service.HttpServiceFactory;
 import jp.ambrosoli.quickrestclient.unittest.DataSource;
+import jp.ambrosoli.quickrestclient.unittest.LoopbackTestServer;
 
 public class HttpTest {
 
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
+    private HttpServiceFactory defaultFactory;
+
+    @Before
+    public void setUp() {
+        // テスト用サーバーのエンドポイントを再現したサービスで通信する
+        this.defaultFactory = HttpServiceFactory.getFactory();
+        HttpServiceFactory.register(null, LoopbackTestServer.createFactory());
+    }
+
+    @After
+    public void tearDown() {
+        HttpServiceFactory.register(null, this.defaultFactory);
+    }
+
     @Test
     public void URLのみ指定して正しく通信が行われること() {
 
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.tsccm.AbstractConnPool;
+import org.apache.http.impl.conn.tsccm.BasicPoolEntry;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+
+/**
+ * {@link PoolingConnPool}と{@link PartitionedConnPool}のコネクションの取得・返却のスループットを比較するベンチマークです。
+ * <p>
+ * スレッド数を増やしながら、各スレッドが複数のルートのいずれかに対して取得と返却を繰り返し、1秒あたりの回数を出力します。
+ * 実際の接続は行わないため、プールのロックの競合による差のみを計測します。
+ * </p>
+ * <p>
+ * 引数には計測時間（ミリ秒）とルート数を指定できます。
+ * </p>
+ */
+public class ConnPoolBenchmark {
+
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32, 64, 128 };
+
+    public static void main(final String[] args) throws Exception {
+        long duration = args.length > 0 ? Long.parseLong(args[0]) : 2000L;
+        int routeCount = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+        HttpRoute[] routes = new HttpRoute[routeCount];
+        for (int i = 0; i < routeCount; i++) {
+            routes[i] = new HttpRoute(new HttpHost("host" + i + ".ambrosoli.jp", 80)); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        ClientConnectionOperator operator = createOperator();
+
+        System.out.println("threads\tPoolingConnPool(ops/s)\tPartitionedConnPool(ops/s)"); //$NON-NLS-1$
+        for (int threads : THREAD_COUNTS) {
+            HttpParams params = createParams(threads);
+            long pooling = run(new PoolingConnPool(operator, params), routes, threads, duration);
+            long partitioned = run(new PartitionedConnPool(operator, params), routes, threads, duration);
+            System.out.println(threads + "\t" + pooling + "\t" + partitioned); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    private static ClientConnectionOperator createOperator() {
+        return (ClientConnectionOperator) createStub(ClientConnectionOperator.class);
+    }
+
+    private static Object createStub(final Class<?> type) {
+        return Proxy.newProxyInstance(ConnPoolBenchmark.class.getClassLoader(), new Class<?>[] { type },
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        String name = method.getName();
+                        if ("hashCode".equals(name)) { //$NON-NLS-1$
+                            return Integer.valueOf(System.identityHashCode(proxy));
+                        }
+                        if ("equals".equals(name)) { //$NON-NLS-1$
+                            return Boolean.valueOf(proxy == args[0]);
+                        }
+                        if ("createConnection".equals(name)) { //$NON-NLS-1$
+                            return createStub(OperatedClientConnection.class);
+                        }
+                        return method.getReturnType() == boolean.class ? Boolean.TRUE : null;
+                    }
+                });
+    }
+
+    private static HttpParams createParams(final int threads) {
+        HttpParams params = new BasicHttpParams();
+        ConnManagerParams.setMaxTotalConnections(params, threads * 2);
+        ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(threads * 2));
+        return params;
+    }
+
+    private static long run(final AbstractConnPool pool, final HttpRoute[] routes, final int threads,
+            final long duration) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicLong operations = new AtomicLong();
+        final long end = System.currentTimeMillis() + duration;
+        for (int i = 0; i < threads; i++) {
+            final HttpRoute route = routes[i % routes.length];
+            Thread worker = new Thread() {
+                @Override
+                public void run() {
+                    long count = 0;
+                    try {
+                        start.await();
+                        while (System.currentTimeMillis() < end) {
+                            for (int j = 0; j < 100; j++) {
+                                BasicPoolEntry entry = pool.getEntry(route, null, 0, TimeUnit.MILLISECONDS);
+                                pool.freeEntry(entry, true, 0, TimeUnit.MILLISECONDS);
+                            }
+                            count += 100;
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        operations.addAndGet(count);
+                        done.countDown();
+                    }
+                }
+            };
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+        return operations.get() * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ConnectionLeakDetectorTest {
+
+    private static final HttpRoute ROUTE = new HttpRoute(new HttpHost("www.ambrosoli.jp", 80)); //$NON-NLS-1$
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void 返却されずにガベージコレクションされたコネクションがある場合_リークとして検出されること() throws Exception {
+
+        // Setup
+        ConnectionLeakDetector sut = new ConnectionLeakDetector(1, 0L);
+        sut.leased(mock(ManagedClientConnection.class), ROUTE);
+
+        // Exercise
+        int actual = 0;
+        for (int i = 0; i < 50 && actual == 0; i++) {
+            System.gc();
+            Thread.sleep(20L);
+            actual = sut.check();
+        }
+
+        // Verify
+        assertThat(actual, is(1));
+        assertThat(sut.getLeakCount(), is(1L));
+        assertThat(sut.getTrackedCount(), is(0));
+    }
+
+    @Test
+    public void 保持期間の上限を超えたコネクションがある場合_一度だけリークとして検出されること() throws Exception {
+
+        // Setup
+        ConnectionLeakDetector sut = new ConnectionLeakDetector(1, 10L);
+        ManagedClientConnection conn = mock(ManagedClientConnection.class);
+        sut.leased(conn, ROUTE);
+        Thread.sleep(50L);
+
+        // Exercise
+        int first = sut.check();
+        int second = sut.check();
+
+        // Verify
+        assertThat(first, is(1));
+        assertThat(second, is(0));
+        assertThat(sut.getLeakCount(), is(1L));
+        assertThat(sut.getTrackedCount(), is(1));
+        sut.released(conn);
+    }
+
+    @Test
+    public void 返却されたコネクションは_リークとして検出されないこと() throws Exception {
+
+        // Setup
+        ConnectionLeakDetector sut = new ConnectionLeakDetector(1, 10L);
+        ManagedClientConnection conn = mock(ManagedClientConnection.class);
+        sut.leased(conn, ROUTE);
+        sut.released(conn);
+        Thread.sleep(50L);
+
+        // Exercise
+        int actual = sut.check();
+
+        // Verify
+        assertThat(actual, is(0));
+        assertThat(sut.getTrackedCount(), is(0));
+    }
+
+    @Test
+    public void 追跡する間隔を指定すると_その回数に1回の割合でコネクションが追跡されること() {
+
+        // Setup
+        ConnectionLeakDetector sut = new ConnectionLeakDetector(3, 0L);
+        ManagedClientConnection[] connections = new ManagedClientConnection[6];
+
+        // Exercise
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = mock(ManagedClientConnection.class);
+            sut.leased(connections[i], ROUTE);
+        }
+
+        // Verify
+        assertThat(sut.getTrackedCount(), is(2));
+    }
+
+    @Test
+    public void 追跡する間隔に0以下を指定すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("sample interval must be positive."))); //$NON-NLS-1$
+
+        // Exercise
+        new ConnectionLeakDetector(0, 0L);
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class HappyEyeballsConnectorTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void 最初のアドレスが応答しない場合_試行間隔の経過後に次のアドレスに接続されること() throws Exception {
+
+        // Setup
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        HappyEyeballsConnector sut = new HappyEyeballsConnector(100L);
+        InetAddress[] addresses = new InetAddress[] { InetAddress.getByName("192.0.2.1"), //$NON-NLS-1$
+                InetAddress.getByName("127.0.0.1") }; //$NON-NLS-1$
+
+        try {
+            // Exercise
+            long start = System.currentTimeMillis();
+            Socket actual = sut.connect(addresses, server.getLocalPort(), null, 10000);
+            long elapsed = System.currentTimeMillis() - start;
+
+            // Verify
+            assertThat(actual.isConnected(), is(true));
+            assertThat(actual.getInetAddress(), is(equalTo(addresses[1])));
+            assertThat(elapsed, is(lessThan(5000L)));
+            actual.close();
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void すべてのアドレスに接続できない場合_ConnectExceptionが発生すること() throws Exception {
+
+        // Setup
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        int port = server.getLocalPort();
+        server.close();
+        HappyEyeballsConnector sut = new HappyEyeballsConnector(100L);
+        InetAddress[] addresses = new InetAddress[] { InetAddress.getByName("127.0.0.1"), //$NON-NLS-1$
+                InetAddress.getByName("127.0.0.1") }; //$NON-NLS-1$
+        this.expectedException.expect(is(instanceOf(ConnectException.class)));
+
+        // Exercise
+        sut.connect(addresses, port, null, 1000);
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void interleaveを呼び出すと_最初のアドレスファミリーから交互に並べ替えられること() throws Exception {
+
+        // Setup
+        InetAddress v6a = InetAddress.getByName("2001:db8::1"); //$NON-NLS-1$
+        InetAddress v6b = InetAddress.getByName("2001:db8::2"); //$NON-NLS-1$
+        InetAddress v4a = InetAddress.getByName("192.0.2.1"); //$NON-NLS-1$
+        InetAddress v4b = InetAddress.getByName("192.0.2.2"); //$NON-NLS-1$
+
+        // Exercise
+        List<InetAddress> actual = HappyEyeballsConnector.interleave(new InetAddress[] { v6a, v6b, v4a, v4b });
+
+        // Verify
+        assertThat(actual, contains(v6a, v4a, v6b, v4b));
+    }
+
+    @Test
+    public void 試行間隔に0以下を指定すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("connect attempt delay must be positive."))); //$NON-NLS-1$
+
+        // Exercise
+        new HappyEyeballsConnector(0L);
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void 接続中にabortを呼び出すと_接続中のソケットが閉じられInterruptedIOExceptionが発生すること() throws Exception {
+
+        // Setup
+        List<Socket> fillers = new ArrayList<Socket>();
+        ServerSocket server = createUnresponsiveServer(fillers);
+        final HappyEyeballsConnector sut = new HappyEyeballsConnector(100L);
+        InetAddress[] addresses = new InetAddress[] { InetAddress.getByName("127.0.0.1"), //$NON-NLS-1$
+                InetAddress.getByName("127.0.0.1") }; //$NON-NLS-1$
+        Thread aborter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(300L);
+                } catch (InterruptedException e) {
+                    // Do nothing.
+                }
+                sut.abort();
+            }
+        };
+
+        long start = System.currentTimeMillis();
+        try {
+            aborter.start();
+
+            // Exercise
+            sut.connect(addresses, server.getLocalPort(), null, 10000);
+
+            // Verify
+            fail("例外が発生しませんでした。"); //$NON-NLS-1$
+        } catch (InterruptedIOException e) {
+            assertThat(System.currentTimeMillis() - start, is(lessThan(5000L)));
+            assertThat(sut.isAborted(), is(true));
+        } finally {
+            close(server, fillers);
+        }
+    }
+
+    @Test
+    public void abort後にconnectを呼び出すと_InterruptedIOExceptionが発生すること() throws Exception {
+
+        // Setup
+        HappyEyeballsConnector sut = new HappyEyeballsConnector(100L);
+        sut.abort();
+        this.expectedException.expect(is(instanceOf(InterruptedIOException.class)));
+        this.expectedException.expectMessage(is(equalTo("connect aborted."))); //$NON-NLS-1$
+
+        // Exercise
+        sut.connect(new InetAddress[] { InetAddress.getByName("127.0.0.1") }, 80, null, 1000); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void 複数のアドレスが応答しない場合_接続タイムアウトはすべての試行を合わせた制限時間となること() throws Exception {
+
+        // Setup
+        List<Socket> fillers = new ArrayList<Socket>();
+        ServerSocket server = createUnresponsiveServer(fillers);
+        HappyEyeballsConnector sut = new HappyEyeballsConnector(200L);
+        InetAddress loopback = InetAddress.getByName("127.0.0.1"); //$NON-NLS-1$
+        InetAddress[] addresses = new InetAddress[] { loopback, loopback, loopback, loopback };
+
+        long start = System.currentTimeMillis();
+        try {
+            // Exercise
+            sut.connect(addresses, server.getLocalPort(), null, 500);
+
+            // Verify
+            fail("例外が発生しませんでした。"); //$NON-NLS-1$
+        } catch (ConnectTimeoutException e) {
+            assertThat(System.currentTimeMillis() - start, is(lessThan(900L)));
+        } finally {
+            close(server, fillers);
+        }
+    }
+
+    @Test
+    public void バッファサイズを設定した場合_接続前のソケットに設定されること() throws Exception {
+
+        // Setup
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        HappyEyeballsConnector sut = new HappyEyeballsConnector(100L);
+        sut.setBufferSizes(16384, 32768);
+        InetAddress[] addresses = new InetAddress[] { InetAddress.getByName("127.0.0.1"), //$NON-NLS-1$
+                InetAddress.getByName("127.0.0.1") }; //$NON-NLS-1$
+
+        try {
+            // Exercise
+            Socket actual = sut.connect(addresses, server.getLocalPort(), null, 1000);
+
+            // Verify
+            assertThat(actual.getSendBufferSize(), is(greaterThanOrEqualTo(16384)));
+            assertThat(actual.getReceiveBufferSize(), is(greaterThanOrEqualTo(32768)));
+            actual.close();
+        } finally {
+            server.close();
+        }
+    }
+
+    // 接続待ちキューを埋めて、以降の接続要求に応答しないサーバーソケットを生成する
+    static ServerSocket createUnresponsiveServer(final List<Socket> fillers) throws IOException {
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        for (int i = 0; i < 3; i++) {
+            Socket filler = new Socket();
+            try {
+                filler.connect(server.getLocalSocketAddress(), 300);
+                fillers.add(filler);
+            } catch (SocketTimeoutException e) {
+                filler.close();
+                break;
+            }
+        }
+        return server;
+    }
+
+    static void close(final ServerSocket server, final List<Socket> fillers) throws IOException {
+        for (Socket filler : fillers) {
+            filler.close();
+        }
+        server.close();
+    }
+
+}
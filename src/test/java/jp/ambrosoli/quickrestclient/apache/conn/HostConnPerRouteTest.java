@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class HostConnPerRouteTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void ホスト毎の上限が設定されていない場合_デフォルトの上限が返されること() {
+
+        // Setup
+        HostConnPerRoute sut = new HostConnPerRoute(10, null);
+
+        // Exercise
+        int actual = sut.getMaxForRoute(new HttpRoute(new HttpHost("www.ambrosoli.jp", 80))); //$NON-NLS-1$
+
+        // Verify
+        assertThat(actual, is(10));
+    }
+
+    @Test
+    public void ホスト毎の上限が設定されている場合_ホスト名の大文字小文字を区別せずに個別の上限が返されること() {
+
+        // Setup
+        Map<String, Integer> maxPerHost = new HashMap<String, Integer>();
+        maxPerHost.put("API.ambrosoli.jp", Integer.valueOf(50)); //$NON-NLS-1$
+        HostConnPerRoute sut = new HostConnPerRoute(10, maxPerHost);
+
+        // Exercise
+        int api = sut.getMaxForRoute(new HttpRoute(new HttpHost("api.ambrosoli.jp", 443, "https"))); //$NON-NLS-1$ //$NON-NLS-2$
+        int other = sut.getMaxForRoute(new HttpRoute(new HttpHost("www.ambrosoli.jp", 80))); //$NON-NLS-1$
+
+        // Verify
+        assertThat(api, is(50));
+        assertThat(other, is(10));
+    }
+
+    @Test
+    public void デフォルトの上限に0以下を指定すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("maximum number of connections must be positive."))); //$NON-NLS-1$
+
+        // Exercise
+        new HostConnPerRoute(0, null);
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Test;
+
+public class HostKeepAliveStrategyTest {
+
+    @Test
+    public void Keep_Aliveヘッダーがない場合_デフォルトの再利用期間が返されること() {
+
+        // Setup
+        HostKeepAliveStrategy sut = new HostKeepAliveStrategy(30000L, null);
+
+        // Exercise
+        long actual = sut.getKeepAliveDuration(createResponse(null), createContext("www.ambrosoli.jp")); //$NON-NLS-1$
+
+        // Verify
+        assertThat(actual, is(30000L));
+    }
+
+    @Test
+    public void Keep_Aliveヘッダーのタイムアウトがデフォルトより短い場合_タイムアウトより前に破棄される期間が返されること() {
+
+        // Setup
+        HostKeepAliveStrategy sut = new HostKeepAliveStrategy(30000L, null);
+
+        // Exercise
+        long actual = sut.getKeepAliveDuration(createResponse("timeout=5, max=100"), //$NON-NLS-1$
+                createContext("www.ambrosoli.jp")); //$NON-NLS-1$
+
+        // Verify
+        assertThat(actual, is(5000L - HostKeepAliveStrategy.SAFETY_MARGIN));
+    }
+
+    @Test
+    public void Keep_Aliveヘッダーのタイムアウトがデフォルトより長い場合_デフォルトの再利用期間が返されること() {
+
+        // Setup
+        HostKeepAliveStrategy sut = new HostKeepAliveStrategy(30000L, null);
+
+        // Exercise
+        long actual = sut.getKeepAliveDuration(createResponse("timeout=300"), createContext("www.ambrosoli.jp")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Verify
+        assertThat(actual, is(30000L));
+    }
+
+    @Test
+    public void Keep_Aliveヘッダーのタイムアウトが余裕より短い場合_タイムアウトの半分の期間が返されること() {
+
+        // Setup
+        HostKeepAliveStrategy sut = new HostKeepAliveStrategy(0L, null);
+
+        // Exercise
+        long actual = sut.getKeepAliveDuration(createResponse("timeout=1"), createContext("www.ambrosoli.jp")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Verify
+        assertThat(actual, is(500L));
+    }
+
+    @Test
+    public void ホスト毎の再利用期間が設定されている場合_ホスト名の大文字小文字を区別せずに個別の期間が返されること() {
+
+        // Setup
+        Map<String, Long> durationPerHost = new HashMap<String, Long>();
+        durationPerHost.put("API.ambrosoli.jp", Long.valueOf(2000L)); //$NON-NLS-1$
+        HostKeepAliveStrategy sut = new HostKeepAliveStrategy(30000L, durationPerHost);
+
+        // Exercise
+        long api = sut.getKeepAliveDuration(createResponse(null), createContext("api.ambrosoli.jp")); //$NON-NLS-1$
+        long other = sut.getKeepAliveDuration(createResponse(null), createContext("www.ambrosoli.jp")); //$NON-NLS-1$
+
+        // Verify
+        assertThat(api, is(2000L));
+        assertThat(other, is(30000L));
+    }
+
+    private static HttpResponse createResponse(final String keepAlive) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK"); //$NON-NLS-1$
+        if (keepAlive != null) {
+            response.addHeader("Keep-Alive", keepAlive); //$NON-NLS-1$
+        }
+        return response;
+    }
+
+    private static HttpContext createContext(final String host) {
+        HttpContext context = new BasicHttpContext();
+        context.setAttribute(ExecutionContext.HTTP_TARGET_HOST, new HttpHost(host, 80));
+        return context;
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class IdleConnectionEvictorTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void evictを呼び出すと_期限切れとアイドルタイムアウトを超えたコネクションが破棄されること() {
+
+        // Setup
+        ClientConnectionManager conman = mock(ClientConnectionManager.class);
+        IdleConnectionEvictor sut = new IdleConnectionEvictor(conman, 30000L, 5000L);
+
+        // Exercise
+        sut.evict();
+
+        // Verify
+        verify(conman).closeExpiredConnections();
+        verify(conman).closeIdleConnections(30000L, TimeUnit.MILLISECONDS);
+        assertThat(sut.getRunCount(), is(1L));
+        assertThat(sut.getLastRunTime(), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void アイドルタイムアウトが0の場合_期限切れのコネクションのみ破棄されること() {
+
+        // Setup
+        ClientConnectionManager conman = mock(ClientConnectionManager.class);
+        IdleConnectionEvictor sut = new IdleConnectionEvictor(conman, 0L, 5000L);
+
+        // Exercise
+        sut.evict();
+
+        // Verify
+        verify(conman).closeExpiredConnections();
+        verify(conman, never()).closeIdleConnections(anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    public void スレッドを開始すると_実行間隔毎に破棄処理が実行され_shutdownで終了すること() throws Exception {
+
+        // Setup
+        ClientConnectionManager conman = mock(ClientConnectionManager.class);
+        IdleConnectionEvictor sut = new IdleConnectionEvictor(conman, 30000L, 10L);
+
+        // Exercise
+        sut.start();
+        verify(conman, timeout(1000).atLeast(2)).closeExpiredConnections();
+        sut.shutdown();
+        sut.join(1000L);
+
+        // Verify
+        assertThat(sut.isDaemon(), is(true));
+        assertThat(sut.isAlive(), is(false));
+        assertThat(sut.isShutdown(), is(true));
+    }
+
+    @Test
+    public void 破棄処理で実行時例外が発生しても_スレッドが終了せず次の実行間隔で破棄処理が実行されること() throws Exception {
+
+        // Setup
+        ClientConnectionManager conman = mock(ClientConnectionManager.class);
+        doThrow(new IllegalStateException("broken")).doNothing().when(conman).closeExpiredConnections(); //$NON-NLS-1$
+        IdleConnectionEvictor sut = new IdleConnectionEvictor(conman, 30000L, 10L);
+
+        // Exercise
+        sut.start();
+        verify(conman, timeout(1000).atLeast(2)).closeExpiredConnections();
+
+        // Verify
+        assertThat(sut.isAlive(), is(true));
+        assertThat(sut.getRunCount(), is(greaterThan(0L)));
+        sut.shutdown();
+        sut.join(1000L);
+    }
+
+    @Test
+    public void 実行間隔に0以下を指定すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("eviction interval must be positive."))); //$NON-NLS-1$
+
+        // Exercise
+        new IdleConnectionEvictor(mock(ClientConnectionManager.class), 30000L, 0L);
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void コネクションマネージャにnullを指定すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("connection manager must not be null."))); //$NON-NLS-1$
+
+        // Exercise
+        new IdleConnectionEvictor(null, 30000L, 5000L);
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class LocalAddressSelectorTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void selectを呼び出すと_同じアドレスファミリーのローカルアドレスが順番に返されること() throws Exception {
+
+        // Setup
+        InetAddress local1 = InetAddress.getByName("192.0.2.1"); //$NON-NLS-1$
+        InetAddress local2 = InetAddress.getByName("192.0.2.2"); //$NON-NLS-1$
+        InetAddress local6 = InetAddress.getByName("2001:db8::1"); //$NON-NLS-1$
+        LocalAddressSelector sut = new LocalAddressSelector(Arrays.asList(local1, local6, local2));
+        InetAddress remote = InetAddress.getByName("198.51.100.1"); //$NON-NLS-1$
+
+        // Exercise
+        InetAddress first = sut.select(remote);
+        InetAddress second = sut.select(remote);
+        InetAddress third = sut.select(remote);
+
+        // Verify
+        assertThat(first, is(equalTo(local1)));
+        assertThat(second, is(equalTo(local2)));
+        assertThat(third, is(equalTo(local1)));
+    }
+
+    @Test
+    public void 同じアドレスファミリーのローカルアドレスがない場合_nullが返されること() throws Exception {
+
+        // Setup
+        LocalAddressSelector sut = new LocalAddressSelector(Collections.singletonList(InetAddress
+                .getByName("192.0.2.1"))); //$NON-NLS-1$
+
+        // Exercise
+        InetAddress actual = sut.select(InetAddress.getByName("2001:db8::2")); //$NON-NLS-1$
+
+        // Verify
+        assertThat(actual, is(nullValue()));
+    }
+
+    @Test
+    public void ローカルアドレスが空の場合_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("local addresses must not be empty."))); //$NON-NLS-1$
+
+        // Exercise
+        new LocalAddressSelector(Collections.<InetAddress> emptyList());
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+}
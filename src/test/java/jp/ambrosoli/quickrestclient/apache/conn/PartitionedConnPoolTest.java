@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.tsccm.BasicPoolEntry;
+import org.apache.http.impl.conn.tsccm.PoolEntryRequest;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import jp.ambrosoli.quickrestclient.service.PoolStats;
+
+public class PartitionedConnPoolTest {
+
+    private static final HttpRoute ROUTE = new HttpRoute(new HttpHost("www.ambrosoli.jp", 80)); //$NON-NLS-1$
+
+    private static final HttpRoute OTHER_ROUTE = new HttpRoute(new HttpHost("api.ambrosoli.jp", 80)); //$NON-NLS-1$
+
+    private ClientConnectionOperator operator;
+
+    @Before
+    public void setUp() throws Exception {
+        this.operator = mock(ClientConnectionOperator.class);
+        when(this.operator.createConnection()).thenAnswer(new Answer<OperatedClientConnection>() {
+            public OperatedClientConnection answer(final InvocationOnMock invocation) {
+                return createConnection();
+            }
+        });
+    }
+
+    @Test
+    public void 返却したコネクションを同じルートで取得すると_同じエントリーが再利用されること() throws Exception {
+
+        // Setup
+        PartitionedConnPool sut = new PartitionedConnPool(this.operator, new BasicHttpParams());
+        BasicPoolEntry entry = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        sut.freeEntry(entry, true, 0, TimeUnit.MILLISECONDS);
+
+        // Exercise
+        BasicPoolEntry actual = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+
+        // Verify
+        assertThat(actual, is(sameInstance(entry)));
+        assertThat(sut.getConnectionsInPool(ROUTE), is(1));
+        assertThat(sut.getConnectionsInPool(), is(1));
+    }
+
+    @Test
+    public void ルートの上限に達している場合_他のルートのコネクションは待機せずに取得できること() throws Exception {
+
+        // Setup
+        HttpParams params = new BasicHttpParams();
+        ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(1));
+        PartitionedConnPool sut = new PartitionedConnPool(this.operator, params);
+        sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        try {
+            sut.getEntry(ROUTE, null, 50, TimeUnit.MILLISECONDS);
+            fail("例外が発生しませんでした。"); //$NON-NLS-1$
+        } catch (ConnectionPoolTimeoutException e) {
+            // Do nothing.
+        }
+
+        // Exercise
+        BasicPoolEntry actual = sut.getEntry(OTHER_ROUTE, null, 50, TimeUnit.MILLISECONDS);
+
+        // Verify
+        assertThat(actual, is(notNullValue()));
+        assertThat(sut.getConnectionsInPool(OTHER_ROUTE), is(1));
+        assertThat(sut.getConnectionsInPool(), is(2));
+        assertThat(sut.getStats().getAcquireTimeoutCount(), is(1L));
+    }
+
+    @Test
+    public void プール全体の上限に達している場合_他のルートのアイドルコネクションを破棄して取得できること() throws Exception {
+
+        // Setup
+        HttpParams params = new BasicHttpParams();
+        ConnManagerParams.setMaxTotalConnections(params, 1);
+        PartitionedConnPool sut = new PartitionedConnPool(this.operator, params);
+        BasicPoolEntry idle = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        sut.freeEntry(idle, true, 0, TimeUnit.MILLISECONDS);
+
+        // Exercise
+        BasicPoolEntry actual = sut.getEntry(OTHER_ROUTE, null, 50, TimeUnit.MILLISECONDS);
+
+        // Verify
+        assertThat(actual, is(notNullValue()));
+        assertThat(sut.getConnectionsInPool(ROUTE), is(0));
+        assertThat(sut.getConnectionsInPool(OTHER_ROUTE), is(1));
+    }
+
+    @Test
+    public void プール全体の上限で待機している場合_他のルートのコネクションが返却されると取得できること() throws Exception {
+
+        // Setup
+        HttpParams params = new BasicHttpParams();
+        ConnManagerParams.setMaxTotalConnections(params, 1);
+        final PartitionedConnPool sut = new PartitionedConnPool(this.operator, params);
+        BasicPoolEntry leased = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        final AtomicReference<BasicPoolEntry> result = new AtomicReference<BasicPoolEntry>();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    result.set(sut.getEntry(OTHER_ROUTE, null, 5000, TimeUnit.MILLISECONDS));
+                } catch (Exception e) {
+                    // Do nothing.
+                }
+            }
+        };
+        waiter.start();
+        for (int i = 0; i < 100 && sut.getStats().getPending() == 0; i++) {
+            Thread.sleep(10L);
+        }
+
+        // Exercise
+        sut.freeEntry(leased, false, 0, TimeUnit.MILLISECONDS);
+        waiter.join(5000L);
+
+        // Verify
+        assertThat(result.get(), is(notNullValue()));
+        assertThat(sut.getConnectionsInPool(ROUTE), is(0));
+        assertThat(sut.getConnectionsInPool(OTHER_ROUTE), is(1));
+    }
+
+    @Test
+    public void 取得待ちのリクエストを中断すると_InterruptedExceptionが発生すること() throws Exception {
+
+        // Setup
+        HttpParams params = new BasicHttpParams();
+        ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(1));
+        PartitionedConnPool sut = new PartitionedConnPool(this.operator, params);
+        sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        final PoolEntryRequest request = sut.requestPoolEntry(ROUTE, null);
+        final AtomicReference<Exception> result = new AtomicReference<Exception>();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    request.getPoolEntry(5000, TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    result.set(e);
+                }
+            }
+        };
+        waiter.start();
+        for (int i = 0; i < 100 && sut.getStats().getPending() == 0; i++) {
+            Thread.sleep(10L);
+        }
+
+        // Exercise
+        request.abortRequest();
+        waiter.join(5000L);
+
+        // Verify
+        assertThat(result.get(), is(instanceOf(InterruptedException.class)));
+    }
+
+    @Test
+    public void 生存期間を超えたコネクションを返却すると_次回の取得時にコネクションが閉じられ再利用されないこと() throws Exception {
+
+        // Setup
+        HttpParams params = new BasicHttpParams();
+        params.setLongParameter(PoolingConnPool.CONNECTION_TIME_TO_LIVE, 10L);
+        PartitionedConnPool sut = new PartitionedConnPool(this.operator, params);
+        BasicPoolEntry entry = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        Thread.sleep(50L);
+        sut.freeEntry(entry, true, 0, TimeUnit.MILLISECONDS);
+        Thread.sleep(10L);
+
+        // Exercise
+        BasicPoolEntry actual = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+
+        // Verify
+        assertThat(actual, is(not(sameInstance(entry))));
+        assertThat(sut.getConnectionsInPool(ROUTE), is(1));
+    }
+
+    @Test
+    public void アイドルコネクションを閉じて削除すると_プールから破棄されること() throws Exception {
+
+        // Setup
+        PartitionedConnPool sut = new PartitionedConnPool(this.operator, new BasicHttpParams());
+        BasicPoolEntry entry = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        sut.freeEntry(entry, true, 0, TimeUnit.MILLISECONDS);
+
+        // Exercise
+        sut.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+        sut.deleteClosedConnections();
+
+        // Verify
+        assertThat(sut.getConnectionsInPool(), is(0));
+        assertThat(sut.getEvictedCount(), is(1L));
+    }
+
+    @Test
+    public void コネクションを取得して返却すると_統計情報のリース中とアイドルのコネクション数が更新されること() throws Exception {
+
+        // Setup
+        PartitionedConnPool sut = new PartitionedConnPool(this.operator, new BasicHttpParams());
+
+        // Exercise
+        BasicPoolEntry entry = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        PoolStats leased = sut.getStats();
+        sut.freeEntry(entry, true, 0, TimeUnit.MILLISECONDS);
+        PoolStats released = sut.getStats();
+
+        // Verify
+        assertThat(leased.getLeased(), is(1));
+        assertThat(leased.getAvailable(), is(0));
+        assertThat(released.getLeased(), is(0));
+        assertThat(released.getAvailable(), is(1));
+        assertThat(released.getAcquireCount(), is(1L));
+        assertThat(released.getMax(), is(ConnManagerParams.DEFAULT_MAX_TOTAL_CONNECTIONS));
+        assertThat(released.getRouteStats().get(ROUTE.toString()).getMax(),
+                is(ConnPerRouteBean.DEFAULT_MAX_CONNECTIONS_PER_ROUTE));
+    }
+
+    @Test
+    public void シャットダウンすると_リース中とアイドルのコネクションが閉じられること() throws Exception {
+
+        // Setup
+        PartitionedConnPool sut = new PartitionedConnPool(this.operator, new BasicHttpParams());
+        BasicPoolEntry leased = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        BasicPoolEntry idle = sut.getEntry(OTHER_ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        sut.freeEntry(idle, true, 0, TimeUnit.MILLISECONDS);
+
+        // Exercise
+        sut.shutdown();
+
+        // Verify
+        assertThat(sut.getConnectionsInPool(), is(0));
+        try {
+            sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+            fail("例外が発生しませんでした。"); //$NON-NLS-1$
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is(equalTo("connection pool shut down."))); //$NON-NLS-1$
+        }
+        sut.freeEntry(leased, true, 0, TimeUnit.MILLISECONDS);
+        assertThat(sut.getConnectionsInPool(), is(0));
+    }
+
+    private static OperatedClientConnection createConnection() {
+        final AtomicBoolean open = new AtomicBoolean(true);
+        OperatedClientConnection connection = mock(OperatedClientConnection.class);
+        when(connection.isOpen()).thenAnswer(new Answer<Boolean>() {
+            public Boolean answer(final InvocationOnMock invocation) {
+                return Boolean.valueOf(open.get());
+            }
+        });
+        try {
+            doAnswer(new Answer<Void>() {
+                public Void answer(final InvocationOnMock invocation) {
+                    open.set(false);
+                    return null;
+                }
+            }).when(connection).close();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return connection;
+    }
+
+}
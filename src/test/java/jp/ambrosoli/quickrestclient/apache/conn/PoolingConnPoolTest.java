@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.tsccm.BasicPoolEntry;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import jp.ambrosoli.quickrestclient.service.PoolStats;
+
+public class PoolingConnPoolTest {
+
+    private static final HttpRoute ROUTE = new HttpRoute(new HttpHost("www.ambrosoli.jp", 80)); //$NON-NLS-1$
+
+    private OperatedClientConnection connection;
+
+    private ClientConnectionOperator operator;
+
+    @Before
+    public void setUp() throws Exception {
+        final AtomicBoolean open = new AtomicBoolean(true);
+        this.connection = mock(OperatedClientConnection.class);
+        when(this.connection.isOpen()).thenAnswer(new Answer<Boolean>() {
+            public Boolean answer(final InvocationOnMock invocation) {
+                return Boolean.valueOf(open.get());
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            public Void answer(final InvocationOnMock invocation) {
+                open.set(false);
+                return null;
+            }
+        }).when(this.connection).close();
+        this.operator = mock(ClientConnectionOperator.class);
+        when(this.operator.createConnection()).thenReturn(this.connection);
+    }
+
+    @Test
+    public void 生存期間を超えたコネクションを返却すると_次回の取得時にコネクションが閉じられ再利用されないこと() throws Exception {
+
+        // Setup
+        PoolingConnPool sut = new PoolingConnPool(this.operator, this.createParams(10L));
+        BasicPoolEntry entry = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        Thread.sleep(50L);
+        sut.freeEntry(entry, true, 0, TimeUnit.MILLISECONDS);
+        Thread.sleep(10L);
+
+        // Exercise
+        BasicPoolEntry actual = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+
+        // Verify
+        verify(this.connection).close();
+        assertThat(actual, is(not(sameInstance(entry))));
+        assertThat(sut.getConnectionsInPool(ROUTE), is(1));
+    }
+
+    @Test
+    public void 生存期間内のコネクションを返却すると_生存期間を過ぎた後に期限切れとして破棄されること() throws Exception {
+
+        // Setup
+        PoolingConnPool sut = new PoolingConnPool(this.operator, this.createParams(100L));
+        BasicPoolEntry entry = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        sut.freeEntry(entry, true, 0, TimeUnit.MILLISECONDS);
+        assertThat(sut.getConnectionsInPool(ROUTE), is(1));
+        Thread.sleep(150L);
+
+        // Exercise
+        sut.closeExpiredConnections();
+        sut.deleteClosedConnections();
+
+        // Verify
+        verify(this.connection, atLeastOnce()).close();
+        assertThat(sut.getConnectionsInPool(ROUTE), is(0));
+        assertThat(sut.getEvictedCount(), is(1L));
+    }
+
+    @Test
+    public void 生存期間が設定されていない場合_返却したコネクションは期限切れにならないこと() throws Exception {
+
+        // Setup
+        PoolingConnPool sut = new PoolingConnPool(this.operator, new BasicHttpParams());
+        BasicPoolEntry entry = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        sut.freeEntry(entry, true, 0, TimeUnit.MILLISECONDS);
+
+        // Exercise
+        sut.closeExpiredConnections();
+        sut.deleteClosedConnections();
+
+        // Verify
+        verify(this.connection, never()).close();
+        assertThat(sut.getTimeToLive(), is(0L));
+        assertThat(sut.getConnectionsInPool(ROUTE), is(1));
+        assertThat(sut.getEvictedCount(), is(0L));
+    }
+
+    private HttpParams createParams(final long timeToLive) {
+        HttpParams params = new BasicHttpParams();
+        params.setLongParameter(PoolingConnPool.CONNECTION_TIME_TO_LIVE, timeToLive);
+        return params;
+    }
+
+    @Test
+    public void コネクションを取得して返却すると_統計情報のリース中とアイドルのコネクション数が更新されること() throws Exception {
+
+        // Setup
+        PoolingConnPool sut = new PoolingConnPool(this.operator, new BasicHttpParams());
+
+        // Exercise
+        BasicPoolEntry entry = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        PoolStats leased = sut.getStats();
+        sut.freeEntry(entry, true, 0, TimeUnit.MILLISECONDS);
+        PoolStats released = sut.getStats();
+        sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        PoolStats reused = sut.getStats();
+
+        // Verify
+        assertThat(leased.getLeased(), is(1));
+        assertThat(leased.getAvailable(), is(0));
+        assertThat(released.getLeased(), is(0));
+        assertThat(released.getAvailable(), is(1));
+        assertThat(reused.getLeased(), is(1));
+        assertThat(reused.getAvailable(), is(0));
+        assertThat(reused.getAcquireCount(), is(2L));
+        assertThat(reused.getMax(), is(ConnManagerParams.DEFAULT_MAX_TOTAL_CONNECTIONS));
+        PoolStats routeStats = reused.getRouteStats().get(ROUTE.toString());
+        assertThat(routeStats.getLeased(), is(1));
+        assertThat(routeStats.getMax(), is(ConnPerRouteBean.DEFAULT_MAX_CONNECTIONS_PER_ROUTE));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void リース中のコネクションが返却されずに回収されると_統計情報のリース中のコネクション数が減ること() throws Exception {
+
+        // Setup
+        PoolingConnPool sut = new PoolingConnPool(this.operator, new BasicHttpParams());
+        sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+
+        // Exercise
+        sut.handleLostEntry(ROUTE);
+        PoolStats actual = sut.getStats();
+
+        // Verify
+        assertThat(actual.getLeased(), is(1));
+        assertThat(actual.getRouteStats().get(ROUTE.toString()).getLeased(), is(1));
+        assertThat(sut.getConnectionsInPool(ROUTE), is(1));
+    }
+
+    @Test
+    public void コネクションの取得待ちが発生すると_統計情報に取得待ち数とタイムアウト回数が集計されること() throws Exception {
+
+        // Setup
+        HttpParams params = new BasicHttpParams();
+        ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(1));
+        final PoolingConnPool sut = new PoolingConnPool(this.operator, params);
+        BasicPoolEntry entry = sut.getEntry(ROUTE, null, 0, TimeUnit.MILLISECONDS);
+        try {
+            sut.getEntry(ROUTE, null, 50, TimeUnit.MILLISECONDS);
+            fail("例外が発生しませんでした。"); //$NON-NLS-1$
+        } catch (ConnectionPoolTimeoutException e) {
+            // Do nothing.
+        }
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    sut.getEntry(ROUTE, null, 5000, TimeUnit.MILLISECONDS);
+                } catch (Exception e) {
+                    // Do nothing.
+                }
+            }
+        };
+        waiter.start();
+
+        // Exercise
+        PoolStats waiting = sut.getStats();
+        for (int i = 0; i < 100 && waiting.getPending() == 0; i++) {
+            Thread.sleep(10L);
+            waiting = sut.getStats();
+        }
+        sut.freeEntry(entry, true, 0, TimeUnit.MILLISECONDS);
+        waiter.join(5000L);
+        PoolStats actual = sut.getStats();
+
+        // Verify
+        assertThat(waiting.getPending(), is(1));
+        assertThat(actual.getPending(), is(0));
+        assertThat(actual.getLeased(), is(1));
+        assertThat(actual.getAcquireCount(), is(2L));
+        assertThat(actual.getAcquireTimeoutCount(), is(1L));
+        assertThat(actual.getMaxAcquireWaitTime(), is(greaterThanOrEqualTo(0L)));
+        assertThat(actual.getRouteStats().get(ROUTE.toString()).getMax(), is(1));
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Test;
+
+import jp.ambrosoli.quickrestclient.net.DnsResolver;
+
+public class TlsClientConnectionOperatorTest {
+
+    @Test
+    public void prepareSocketを呼び出すと_パラメータのソケットオプションが適用されること() throws Exception {
+
+        // Setup
+        TlsClientConnectionOperator sut = new TlsClientConnectionOperator(new SchemeRegistry());
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setTcpNoDelay(params, true);
+        HttpConnectionParams.setLinger(params, 5);
+        params.setBooleanParameter(TlsClientConnectionOperator.SO_KEEPALIVE, true);
+        Socket socket = new Socket();
+
+        try {
+            // Exercise
+            sut.prepareSocket(socket, null, params);
+
+            // Verify
+            assertThat(socket.getTcpNoDelay(), is(true));
+            assertThat(socket.getSoLinger(), is(5));
+            assertThat(socket.getKeepAlive(), is(true));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void ソケットオプションのパラメータがない場合_OSのデフォルトが変更されないこと() throws Exception {
+
+        // Setup
+        TlsClientConnectionOperator sut = new TlsClientConnectionOperator(new SchemeRegistry());
+        Socket socket = new Socket();
+        int sendBufferSize = socket.getSendBufferSize();
+        int receiveBufferSize = socket.getReceiveBufferSize();
+
+        try {
+            // Exercise
+            sut.prepareSocket(socket, null, new BasicHttpParams());
+
+            // Verify
+            assertThat(socket.getKeepAlive(), is(false));
+            assertThat(socket.getSendBufferSize(), is(sendBufferSize));
+            assertThat(socket.getReceiveBufferSize(), is(receiveBufferSize));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void 時間差で接続中にコネクションをshutdownすると_接続が中断されること() throws Exception {
+
+        // Setup
+        List<Socket> fillers = new ArrayList<Socket>();
+        ServerSocket server = HappyEyeballsConnectorTest.createUnresponsiveServer(fillers);
+        SchemeRegistry schemes = new SchemeRegistry();
+        schemes.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80)); //$NON-NLS-1$
+        TlsClientConnectionOperator sut = new TlsClientConnectionOperator(schemes);
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, 10000);
+        params.setIntParameter(TlsClientConnectionOperator.CONNECT_ATTEMPT_DELAY, 100);
+        params.setParameter(TlsClientConnectionOperator.DNS_RESOLVER, new DnsResolver() {
+            public InetAddress[] resolve(final String host) throws UnknownHostException {
+                InetAddress loopback = InetAddress.getByName("127.0.0.1"); //$NON-NLS-1$
+                return new InetAddress[] { loopback, loopback };
+            }
+        });
+        final OperatedClientConnection conn = sut.createConnection();
+        Thread aborter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(300L);
+                    conn.shutdown();
+                } catch (Exception e) {
+                    // Do nothing.
+                }
+            }
+        };
+
+        long start = System.currentTimeMillis();
+        try {
+            aborter.start();
+
+            // Exercise
+            sut.openConnection(conn, new HttpHost("api.ambrosoli.invalid", server.getLocalPort()), null, null, //$NON-NLS-1$
+                    params);
+
+            // Verify
+            fail("例外が発生しませんでした。"); //$NON-NLS-1$
+        } catch (IOException e) {
+            assertThat(System.currentTimeMillis() - start, is(lessThan(5000L)));
+            assertThat(conn.isOpen(), is(false));
+        } finally {
+            HappyEyeballsConnectorTest.close(server, fillers);
+        }
+    }
+
+    @Test
+    public void openConnectionを呼び出すと_接続前のソケットにバッファサイズが設定されること() throws Exception {
+
+        // Setup
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        SchemeRegistry schemes = new SchemeRegistry();
+        schemes.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80)); //$NON-NLS-1$
+        final List<Socket> prepared = new ArrayList<Socket>();
+        TlsClientConnectionOperator sut = new TlsClientConnectionOperator(schemes) {
+            @Override
+            protected void prepareSocket(final Socket sock, final HttpContext context, final HttpParams params)
+                    throws IOException {
+                // 接続後にバッファサイズが変更されないことを確認するため、接続後の設定を行わない
+                prepared.add(sock);
+            }
+        };
+        HttpParams params = new BasicHttpParams();
+        params.setIntParameter(TlsClientConnectionOperator.SO_SNDBUF, 16384);
+        params.setIntParameter(TlsClientConnectionOperator.SO_RCVBUF, 32768);
+        OperatedClientConnection conn = sut.createConnection();
+
+        try {
+            // Exercise
+            sut.openConnection(conn, new HttpHost("127.0.0.1", server.getLocalPort()), null, null, params); //$NON-NLS-1$
+
+            // Verify
+            assertThat(prepared.size(), is(1));
+            assertThat(prepared.get(0).isConnected(), is(true));
+            assertThat(prepared.get(0).getSendBufferSize(), is(greaterThanOrEqualTo(16384)));
+            assertThat(prepared.get(0).getReceiveBufferSize(), is(greaterThanOrEqualTo(32768)));
+        } finally {
+            conn.shutdown();
+            server.close();
+        }
+    }
+
+    @Test
+    public void setBufferSizesを呼び出すと_パラメータのバッファサイズが設定されること() throws Exception {
+
+        // Setup
+        HttpParams params = new BasicHttpParams();
+        params.setIntParameter(TlsClientConnectionOperator.SO_SNDBUF, 16384);
+        params.setIntParameter(TlsClientConnectionOperator.SO_RCVBUF, 32768);
+        Socket socket = new Socket();
+
+        try {
+            // Exercise
+            TlsClientConnectionOperator.setBufferSizes(socket, params);
+
+            // Verify
+            assertThat(socket.getSendBufferSize(), is(greaterThanOrEqualTo(16384)));
+            assertThat(socket.getReceiveBufferSize(), is(greaterThanOrEqualTo(32768)));
+        } finally {
+            socket.close();
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Test;
+
+import jp.ambrosoli.quickrestclient.enums.TlsHandshake;
+
+public class TlsHandshakeInterceptorTest {
+
+    @Test
+    public void コネクションで最初のリクエストの場合_記録されたハンドシェイクの種類が設定されること() {
+
+        // Setup
+        TlsHandshakeInterceptor sut = new TlsHandshakeInterceptor();
+        HttpContext context = createContext(1L, TlsHandshake.RESUMED);
+
+        // Exercise
+        sut.process(new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK"), context); //$NON-NLS-1$
+
+        // Verify
+        assertThat((TlsHandshake) context.getAttribute(TlsHandshakeInterceptor.TLS_HANDSHAKE),
+                is(TlsHandshake.RESUMED));
+    }
+
+    @Test
+    public void 再利用されたコネクションの場合_NONEが設定されること() {
+
+        // Setup
+        TlsHandshakeInterceptor sut = new TlsHandshakeInterceptor();
+        HttpContext context = createContext(2L, TlsHandshake.FULL);
+
+        // Exercise
+        sut.process(new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK"), context); //$NON-NLS-1$
+
+        // Verify
+        assertThat((TlsHandshake) context.getAttribute(TlsHandshakeInterceptor.TLS_HANDSHAKE),
+                is(TlsHandshake.NONE));
+    }
+
+    @Test
+    public void コンテキストにコネクションがない場合_NONEが設定されること() {
+
+        // Setup
+        TlsHandshakeInterceptor sut = new TlsHandshakeInterceptor();
+        HttpContext context = new BasicHttpContext();
+
+        // Exercise
+        sut.process(new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK"), context); //$NON-NLS-1$
+
+        // Verify
+        assertThat((TlsHandshake) context.getAttribute(TlsHandshakeInterceptor.TLS_HANDSHAKE),
+                is(TlsHandshake.NONE));
+    }
+
+    private static HttpContext createContext(final long requestCount, final TlsHandshake handshake) {
+        HttpConnectionMetrics metrics = mock(HttpConnectionMetrics.class);
+        when(metrics.getRequestCount()).thenReturn(requestCount);
+        when(metrics.getMetric(TlsClientConnection.METRIC_TLS_HANDSHAKE)).thenReturn(handshake);
+        HttpConnection conn = mock(HttpConnection.class);
+        when(conn.getMetrics()).thenReturn(metrics);
+        HttpContext context = new BasicHttpContext();
+        context.setAttribute(ExecutionContext.HTTP_CONNECTION, conn);
+        return context;
+    }
+
+}
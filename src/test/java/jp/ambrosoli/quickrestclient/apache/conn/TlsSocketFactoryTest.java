@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.conn;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.net.Socket;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class TlsSocketFactoryTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void createSSLContextを呼び出すと_セッションキャッシュが設定されたSSLContextが返されること() {
+
+        // Exercise
+        SSLContext actual = TlsSocketFactory.createSSLContext(50, 600);
+
+        // Verify
+        assertThat(actual.getClientSessionContext().getSessionCacheSize(), is(50));
+        assertThat(actual.getClientSessionContext().getSessionTimeout(), is(600));
+    }
+
+    @Test
+    public void プロトコルと暗号スイートを指定すると_生成したソケットに設定されること() throws Exception {
+
+        // Setup
+        SSLContext sslContext = TlsSocketFactory.createSSLContext(0, 0);
+        String cipherSuite = sslContext.getSocketFactory().getDefaultCipherSuites()[0];
+        TlsSocketFactory sut = new TlsSocketFactory(sslContext, new String[] { "TLSv1.2" }, //$NON-NLS-1$
+                new String[] { cipherSuite }, null);
+
+        // Exercise
+        SSLSocket actual = (SSLSocket) sut.createSocket();
+
+        // Verify
+        try {
+            assertThat(actual.getEnabledProtocols(), is(equalTo(new String[] { "TLSv1.2" }))); //$NON-NLS-1$
+            assertThat(actual.getEnabledCipherSuites(), is(equalTo(new String[] { cipherSuite })));
+        } finally {
+            actual.close();
+        }
+    }
+
+    @Test
+    public void SSLソケット以外をisSecureに渡すと_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        TlsSocketFactory sut = new TlsSocketFactory(TlsSocketFactory.createSSLContext(0, 0), null, null, null);
+
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("socket not created by this factory."))); //$NON-NLS-1$
+
+        // Exercise
+        sut.isSecure(new Socket());
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void SSLContextにnullを指定すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("SSLContext must not be null."))); //$NON-NLS-1$
+
+        // Exercise
+        new TlsSocketFactory(null, null, null, null);
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+}
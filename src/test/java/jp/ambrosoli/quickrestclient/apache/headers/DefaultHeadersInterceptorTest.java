@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.headers;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpRequest;
+import org.junit.Test;
+
+public class DefaultHeadersInterceptorTest {
+
+    @Test
+    public void processを呼び出すと_デフォルトのヘッダーがリクエストに追加されること() {
+
+        // Setup
+        DefaultHeadersInterceptor sut = new DefaultHeadersInterceptor(new Header[] {
+                new BasicHeader("Accept", "application/json"), //$NON-NLS-1$ //$NON-NLS-2$
+                new BasicHeader("Accept", "application/xml"), //$NON-NLS-1$ //$NON-NLS-2$
+                new BasicHeader("X-Client", "quickrestclient") }); //$NON-NLS-1$ //$NON-NLS-2$
+        HttpRequest request = new BasicHttpRequest("GET", "/"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(request, null);
+
+        // Verify
+        assertThat(request.getHeaders("Accept").length, is(2)); //$NON-NLS-1$
+        assertThat(request.getFirstHeader("X-Client").getValue(), is(equalTo("quickrestclient"))); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    @Test
+    public void リクエストに同じ名前のヘッダーがある場合_リクエストのヘッダーが優先されること() {
+
+        // Setup
+        DefaultHeadersInterceptor sut = new DefaultHeadersInterceptor(new Header[] { new BasicHeader("Accept", //$NON-NLS-1$
+                "application/json") }); //$NON-NLS-1$
+        HttpRequest request = new BasicHttpRequest("GET", "/"); //$NON-NLS-1$ //$NON-NLS-2$
+        request.addHeader("Accept", "text/plain"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(request, null);
+
+        // Verify
+        Header[] actual = request.getHeaders("Accept"); //$NON-NLS-1$
+        assertThat(actual.length, is(1));
+        assertThat(actual[0].getValue(), is(equalTo("text/plain"))); //$NON-NLS-1$
+    }
+
+    @Test
+    public void CONNECTリクエストの場合_ヘッダーが追加されないこと() {
+
+        // Setup
+        DefaultHeadersInterceptor sut = new DefaultHeadersInterceptor(new Header[] { new BasicHeader("Accept", //$NON-NLS-1$
+                "application/json") }); //$NON-NLS-1$
+        HttpRequest request = new BasicHttpRequest("CONNECT", "www.ambrosoli.jp:443"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(request, null);
+
+        // Verify
+        assertThat(request.containsHeader("Accept"), is(false)); //$NON-NLS-1$
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.headers;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.AuthState;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.impl.auth.DigestScheme;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DigestAuthCacheInterceptorTest {
+
+    private DigestChallengeCache cache;
+
+    private HttpContext context;
+
+    @Before
+    public void setUp() {
+        this.cache = new DigestChallengeCache();
+        this.context = new BasicHttpContext();
+        this.context.setAttribute(ExecutionContext.HTTP_TARGET_HOST, new HttpHost("www.ambrosoli.jp", 80)); //$NON-NLS-1$
+        CredentialsProvider provider = new BasicCredentialsProvider();
+        provider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("user", "password")); //$NON-NLS-1$ //$NON-NLS-2$
+        this.context.setAttribute(ClientContext.CREDS_PROVIDER, provider);
+    }
+
+    @Test
+    public void 認証要求を受け取った後のリクエストでは_キャッシュしたnonceでAuthorizationヘッダーが追加されること() {
+
+        // Setup
+        DigestAuthCacheInterceptor sut = new DigestAuthCacheInterceptor(this.cache);
+        HttpRequest request = new BasicHttpRequest("GET", "/api"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(this.createUnauthorized("Digest realm=\"api\", nonce=\"abc\", qop=\"auth\""), this.context); //$NON-NLS-1$
+        sut.process(request, this.context);
+
+        // Verify
+        String actual = request.getFirstHeader("Authorization").getValue(); //$NON-NLS-1$
+        assertThat(actual, containsString("nonce=\"abc\"")); //$NON-NLS-1$
+        assertThat(actual, containsString("uri=\"/api\"")); //$NON-NLS-1$
+        assertThat(actual, containsString("nc=00000002")); //$NON-NLS-1$
+    }
+
+    @Test
+    public void 認証要求がキャッシュされていない場合_ヘッダーが追加されないこと() {
+
+        // Setup
+        DigestAuthCacheInterceptor sut = new DigestAuthCacheInterceptor(this.cache);
+        HttpRequest request = new BasicHttpRequest("GET", "/api"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(request, this.context);
+
+        // Verify
+        assertThat(request.containsHeader("Authorization"), is(false)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void stale_trueの認証要求を受け取った場合_新しいnonceに置き換えられること() {
+
+        // Setup
+        DigestAuthCacheInterceptor sut = new DigestAuthCacheInterceptor(this.cache);
+        sut.process(this.createUnauthorized("Digest realm=\"api\", nonce=\"old\", qop=\"auth\""), this.context); //$NON-NLS-1$
+
+        // Exercise
+        sut.process(this.createUnauthorized("Digest realm=\"api\", nonce=\"new\", qop=\"auth\", stale=true"), //$NON-NLS-1$
+                this.context);
+
+        // Verify
+        DigestChallenge actual = this.cache.get(new HttpHost("WWW.ambrosoli.jp")); //$NON-NLS-1$
+        assertThat(actual.getNonce(), is(equalTo("new"))); //$NON-NLS-1$
+        assertThat(actual.isStale(), is(true));
+    }
+
+    @Test
+    public void Authentication_Infoでnextnonceが通知された場合_次のnonceに置き換えられること() {
+
+        // Setup
+        DigestAuthCacheInterceptor sut = new DigestAuthCacheInterceptor(this.cache);
+        sut.process(this.createUnauthorized("Digest realm=\"api\", nonce=\"abc\", qop=\"auth\""), this.context); //$NON-NLS-1$
+        HttpResponse ok = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK"); //$NON-NLS-1$
+        ok.addHeader("Authentication-Info", "nextnonce=\"def\", qop=auth"); //$NON-NLS-1$ //$NON-NLS-2$
+        HttpRequest request = new BasicHttpRequest("GET", "/api"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(ok, this.context);
+        sut.process(request, this.context);
+
+        // Verify
+        String actual = request.getFirstHeader("Authorization").getValue(); //$NON-NLS-1$
+        assertThat(actual, containsString("nonce=\"def\"")); //$NON-NLS-1$
+        assertThat(actual, containsString("nc=00000001")); //$NON-NLS-1$
+    }
+
+    @Test
+    public void Digest認証でない認証要求を受け取った場合_キャッシュが破棄されること() {
+
+        // Setup
+        DigestAuthCacheInterceptor sut = new DigestAuthCacheInterceptor(this.cache);
+        sut.process(this.createUnauthorized("Digest realm=\"api\", nonce=\"abc\", qop=\"auth\""), this.context); //$NON-NLS-1$
+
+        // Exercise
+        sut.process(this.createUnauthorized("Basic realm=\"api\""), this.context); //$NON-NLS-1$
+
+        // Verify
+        assertThat(this.cache.size(), is(0));
+    }
+
+    @Test
+    public void 認証要求を受けて認証スキームが選択されている場合_ヘッダーが追加されないこと() {
+
+        // Setup
+        DigestAuthCacheInterceptor sut = new DigestAuthCacheInterceptor(this.cache);
+        sut.process(this.createUnauthorized("Digest realm=\"api\", nonce=\"abc\", qop=\"auth\""), this.context); //$NON-NLS-1$
+        AuthState authState = new AuthState();
+        authState.setAuthScheme(new DigestScheme());
+        this.context.setAttribute(ClientContext.TARGET_AUTH_STATE, authState);
+        HttpRequest request = new BasicHttpRequest("GET", "/api"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(request, this.context);
+
+        // Verify
+        assertThat(request.containsHeader("Authorization"), is(false)); //$NON-NLS-1$
+    }
+
+    private HttpResponse createUnauthorized(final String challenge) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 401, "Unauthorized"); //$NON-NLS-1$
+        response.addHeader("WWW-Authenticate", challenge); //$NON-NLS-1$
+        return response;
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.headers;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.apache.http.Header;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.message.BasicHeader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class DigestChallengeTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void authenticateを呼び出すと_RFC2617の例と同じresponseが生成されること() {
+
+        // Setup
+        DigestChallenge sut = new DigestChallenge("testrealm@host.com", "dcd98b7102dd2f0e8b11d0f600bfb0c093", //$NON-NLS-1$ //$NON-NLS-2$
+                "5ccc069c403ebaf9f0171e9517f40e41", null, "auth", "0a4f113b", false, 0); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        // Exercise
+        Header actual = sut.authenticate(new UsernamePasswordCredentials("Mufasa", "Circle Of Life"), "GET", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                "/dir/index.html", "ISO-8859-1"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Verify
+        assertThat(actual.getName(), is(equalTo("Authorization"))); //$NON-NLS-1$
+        assertThat(actual.getValue(), containsString("response=\"6629fae49393a05397450978507c4ef1\"")); //$NON-NLS-1$
+        assertThat(actual.getValue(), containsString("nc=00000001")); //$NON-NLS-1$
+        assertThat(actual.getValue(), containsString("opaque=\"5ccc069c403ebaf9f0171e9517f40e41\"")); //$NON-NLS-1$
+    }
+
+    @Test
+    public void authenticateを繰り返し呼び出すと_nonce_countが1ずつ増えること() {
+
+        // Setup
+        DigestChallenge sut = new DigestChallenge("realm", "nonce", null, null, "auth", null, false, 0); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        UsernamePasswordCredentials credentials = new UsernamePasswordCredentials("user", "password"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        Header first = sut.authenticate(credentials, "GET", "/", "US-ASCII"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        Header second = sut.authenticate(credentials, "GET", "/", "US-ASCII"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        // Verify
+        assertThat(first.getValue(), containsString("nc=00000001")); //$NON-NLS-1$
+        assertThat(second.getValue(), containsString("nc=00000002")); //$NON-NLS-1$
+        assertThat(sut.getNonceCount(), is(2L));
+    }
+
+    @Test
+    public void Digest認証の認証要求を解析すると_qopとstaleが取得でき_nonce_countは1から始まること() {
+
+        // Setup
+        Header header = new BasicHeader("WWW-Authenticate", //$NON-NLS-1$
+                "Digest realm=\"api\", nonce=\"abc\", qop=\"auth,auth-int\", stale=true"); //$NON-NLS-1$
+
+        // Exercise
+        DigestChallenge actual = DigestChallenge.parse(header);
+
+        // Verify
+        assertThat(actual.getRealm(), is(equalTo("api"))); //$NON-NLS-1$
+        assertThat(actual.getNonce(), is(equalTo("abc"))); //$NON-NLS-1$
+        assertThat(actual.getQop(), is(equalTo("auth"))); //$NON-NLS-1$
+        assertThat(actual.isStale(), is(true));
+        assertThat(actual.getNonceCount(), is(1L));
+    }
+
+    @Test
+    public void Digest認証でない認証要求やqopがauth_intのみの認証要求を解析すると_nullが返されること() {
+
+        // Exercise
+        DigestChallenge basic = DigestChallenge.parse(new BasicHeader("WWW-Authenticate", "Basic realm=\"api\"")); //$NON-NLS-1$ //$NON-NLS-2$
+        DigestChallenge authInt = DigestChallenge.parse(new BasicHeader("WWW-Authenticate", //$NON-NLS-1$
+                "Digest realm=\"api\", nonce=\"abc\", qop=\"auth-int\"")); //$NON-NLS-1$
+
+        // Verify
+        assertThat(basic, is(nullValue()));
+        assertThat(authInt, is(nullValue()));
+    }
+
+    @Test
+    public void realmにnullを指定すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("realm and nonce of a digest challenge must not be null."))); //$NON-NLS-1$
+
+        // Exercise
+        new DigestChallenge(null, "nonce", null, null, null, null, false, 0); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+}
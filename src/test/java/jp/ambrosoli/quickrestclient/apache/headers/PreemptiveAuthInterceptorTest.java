@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.headers;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.auth.AuthState;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Test;
+
+import jp.ambrosoli.quickrestclient.enums.AuthType;
+import jp.ambrosoli.quickrestclient.params.AuthInfo;
+import jp.ambrosoli.quickrestclient.util.URIUtil;
+
+public class PreemptiveAuthInterceptorTest {
+
+    @Test
+    public void 認証情報がPreemptive_Basicの場合_リクエストURIのホストへのリクエストにAuthorizationヘッダーが追加されること() {
+
+        // Setup
+        PreemptiveAuthInterceptor sut = new PreemptiveAuthInterceptor();
+        HttpRequest request = new BasicHttpRequest("GET", "/"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(request, createContext());
+
+        // Verify
+        assertThat(request.getFirstHeader("Authorization").getValue(), is(equalTo("Basic dXNlcjpwYXNzd29yZA=="))); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    @Test
+    public void 認証情報の対象範囲が設定されていない場合_Authorizationヘッダーが追加されないこと() {
+
+        // Setup
+        PreemptiveAuthInterceptor sut = new PreemptiveAuthInterceptor();
+        HttpRequest request = new BasicHttpRequest("GET", "/"); //$NON-NLS-1$ //$NON-NLS-2$
+        HttpContext context = new BasicHttpContext();
+        context.setAttribute(PreemptiveAuthInterceptor.PREEMPTIVE_AUTH_HEADER, PreemptiveAuthInterceptor
+                .getAuthorizationHeader(new AuthInfo(AuthType.BASIC, "user", "password", true))); //$NON-NLS-1$ //$NON-NLS-2$
+        context.setAttribute(ExecutionContext.HTTP_TARGET_HOST, new HttpHost("www.ambrosoli.jp", 443, "https")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(request, context);
+        sut.process(request, null);
+
+        // Verify
+        assertThat(request.containsHeader("Authorization"), is(false)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void 同じユーザ名とパスワードの組の場合_同じAuthorizationヘッダーが返されること() {
+
+        // Exercise
+        Header first = PreemptiveAuthInterceptor.getAuthorizationHeader(new AuthInfo(AuthType.BASIC, "cache", //$NON-NLS-1$
+                "secret", true)); //$NON-NLS-1$
+        Header second = PreemptiveAuthInterceptor.getAuthorizationHeader(new AuthInfo(AuthType.BASIC, "cache", //$NON-NLS-1$
+                "secret", true)); //$NON-NLS-1$
+
+        // Verify
+        assertThat(first, is(notNullValue()));
+        assertThat(second, is(sameInstance(first)));
+    }
+
+    @Test
+    public void Preemptiveでない場合やBasic認証でない場合_Authorizationヘッダーが生成されないこと() {
+
+        // Exercise
+        Header notPreemptive = PreemptiveAuthInterceptor.getAuthorizationHeader(new AuthInfo(AuthType.BASIC,
+                "user", "password")); //$NON-NLS-1$ //$NON-NLS-2$
+        Header digest = PreemptiveAuthInterceptor.getAuthorizationHeader(new AuthInfo(AuthType.DIGEST, "user", //$NON-NLS-1$
+                "password", true)); //$NON-NLS-1$
+
+        // Verify
+        assertThat(notPreemptive, is(nullValue()));
+        assertThat(digest, is(nullValue()));
+    }
+
+    @Test
+    public void リクエスト毎の認証情報が設定されている場合_同じホストとポートへのリクエストにのみ追加されること() {
+
+        // Setup
+        PreemptiveAuthInterceptor sut = new PreemptiveAuthInterceptor();
+        HttpContext context = new BasicHttpContext();
+        PreemptiveAuthInterceptor.setPreemptiveAuth(context, URIUtil.toURI("https://www.ambrosoli.jp/api"), //$NON-NLS-1$
+                new AuthInfo(AuthType.BASIC, "user", "password", true)); //$NON-NLS-1$ //$NON-NLS-2$
+        HttpRequest same = new BasicHttpRequest("GET", "/api"); //$NON-NLS-1$ //$NON-NLS-2$
+        HttpRequest other = new BasicHttpRequest("GET", "/"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        context.setAttribute(ExecutionContext.HTTP_TARGET_HOST, new HttpHost("WWW.ambrosoli.jp", -1, "https")); //$NON-NLS-1$ //$NON-NLS-2$
+        sut.process(same, context);
+        context.setAttribute(ExecutionContext.HTTP_TARGET_HOST, new HttpHost("other.ambrosoli.jp", 443, "https")); //$NON-NLS-1$ //$NON-NLS-2$
+        sut.process(other, context);
+
+        // Verify
+        assertThat(same.getFirstHeader("Authorization").getValue(), is(equalTo("Basic dXNlcjpwYXNzd29yZA=="))); //$NON-NLS-1$ //$NON-NLS-2$
+        assertThat(other.containsHeader("Authorization"), is(false)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void リクエストにAuthorizationヘッダーがある場合_リクエストのヘッダーが優先されること() {
+
+        // Setup
+        PreemptiveAuthInterceptor sut = new PreemptiveAuthInterceptor();
+        HttpRequest request = new BasicHttpRequest("GET", "/"); //$NON-NLS-1$ //$NON-NLS-2$
+        request.addHeader("Authorization", "Bearer token"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(request, createContext());
+
+        // Verify
+        Header[] actual = request.getHeaders("Authorization"); //$NON-NLS-1$
+        assertThat(actual.length, is(1));
+        assertThat(actual[0].getValue(), is(equalTo("Bearer token"))); //$NON-NLS-1$
+    }
+
+    @Test
+    public void 認証要求を受けて認証スキームが選択されている場合_ヘッダーが追加されないこと() {
+
+        // Setup
+        PreemptiveAuthInterceptor sut = new PreemptiveAuthInterceptor();
+        HttpRequest request = new BasicHttpRequest("GET", "/"); //$NON-NLS-1$ //$NON-NLS-2$
+        AuthState authState = new AuthState();
+        authState.setAuthScheme(new BasicScheme());
+        HttpContext context = createContext();
+        context.setAttribute(ClientContext.TARGET_AUTH_STATE, authState);
+
+        // Exercise
+        sut.process(request, context);
+
+        // Verify
+        assertThat(request.containsHeader("Authorization"), is(false)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void CONNECTリクエストの場合_ヘッダーが追加されないこと() {
+
+        // Setup
+        PreemptiveAuthInterceptor sut = new PreemptiveAuthInterceptor();
+        HttpRequest request = new BasicHttpRequest("CONNECT", "www.ambrosoli.jp:443"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(request, createContext());
+
+        // Verify
+        assertThat(request.containsHeader("Authorization"), is(false)); //$NON-NLS-1$
+    }
+
+    private static HttpContext createContext() {
+        HttpContext context = new BasicHttpContext();
+        PreemptiveAuthInterceptor.setPreemptiveAuth(context, URIUtil.toURI("https://www.ambrosoli.jp/"), //$NON-NLS-1$
+                new AuthInfo(AuthType.BASIC, "user", "password", true)); //$NON-NLS-1$ //$NON-NLS-2$
+        context.setAttribute(ExecutionContext.HTTP_TARGET_HOST, new HttpHost("www.ambrosoli.jp", 443, "https")); //$NON-NLS-1$ //$NON-NLS-2$
+        return context;
+    }
+
+}
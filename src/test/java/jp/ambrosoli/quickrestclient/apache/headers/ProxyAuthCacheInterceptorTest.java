@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.headers;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.AuthState;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ProxyAuthCacheInterceptorTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private static final HttpHost PROXY = new HttpHost("proxy.ambrosoli.jp", 8080); //$NON-NLS-1$
+
+    private static final HttpHost TARGET = new HttpHost("www.ambrosoli.jp", 443, "https"); //$NON-NLS-1$ //$NON-NLS-2$
+
+    private ProxyAuthCache cache;
+
+    private HttpContext context;
+
+    @Before
+    public void setUp() {
+        this.cache = new ProxyAuthCache();
+        this.context = new BasicHttpContext();
+        this.context.setAttribute(ExecutionContext.HTTP_PROXY_HOST, PROXY);
+        this.context.setAttribute(ClientContext.PROXY_AUTH_STATE, new AuthState());
+        CredentialsProvider provider = new BasicCredentialsProvider();
+        provider.setCredentials(new AuthScope(PROXY.getHostName(), PROXY.getPort()), new UsernamePasswordCredentials(
+                "user", "password")); //$NON-NLS-1$ //$NON-NLS-2$
+        this.context.setAttribute(ClientContext.CREDS_PROVIDER, provider);
+    }
+
+    @Test
+    public void 認証方式がキャッシュされている場合_CONNECTリクエストにProxy_Authorizationヘッダーが追加されること() throws Exception {
+
+        // Setup
+        ProxyAuthCacheInterceptor sut = new ProxyAuthCacheInterceptor(this.cache);
+        this.cache.put(PROXY, this.createBasicScheme());
+        HttpRequest request = new BasicHttpRequest("CONNECT", "www.ambrosoli.jp:443"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(request, this.context);
+
+        // Verify
+        assertThat(request.getFirstHeader("Proxy-Authorization").getValue(), //$NON-NLS-1$
+                is(equalTo("Basic dXNlcjpwYXNzd29yZA=="))); //$NON-NLS-1$
+    }
+
+    @Test
+    public void トンネル内で送信するリクエストの場合_Proxy_Authorizationヘッダーが追加されないこと() throws Exception {
+
+        // Setup
+        ProxyAuthCacheInterceptor sut = new ProxyAuthCacheInterceptor(this.cache);
+        this.cache.put(PROXY, this.createBasicScheme());
+        this.context.setAttribute(ExecutionContext.HTTP_CONNECTION, this.createConnection(new HttpRoute(TARGET, null,
+                PROXY, true)));
+        HttpRequest request = new BasicHttpRequest("GET", "/api"); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(request, this.context);
+
+        // Verify
+        assertThat(request.containsHeader("Proxy-Authorization"), is(false)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void 認証に成功したレスポンスを受け取った場合_認証方式がキャッシュされること() throws Exception {
+
+        // Setup
+        ProxyAuthCacheInterceptor sut = new ProxyAuthCacheInterceptor(this.cache);
+        AuthState authState = (AuthState) this.context.getAttribute(ClientContext.PROXY_AUTH_STATE);
+        authState.setAuthScheme(this.createBasicScheme());
+        authState.setCredentials(new UsernamePasswordCredentials("user", "password")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        sut.process(this.createResponse(200, "Connection established"), this.context); //$NON-NLS-1$
+
+        // Verify
+        AuthScheme actual = this.cache.get(new HttpHost("PROXY.ambrosoli.jp", 8080)); //$NON-NLS-1$
+        assertThat(actual, is(sameInstance((AuthScheme) authState.getAuthScheme())));
+    }
+
+    @Test
+    public void 認証要求を受け取った場合_キャッシュが破棄されること() throws Exception {
+
+        // Setup
+        ProxyAuthCacheInterceptor sut = new ProxyAuthCacheInterceptor(this.cache);
+        this.cache.put(PROXY, this.createBasicScheme());
+
+        // Exercise
+        sut.process(this.createResponse(407, "Proxy Authentication Required"), this.context); //$NON-NLS-1$
+
+        // Verify
+        assertThat(this.cache.get(PROXY), is(nullValue()));
+    }
+
+    @Test
+    public void キャッシュにnullを指定すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("proxy auth cache must not be null."))); //$NON-NLS-1$
+
+        // Exercise
+        new ProxyAuthCacheInterceptor(null);
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    private BasicScheme createBasicScheme() throws Exception {
+        BasicScheme scheme = new BasicScheme();
+        scheme.processChallenge(new BasicHeader("Proxy-Authenticate", "Basic realm=\"proxy\"")); //$NON-NLS-1$ //$NON-NLS-2$
+        return scheme;
+    }
+
+    private HttpResponse createResponse(final int statusCode, final String reasonPhrase) {
+        return new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, reasonPhrase);
+    }
+
+    private ManagedClientConnection createConnection(final HttpRoute route) {
+        return (ManagedClientConnection) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+                new Class<?>[] { ManagedClientConnection.class }, new InvocationHandler() {
+
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if ("getRoute".equals(method.getName())) { //$NON-NLS-1$
+                            return route;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+}
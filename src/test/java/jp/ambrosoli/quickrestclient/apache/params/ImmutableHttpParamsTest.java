@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.params;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ImmutableHttpParamsTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void 生成後に元のパラメータを変更しても_影響を受けないこと() {
+
+        // Setup
+        HttpParams params = new BasicHttpParams();
+        params.setIntParameter("timeout", 1000); //$NON-NLS-1$
+        ImmutableHttpParams sut = new ImmutableHttpParams(params);
+
+        // Exercise
+        params.setIntParameter("timeout", 2000); //$NON-NLS-1$
+
+        // Verify
+        assertThat(sut.getIntParameter("timeout", 0), is(1000)); //$NON-NLS-1$
+    }
+
+    @Test
+    public void setParameterを呼び出すと_UnsupportedOperationExceptionが発生すること() {
+
+        // Setup
+        ImmutableHttpParams sut = new ImmutableHttpParams(new BasicHttpParams());
+        this.expectedException.expect(is(instanceOf(UnsupportedOperationException.class)));
+        this.expectedException.expectMessage(is(equalTo("HttpParams is immutable."))); //$NON-NLS-1$
+
+        // Exercise
+        sut.setIntParameter("timeout", 1000); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void copyを呼び出すと_変更可能なコピーが返されること() {
+
+        // Setup
+        HttpParams params = new BasicHttpParams();
+        params.setIntParameter("timeout", 1000); //$NON-NLS-1$
+        ImmutableHttpParams sut = new ImmutableHttpParams(params);
+
+        // Exercise
+        HttpParams actual = sut.copy();
+        actual.setIntParameter("timeout", 2000); //$NON-NLS-1$
+
+        // Verify
+        assertThat(actual.getIntParameter("timeout", 0), is(2000)); //$NON-NLS-1$
+        assertThat(sut.getIntParameter("timeout", 0), is(1000)); //$NON-NLS-1$
+    }
+
+}
@@ -17,7 +17,9 @@ package jp.ambrosoli.quickrestclient.apache.service;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
+import jp.ambrosoli.quickrestclient.client.ClientConfig;
 import jp.ambrosoli.quickrestclient.service.HttpService;
+import jp.ambrosoli.quickrestclient.service.PooledHttpService;
 
 import org.junit.Test;
 
@@ -36,4 +38,20 @@ public class ApacheHttpServiceFactoryTest {
         assertThat(actual, is(notNullValue()));
         assertThat(actual, is(instanceOf(ApacheHttpService.class)));
     }
+
+    @Test
+    public void createメソッドにClientConfigを渡すと_PooledApacheHttpServiceのインスタンスが生成されること() {
+
+        // Setup
+        ApacheHttpServiceFactory sut = new ApacheHttpServiceFactory();
+
+        // Exercise
+        PooledHttpService actual = sut.create(new ClientConfig());
+
+        // Verify
+        assertThat(actual, is(instanceOf(PooledApacheHttpService.class)));
+
+        actual.shutdown();
+    }
+
 }
@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.Header;
 import org.apache.http.HttpHost;
@@ -850,4 +852,81 @@ public class ApacheHttpServiceTest {
         assertThat(credentials, is(nullValue()));
     }
 
+    @Test
+    public void limitTimeoutを呼び出すと_タイムアウトが期限を超えないように制限されること() {
+
+        // Exercise
+        int noDeadline = ApacheHttpService.limitTimeout(1000, 0L);
+        int shorter = ApacheHttpService.limitTimeout(1000, 3000L);
+        int longer = ApacheHttpService.limitTimeout(5000, 3000L);
+        int infinite = ApacheHttpService.limitTimeout(0, 3000L);
+
+        // Verify
+        assertThat(noDeadline, is(1000));
+        assertThat(shorter, is(1000));
+        assertThat(longer, is(3000));
+        assertThat(infinite, is(3000));
+    }
+
+    @Test
+    public void 中断タスクを一定回数キャンセルすると_キャンセルしたタスクがタイマーのキューから削除されること() {
+
+        // Setup
+        Runnable task = new Runnable() {
+            public void run() {
+                // Do nothing.
+            }
+        };
+        List<ScheduledFuture<?>> aborts = new ArrayList<ScheduledFuture<?>>();
+        for (int i = 0; i < ApacheHttpService.DEADLINE_PURGE_INTERVAL; i++) {
+            aborts.add(ApacheHttpService.DEADLINE_TIMER.schedule(task, 1L, TimeUnit.HOURS));
+        }
+
+        // Exercise
+        for (ScheduledFuture<?> abort : aborts) {
+            ApacheHttpService.cancelAbort(abort);
+        }
+
+        // Verify
+        assertThat(ApacheHttpService.DEADLINE_TIMER.getQueue().size(),
+                is(lessThan(ApacheHttpService.DEADLINE_PURGE_INTERVAL)));
+    }
+
+    @Test
+    public void 設定が同じリクエストの場合_同じHttpParamsとSchemeRegistryが返されること() {
+
+        // Setup
+        ApacheHttpService sut = new ApacheHttpService();
+        HttpRequest request1 = new HttpRequest(URIUtil.toURI("http://www.ambrosoli.jp/a")); //$NON-NLS-1$
+        HttpRequest request2 = new HttpRequest(URIUtil.toURI("http://www.ambrosoli.jp/b")); //$NON-NLS-1$
+
+        // Exercise
+        HttpParams params1 = sut.getHttpParams(request1);
+        HttpParams params2 = sut.getHttpParams(request2);
+        SchemeRegistry schreg1 = sut.getSchemeRegistry(request1.getUri(), null);
+        SchemeRegistry schreg2 = sut.getSchemeRegistry(request2.getUri(), null);
+
+        // Verify
+        assertThat(params1, is(sameInstance(params2)));
+        assertThat(schreg1, is(sameInstance(schreg2)));
+    }
+
+    @Test
+    public void 設定が異なるリクエストの場合_異なるHttpParamsが返されること() {
+
+        // Setup
+        ApacheHttpService sut = new ApacheHttpService();
+        HttpRequest request1 = new HttpRequest(URIUtil.toURI("http://www.ambrosoli.jp/")); //$NON-NLS-1$
+        HttpRequest request2 = new HttpRequest(URIUtil.toURI("http://www.ambrosoli.jp/")); //$NON-NLS-1$
+        request2.setReadTimeout(12345);
+
+        // Exercise
+        HttpParams params1 = sut.getHttpParams(request1);
+        HttpParams params2 = sut.getHttpParams(request2);
+
+        // Verify
+        assertThat(params1, is(not(sameInstance(params2))));
+        assertThat(params2.getIntParameter(CoreConnectionPNames.SO_TIMEOUT, 0), is(12345));
+    }
+
 }
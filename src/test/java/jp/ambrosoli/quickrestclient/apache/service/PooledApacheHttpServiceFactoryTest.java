@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.service;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import jp.ambrosoli.quickrestclient.service.HttpService;
+
+public class PooledApacheHttpServiceFactoryTest {
+
+    @Test
+    public void createメソッドを呼び出すと_PooledApacheHttpServiceのインスタンスが生成されること() {
+
+        // Setup
+        PooledApacheHttpServiceFactory sut = new PooledApacheHttpServiceFactory();
+
+        // Exercise
+        HttpService actual = sut.create();
+
+        // Verify
+        assertThat(actual, is(instanceOf(PooledApacheHttpService.class)));
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void createメソッドを複数回呼び出すと_同じインスタンスが返されること() {
+
+        // Setup
+        PooledApacheHttpServiceFactory sut = new PooledApacheHttpServiceFactory();
+
+        // Exercise
+        HttpService first = sut.create();
+        HttpService second = sut.create();
+
+        // Verify
+        assertThat(second, is(sameInstance(first)));
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void shutdownを呼び出すと_共有しているサービスが終了すること() {
+
+        // Setup
+        PooledApacheHttpServiceFactory sut = new PooledApacheHttpServiceFactory();
+        PooledApacheHttpService service = (PooledApacheHttpService) sut.create();
+
+        // Exercise
+        sut.shutdown();
+
+        // Verify
+        assertThat(service.isShutdown(), is(true));
+    }
+
+}
@@ -0,0 +1,1219 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.apache.service;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRoute;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.scheme.SocketFactory;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import jp.ambrosoli.quickrestclient.apache.conn.HostKeepAliveStrategy;
+import jp.ambrosoli.quickrestclient.apache.conn.IdleConnectionEvictor;
+import jp.ambrosoli.quickrestclient.apache.conn.PartitionedClientConnManager;
+import jp.ambrosoli.quickrestclient.apache.conn.PoolingClientConnManager;
+import jp.ambrosoli.quickrestclient.apache.conn.TlsClientConnectionOperator;
+import jp.ambrosoli.quickrestclient.apache.conn.TlsSocketFactory;
+import jp.ambrosoli.quickrestclient.apache.headers.PreemptiveAuthInterceptor;
+import jp.ambrosoli.quickrestclient.client.ClientConfig;
+import jp.ambrosoli.quickrestclient.enums.AuthType;
+import jp.ambrosoli.quickrestclient.exception.ConnectionPoolTimeoutRuntimeException;
+import jp.ambrosoli.quickrestclient.exception.DeadlineExceededRuntimeException;
+import jp.ambrosoli.quickrestclient.net.DnsResolver;
+import jp.ambrosoli.quickrestclient.params.AuthInfo;
+import jp.ambrosoli.quickrestclient.params.ProxyInfo;
+import jp.ambrosoli.quickrestclient.request.HttpRequest;
+import jp.ambrosoli.quickrestclient.response.HttpResponse;
+import jp.ambrosoli.quickrestclient.service.PoolStats;
+import jp.ambrosoli.quickrestclient.unittest.DataSource;
+import jp.ambrosoli.quickrestclient.util.URIUtil;
+
+public class PooledApacheHttpServiceTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void 同じインスタンスで複数回executeを実行すると_正常に通信できること() {
+
+        // Setup
+        PooledApacheHttpService sut = new PooledApacheHttpService();
+        HttpRequest request = new HttpRequest(URIUtil.toURI(DataSource.url("statusCode/ok"))); //$NON-NLS-1$
+
+        try {
+            // Exercise
+            HttpResponse first = sut.execute(request);
+            HttpResponse second = sut.execute(request);
+
+            // Verify
+            assertThat(first.isSuccess(), is(true));
+            assertThat(second.isSuccess(), is(true));
+        } finally {
+            sut.shutdown();
+        }
+    }
+
+    @Test
+    public void 生成直後は_ThreadSafeClientConnManagerを保持していること() {
+
+        // Setup
+        PooledApacheHttpService sut = new PooledApacheHttpService();
+
+        // Verify
+        assertThat(sut.getConnectionManager(), is(instanceOf(ThreadSafeClientConnManager.class)));
+        assertThat(sut.isShutdown(), is(false));
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void createSchemeRegistryを呼び出すと_httpとhttpsのスキームが登録されていること() {
+
+        // Setup
+        PooledApacheHttpService sut = new PooledApacheHttpService();
+
+        // Exercise
+        SchemeRegistry actual = sut.createSchemeRegistry();
+
+        // Verify
+        List<String> schemeNames = actual.getSchemeNames();
+        assertThat(schemeNames.size(), is(2));
+        assertThat(schemeNames, hasItems("http", "https")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertThat(actual.getScheme("http").getDefaultPort(), is(80)); //$NON-NLS-1$
+        assertThat(actual.getScheme("https").getDefaultPort(), is(443)); //$NON-NLS-1$
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void createHttpContextに認証情報を持つリクエストを渡すと_コンテキストに認証情報が設定されること() {
+
+        // Setup
+        PooledApacheHttpService sut = new PooledApacheHttpService();
+        HttpRequest request = new HttpRequest(URIUtil.toURI("http://www.ambrosoli.jp:8080/test-server/")); //$NON-NLS-1$
+        request.setAuthInfo(new AuthInfo(AuthType.BASIC, "user", "pass")); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Exercise
+        HttpContext actual = sut.createHttpContext(request.getUri(), request);
+
+        // Verify
+        CredentialsProvider provider = (CredentialsProvider) actual.getAttribute(ClientContext.CREDS_PROVIDER);
+        assertThat(provider, is(notNullValue()));
+        assertThat(provider.getCredentials(new AuthScope("www.ambrosoli.jp", 8080)).getUserPrincipal().getName(), //$NON-NLS-1$
+                is(equalTo("user"))); //$NON-NLS-1$
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void クライアント共通の認証情報がある場合_リクエストURIのホストとポートだけを対象としてコンテキストに設定されること() {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setAuthInfo(new AuthInfo(AuthType.DIGEST, "user", "pass")); //$NON-NLS-1$ //$NON-NLS-2$
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+        HttpRequest request = new HttpRequest(URIUtil.toURI("http://www.ambrosoli.jp:8080/test-server/")); //$NON-NLS-1$
+
+        // Exercise
+        HttpContext actual = sut.createHttpContext(request.getUri(), request);
+
+        // Verify
+        CredentialsProvider provider = (CredentialsProvider) actual.getAttribute(ClientContext.CREDS_PROVIDER);
+        assertThat(provider.getCredentials(new AuthScope("www.ambrosoli.jp", 8080)).getUserPrincipal().getName(), //$NON-NLS-1$
+                is(equalTo("user"))); //$NON-NLS-1$
+        assertThat(provider.getCredentials(new AuthScope("other.ambrosoli.jp", 8080)), is(nullValue())); //$NON-NLS-1$
+        assertThat(provider.getCredentials(new AuthScope("www.ambrosoli.jp", 80)), is(nullValue())); //$NON-NLS-1$
+        assertThat(sut.httpClient.getCredentialsProvider().getCredentials(
+                new AuthScope("www.ambrosoli.jp", 8080)), is(nullValue())); //$NON-NLS-1$
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void createHttpContextに認証情報を持たないリクエストを渡すと_コンテキストに認証情報が設定されないこと() {
+
+        // Setup
+        PooledApacheHttpService sut = new PooledApacheHttpService();
+        HttpRequest request = new HttpRequest(URIUtil.toURI("http://www.ambrosoli.jp/test-server/")); //$NON-NLS-1$
+
+        // Exercise
+        HttpContext actual = sut.createHttpContext(request.getUri(), request);
+
+        // Verify
+        assertThat(actual.getAttribute(ClientContext.CREDS_PROVIDER), is(nullValue()));
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void shutdown後にexecuteを実行すると_IllegalStateExceptionが発生すること() {
+
+        // Setup
+        PooledApacheHttpService sut = new PooledApacheHttpService();
+        sut.shutdown();
+
+        this.exceptionRule.expect(is(instanceOf(IllegalStateException.class)));
+        this.exceptionRule.expectMessage(is(equalTo("HttpService has already been shut down."))); //$NON-NLS-1$
+
+        // Exercise
+        sut.execute(new HttpRequest(URIUtil.toURI("http://www.ambrosoli.jp/test-server/"))); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void shutdownを複数回呼び出しても_例外が発生しないこと() {
+
+        // Setup
+        PooledApacheHttpService sut = new PooledApacheHttpService();
+
+        // Exercise
+        sut.shutdown();
+        sut.shutdown();
+
+        // Verify
+        assertThat(sut.isShutdown(), is(true));
+    }
+
+    @Test
+    public void ClientConfigの最大コネクション数と取得待ちタイムアウトが_コネクションプールのパラメータに設定されること() {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setMaxConnectionsTotal(200);
+        config.setMaxConnectionsPerRoute(30);
+        config.setMaxConnectionsPerHost("api.ambrosoli.jp", 80); //$NON-NLS-1$
+        config.setPoolTimeout(300);
+
+        // Exercise
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+
+        // Verify
+        HttpParams params = sut.httpParams;
+        assertThat(ConnManagerParams.getMaxTotalConnections(params), is(200));
+        assertThat(ConnManagerParams.getTimeout(params), is(300L));
+        ConnPerRoute connPerRoute = ConnManagerParams.getMaxConnectionsPerRoute(params);
+        assertThat(connPerRoute.getMaxForRoute(new HttpRoute(new HttpHost("www.ambrosoli.jp"))), is(30)); //$NON-NLS-1$
+        assertThat(connPerRoute.getMaxForRoute(new HttpRoute(new HttpHost("api.ambrosoli.jp"))), is(80)); //$NON-NLS-1$
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void コネクションプールが枯渇している場合_ConnectionPoolTimeoutRuntimeExceptionが発生すること() throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        final CountDownLatch accepted = new CountDownLatch(1);
+        final List<Socket> sockets = new ArrayList<Socket>();
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    sockets.add(server.accept());
+                    accepted.countDown();
+                } catch (IOException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        acceptor.start();
+
+        ClientConfig config = new ClientConfig();
+        config.setMaxConnectionsPerRoute(1);
+        config.setPoolTimeout(100);
+        final PooledApacheHttpService sut = new PooledApacheHttpService(config);
+        final HttpRequest request = new HttpRequest(URIUtil.toURI("http://127.0.0.1:" + server.getLocalPort() + "/")); //$NON-NLS-1$ //$NON-NLS-2$
+        request.setTimeout(2000);
+
+        Thread holder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    sut.execute(request);
+                } catch (RuntimeException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        holder.start();
+        assertThat(accepted.await(5, TimeUnit.SECONDS), is(true));
+
+        try {
+            this.exceptionRule.expect(is(instanceOf(ConnectionPoolTimeoutRuntimeException.class)));
+
+            // Exercise
+            sut.execute(request);
+
+            // Verify
+            fail("例外が発生しませんでした。"); //$NON-NLS-1$
+        } finally {
+            sut.shutdown();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            server.close();
+        }
+    }
+
+    @Test
+    public void 生成直後は_アイドルコネクションを破棄するスレッドが起動し_shutdownで終了すること() throws Exception {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setIdleConnectionTimeout(10000);
+        config.setEvictionInterval(1000);
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+        IdleConnectionEvictor evictor = sut.getIdleConnectionEvictor();
+
+        // Verify
+        assertThat(evictor.isAlive(), is(true));
+        assertThat(evictor.getIdleTimeout(), is(10000L));
+        assertThat(evictor.getInterval(), is(1000L));
+
+        // Exercise
+        sut.shutdown();
+        evictor.join(1000L);
+
+        // Verify
+        assertThat(evictor.isAlive(), is(false));
+    }
+
+    @Test
+    public void 破棄処理の実行間隔に0を指定すると_アイドルコネクションを破棄するスレッドが起動しないこと() {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setEvictionInterval(0);
+
+        // Exercise
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+
+        // Verify
+        assertThat(sut.getIdleConnectionEvictor(), is(nullValue()));
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void ClientConfigのコネクションの最大生存期間が_コネクションプールに設定されること() {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setConnectionTimeToLive(60000L);
+
+        // Exercise
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+
+        // Verify
+        PoolingClientConnManager conman = (PoolingClientConnManager) sut.getConnectionManager();
+        assertThat(conman.getConnectionPool().getTimeToLive(), is(60000L));
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void getPoolStatsを呼び出すと_コネクションプールと破棄処理の統計情報が返されること() {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setMaxConnectionsTotal(50);
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+        sut.getIdleConnectionEvictor().evict();
+
+        // Exercise
+        PoolStats actual = sut.getPoolStats();
+
+        // Verify
+        assertThat(actual.getMax(), is(50));
+        assertThat(actual.getLeased(), is(0));
+        assertThat(actual.getAvailable(), is(0));
+        assertThat(actual.getPending(), is(0));
+        assertThat(actual.getEvictionRunCount(), is(1L));
+        assertThat(actual.getRouteStats().isEmpty(), is(true));
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void ClientConfigの再利用期間と切断確認の設定が_クライアントに設定されること() {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setKeepAliveDuration(10000L);
+        config.setStaleCheckingEnabled(false);
+
+        // Exercise
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+
+        // Verify
+        assertThat(sut.httpClient.getConnectionKeepAliveStrategy(), is(instanceOf(HostKeepAliveStrategy.class)));
+        assertThat(HttpConnectionParams.isStaleCheckingEnabled(sut.httpParams), is(false));
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void prewarmを呼び出すと_指定した数のコネクションが生成されプールに格納されること() throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        final List<Socket> sockets = new ArrayList<Socket>();
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        sockets.add(server.accept());
+                    }
+                } catch (IOException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        acceptor.start();
+        PooledApacheHttpService sut = new PooledApacheHttpService();
+
+        try {
+            // Exercise
+            int actual = sut.prewarm(URIUtil.toURI("http://127.0.0.1:" + server.getLocalPort() + "/"), 3); //$NON-NLS-1$ //$NON-NLS-2$
+
+            // Verify
+            assertThat(actual, is(3));
+            PoolStats stats = sut.getPoolStats();
+            assertThat(stats.getAvailable(), is(3));
+            assertThat(stats.getLeased(), is(0));
+        } finally {
+            sut.shutdown();
+            server.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void prewarmでルート毎の上限を超える数を指定すると_上限までのコネクションが生成されること() throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        final List<Socket> sockets = new ArrayList<Socket>();
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        sockets.add(server.accept());
+                    }
+                } catch (IOException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        acceptor.start();
+        ClientConfig config = new ClientConfig();
+        config.setMaxConnectionsPerRoute(2);
+        config.setPoolTimeout(50);
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+
+        try {
+            // Exercise
+            int actual = sut.prewarm(URIUtil.toURI("http://127.0.0.1:" + server.getLocalPort() + "/"), 5); //$NON-NLS-1$ //$NON-NLS-2$
+
+            // Verify
+            assertThat(actual, is(2));
+            assertThat(sut.getPoolStats().getAvailable(), is(2));
+        } finally {
+            sut.shutdown();
+            server.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void prewarmに0以下の数を指定すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        PooledApacheHttpService sut = new PooledApacheHttpService();
+
+        this.exceptionRule.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.exceptionRule.expectMessage(is(equalTo("number of connections to prewarm must be positive."))); //$NON-NLS-1$
+
+        try {
+            // Exercise
+            sut.prewarm(URIUtil.toURI("http://127.0.0.1/"), 0); //$NON-NLS-1$
+
+            // Verify
+            fail("例外が発生しませんでした。"); //$NON-NLS-1$
+        } finally {
+            sut.shutdown();
+        }
+    }
+
+    @Test
+    public void ClientConfigにSSLContextを設定すると_httpsのスキームで共有されること() throws Exception {
+
+        // Setup
+        SSLContext sslContext = SSLContext.getInstance("TLS"); //$NON-NLS-1$
+        sslContext.init(null, null, null);
+        ClientConfig config = new ClientConfig();
+        config.setSslContext(sslContext);
+
+        // Exercise
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+
+        // Verify
+        SchemeRegistry schreg = sut.getConnectionManager().getSchemeRegistry();
+        SocketFactory factory = schreg.getScheme("https").getSocketFactory(); //$NON-NLS-1$
+        assertThat(factory, is(instanceOf(TlsSocketFactory.class)));
+        assertThat(((TlsSocketFactory) factory).getSSLContext(), is(sameInstance(sslContext)));
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void Preemptive_Basic認証の場合_最初のリクエストでAuthorizationヘッダーが送信されること() throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        final List<String> authorizations = new ArrayList<String>();
+        Thread responder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    try {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                "US-ASCII")); //$NON-NLS-1$
+                        String line;
+                        while ((line = reader.readLine()) != null && line.length() > 0) {
+                            if (line.toLowerCase(Locale.ENGLISH).startsWith("authorization:")) { //$NON-NLS-1$
+                                authorizations.add(line.substring(line.indexOf(':') + 1).trim());
+                            }
+                        }
+                        OutputStream out = socket.getOutputStream();
+                        out.write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n" //$NON-NLS-1$
+                                .getBytes("US-ASCII")); //$NON-NLS-1$
+                        out.flush();
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        responder.start();
+
+        PooledApacheHttpService sut = new PooledApacheHttpService();
+        HttpRequest request = new HttpRequest(URIUtil.toURI("http://127.0.0.1:" + server.getLocalPort() + "/")); //$NON-NLS-1$ //$NON-NLS-2$
+        request.setAuthInfo(new AuthInfo(AuthType.BASIC, "user", "password", true)); //$NON-NLS-1$ //$NON-NLS-2$
+        request.setTimeout(2000);
+
+        try {
+            // Exercise
+            HttpResponse actual = sut.execute(request);
+
+            // Verify
+            assertThat(actual.getStatusCode(), is(200));
+            assertThat(authorizations, is(equalTo(Arrays.asList("Basic dXNlcjpwYXNzd29yZA==")))); //$NON-NLS-1$
+        } finally {
+            sut.shutdown();
+            server.close();
+        }
+    }
+
+    @Test
+    public void DnsResolverを設定した場合_設定したリゾルバでホスト名が解決されること() throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        Thread responder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    try {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                "US-ASCII")); //$NON-NLS-1$
+                        String line;
+                        while ((line = reader.readLine()) != null && line.length() > 0) {
+                            // Do nothing.
+                        }
+                        OutputStream out = socket.getOutputStream();
+                        out.write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n" //$NON-NLS-1$
+                                .getBytes("US-ASCII")); //$NON-NLS-1$
+                        out.flush();
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        responder.start();
+
+        final List<String> resolved = new ArrayList<String>();
+        ClientConfig config = new ClientConfig();
+        config.setDnsResolver(new DnsResolver() {
+            public InetAddress[] resolve(final String host) throws UnknownHostException {
+                resolved.add(host);
+                return new InetAddress[] { InetAddress.getByName("127.0.0.1") }; //$NON-NLS-1$
+            }
+        });
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+        HttpRequest request = new HttpRequest(URIUtil.toURI("http://api.ambrosoli.invalid:" + server.getLocalPort() //$NON-NLS-1$
+                + "/")); //$NON-NLS-1$
+        request.setTimeout(2000);
+
+        try {
+            // Exercise
+            HttpResponse actual = sut.execute(request);
+
+            // Verify
+            assertThat(actual.getStatusCode(), is(200));
+            assertThat(resolved, is(equalTo(Arrays.asList("api.ambrosoli.invalid")))); //$NON-NLS-1$
+        } finally {
+            sut.shutdown();
+            server.close();
+        }
+    }
+
+
+    @Test
+    public void ホスト名が複数のアドレスに解決され最初のアドレスが応答しない場合_次のアドレスに接続されること() throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        Thread responder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    try {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                "US-ASCII")); //$NON-NLS-1$
+                        String line;
+                        while ((line = reader.readLine()) != null && line.length() > 0) {
+                            // Do nothing.
+                        }
+                        OutputStream out = socket.getOutputStream();
+                        out.write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n" //$NON-NLS-1$
+                                .getBytes("US-ASCII")); //$NON-NLS-1$
+                        out.flush();
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        responder.start();
+
+        final List<String> resolved = new ArrayList<String>();
+        ClientConfig config = new ClientConfig();
+        config.setDnsResolver(new DnsResolver() {
+            public InetAddress[] resolve(final String host) throws UnknownHostException {
+                resolved.add(host);
+                return new InetAddress[] { InetAddress.getByName("192.0.2.1"), //$NON-NLS-1$
+                        InetAddress.getByName("127.0.0.1") }; //$NON-NLS-1$
+            }
+        });
+        config.setConnectAttemptDelay(100);
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+        HttpRequest request = new HttpRequest(URIUtil.toURI("http://api.ambrosoli.invalid:" + server.getLocalPort() //$NON-NLS-1$
+                + "/")); //$NON-NLS-1$
+        request.setTimeout(10000);
+
+        try {
+            // Exercise
+            long start = System.currentTimeMillis();
+            HttpResponse actual = sut.execute(request);
+            long elapsed = System.currentTimeMillis() - start;
+
+            // Verify
+            assertThat(actual.getStatusCode(), is(200));
+            assertThat(elapsed, is(lessThan(5000L)));
+        } finally {
+            sut.shutdown();
+            server.close();
+        }
+    }
+
+    @Test
+    public void ClientConfigのソケットオプションが_HttpParamsに設定されること() {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setTcpNoDelay(false);
+        config.setSendBufferSize(32768);
+        config.setReceiveBufferSize(262144);
+        config.setSoKeepAlive(true);
+        config.setLinger(0);
+        config.setSocketBufferSize(16384);
+
+        // Exercise
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+
+        // Verify
+        HttpParams params = sut.httpParams;
+        assertThat(HttpConnectionParams.getTcpNoDelay(params), is(false));
+        assertThat(HttpConnectionParams.getLinger(params), is(0));
+        assertThat(HttpConnectionParams.getSocketBufferSize(params), is(16384));
+        assertThat(params.getIntParameter(TlsClientConnectionOperator.SO_SNDBUF, 0), is(32768));
+        assertThat(params.getIntParameter(TlsClientConnectionOperator.SO_RCVBUF, 0), is(262144));
+        assertThat(params.getBooleanParameter(TlsClientConnectionOperator.SO_KEEPALIVE, false), is(true));
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void レスポンスが少しずつ送信される場合_期限を超過するとDeadlineExceededRuntimeExceptionが発生すること()
+            throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        Thread responder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    try {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                "US-ASCII")); //$NON-NLS-1$
+                        String line;
+                        while ((line = reader.readLine()) != null && line.length() > 0) {
+                            // Do nothing.
+                        }
+                        OutputStream out = socket.getOutputStream();
+                        out.write("HTTP/1.1 200 OK\r\nContent-Length: 100\r\n\r\n".getBytes("US-ASCII")); //$NON-NLS-1$ //$NON-NLS-2$
+                        for (int i = 0; i < 100; i++) {
+                            out.write('a');
+                            out.flush();
+                            Thread.sleep(50L);
+                        }
+                    } finally {
+                        socket.close();
+                    }
+                } catch (Exception e) {
+                    // Do nothing.
+                }
+            }
+        };
+        responder.setDaemon(true);
+        responder.start();
+
+        PooledApacheHttpService sut = new PooledApacheHttpService(new ClientConfig());
+        HttpRequest request = new HttpRequest(URIUtil.toURI("http://127.0.0.1:" + server.getLocalPort() + "/")); //$NON-NLS-1$ //$NON-NLS-2$
+        request.setReadTimeout(1000);
+        request.setDeadline(500L);
+
+        long start = System.currentTimeMillis();
+        try {
+            // Exercise
+            sut.execute(request);
+
+            // Verify
+            fail("例外が発生しませんでした。"); //$NON-NLS-1$
+        } catch (DeadlineExceededRuntimeException e) {
+            long elapsed = System.currentTimeMillis() - start;
+            assertThat(elapsed, is(greaterThanOrEqualTo(500L)));
+            assertThat(elapsed, is(lessThan(3000L)));
+        } finally {
+            sut.shutdown();
+            server.close();
+        }
+    }
+
+    @Test
+    public void ClientConfigの接続タイムアウトと読み込みタイムアウトが_HttpParamsに個別に設定されること() {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setConnectTimeout(1000);
+        config.setReadTimeout(10000);
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+
+        // Exercise
+        HttpParams params = sut.httpParams;
+
+        // Verify
+        assertThat(HttpConnectionParams.getConnectionTimeout(params), is(1000));
+        assertThat(HttpConnectionParams.getSoTimeout(params), is(10000));
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void ローカルアドレスを設定した場合_ローカルアドレスにバインドして接続されること() throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        final List<InetAddress> clientAddresses = new ArrayList<InetAddress>();
+        Thread responder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    try {
+                        clientAddresses.add(socket.getInetAddress());
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                "US-ASCII")); //$NON-NLS-1$
+                        String line;
+                        while ((line = reader.readLine()) != null && line.length() > 0) {
+                            // Do nothing.
+                        }
+                        OutputStream out = socket.getOutputStream();
+                        out.write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n" //$NON-NLS-1$
+                                .getBytes("US-ASCII")); //$NON-NLS-1$
+                        out.flush();
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        responder.start();
+
+        ClientConfig config = new ClientConfig();
+        config.addLocalAddress(InetAddress.getByName("127.0.0.2")); //$NON-NLS-1$
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+        HttpRequest request = new HttpRequest(URIUtil.toURI("http://127.0.0.1:" + server.getLocalPort() + "/")); //$NON-NLS-1$ //$NON-NLS-2$
+        request.setTimeout(2000);
+
+        try {
+            // Exercise
+            HttpResponse actual = sut.execute(request);
+
+            // Verify
+            assertThat(actual.getStatusCode(), is(200));
+            responder.join(2000L);
+            assertThat(clientAddresses, is(equalTo(Arrays.asList(InetAddress.getByName("127.0.0.2"))))); //$NON-NLS-1$
+        } finally {
+            sut.shutdown();
+            server.close();
+        }
+    }
+
+    @Test
+    public void 実行中のリクエストがある場合_shutdownは完了を待機してからコネクションプールを解放すること() throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        final CountDownLatch accepted = new CountDownLatch(1);
+        Thread responder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    try {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                "US-ASCII")); //$NON-NLS-1$
+                        String line;
+                        while ((line = reader.readLine()) != null && line.length() > 0) {
+                            // Do nothing.
+                        }
+                        accepted.countDown();
+                        Thread.sleep(300L);
+                        OutputStream out = socket.getOutputStream();
+                        out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok" //$NON-NLS-1$
+                                .getBytes("US-ASCII")); //$NON-NLS-1$
+                        out.flush();
+                    } finally {
+                        socket.close();
+                    }
+                } catch (Exception e) {
+                    // Do nothing.
+                }
+            }
+        };
+        responder.setDaemon(true);
+        responder.start();
+
+        final PooledApacheHttpService sut = new PooledApacheHttpService(new ClientConfig());
+        final HttpRequest request = new HttpRequest(URIUtil.toURI("http://127.0.0.1:" + server.getLocalPort() //$NON-NLS-1$
+                + "/")); //$NON-NLS-1$
+        request.setTimeout(5000);
+        final List<Integer> statusCodes = new ArrayList<Integer>();
+        Thread caller = new Thread() {
+            @Override
+            public void run() {
+                statusCodes.add(Integer.valueOf(sut.execute(request).getStatusCode()));
+            }
+        };
+        caller.start();
+        assertThat(accepted.await(5L, TimeUnit.SECONDS), is(true));
+
+        try {
+            // Exercise
+            boolean actual = sut.shutdown(5L, TimeUnit.SECONDS);
+
+            // Verify
+            caller.join(5000L);
+            assertThat(actual, is(true));
+            assertThat(statusCodes, is(equalTo(Arrays.asList(Integer.valueOf(200)))));
+            assertThat(sut.isShutdown(), is(true));
+            assertThat(sut.getInFlightCount(), is(0));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void 実行中のリクエストが最大待機時間内に完了しない場合_shutdownがfalseを返すこと() throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        final PooledApacheHttpService sut = new PooledApacheHttpService(new ClientConfig());
+        final HttpRequest request = new HttpRequest(URIUtil.toURI("http://127.0.0.1:" + server.getLocalPort() //$NON-NLS-1$
+                + "/")); //$NON-NLS-1$
+        request.setTimeout(5000);
+        Thread caller = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    sut.execute(request);
+                } catch (RuntimeException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        caller.start();
+        Socket accepted = server.accept();
+
+        try {
+            // Exercise
+            boolean actual = sut.shutdown(100L, TimeUnit.MILLISECONDS);
+
+            // Verify
+            caller.join(5000L);
+            assertThat(actual, is(false));
+            assertThat(caller.isAlive(), is(false));
+        } finally {
+            accepted.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void 分割したコネクションプールを指定すると_PartitionedClientConnManagerでコネクションがプールされること() throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        final List<Socket> sockets = new ArrayList<Socket>();
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        sockets.add(server.accept());
+                    }
+                } catch (IOException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        acceptor.start();
+        ClientConfig config = new ClientConfig();
+        config.setPartitionedPool(true);
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+
+        try {
+            // Exercise
+            int actual = sut.prewarm(URIUtil.toURI("http://127.0.0.1:" + server.getLocalPort() + "/"), 3); //$NON-NLS-1$ //$NON-NLS-2$
+
+            // Verify
+            assertThat(actual, is(3));
+            assertThat(sut.getConnectionManager(), is(instanceOf(PartitionedClientConnManager.class)));
+            PoolStats stats = sut.getPoolStats();
+            assertThat(stats.getAvailable(), is(3));
+            assertThat(stats.getLeased(), is(0));
+        } finally {
+            sut.shutdown();
+            server.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void リークの検出を設定した場合_保持期間を超えて返却されないコネクションが統計情報に集計されること() throws Exception {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setEvictionInterval(0);
+        config.setLeakDetectionInterval(1);
+        config.setLeakDetectionThreshold(10L);
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+        HttpRoute route = new HttpRoute(new HttpHost("127.0.0.1", 80)); //$NON-NLS-1$
+
+        try {
+            ManagedClientConnection leaked = sut.getConnectionManager().requestConnection(route, null)
+                    .getConnection(0, TimeUnit.MILLISECONDS);
+            ManagedClientConnection released = sut.getConnectionManager().requestConnection(route, null)
+                    .getConnection(0, TimeUnit.MILLISECONDS);
+            sut.getConnectionManager().releaseConnection(released, 0, TimeUnit.MILLISECONDS);
+            Thread.sleep(50L);
+
+            // Exercise
+            sut.getConnectionManager().closeExpiredConnections();
+
+            // Verify
+            assertThat(sut.getLeakDetector().getTrackedCount(), is(1));
+            assertThat(sut.getPoolStats().getLeakCount(), is(1L));
+            sut.getConnectionManager().releaseConnection(leaked, 0, TimeUnit.MILLISECONDS);
+        } finally {
+            sut.shutdown();
+        }
+    }
+
+    @Test
+    public void プロキシ認証に一度成功した場合_以降のリクエストでは認証要求を受けずに通信できること() throws Exception {
+
+        // Setup
+        final ServerSocket proxy = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        final List<String> authorizations = new ArrayList<String>();
+        Thread responder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = proxy.accept();
+                        try {
+                            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                                    socket.getInputStream(), "US-ASCII")); //$NON-NLS-1$
+                            OutputStream out = socket.getOutputStream();
+                            String line;
+                            while ((line = reader.readLine()) != null) {
+                                String authorization = null;
+                                while (line != null && line.length() > 0) {
+                                    if (line.toLowerCase(Locale.ENGLISH).startsWith("proxy-authorization:")) { //$NON-NLS-1$
+                                        authorization = line.substring(line.indexOf(':') + 1).trim();
+                                    }
+                                    line = reader.readLine();
+                                }
+                                authorizations.add(String.valueOf(authorization));
+                                if (authorization == null) {
+                                    out.write(("HTTP/1.1 407 Proxy Authentication Required\r\n" //$NON-NLS-1$
+                                            + "Proxy-Authenticate: Basic realm=\"proxy\"\r\n" //$NON-NLS-1$
+                                            + "Content-Length: 0\r\n\r\n").getBytes("US-ASCII")); //$NON-NLS-1$ //$NON-NLS-2$
+                                } else {
+                                    out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok" //$NON-NLS-1$
+                                            .getBytes("US-ASCII")); //$NON-NLS-1$
+                                }
+                                out.flush();
+                            }
+                        } finally {
+                            socket.close();
+                        }
+                    }
+                } catch (IOException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        responder.setDaemon(true);
+        responder.start();
+        ClientConfig config = new ClientConfig();
+        config.setProxyInfo(new ProxyInfo("127.0.0.1", proxy.getLocalPort(), "user", "password")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+
+        try {
+            // Exercise
+            HttpRequest request = new HttpRequest(URIUtil.toURI("http://www.ambrosoli.jp/")); //$NON-NLS-1$
+            request.setProxyInfo(config.getProxyInfo());
+            request.setTimeout(5000);
+            int first = sut.execute(request).getStatusCode();
+            int second = sut.execute(request).getStatusCode();
+
+            // Verify
+            assertThat(first, is(200));
+            assertThat(second, is(200));
+            assertThat(authorizations, is(equalTo(Arrays.asList("null", //$NON-NLS-1$
+                    "Basic dXNlcjpwYXNzd29yZA==", "Basic dXNlcjpwYXNzd29yZA==")))); //$NON-NLS-1$ //$NON-NLS-2$
+        } finally {
+            sut.shutdown();
+            proxy.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void プールタイムアウトが無期限でもprewarmでルート毎の上限を超える数を指定すると_待機せずに上限までのコネクションが生成されること()
+            throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        final List<Socket> sockets = new ArrayList<Socket>();
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        sockets.add(server.accept());
+                    }
+                } catch (IOException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        acceptor.start();
+        ClientConfig config = new ClientConfig();
+        config.setMaxConnectionsPerRoute(2);
+        config.setPoolTimeout(0);
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+
+        try {
+            // Exercise
+            int actual = sut.prewarm(URIUtil.toURI("http://127.0.0.1:" + server.getLocalPort() + "/"), 5); //$NON-NLS-1$ //$NON-NLS-2$
+
+            // Verify
+            assertThat(actual, is(2));
+            assertThat(sut.getPoolStats().getAvailable(), is(2));
+        } finally {
+            sut.shutdown();
+            server.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void クライアント共通の認証情報がPreemptive_Basicの場合_リクエストURIを対象範囲としてコンテキストに設定されること() {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setAuthInfo(new AuthInfo(AuthType.BASIC, "user", "pass", true)); //$NON-NLS-1$ //$NON-NLS-2$
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+        HttpRequest request = new HttpRequest(URIUtil.toURI("http://www.ambrosoli.jp:8080/test-server/")); //$NON-NLS-1$
+
+        // Exercise
+        HttpContext actual = sut.createHttpContext(request.getUri(), request);
+
+        // Verify
+        assertThat((AuthScope) actual.getAttribute(PreemptiveAuthInterceptor.PREEMPTIVE_AUTH_SCOPE),
+                is(equalTo(new AuthScope("www.ambrosoli.jp", 8080)))); //$NON-NLS-1$
+        assertThat(actual.getAttribute(PreemptiveAuthInterceptor.PREEMPTIVE_AUTH_HEADER), is(notNullValue()));
+
+        sut.shutdown();
+    }
+
+    @Test
+    public void リクエストにDnsResolverを設定した場合_クライアントの設定より優先してホスト名が解決されること() throws Exception {
+
+        // Setup
+        final ServerSocket server = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        Thread responder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    try {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                "US-ASCII")); //$NON-NLS-1$
+                        String line;
+                        while ((line = reader.readLine()) != null && line.length() > 0) {
+                            // Do nothing.
+                        }
+                        OutputStream out = socket.getOutputStream();
+                        out.write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n" //$NON-NLS-1$
+                                .getBytes("US-ASCII")); //$NON-NLS-1$
+                        out.flush();
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // Do nothing.
+                }
+            }
+        };
+        responder.start();
+
+        final List<String> configResolved = new ArrayList<String>();
+        final List<String> requestResolved = new ArrayList<String>();
+        ClientConfig config = new ClientConfig();
+        config.setDnsResolver(new DnsResolver() {
+            public InetAddress[] resolve(final String host) throws UnknownHostException {
+                configResolved.add(host);
+                throw new UnknownHostException(host);
+            }
+        });
+        PooledApacheHttpService sut = new PooledApacheHttpService(config);
+        HttpRequest request = new HttpRequest(URIUtil.toURI("http://api.ambrosoli.invalid:" + server.getLocalPort() //$NON-NLS-1$
+                + "/")); //$NON-NLS-1$
+        request.setTimeout(2000);
+        request.setDnsResolver(new DnsResolver() {
+            public InetAddress[] resolve(final String host) throws UnknownHostException {
+                requestResolved.add(host);
+                return new InetAddress[] { InetAddress.getByName("127.0.0.1") }; //$NON-NLS-1$
+            }
+        });
+
+        try {
+            // Exercise
+            HttpResponse actual = sut.execute(request);
+
+            // Verify
+            assertThat(actual.getStatusCode(), is(200));
+            assertThat(requestResolved, is(equalTo(Arrays.asList("api.ambrosoli.invalid")))); //$NON-NLS-1$
+            assertThat(configResolved.isEmpty(), is(true));
+        } finally {
+            sut.shutdown();
+            server.close();
+        }
+    }
+
+}
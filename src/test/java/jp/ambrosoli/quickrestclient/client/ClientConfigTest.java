@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.client;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import jp.ambrosoli.quickrestclient.enums.AuthType;
+import jp.ambrosoli.quickrestclient.params.AuthInfo;
+import jp.ambrosoli.quickrestclient.params.NameValueObject;
+
+public class ClientConfigTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void コピーを生成すると_コピー元を変更してもコピーに反映されないこと() throws Exception {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setTimeout(2000);
+        config.addHeader(new NameValueObject("X-Client", "quickrestclient")); //$NON-NLS-1$ //$NON-NLS-2$
+        config.setAuthInfo(new AuthInfo(AuthType.BASIC, "user", "pass", true)); //$NON-NLS-1$ //$NON-NLS-2$
+        config.setMaxConnectionsPerHost("www.ambrosoli.jp", 5); //$NON-NLS-1$
+        config.setKeepAliveDuration("www.ambrosoli.jp", 1000L); //$NON-NLS-1$
+        config.addLocalAddress(InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+        config.setSslProtocols("TLSv1.2"); //$NON-NLS-1$
+
+        // Exercise
+        ClientConfig actual = new ClientConfig(config);
+        config.setTimeout(100);
+        config.addHeader(new NameValueObject("X-Other", "value")); //$NON-NLS-1$ //$NON-NLS-2$
+        config.getAuthInfo().password = "changed"; //$NON-NLS-1$
+        config.setMaxConnectionsPerHost("other.ambrosoli.jp", 1); //$NON-NLS-1$
+        config.setKeepAliveDuration("other.ambrosoli.jp", 1L); //$NON-NLS-1$
+        config.addLocalAddress(InetAddress.getByName("127.0.0.2")); //$NON-NLS-1$
+        config.getSslProtocols()[0] = "SSLv3"; //$NON-NLS-1$
+
+        // Verify
+        assertThat(actual.getTimeout(), is(2000));
+        assertThat(actual.getHeaders().getHeaders().size(), is(1));
+        assertThat(actual.getAuthInfo().type, is(AuthType.BASIC));
+        assertThat(actual.getAuthInfo().username, is(equalTo("user"))); //$NON-NLS-1$
+        assertThat(actual.getAuthInfo().password, is(equalTo("pass"))); //$NON-NLS-1$
+        assertThat(actual.getAuthInfo().preemptive, is(true));
+        assertThat(actual.getMaxConnectionsPerHost().size(), is(1));
+        assertThat(actual.getKeepAliveDurationPerHost().size(), is(1));
+        assertThat(actual.getLocalAddresses().size(), is(1));
+        assertThat(actual.getSslProtocols(), is(arrayContaining("TLSv1.2"))); //$NON-NLS-1$
+    }
+
+    @Test
+    public void ホスト名毎の最大コネクション数を返されたMapから変更すると_UnsupportedOperationExceptionが発生すること() {
+
+        // Setup
+        ClientConfig sut = new ClientConfig();
+        this.expectedException.expect(is(instanceOf(UnsupportedOperationException.class)));
+
+        // Exercise
+        sut.getMaxConnectionsPerHost().put("www.ambrosoli.jp", Integer.valueOf(5)); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void ホスト名毎の再利用期間を返されたMapから変更すると_UnsupportedOperationExceptionが発生すること() {
+
+        // Setup
+        ClientConfig sut = new ClientConfig();
+        this.expectedException.expect(is(instanceOf(UnsupportedOperationException.class)));
+
+        // Exercise
+        sut.getKeepAliveDurationPerHost().put("www.ambrosoli.jp", Long.valueOf(1000L)); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void ローカルアドレスを返されたListから変更すると_UnsupportedOperationExceptionが発生すること() throws Exception {
+
+        // Setup
+        ClientConfig sut = new ClientConfig();
+        this.expectedException.expect(is(instanceOf(UnsupportedOperationException.class)));
+
+        // Exercise
+        sut.getLocalAddresses().add(InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+}
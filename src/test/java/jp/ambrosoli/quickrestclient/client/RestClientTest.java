@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.client;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import jp.ambrosoli.quickrestclient.Http;
+import jp.ambrosoli.quickrestclient.apache.service.PooledApacheHttpService;
+import jp.ambrosoli.quickrestclient.enums.AuthType;
+import jp.ambrosoli.quickrestclient.loopback.service.LoopbackHttpServiceFactory;
+import jp.ambrosoli.quickrestclient.params.AuthInfo;
+import jp.ambrosoli.quickrestclient.response.HttpResponse;
+import jp.ambrosoli.quickrestclient.service.HttpService;
+import jp.ambrosoli.quickrestclient.service.HttpServiceFactory;
+import jp.ambrosoli.quickrestclient.unittest.DataSource;
+import jp.ambrosoli.quickrestclient.unittest.LoopbackTestServer;
+
+public class RestClientTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private HttpServiceFactory defaultFactory;
+
+    private Map<String, HttpServiceFactory> registered;
+
+    @Before
+    public void setUp() throws Exception {
+        // テストで登録したファクトリーが他のテストに影響しないよう、登録状態を退避する
+        this.defaultFactory = HttpServiceFactory.getFactory();
+        this.registered = new HashMap<String, HttpServiceFactory>(getRegistry());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        HttpServiceFactory.register(null, this.defaultFactory);
+        Map<String, HttpServiceFactory> registry = getRegistry();
+        registry.clear();
+        registry.putAll(this.registered);
+    }
+
+    @Test
+    public void コンストラクタにnullを渡すと_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("ClientConfig may not be null."))); //$NON-NLS-1$
+
+        // Exercise
+        new RestClient(null);
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void 生成後に設定を変更しても_RestClientの設定には反映されないこと() {
+
+        // Setup
+        ClientConfig config = new ClientConfig();
+        config.setTimeout(2000);
+        config.setAuthInfo(new AuthInfo(AuthType.BASIC, "user", "pass")); //$NON-NLS-1$ //$NON-NLS-2$
+        RestClient sut = Http.client(config);
+
+        try {
+            // Exercise
+            config.setTimeout(100);
+            config.getAuthInfo().password = "changed"; //$NON-NLS-1$
+            sut.getConfig().setTimeout(200);
+
+            // Verify
+            assertThat(sut.getConfig().getTimeout(), is(2000));
+            assertThat(sut.getConfig().getAuthInfo().password, is(equalTo("pass"))); //$NON-NLS-1$
+            assertThat(((PooledApacheHttpService) sut.getHttpService()).getConfig().getTimeout(), is(2000));
+        } finally {
+            sut.close();
+        }
+    }
+
+    @Test
+    public void デフォルトのファクトリーで生成すると_PooledApacheHttpServiceが使用されること() {
+
+        // Exercise
+        RestClient sut = Http.client();
+
+        // Verify
+        assertThat(sut.getHttpService(), is(instanceOf(PooledApacheHttpService.class)));
+        assertThat(sut.isClosed(), is(false));
+
+        sut.close();
+    }
+
+    @Test
+    public void closeを呼び出すと_サービスが終了すること() {
+
+        // Setup
+        RestClient sut = Http.client();
+
+        // Exercise
+        sut.close();
+
+        // Verify
+        assertThat(sut.isClosed(), is(true));
+        assertThat(sut.getHttpService().isShutdown(), is(true));
+    }
+
+    @Test
+    public void close後にurlを呼び出すと_IllegalStateExceptionが発生すること() {
+
+        // Setup
+        RestClient sut = Http.client();
+        sut.close();
+
+        this.expectedException.expect(is(instanceOf(IllegalStateException.class)));
+        this.expectedException.expectMessage(is(equalTo("RestClient has already been closed."))); //$NON-NLS-1$
+
+        // Exercise
+        sut.url("http://www.ambrosoli.jp/"); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void urlで生成したリクエストを実行すると_正常に通信できること() {
+
+        // Setup
+        HttpServiceFactory.register(LoopbackHttpServiceFactory.FACTORY_NAME, LoopbackTestServer.createFactory());
+        ClientConfig config = new ClientConfig();
+        config.setTimeout(2000);
+        config.setFactoryName(LoopbackHttpServiceFactory.FACTORY_NAME);
+        RestClient sut = Http.client(config);
+
+        try {
+            // Exercise
+            HttpResponse actual = sut.url(DataSource.url("statusCode/ok")).execute(); //$NON-NLS-1$
+
+            // Verify
+            assertThat(actual.isSuccess(), is(true));
+        } finally {
+            sut.close();
+        }
+    }
+
+    @Test
+    public void PooledHttpServiceFactoryを実装していないファクトリーを指定すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        HttpServiceFactory.register(null, new HttpServiceFactory() {
+            @Override
+            public HttpService create() {
+                return null;
+            }
+        });
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(containsString("does not support connection pooling.")); //$NON-NLS-1$
+
+        // Exercise
+        Http.client(new ClientConfig());
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, HttpServiceFactory> getRegistry() throws Exception {
+        Field cacheField = HttpServiceFactory.class.getDeclaredField("cache"); //$NON-NLS-1$
+        cacheField.setAccessible(true);
+        return (Map<String, HttpServiceFactory>) cacheField.get(null);
+    }
+
+}
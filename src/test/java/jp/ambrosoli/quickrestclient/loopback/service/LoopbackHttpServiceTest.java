@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.loopback.service;
+
+import static jp.ambrosoli.quickrestclient.Operations.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import jp.ambrosoli.quickrestclient.client.ClientConfig;
+import jp.ambrosoli.quickrestclient.client.RestClient;
+import jp.ambrosoli.quickrestclient.exception.SocketTimeoutRuntimeException;
+import jp.ambrosoli.quickrestclient.headers.HttpHeader;
+import jp.ambrosoli.quickrestclient.loopback.response.LoopbackHttpResponse;
+import jp.ambrosoli.quickrestclient.request.HttpRequest;
+import jp.ambrosoli.quickrestclient.request.HttpRequestBuilder;
+import jp.ambrosoli.quickrestclient.response.HttpResponse;
+import jp.ambrosoli.quickrestclient.service.HttpServiceFactory;
+import jp.ambrosoli.quickrestclient.util.URIUtil;
+
+public class LoopbackHttpServiceTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private LoopbackHttpServiceFactory factory;
+
+    @Before
+    public void setUp() {
+        this.factory = new LoopbackHttpServiceFactory();
+        this.factory.addHandler("/hello", new LoopbackHandler() { //$NON-NLS-1$
+                    public HttpResponse handle(final HttpRequest request) {
+                        String name = request.getParams().getParams().get(0).getValue();
+                        return new LoopbackHttpResponse(200, "Hello, " + name + "!"); //$NON-NLS-1$ //$NON-NLS-2$
+                    }
+                });
+    }
+
+    @Test
+    public void パスに対応するハンドラーが登録されている場合_ハンドラーが返したレスポンスが返されること() {
+
+        // Setup
+        LoopbackHttpService sut = new LoopbackHttpService(this.factory);
+
+        // Exercise
+        HttpResponse actual = new HttpRequestBuilder("http://localhost/hello", sut).params(add("name", "値")) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                .execute();
+
+        // Verify
+        assertThat(actual.getStatusCode(), is(200));
+        assertThat(actual.getAsString(), is(equalTo("Hello, 値!"))); //$NON-NLS-1$
+        assertThat(actual.getContentType(), is(equalTo("text/plain; charset=UTF-8"))); //$NON-NLS-1$
+        assertThat(actual.getContentLength(), is(11L));
+        assertThat(sut.getRequestCount(), is(1L));
+    }
+
+    @Test
+    public void パスに対応するハンドラーが登録されていない場合_404が返されること() {
+
+        // Setup
+        LoopbackHttpService sut = new LoopbackHttpService(this.factory);
+
+        // Exercise
+        HttpResponse actual = sut.execute(new HttpRequest(URIUtil.toURI("http://localhost/unknown"))); //$NON-NLS-1$
+
+        // Verify
+        assertThat(actual.getStatusCode(), is(404));
+        assertThat(actual.getAsByteArray().length, is(0));
+    }
+
+    @Test
+    public void デフォルトのハンドラーを設定した場合_一致しないパスのリクエストを処理すること() {
+
+        // Setup
+        this.factory.setDefaultHandler(new LoopbackHandler() {
+            public HttpResponse handle(final HttpRequest request) {
+                return new LoopbackHttpResponse(201, Arrays.asList(new HttpHeader("Location", request.getUri() //$NON-NLS-1$
+                        .getPath())), null);
+            }
+        });
+        LoopbackHttpService sut = new LoopbackHttpService(this.factory);
+
+        // Exercise
+        HttpResponse actual = sut.execute(new HttpRequest(URIUtil.toURI("http://localhost/items/1"))); //$NON-NLS-1$
+
+        // Verify
+        assertThat(actual.isSuccess(), is(true));
+        assertThat(actual.getHeader("location").getValue(), is(equalTo("/items/1"))); //$NON-NLS-1$ //$NON-NLS-2$
+        assertThat(actual.getContentLength(), is(0L));
+    }
+
+    @Test
+    public void ハンドラーが例外をスローした場合_そのまま呼び出し元に伝播すること() {
+
+        // Setup
+        this.factory.addHandler("/slow", new LoopbackHandler() { //$NON-NLS-1$
+                    public HttpResponse handle(final HttpRequest request) {
+                        throw new SocketTimeoutRuntimeException("Read timed out"); //$NON-NLS-1$
+                    }
+                });
+        LoopbackHttpService sut = new LoopbackHttpService(this.factory);
+        this.expectedException.expect(is(instanceOf(SocketTimeoutRuntimeException.class)));
+
+        // Exercise
+        sut.execute(new HttpRequest(URIUtil.toURI("http://localhost/slow"))); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void ハンドラーがnullを返した場合_IllegalStateExceptionが発生すること() {
+
+        // Setup
+        this.factory.addHandler("/null", new LoopbackHandler() { //$NON-NLS-1$
+                    public HttpResponse handle(final HttpRequest request) {
+                        return null;
+                    }
+                });
+        LoopbackHttpService sut = new LoopbackHttpService(this.factory);
+        this.expectedException.expect(is(instanceOf(IllegalStateException.class)));
+        this.expectedException.expectMessage(is(equalTo("handler for \"/null\" returned no response."))); //$NON-NLS-1$
+
+        // Exercise
+        sut.execute(new HttpRequest(URIUtil.toURI("http://localhost/null"))); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void 終了したサービスでリクエストを送信すると_IllegalStateExceptionが発生すること() {
+
+        // Setup
+        LoopbackHttpService sut = new LoopbackHttpService(this.factory);
+        assertThat(sut.shutdown(1L, TimeUnit.SECONDS), is(true));
+        this.expectedException.expect(is(instanceOf(IllegalStateException.class)));
+        this.expectedException.expectMessage(is(equalTo("HttpService has already been shut down."))); //$NON-NLS-1$
+
+        // Exercise
+        sut.execute(new HttpRequest(URIUtil.toURI("http://localhost/hello"))); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void ファクトリーを名前で登録した場合_RestClientから使用できること() {
+
+        // Setup
+        HttpServiceFactory.register(LoopbackHttpServiceFactory.FACTORY_NAME, this.factory);
+        ClientConfig config = new ClientConfig();
+        config.setFactoryName(LoopbackHttpServiceFactory.FACTORY_NAME);
+        RestClient client = new RestClient(config);
+
+        // Exercise
+        HttpResponse actual = client.url("http://localhost/hello").params(add("name", "client")).execute(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        // Verify
+        assertThat(actual.getAsString(), is(equalTo("Hello, client!"))); //$NON-NLS-1$
+        client.close();
+    }
+
+    @Test
+    public void パスにnullを指定してハンドラーを登録すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("path must not be null."))); //$NON-NLS-1$
+
+        // Exercise
+        this.factory.addHandler(null, new LoopbackHandler() {
+            public HttpResponse handle(final HttpRequest request) {
+                return new LoopbackHttpResponse(200);
+            }
+        });
+
+        // Verify
+        fail("例外が発生しませんでした"); //$NON-NLS-1$
+    }
+
+}
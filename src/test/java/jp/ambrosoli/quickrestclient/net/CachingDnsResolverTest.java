@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.net;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class CachingDnsResolverTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void TTLの間は_同じホスト名の名前解決がキャッシュされること() throws Exception {
+
+        // Setup
+        CountingResolver delegate = new CountingResolver(InetAddress.getByName("192.0.2.1")); //$NON-NLS-1$
+        CachingDnsResolver sut = new CachingDnsResolver(delegate);
+
+        // Exercise
+        InetAddress[] first = sut.resolve("api.ambrosoli.jp"); //$NON-NLS-1$
+        InetAddress[] second = sut.resolve("API.ambrosoli.jp"); //$NON-NLS-1$
+
+        // Verify
+        assertThat(delegate.count, is(1));
+        assertThat(second, is(equalTo(first)));
+        assertThat(sut.size(), is(1));
+    }
+
+    @Test
+    public void TTLが切れると_再度名前解決されること() throws Exception {
+
+        // Setup
+        CountingResolver delegate = new CountingResolver(InetAddress.getByName("192.0.2.1")); //$NON-NLS-1$
+        CachingDnsResolver sut = new CachingDnsResolver(delegate, 10, 10, 10);
+        sut.resolve("api.ambrosoli.jp"); //$NON-NLS-1$
+        Thread.sleep(50);
+
+        // Exercise
+        sut.resolve("api.ambrosoli.jp"); //$NON-NLS-1$
+
+        // Verify
+        assertThat(delegate.count, is(2));
+    }
+
+    @Test
+    public void 名前解決できなかったホスト名は_ネガティブキャッシュのTTLの間UnknownHostExceptionが発生すること() throws Exception {
+
+        // Setup
+        CountingResolver delegate = new CountingResolver();
+        CachingDnsResolver sut = new CachingDnsResolver(delegate);
+        try {
+            sut.resolve("unknown.ambrosoli.jp"); //$NON-NLS-1$
+            fail("例外が発生しませんでした。"); //$NON-NLS-1$
+        } catch (UnknownHostException e) {
+            // Do nothing.
+        }
+        this.expectedException.expect(is(instanceOf(UnknownHostException.class)));
+
+        try {
+            // Exercise
+            sut.resolve("unknown.ambrosoli.jp"); //$NON-NLS-1$
+
+            // Verify
+            fail("例外が発生しませんでした。"); //$NON-NLS-1$
+        } finally {
+            assertThat(delegate.count, is(1));
+        }
+    }
+
+    @Test
+    public void 複数のアドレスがある場合_先頭のアドレスがラウンドロビンで入れ替わること() throws Exception {
+
+        // Setup
+        InetAddress a = InetAddress.getByName("192.0.2.1"); //$NON-NLS-1$
+        InetAddress b = InetAddress.getByName("192.0.2.2"); //$NON-NLS-1$
+        InetAddress c = InetAddress.getByName("192.0.2.3"); //$NON-NLS-1$
+        CachingDnsResolver sut = new CachingDnsResolver(new CountingResolver(a, b, c));
+
+        // Exercise
+        InetAddress[] first = sut.resolve("api.ambrosoli.jp"); //$NON-NLS-1$
+        InetAddress[] second = sut.resolve("api.ambrosoli.jp"); //$NON-NLS-1$
+        InetAddress[] third = sut.resolve("api.ambrosoli.jp"); //$NON-NLS-1$
+        InetAddress[] fourth = sut.resolve("api.ambrosoli.jp"); //$NON-NLS-1$
+
+        // Verify
+        assertThat(first, is(equalTo(new InetAddress[] { a, b, c })));
+        assertThat(second, is(equalTo(new InetAddress[] { b, c, a })));
+        assertThat(third, is(equalTo(new InetAddress[] { c, a, b })));
+        assertThat(fourth, is(equalTo(new InetAddress[] { a, b, c })));
+    }
+
+    @Test
+    public void invalidateを呼び出すと_次の呼び出しで再度名前解決されること() throws Exception {
+
+        // Setup
+        CountingResolver delegate = new CountingResolver(InetAddress.getByName("192.0.2.1")); //$NON-NLS-1$
+        CachingDnsResolver sut = new CachingDnsResolver(delegate);
+        sut.resolve("api.ambrosoli.jp"); //$NON-NLS-1$
+
+        // Exercise
+        sut.invalidate("API.ambrosoli.jp"); //$NON-NLS-1$
+        sut.resolve("api.ambrosoli.jp"); //$NON-NLS-1$
+
+        // Verify
+        assertThat(delegate.count, is(2));
+    }
+
+    @Test
+    public void キャッシュの件数が上限に達した場合_上限を超えてキャッシュされないこと() throws Exception {
+
+        // Setup
+        CachingDnsResolver sut = new CachingDnsResolver(new CountingResolver(InetAddress.getByName("192.0.2.1")), //$NON-NLS-1$
+                60000, 60000, 2);
+
+        // Exercise
+        sut.resolve("a.ambrosoli.jp"); //$NON-NLS-1$
+        sut.resolve("b.ambrosoli.jp"); //$NON-NLS-1$
+        sut.resolve("c.ambrosoli.jp"); //$NON-NLS-1$
+
+        // Verify
+        assertThat(sut.size(), is(lessThanOrEqualTo(2)));
+    }
+
+    @Test
+    public void 同じホスト名の名前解決が同時に要求された場合_1つのスレッドだけが名前解決を行うこと() throws Exception {
+
+        // Setup
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger count = new AtomicInteger();
+        final InetAddress address = InetAddress.getByName("192.0.2.1"); //$NON-NLS-1$
+        final CachingDnsResolver sut = new CachingDnsResolver(new DnsResolver() {
+            public InetAddress[] resolve(final String host) throws UnknownHostException {
+                count.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new UnknownHostException(host);
+                }
+                return new InetAddress[] { address };
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<InetAddress[]>> futures = new ArrayList<Future<InetAddress[]>>();
+
+        try {
+            // Exercise
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<InetAddress[]>() {
+                    public InetAddress[] call() throws Exception {
+                        return sut.resolve("api.ambrosoli.jp"); //$NON-NLS-1$
+                    }
+                }));
+            }
+            started.await(5, TimeUnit.SECONDS);
+            Thread.sleep(50L);
+            release.countDown();
+
+            // Verify
+            for (Future<InetAddress[]> future : futures) {
+                assertThat(future.get(5, TimeUnit.SECONDS)[0], is(address));
+            }
+            assertThat(count.get(), is(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void リゾルバにnullを指定すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("DnsResolver must not be null."))); //$NON-NLS-1$
+
+        // Exercise
+        new CachingDnsResolver(null);
+
+        // Verify
+        fail("例外が発生しませんでした。"); //$NON-NLS-1$
+    }
+
+    private static class CountingResolver implements DnsResolver {
+
+        private final InetAddress[] addresses;
+
+        private int count;
+
+        CountingResolver(final InetAddress... addresses) {
+            this.addresses = addresses;
+        }
+
+        public InetAddress[] resolve(final String host) throws UnknownHostException {
+            this.count++;
+            if (this.addresses.length == 0) {
+                throw new UnknownHostException(host);
+            }
+            return this.addresses.clone();
+        }
+
+    }
+
+}
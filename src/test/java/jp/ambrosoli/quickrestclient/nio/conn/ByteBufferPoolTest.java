@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.nio.conn;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ByteBufferPoolTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void 返却したバッファは_クリアされて再利用されること() {
+
+        // Setup
+        ByteBufferPool sut = new ByteBufferPool(16, 4, false);
+        ByteBuffer buffer = sut.acquire();
+        buffer.put((byte) 1);
+        sut.release(buffer);
+
+        // Exercise
+        ByteBuffer actual = sut.acquire();
+
+        // Verify
+        assertThat(actual, is(sameInstance(buffer)));
+        assertThat(actual.position(), is(0));
+        assertThat(actual.remaining(), is(16));
+        assertThat(sut.getPooledCount(), is(0));
+    }
+
+    @Test
+    public void 上限を超えて返却したバッファは_保持されないこと() {
+
+        // Setup
+        ByteBufferPool sut = new ByteBufferPool(16, 1, false);
+        ByteBuffer first = sut.acquire();
+        ByteBuffer second = sut.acquire();
+
+        // Exercise
+        sut.release(first);
+        sut.release(second);
+
+        // Verify
+        assertThat(sut.getPooledCount(), is(1));
+    }
+
+    @Test
+    public void サイズが異なるバッファを返却した場合_無視されること() {
+
+        // Setup
+        ByteBufferPool sut = new ByteBufferPool(16, 4, false);
+
+        // Exercise
+        sut.release(ByteBuffer.allocate(8));
+        sut.release(null);
+
+        // Verify
+        assertThat(sut.getPooledCount(), is(0));
+    }
+
+    @Test
+    public void バッファサイズに0以下を指定すると_IllegalArgumentExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalArgumentException.class)));
+        this.expectedException.expectMessage(is(equalTo("buffer size must be positive."))); //$NON-NLS-1$
+
+        // Exercise
+        new ByteBufferPool(0, 4, false);
+
+        // Verify
+        fail("例外が発生しませんでした"); //$NON-NLS-1$
+    }
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.nio.response;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class HttpResponseParserTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void Content_Lengthのレスポンスを1バイトずつ渡すと_ステータスとヘッダーと本文が解析されること() throws IOException {
+
+        // Setup
+        HttpResponseParser sut = new HttpResponseParser();
+        byte[] data = bytes("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nX-Test:  value \r\nContent-Length: 5\r\n\r\nhello"); //$NON-NLS-1$
+
+        // Exercise
+        boolean done = false;
+        for (int i = 0; i < data.length; i++) {
+            assertThat(done, is(false));
+            done = sut.parse(ByteBuffer.wrap(data, i, 1));
+        }
+
+        // Verify
+        assertThat(done, is(true));
+        assertThat(sut.getProtocol(), is(equalTo("HTTP/1.1"))); //$NON-NLS-1$
+        assertThat(sut.getStatusCode(), is(200));
+        assertThat(sut.getHeaders().size(), is(3));
+        assertThat(sut.getHeaders().get(1).getName(), is(equalTo("X-Test"))); //$NON-NLS-1$
+        assertThat(sut.getHeaders().get(1).getValue(), is(equalTo("value"))); //$NON-NLS-1$
+        assertThat(new String(sut.getBody(), "US-ASCII"), is(equalTo("hello"))); //$NON-NLS-1$ //$NON-NLS-2$
+        assertThat(sut.isKeepAlive(), is(true));
+    }
+
+    @Test
+    public void chunked形式のレスポンスを渡すと_チャンクを連結した本文が解析されること() throws IOException {
+
+        // Setup
+        HttpResponseParser sut = new HttpResponseParser();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n" //$NON-NLS-1$
+                + "5;ext=1\r\nhello\r\n6\r\n world\r\n0\r\nX-Trailer: t\r\n\r\n")); //$NON-NLS-1$
+
+        // Exercise
+        boolean actual = sut.parse(buffer);
+
+        // Verify
+        assertThat(actual, is(true));
+        assertThat(new String(sut.getBody(), "US-ASCII"), is(equalTo("hello world"))); //$NON-NLS-1$ //$NON-NLS-2$
+        assertThat(buffer.hasRemaining(), is(false));
+        assertThat(sut.isKeepAlive(), is(true));
+    }
+
+    @Test
+    public void 長さが指定されていないレスポンスの場合_切断されると本文が確定しキープアライブしないこと() throws IOException {
+
+        // Setup
+        HttpResponseParser sut = new HttpResponseParser();
+        sut.parse(ByteBuffer.wrap(bytes("HTTP/1.1 200 OK\r\n\r\nbody"))); //$NON-NLS-1$
+
+        // Exercise
+        boolean actual = sut.endOfInput();
+
+        // Verify
+        assertThat(actual, is(true));
+        assertThat(new String(sut.getBody(), "US-ASCII"), is(equalTo("body"))); //$NON-NLS-1$ //$NON-NLS-2$
+        assertThat(sut.isKeepAlive(), is(false));
+    }
+
+    @Test
+    public void HTTP1_0のレスポンスの場合_Connection_keep_aliveが指定されたときだけキープアライブすること() throws IOException {
+
+        // Setup
+        HttpResponseParser close = new HttpResponseParser();
+        HttpResponseParser keepAlive = new HttpResponseParser();
+
+        // Exercise
+        close.parse(ByteBuffer.wrap(bytes("HTTP/1.0 200 OK\r\nContent-Length: 0\r\n\r\n"))); //$NON-NLS-1$
+        keepAlive.parse(ByteBuffer.wrap(bytes("HTTP/1.0 200 OK\r\nConnection: Keep-Alive\r\nContent-Length: 0\r\n\r\n"))); //$NON-NLS-1$
+
+        // Verify
+        assertThat(close.isKeepAlive(), is(false));
+        assertThat(keepAlive.isKeepAlive(), is(true));
+    }
+
+    @Test
+    public void Connection_closeが指定された場合_キープアライブしないこと() throws IOException {
+
+        // Setup
+        HttpResponseParser sut = new HttpResponseParser();
+
+        // Exercise
+        sut.parse(ByteBuffer.wrap(bytes("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 0\r\n\r\n"))); //$NON-NLS-1$
+
+        // Verify
+        assertThat(sut.isDone(), is(true));
+        assertThat(sut.isKeepAlive(), is(false));
+    }
+
+    @Test
+    public void HEADリクエストのレスポンスの場合_Content_Lengthがあっても本文を読まずに完了すること() throws IOException {
+
+        // Setup
+        HttpResponseParser sut = new HttpResponseParser();
+        sut.reset(true);
+
+        // Exercise
+        boolean actual = sut.parse(ByteBuffer.wrap(bytes("HTTP/1.1 200 OK\r\nContent-Length: 100\r\n\r\n"))); //$NON-NLS-1$
+
+        // Verify
+        assertThat(actual, is(true));
+        assertThat(sut.getBody().length, is(0));
+    }
+
+    @Test
+    public void 情報レスポンスの後に最終レスポンスが続く場合_最終レスポンスが解析されること() throws IOException {
+
+        // Setup
+        HttpResponseParser sut = new HttpResponseParser();
+
+        // Exercise
+        sut.parse(ByteBuffer.wrap(bytes("HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 204 No Content\r\n\r\n"))); //$NON-NLS-1$
+
+        // Verify
+        assertThat(sut.isDone(), is(true));
+        assertThat(sut.getStatusCode(), is(204));
+    }
+
+    @Test
+    public void レスポンスの後に続くデータは_バッファに残されること() throws IOException {
+
+        // Setup
+        HttpResponseParser sut = new HttpResponseParser();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nokHTTP/1.1")); //$NON-NLS-1$
+
+        // Exercise
+        sut.parse(buffer);
+
+        // Verify
+        assertThat(buffer.remaining(), is(8));
+    }
+
+    @Test
+    public void 本文の途中で切断された場合_IOExceptionが発生すること() throws IOException {
+
+        // Setup
+        HttpResponseParser sut = new HttpResponseParser();
+        sut.parse(ByteBuffer.wrap(bytes("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\nok"))); //$NON-NLS-1$
+        this.expectedException.expect(is(instanceOf(IOException.class)));
+        this.expectedException.expectMessage(is(equalTo("connection closed before the response was complete."))); //$NON-NLS-1$
+
+        // Exercise
+        sut.endOfInput();
+
+        // Verify
+        fail("例外が発生しませんでした"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void ステータスラインが不正な場合_IOExceptionが発生すること() throws IOException {
+
+        // Setup
+        HttpResponseParser sut = new HttpResponseParser();
+        this.expectedException.expect(is(instanceOf(IOException.class)));
+        this.expectedException.expectMessage(is(equalTo("invalid HTTP status line."))); //$NON-NLS-1$
+
+        // Exercise
+        sut.parse(ByteBuffer.wrap(bytes("SSH-2.0-OpenSSH\r\n"))); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void チャンクサイズが不正な場合_IOExceptionが発生すること() throws IOException {
+
+        // Setup
+        HttpResponseParser sut = new HttpResponseParser();
+        this.expectedException.expect(is(instanceOf(IOException.class)));
+        this.expectedException.expectMessage(is(equalTo("invalid chunk size."))); //$NON-NLS-1$
+
+        // Exercise
+        sut.parse(ByteBuffer.wrap(bytes("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nzz\r\n"))); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void resetを呼び出すと_同じパーサーで次のレスポンスを解析できること() throws IOException {
+
+        // Setup
+        HttpResponseParser sut = new HttpResponseParser();
+        sut.parse(ByteBuffer.wrap(bytes("HTTP/1.1 404 Not Found\r\nContent-Length: 1\r\n\r\nx"))); //$NON-NLS-1$
+
+        // Exercise
+        sut.reset(false);
+        sut.parse(ByteBuffer.wrap(bytes("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n"))); //$NON-NLS-1$
+
+        // Verify
+        assertThat(sut.getStatusCode(), is(200));
+        assertThat(sut.getHeaders().size(), is(1));
+        assertThat(sut.getBody().length, is(0));
+    }
+
+    @Test
+    public void Content_Lengthが大きい場合_受信した分だけ本文のバッファが確保されること() throws IOException {
+
+        // Setup
+        HttpResponseParser sut = new HttpResponseParser();
+        StringBuilder data = new StringBuilder("HTTP/1.1 200 OK\r\nContent-Length: 2147483647\r\n\r\n"); //$NON-NLS-1$
+        for (int i = 0; i < 3000; i++) {
+            data.append('a');
+        }
+
+        // Exercise
+        boolean actual = sut.parse(ByteBuffer.wrap(bytes(data.toString())));
+
+        // Verify
+        assertThat(actual, is(false));
+        assertThat(sut.isStarted(), is(true));
+        assertThat(sut.isDone(), is(false));
+    }
+
+    private static byte[] bytes(final String str) throws UnsupportedEncodingException {
+        return str.getBytes("US-ASCII"); //$NON-NLS-1$
+    }
+
+}
@@ -18,6 +18,7 @@ package jp.ambrosoli.quickrestclient.request;
 import static jp.ambrosoli.quickrestclient.HttpConstants.*;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 import java.util.HashMap;
 import java.util.Iterator;
@@ -34,11 +35,15 @@ import jp.ambrosoli.quickrestclient.Operations;
 import jp.ambrosoli.quickrestclient.enums.AuthType;
 import jp.ambrosoli.quickrestclient.enums.HttpMethod;
 import jp.ambrosoli.quickrestclient.headers.HttpHeaders;
+import jp.ambrosoli.quickrestclient.net.CachingDnsResolver;
+import jp.ambrosoli.quickrestclient.net.DnsResolver;
 import jp.ambrosoli.quickrestclient.params.AuthInfo;
 import jp.ambrosoli.quickrestclient.params.NameValueObject;
 import jp.ambrosoli.quickrestclient.params.ProxyInfo;
 import jp.ambrosoli.quickrestclient.response.HttpResponse;
+import jp.ambrosoli.quickrestclient.service.HttpService;
 import jp.ambrosoli.quickrestclient.unittest.DataSource;
+import jp.ambrosoli.quickrestclient.unittest.LoopbackTestServer;
 
 public class HttpRequestBuilderTest {
 
@@ -475,7 +480,8 @@ public class HttpRequestBuilderTest {
     public void executeを呼び出すと_コンストラクタで指定したURLの通信結果がHttpResponseとして返されること() {
 
         // Setup
-        HttpRequestBuilder sut = new HttpRequestBuilder(DataSource.url("statusCode/ok")); //$NON-NLS-1$
+        HttpRequestBuilder sut = new HttpRequestBuilder(DataSource.url("statusCode/ok"), LoopbackTestServer //$NON-NLS-1$
+                .createFactory().create());
 
         // Exercise
         HttpResponse actual = sut.execute();
@@ -636,4 +642,114 @@ public class HttpRequestBuilderTest {
         fail("例外が発生しませんでした。"); //$NON-NLS-1$
     }
 
+    @Test
+    public void proxyにProxyInfoを渡すと_同じインスタンスがHttpRequestに保持されること() {
+
+        // Setup
+        HttpRequestBuilder sut = new HttpRequestBuilder("http://www.ambrosoli.jp/"); //$NON-NLS-1$
+        ProxyInfo proxyInfo = new ProxyInfo("proxy.ambrosoli.jp", 8080); //$NON-NLS-1$
+
+        // Exercise
+        sut.proxy(proxyInfo);
+
+        // Verify
+        assertThat(sut.request.getProxyInfo(), is(sameInstance(proxyInfo)));
+    }
+
+    @Test
+    public void コンストラクタでHttpServiceを指定した場合_executeで指定したHttpServiceが使用されること() {
+
+        // Setup
+        HttpService httpService = mock(HttpService.class);
+        HttpResponse response = mock(HttpResponse.class);
+        HttpRequestBuilder sut = new HttpRequestBuilder("http://www.ambrosoli.jp/", httpService); //$NON-NLS-1$
+        when(httpService.execute(sut.request)).thenReturn(response);
+
+        // Exercise
+        HttpResponse actual = sut.execute();
+
+        // Verify
+        assertThat(actual, is(sameInstance(response)));
+        verify(httpService).execute(sut.request);
+    }
+
+    @Test
+    public void authの引数にPreemptiveを指定した場合_Preemptiveな認証情報がHttpRequestに保持されること() {
+
+        // Setup
+        HttpRequestBuilder sut = new HttpRequestBuilder("http://www.ambrosoli.jp/"); //$NON-NLS-1$
+
+        // Exercise
+        sut.auth(AuthType.BASIC, "abc", "xyz", true); //$NON-NLS-1$ //$NON-NLS-2$
+
+        // Verify
+        AuthInfo authInfo = sut.request.getAuthInfo();
+        assertThat(authInfo, is(notNullValue()));
+        assertThat(authInfo.type, is(AuthType.BASIC));
+        assertThat(authInfo.username, is(equalTo("abc"))); //$NON-NLS-1$
+        assertThat(authInfo.password, is(equalTo("xyz"))); //$NON-NLS-1$
+        assertThat(authInfo.preemptive, is(true));
+    }
+
+    @Test
+    public void dnsResolverを指定した場合_HttpRequestにリゾルバが保持されること() {
+
+        // Setup
+        HttpRequestBuilder sut = new HttpRequestBuilder("http://www.ambrosoli.jp/"); //$NON-NLS-1$
+        DnsResolver resolver = new CachingDnsResolver();
+
+        // Exercise
+        sut.dnsResolver(resolver);
+
+        // Verify
+        assertThat(sut.request.getDnsResolver(), is(sameInstance(resolver)));
+    }
+
+    @Test
+    public void connectTimeoutとreadTimeoutを呼び出すと_それぞれの値がHttpRequestに保持されること() {
+
+        // Setup
+        HttpRequestBuilder sut = new HttpRequestBuilder("http://www.ambrosoli.jp/"); //$NON-NLS-1$
+
+        // Exercise
+        sut.timeout(15000).connectTimeout(1000).readTimeout(30000);
+
+        // Verify
+        assertThat(sut.request.getConnectTimeout(), is(1000));
+        assertThat(sut.request.getReadTimeout(), is(30000));
+
+    }
+
+    @Test
+    public void poolTimeoutとdeadlineを呼び出すと_引数で指定した値がHttpRequestに保持されること() {
+
+        // Setup
+        HttpRequestBuilder sut = new HttpRequestBuilder("http://www.ambrosoli.jp/"); //$NON-NLS-1$
+
+        // Exercise
+        sut.poolTimeout(200).deadline(3000L);
+
+        // Verify
+        assertThat(sut.request.getPoolTimeout(), is(200));
+        assertThat(sut.request.getDeadline(), is(3000L));
+
+    }
+
+    @Test
+    public void proxyに認証情報を渡すと_ProxyInfoとしてHttpRequestに保持されること() {
+
+        // Setup
+        HttpRequestBuilder sut = new HttpRequestBuilder("http://www.ambrosoli.jp/"); //$NON-NLS-1$
+
+        // Exercise
+        sut.proxy("proxy.ambrosoli.jp", 8080, "user", "password"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        // Verify
+        ProxyInfo proxyInfo = sut.request.getProxyInfo();
+        assertThat(proxyInfo.getHost(), is(equalTo("proxy.ambrosoli.jp"))); //$NON-NLS-1$
+        assertThat(proxyInfo.getPort(), is(equalTo(8080)));
+        assertThat(proxyInfo.getUsername(), is(equalTo("user"))); //$NON-NLS-1$
+        assertThat(proxyInfo.getPassword(), is(equalTo("password"))); //$NON-NLS-1$
+    }
+
 }
@@ -218,4 +218,20 @@ public class HttpRequestTest {
         assertThat(sut.getAuthInfo(), is(nullValue()));
     }
 
+    @Test
+    public void 接続タイムアウトと読み込みタイムアウトを設定しない場合_timeoutの値が返されること() {
+
+        // Setup
+        HttpRequest sut = new HttpRequest(URIUtil.toURI("http://www.ambrosoli.jp/test-server/")); //$NON-NLS-1$
+
+        // Exercise
+        sut.setTimeout(12000);
+
+        // Verify
+        assertThat(sut.getConnectTimeout(), is(12000));
+        assertThat(sut.getReadTimeout(), is(12000));
+        assertThat(sut.getPoolTimeout(), is(-1));
+        assertThat(sut.getDeadline(), is(0L));
+    }
+
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2011-2012 ambrosoli.jp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package jp.ambrosoli.quickrestclient.service;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import jp.ambrosoli.quickrestclient.apache.service.ApacheHttpServiceFactory;
+
+public class HttpServiceFactoryLoaderTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private ClassLoader classLoader;
+
+    @Before
+    public void setUp() {
+        URL root = HttpServiceFactoryLoaderTest.class.getResource("loader/"); //$NON-NLS-1$
+        this.classLoader = new URLClassLoader(new URL[] { root }, HttpServiceFactoryLoaderTest.class.getClassLoader());
+    }
+
+    @Test
+    public void loadを呼び出すと_クラスパス上の設定ファイルに記述されたファクトリーが重複とコメントと存在しないクラスを除いて記述順に生成されること() {
+
+        // Exercise
+        List<HttpServiceFactory> actual = HttpServiceFactoryLoader.load(this.classLoader);
+
+        // Verify
+        int size = actual.size();
+        assertThat(actual.get(0), is(instanceOf(ApacheHttpServiceFactory.class)));
+        assertThat(actual.get(size - 2), is(instanceOf(LowPriorityFactory.class)));
+        assertThat(actual.get(size - 1), is(instanceOf(HighPriorityFactory.class)));
+    }
+
+    @Test
+    public void loadFactoryを呼び出すと_優先度が最も大きいファクトリーが返されること() {
+
+        // Exercise
+        HttpServiceFactory actual = HttpServiceFactoryLoader.loadFactory(this.classLoader);
+
+        // Verify
+        assertThat(actual, is(instanceOf(HighPriorityFactory.class)));
+    }
+
+    @Test
+    public void loadFactoryを呼び出すと_選択されなかったファクトリーは生成されないこと() {
+
+        // Setup
+        int before = LowPriorityFactory.INSTANCES.get();
+
+        // Exercise
+        HttpServiceFactoryLoader.loadFactory(this.classLoader);
+
+        // Verify
+        assertThat(LowPriorityFactory.INSTANCES.get(), is(before));
+    }
+
+    @Test
+    public void 設定ファイルが見つからない場合_loadFactoryはnullを返すこと() {
+
+        // Setup
+        ClassLoader empty = new URLClassLoader(new URL[0], null);
+
+        // Exercise
+        HttpServiceFactory actual = HttpServiceFactoryLoader.loadFactory(empty);
+
+        // Verify
+        assertThat(actual, is(nullValue()));
+    }
+
+    @Test
+    public void newInstanceにHttpServiceFactoryではないクラス名を指定すると_IllegalStateExceptionが発生すること() {
+
+        // Setup
+        this.expectedException.expect(is(instanceOf(IllegalStateException.class)));
+        this.expectedException.expectMessage(is(equalTo("HttpServiceFactory \"java.lang.String\" could not be loaded."))); //$NON-NLS-1$
+
+        // Exercise
+        HttpServiceFactoryLoader.newInstance("java.lang.String", this.classLoader); //$NON-NLS-1$
+
+        // Verify
+        fail("例外が発生しませんでした"); //$NON-NLS-1$
+    }
+
+    @Test
+    public void newInstanceでコンストラクタが例外をスローした場合_その例外を原因とするIllegalStateExceptionが発生すること() {
+
+        try {
+            // Exercise
+            HttpServiceFactoryLoader.newInstance(FailingFactory.class.getName(), this.classLoader);
+
+            // Verify
+            fail("例外が発生しませんでした"); //$NON-NLS-1$
+        } catch (IllegalStateException e) {
+            assertThat(e.getCause(), is(instanceOf(UnsupportedOperationException.class)));
+        }
+    }
+
+    public static class LowPriorityFactory extends HttpServiceFactory {
+
+        static final AtomicInteger INSTANCES = new AtomicInteger();
+
+        public LowPriorityFactory() {
+            INSTANCES.incrementAndGet();
+        }
+
+        @Override
+        public HttpService create() {
+            return null;
+        }
+
+    }
+
+    @FactoryPriority(10)
+    public static class HighPriorityFactory extends HttpServiceFactory {
+
+        @Override
+        public HttpService create() {
+            return null;
+        }
+
+    }
+
+    public static class FailingFactory extends HttpServiceFactory {
+
+        public FailingFactory() {
+            throw new UnsupportedOperationException("failing"); //$NON-NLS-1$
+        }
+
+        @Override
+        public HttpService create() {
+            return null;
+        }
+
+    }
+
+}
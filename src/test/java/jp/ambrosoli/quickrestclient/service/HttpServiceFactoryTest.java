@@ -20,7 +20,14 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.After;
 import org.junit.Rule;
@@ -42,6 +49,10 @@ public class HttpServiceFactoryTest {
         cacheField.setAccessible(true);
         Map<?, ?> cache = (Map<?, ?>) cacheField.get(null);
         cache.clear();
+        Field defaultFactoryField = HttpServiceFactory.class.getDeclaredField("defaultFactory"); //$NON-NLS-1$
+        defaultFactoryField.setAccessible(true);
+        defaultFactoryField.set(null, null);
+        System.clearProperty(HttpServiceFactory.FACTORY_PROPERTY);
     }
 
     @Test
@@ -120,4 +131,81 @@ public class HttpServiceFactoryTest {
         fail("例外が発生しませんでした"); //$NON-NLS-1$
     }
 
+    @Test
+    public void 複数のスレッドから同時にgetFactoryを呼び出しても_同じデフォルトのHttpServiceFactoryが返されること()
+            throws Exception {
+
+        // Setup
+        int threads = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<HttpServiceFactory>> futures = new ArrayList<Future<HttpServiceFactory>>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(new Callable<HttpServiceFactory>() {
+                public HttpServiceFactory call() throws Exception {
+                    start.await();
+                    return HttpServiceFactory.getFactory();
+                }
+            }));
+        }
+
+        try {
+            // Exercise
+            start.countDown();
+
+            // Verify
+            HttpServiceFactory expected = HttpServiceFactory.getFactory();
+            for (Future<HttpServiceFactory> future : futures) {
+                assertThat(future.get(), is(sameInstance(expected)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void システムプロパティにクラス名を指定すると_そのクラスがデフォルトのHttpServiceFactoryとして返されること() {
+
+        // Setup
+        System.setProperty(HttpServiceFactory.FACTORY_PROPERTY, HttpServiceFactoryLoaderTest.HighPriorityFactory.class
+                .getName());
+
+        // Exercise
+        HttpServiceFactory actual = HttpServiceFactory.getFactory();
+
+        // Verify
+        assertThat(actual, is(instanceOf(HttpServiceFactoryLoaderTest.HighPriorityFactory.class)));
+    }
+
+    @Test
+    public void システムプロパティに登録済みのファクトリ名を指定すると_そのファクトリーがデフォルトのHttpServiceFactoryとして返されること() {
+
+        // Setup
+        HttpServiceFactory factory = mock(HttpServiceFactory.class);
+        HttpServiceFactory.register("test_factory", factory); //$NON-NLS-1$
+        System.setProperty(HttpServiceFactory.FACTORY_PROPERTY, "test_factory"); //$NON-NLS-1$
+
+        // Exercise
+        HttpServiceFactory actual = HttpServiceFactory.getFactory();
+
+        // Verify
+        assertThat(actual, is(sameInstance(factory)));
+    }
+
+    @Test
+    public void システムプロパティに存在しないクラス名を指定すると_IllegalStateExceptionが発生すること() {
+
+        // Setup
+        System.setProperty(HttpServiceFactory.FACTORY_PROPERTY, "jp.ambrosoli.NoSuchFactory"); //$NON-NLS-1$
+        this.expectedException.expect(is(instanceOf(IllegalStateException.class)));
+        this.expectedException.expectMessage(is(equalTo( //
+                "HttpServiceFactory \"jp.ambrosoli.NoSuchFactory\" could not be loaded."))); //$NON-NLS-1$
+
+        // Exercise
+        HttpServiceFactory.getFactory();
+
+        // Verify
+        fail("例外が発生しませんでした"); //$NON-NLS-1$
+    }
+
 }
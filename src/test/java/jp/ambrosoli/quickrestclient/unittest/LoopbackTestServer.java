@@ -0,0 +1,165 @@
+package jp.ambrosoli.quickrestclient.unittest;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import jp.ambrosoli.quickrestclient.HttpConstants;
+import jp.ambrosoli.quickrestclient.enums.HttpMethod;
+import jp.ambrosoli.quickrestclient.exception.SocketTimeoutRuntimeException;
+import jp.ambrosoli.quickrestclient.headers.HttpHeader;
+import jp.ambrosoli.quickrestclient.loopback.response.LoopbackHttpResponse;
+import jp.ambrosoli.quickrestclient.loopback.service.LoopbackHandler;
+import jp.ambrosoli.quickrestclient.loopback.service.LoopbackHttpServiceFactory;
+import jp.ambrosoli.quickrestclient.params.NameValueObject;
+import jp.ambrosoli.quickrestclient.request.HttpRequest;
+import jp.ambrosoli.quickrestclient.response.HttpResponse;
+import jp.ambrosoli.quickrestclient.util.StringUtil;
+import jp.ambrosoli.quickrestclient.util.URIUtil;
+
+/**
+ * ユニットテスト用のサーバー（{@link DataSource#url()}）のエンドポイントを、同じプロセス内で再現するクラスです。
+ * <p>
+ * {@link #createFactory()}で生成したファクトリーを登録すると、サーバーを起動せずにテストを実行できます。
+ * </p>
+ *
+ * @author willard379
+ * @since 0.3.0
+ */
+public class LoopbackTestServer {
+
+    public static LoopbackHttpServiceFactory createFactory() {
+        LoopbackHttpServiceFactory factory = new LoopbackHttpServiceFactory();
+        factory.addHandler(path(null), new LoopbackHandler() {
+            public HttpResponse handle(final HttpRequest request) {
+                return new LoopbackHttpResponse(HttpURLConnection.HTTP_OK);
+            }
+        });
+        factory.addHandler(path("statusCode/ok"), new LoopbackHandler() { //$NON-NLS-1$
+                    public HttpResponse handle(final HttpRequest request) {
+                        return new LoopbackHttpResponse(HttpURLConnection.HTTP_OK);
+                    }
+                });
+        for (HttpMethod method : HttpMethod.values()) {
+            addMethodHandler(factory, method);
+        }
+        addProtocolHandler(factory, "httpProtocol/version1_0", HttpConstants.HTTP_1_0); //$NON-NLS-1$
+        addProtocolHandler(factory, "httpProtocol/version1_1", HttpConstants.HTTP_1_1); //$NON-NLS-1$
+        addTimeoutHandler(factory, 100);
+        addTimeoutHandler(factory, 500);
+        factory.addHandler(path("header/userAgent"), new LoopbackHandler() { //$NON-NLS-1$
+                    public HttpResponse handle(final HttpRequest request) {
+                        return new LoopbackHttpResponse(HttpURLConnection.HTTP_OK, StringUtil.join(getHeaderValues(
+                                request, "User-Agent"), ", ")); //$NON-NLS-1$ //$NON-NLS-2$
+                    }
+                });
+        factory.addHandler(path("header/accept"), new LoopbackHandler() { //$NON-NLS-1$
+                    public HttpResponse handle(final HttpRequest request) {
+                        return new LoopbackHttpResponse(HttpURLConnection.HTTP_OK, StringUtil.join(getHeaderValues(
+                                request, "Accept"), ", ")); //$NON-NLS-1$ //$NON-NLS-2$
+                    }
+                });
+        factory.addHandler(path("helloWorld"), new LoopbackHandler() { //$NON-NLS-1$
+                    public HttpResponse handle(final HttpRequest request) {
+                        return new LoopbackHttpResponse(HttpURLConnection.HTTP_OK,
+                                "Hello, " + getParamValue(request, "name") + "!"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    }
+                });
+        factory.addHandler(path("header/sameAsParams"), new LoopbackHandler() { //$NON-NLS-1$
+                    public HttpResponse handle(final HttpRequest request) {
+                        for (NameValueObject param : getParams(request)) {
+                            String[] values = getHeaderValues(request, param.getName());
+                            if (values.length != 1 || !values[0].equals(param.getValue())) {
+                                return new LoopbackHttpResponse(HttpURLConnection.HTTP_BAD_REQUEST);
+                            }
+                        }
+                        return new LoopbackHttpResponse(HttpURLConnection.HTTP_OK);
+                    }
+                });
+        factory.addHandler(path("header/setHeaders"), new LoopbackHandler() { //$NON-NLS-1$
+                    public HttpResponse handle(final HttpRequest request) {
+                        List<HttpHeader> headers = new ArrayList<HttpHeader>();
+                        for (NameValueObject param : getParams(request)) {
+                            headers.add(new HttpHeader(param.getName(), param.getValue()));
+                        }
+                        return new LoopbackHttpResponse(HttpURLConnection.HTTP_OK, headers, null);
+                    }
+                });
+        return factory;
+    }
+
+    public static String path(final String pathInfo) {
+        return URIUtil.toURI(DataSource.url(pathInfo)).getPath();
+    }
+
+    /**
+     * 指定したHTTPメソッドの場合のみ200 OK、それ以外の場合は405 Method Not Allowedを返すエンドポイントを登録します。
+     */
+    private static void addMethodHandler(final LoopbackHttpServiceFactory factory, final HttpMethod method) {
+        factory.addHandler(path("method/" + method.name().toLowerCase(Locale.ENGLISH)), new LoopbackHandler() { //$NON-NLS-1$
+                    public HttpResponse handle(final HttpRequest request) {
+                        return new LoopbackHttpResponse(request.getMethod() == method ? HttpURLConnection.HTTP_OK
+                                : HttpURLConnection.HTTP_BAD_METHOD);
+                    }
+                });
+    }
+
+    /**
+     * 指定したプロトコルバージョンの場合のみ200 OK、それ以外の場合は505 HTTP Version Not Supportedを返すエンドポイントを登録します。
+     */
+    private static void addProtocolHandler(final LoopbackHttpServiceFactory factory, final String pathInfo,
+            final String protocol) {
+        factory.addHandler(path(pathInfo), new LoopbackHandler() {
+            public HttpResponse handle(final HttpRequest request) {
+                return new LoopbackHttpResponse(protocol.equals(request.getProtocol()) ? HttpURLConnection.HTTP_OK
+                        : HttpURLConnection.HTTP_VERSION);
+            }
+        });
+    }
+
+    /**
+     * 指定したミリ秒後に応答するエンドポイントを登録します。<br />
+     * 待機はせず、読み込みタイムアウトが応答時間以下の場合に{@link SocketTimeoutRuntimeException}をスローします。
+     */
+    private static void addTimeoutHandler(final LoopbackHttpServiceFactory factory, final int millis) {
+        factory.addHandler(path("timeout/" + millis), new LoopbackHandler() { //$NON-NLS-1$
+                    public HttpResponse handle(final HttpRequest request) {
+                        int timeout = request.getReadTimeout();
+                        if (timeout > 0 && timeout <= millis) {
+                            throw new SocketTimeoutRuntimeException("Read timed out"); //$NON-NLS-1$
+                        }
+                        return new LoopbackHttpResponse(HttpURLConnection.HTTP_OK);
+                    }
+                });
+    }
+
+    private static List<NameValueObject> getParams(final HttpRequest request) {
+        if (request.getParams() == null) {
+            return new ArrayList<NameValueObject>();
+        }
+        return request.getParams().getParams();
+    }
+
+    private static String getParamValue(final HttpRequest request, final String name) {
+        for (NameValueObject param : getParams(request)) {
+            if (param.getName().equals(name)) {
+                return param.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String[] getHeaderValues(final HttpRequest request, final String name) {
+        List<String> values = new ArrayList<String>();
+        if (request.getHeaders() != null) {
+            for (NameValueObject header : request.getHeaders().getHeaders()) {
+                if (header.getName().equalsIgnoreCase(name)) {
+                    values.add(header.getValue());
+                }
+            }
+        }
+        return values.toArray(new String[values.size()]);
+    }
+
+}
@@ -196,4 +196,41 @@ public class StringUtilTest {
         // Verify
         fail("UnsupportedEncodingRuntimeExceptionが発生しませんでした。"); //$NON-NLS-1$
     }
+
+    @Test
+    public void getBytesを呼び出した場合_引数で渡された文字列が指定したエンコーディングのバイト配列に変換して返されること() throws Exception {
+
+        // Setup
+        String str = "ロマンス"; //$NON-NLS-1$
+
+        // Exercise
+        byte[] result = StringUtil.getBytes(str, "UTF-16"); //$NON-NLS-1$
+
+        // Verify
+        assertThat(result, is(equalTo(str.getBytes("UTF-16")))); //$NON-NLS-1$
+    }
+
+    @Test
+    public void getBytesの第二引数にnullを渡した場合_UTF8のバイト配列に変換されて返されること() throws Exception {
+
+        // Setup
+        String str = "ハネムーン"; //$NON-NLS-1$
+
+        // Exercise
+        byte[] result = StringUtil.getBytes(str, null);
+
+        // Verify
+        assertThat(result, is(equalTo(str.getBytes("UTF-8")))); //$NON-NLS-1$
+    }
+
+    @Test
+    public void getBytesの引数にnullを渡した場合_nullが返されること() throws Exception {
+
+        // Exercise
+        byte[] result = StringUtil.getBytes(null, "UTF-8"); //$NON-NLS-1$
+
+        // Verify
+        assertThat(result, is(nullValue()));
+    }
+
 }